@@ -0,0 +1,184 @@
+/*
+ * This file is part of
+ * MegaHardCore Server Plugin for Minecraft
+ *
+ * Copyright (C) 2012 Ryan Hamshire
+ * Copyright (C) 2013 Diemex
+ *
+ * MegaHardCore is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MegaHardCore is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero Public License
+ * along with MegaHardCore.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.megahardcore.bench;
+
+
+import com.megahardcore.MegaHardCore;
+import com.megahardcore.config.RootConfig;
+import com.megahardcore.module.BlockModule;
+import com.megahardcore.module.DataStoreModule;
+import com.megahardcore.module.EntityStateStore;
+import com.megahardcore.module.InventoryWeightModule;
+import com.megahardcore.module.MsgModule;
+import com.megahardcore.module.PlayerModule;
+import org.bukkit.GameMode;
+import org.bukkit.Location;
+import org.bukkit.Material;
+import org.bukkit.World;
+import org.bukkit.block.Block;
+import org.bukkit.block.BlockFace;
+import org.bukkit.entity.EntityType;
+import org.bukkit.entity.LivingEntity;
+import org.bukkit.entity.Player;
+import org.bukkit.entity.Zombie;
+import org.bukkit.event.entity.CreatureSpawnEvent;
+import org.bukkit.inventory.ItemStack;
+import org.bukkit.inventory.PlayerInventory;
+import org.powermock.api.mockito.PowerMockito;
+
+import java.util.Random;
+import java.util.UUID;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+/**
+ * Wires up a mocked plugin with a real RootConfig and the modules the benchmarked handlers depend on.
+ * <p/>
+ * All mocks are stub only, they don't record their invocations and can't be verified. The mocks still add a constant
+ * overhead per call to every benchmark: compare results between commits, not with real server numbers.
+ *
+ * @author Diemex
+ */
+public class BenchFixtures
+{
+    public static final String WORLD = "world";
+
+    public final MegaHardCore plugin = PowerMockito.mock(MegaHardCore.class, withSettings().stubOnly());
+
+    public final RootConfig CFG = new RootConfig(plugin);
+
+    public final World world = stub(World.class);
+
+    public final BlockModule blockModule = new BlockModule(plugin);
+
+    public final PlayerModule playerModule = new PlayerModule(plugin, CFG);
+
+    public final DataStoreModule dataStore = new DataStoreModule(plugin, CFG);
+
+    public final InventoryWeightModule inventoryWeight = new InventoryWeightModule(plugin);
+
+    public final EntityStateStore entityStates = new EntityStateStore(plugin);
+
+    public final MsgModule messenger = stub(MsgModule.class);
+
+    public final Player player = stub(Player.class);
+
+
+    public BenchFixtures()
+    {
+        when(world.getName()).thenReturn(WORLD);
+        when(world.getEnvironment()).thenReturn(World.Environment.NORMAL);
+        when(plugin.getModuleForClass(RootConfig.class)).thenReturn(CFG);
+        when(plugin.getModuleForClass(BlockModule.class)).thenReturn(blockModule);
+        when(plugin.getModuleForClass(PlayerModule.class)).thenReturn(playerModule);
+        when(plugin.getModuleForClass(DataStoreModule.class)).thenReturn(dataStore);
+        when(plugin.getModuleForClass(MsgModule.class)).thenReturn(messenger);
+        when(plugin.getModuleForClass(InventoryWeightModule.class)).thenReturn(inventoryWeight);
+        when(plugin.getModuleForClass(EntityStateStore.class)).thenReturn(entityStates);
+        when(plugin.getRandom()).thenReturn(new Random(42));
+
+        when(player.getName()).thenReturn("Diemex94");
+        when(player.getWorld()).thenReturn(world);
+        when(player.getGameMode()).thenReturn(GameMode.SURVIVAL);
+        when(player.getUniqueId()).thenReturn(UUID.randomUUID());
+        when(player.isOnline()).thenReturn(true);
+        PlayerInventory inventory = stub(PlayerInventory.class);
+        when(player.getInventory()).thenReturn(inventory);
+        when(inventory.getHolder()).thenReturn(player);
+        when(inventory.getArmorContents()).thenReturn(new ItemStack[4]);
+        when(inventory.getContents()).thenReturn(new ItemStack[4 * 9]);
+    }
+
+
+    /**
+     * Mocks which don't record their invocations, they can't be verified but add less overhead to the benchmarks
+     */
+    public static <T> T stub(Class<T> clazz)
+    {
+        return mock(clazz, withSettings().stubOnly());
+    }
+
+
+    /**
+     * Create a block in the world, all relatives of the block will be the given block
+     */
+    public Block block(Material material, Block relative)
+    {
+        Block block = stub(Block.class);
+        when(block.getWorld()).thenReturn(world);
+        when(block.getType()).thenReturn(material);
+        when(block.getTypeId()).thenReturn(material.getId());
+        when(block.getY()).thenReturn(64);
+        if (relative != null)
+            when(block.getRelative(any(BlockFace.class))).thenReturn(relative);
+        return block;
+    }
+
+
+    /**
+     * Every location in the world will return this block
+     */
+    public void fillWorld(Block block)
+    {
+        when(world.getBlockAt(any(Location.class))).thenReturn(block);
+    }
+
+
+    public Location location(double x, double y, double z)
+    {
+        return new Location(world, x, y, z);
+    }
+
+
+    /**
+     * A zombie in the world
+     */
+    public LivingEntity zombie()
+    {
+        LivingEntity zombie = stub(Zombie.class);
+        when(zombie.getType()).thenReturn(EntityType.ZOMBIE);
+        when(zombie.getWorld()).thenReturn(world);
+        return zombie;
+    }
+
+
+    /**
+     * A zombie spawning on top of the given block
+     */
+    public CreatureSpawnEvent spawnEvent(Block below, CreatureSpawnEvent.SpawnReason reason)
+    {
+        Location location = stub(Location.class);
+        when(location.getWorld()).thenReturn(world);
+        Block block = block(Material.AIR, below);
+        when(location.getBlock()).thenReturn(block);
+
+        CreatureSpawnEvent event = stub(CreatureSpawnEvent.class);
+        LivingEntity zombie = zombie();
+        when(event.getEntity()).thenReturn(zombie);
+        when(event.getLocation()).thenReturn(location);
+        when(event.getSpawnReason()).thenReturn(reason);
+        return event;
+    }
+}
@@ -0,0 +1,168 @@
+/*
+ * This file is part of
+ * MegaHardCore Server Plugin for Minecraft
+ *
+ * Copyright (C) 2012 Ryan Hamshire
+ * Copyright (C) 2013 Diemex
+ *
+ * MegaHardCore is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MegaHardCore is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero Public License
+ * along with MegaHardCore.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.megahardcore.features;
+
+
+import com.megahardcore.bench.BenchFixtures;
+import com.megahardcore.config.RootNode;
+import org.bukkit.Location;
+import org.bukkit.Material;
+import org.bukkit.block.Block;
+import org.bukkit.block.BlockFace;
+import org.bukkit.entity.LivingEntity;
+import org.bukkit.event.block.BlockBreakEvent;
+import org.bukkit.event.entity.CreatureSpawnEvent;
+import org.bukkit.event.entity.EntityDeathEvent;
+import org.bukkit.event.player.PlayerMoveEvent;
+import org.bukkit.inventory.ItemStack;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.Mockito.when;
+
+/**
+ * Throughput of the event handlers which run the most on a busy server.
+ *
+ * @author Diemex
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2G")
+public class HandlerBenchmark
+{
+    private AntiGrinder antiGrinder;
+
+    private Water water;
+
+    private HardenedStone hardenedStone;
+
+    private CreatureSpawnEvent spawnEvent;
+
+    private EntityDeathEvent deathEvent;
+
+    private PlayerMoveEvent moveEvent;
+
+    private BlockBreakEvent breakDirtEvent;
+
+    private BlockBreakEvent breakStoneEvent;
+
+
+    @Setup(Level.Iteration)
+    public void setup()
+    {
+        BenchFixtures fix = new BenchFixtures();
+        fix.CFG.set(BenchFixtures.WORLD, RootNode.INHIBIT_MONSTER_GRINDERS, true);
+        fix.CFG.set(BenchFixtures.WORLD, RootNode.NO_SWIMMING_IN_ARMOR, true);
+        fix.CFG.set(BenchFixtures.WORLD, RootNode.NO_SWIMMING_IN_ARMOR_MAX_POINTS, 18.0);
+        fix.CFG.set(BenchFixtures.WORLD, RootNode.NO_SWIMMING_IN_ARMOR_ARMOR_POINTS, 2.0);
+        fix.CFG.set(BenchFixtures.WORLD, RootNode.NO_SWIMMING_IN_ARMOR_INV_POINTS, 1.0);
+        fix.CFG.set(BenchFixtures.WORLD, RootNode.NO_SWIMMING_IN_ARMOR_TOOL_POINTS, 0.5);
+        fix.CFG.set(BenchFixtures.WORLD, RootNode.SUPER_HARD_STONE, true);
+        fix.CFG.set(BenchFixtures.WORLD, RootNode.SUPER_HARD_STONE_PHYSICS, true);
+        fix.CFG.set(BenchFixtures.WORLD, RootNode.SUPER_HARD_BLOCKS, RootNode.SUPER_HARD_BLOCKS.getDefaultValue());
+        fix.CFG.set(BenchFixtures.WORLD, RootNode.SUPER_HARD_STONE_TOOLS, RootNode.SUPER_HARD_STONE_TOOLS.getDefaultValue());
+        fix.CFG.set(BenchFixtures.WORLD, RootNode.SUPER_HARD_STONE_ORE_BLOCKS, RootNode.SUPER_HARD_STONE_ORE_BLOCKS.getDefaultValue());
+        fix.CFG.set(BenchFixtures.WORLD, RootNode.SUPER_HARD_STONE_STONE_BLOCKS, RootNode.SUPER_HARD_STONE_STONE_BLOCKS.getDefaultValue());
+
+        antiGrinder = new AntiGrinder(fix.plugin, fix.CFG, fix.blockModule);
+        water = new Water(fix.plugin, fix.CFG, fix.messenger, fix.playerModule, fix.inventoryWeight);
+        hardenedStone = new HardenedStone(fix.plugin, fix.CFG, fix.messenger, fix.blockModule, fix.playerModule);
+
+        //Natural zombie spawn on grass
+        spawnEvent = fix.spawnEvent(fix.block(Material.GRASS, null), CreatureSpawnEvent.SpawnReason.NATURAL);
+
+        //Zombie dying on dry land without a killer
+        Block air = fix.block(Material.AIR, fix.block(Material.GRASS, null));
+        fix.fillWorld(air);
+        LivingEntity zombie = fix.zombie();
+        when(zombie.getLocation()).thenReturn(fix.location(0.5, 64, 0.5));
+        when(zombie.getMaxHealth()).thenReturn(20.0);
+        deathEvent = new EntityDeathEvent(zombie, new ArrayList<ItemStack>(), 5);
+
+        //Swimming up in deep water
+        Block water = fix.block(Material.STATIONARY_WATER, null);
+        when(water.getRelative(BlockFace.DOWN)).thenReturn(water);
+        Location from = fix.location(0.5, 60, 0.5);
+        Location to = fix.location(0.5, 60.2, 0.5);
+        when(fix.world.getBlockAt(from)).thenReturn(water);
+        when(fix.world.getBlockAt(to)).thenReturn(water);
+        moveEvent = new PlayerMoveEvent(fix.player, from, to);
+
+        //Most broken blocks aren't hardened
+        breakDirtEvent = new BlockBreakEvent(fix.block(Material.DIRT, air), fix.player);
+        //Stone with an empty hand
+        breakStoneEvent = new BlockBreakEvent(fix.block(Material.STONE, air), fix.player);
+    }
+
+
+    @Benchmark
+    public boolean antiGrinderSpawn()
+    {
+        return antiGrinder.onEntitySpawn(spawnEvent);
+    }
+
+
+    @Benchmark
+    public boolean antiGrinderDeath()
+    {
+        return antiGrinder.onEntityDeath(deathEvent);
+    }
+
+
+    @Benchmark
+    public PlayerMoveEvent waterMove()
+    {
+        water.onPlayerMove(moveEvent);
+        return moveEvent;
+    }
+
+
+    @Benchmark
+    public BlockBreakEvent hardenedStoneBreakDirt()
+    {
+        hardenedStone.onBlockBreak(breakDirtEvent);
+        return breakDirtEvent;
+    }
+
+
+    @Benchmark
+    public BlockBreakEvent hardenedStoneBreakStone()
+    {
+        hardenedStone.onBlockBreak(breakStoneEvent);
+        return breakStoneEvent;
+    }
+}
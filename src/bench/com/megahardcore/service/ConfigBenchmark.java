@@ -0,0 +1,115 @@
+/*
+ * This file is part of
+ * MegaHardCore Server Plugin for Minecraft
+ *
+ * Copyright (C) 2012 Ryan Hamshire
+ * Copyright (C) 2013 Diemex
+ *
+ * MegaHardCore is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MegaHardCore is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero Public License
+ * along with MegaHardCore.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.megahardcore.service;
+
+
+import com.megahardcore.bench.BenchFixtures;
+import com.megahardcore.config.RootNode;
+import com.megahardcore.service.config.customtypes.BlockTypeList;
+import org.bukkit.Material;
+import org.bukkit.World;
+import org.bukkit.block.Block;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of the config lookups every handler does.
+ *
+ * @author Diemex
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2G")
+public class ConfigBenchmark
+{
+    private BenchFixtures fix;
+
+    private World world;
+
+    private BlockTypeList hardBlocks;
+
+    private Block stone;
+
+    private Block dirt;
+
+
+    @Setup(Level.Iteration)
+    public void setup()
+    {
+        fix = new BenchFixtures();
+        world = fix.world;
+        fix.CFG.set(BenchFixtures.WORLD, RootNode.INHIBIT_MONSTER_GRINDERS, true);
+        fix.CFG.set(BenchFixtures.WORLD, RootNode.SUPER_HARD_BLOCKS, RootNode.SUPER_HARD_BLOCKS.getDefaultValue());
+        hardBlocks = fix.CFG.getBlocktypeList(RootNode.SUPER_HARD_BLOCKS, BenchFixtures.WORLD);
+        stone = fix.block(Material.STONE, null);
+        dirt = fix.block(Material.DIRT, null);
+    }
+
+
+    @Benchmark
+    public boolean getBoolean()
+    {
+        return fix.CFG.getBoolean(RootNode.INHIBIT_MONSTER_GRINDERS, BenchFixtures.WORLD);
+    }
+
+
+    @Benchmark
+    public boolean getBooleanFromSnapshot()
+    {
+        return fix.CFG.getSnapshot(world).getBoolean(RootNode.INHIBIT_MONSTER_GRINDERS);
+    }
+
+
+    @Benchmark
+    public BlockTypeList getBlocktypeList()
+    {
+        return fix.CFG.getBlocktypeList(RootNode.SUPER_HARD_BLOCKS, BenchFixtures.WORLD);
+    }
+
+
+    @Benchmark
+    public boolean blockTypeListContainsHit()
+    {
+        return hardBlocks.contains(stone);
+    }
+
+
+    @Benchmark
+    public boolean blockTypeListContainsMiss()
+    {
+        return hardBlocks.contains(dirt);
+    }
+}
@@ -25,7 +25,6 @@ package com.megahardcore;
 import com.megahardcore.command.Commander;
 import com.megahardcore.compatibility.CompatHandler;
 import com.megahardcore.config.RootConfig;
-import com.megahardcore.config.RootNode;
 import com.megahardcore.config.messages.MessageConfig;
 import com.megahardcore.features.*;
 import com.megahardcore.features.monsters.*;
@@ -34,11 +33,9 @@ import com.megahardcore.module.*;
 import com.megahardcore.module.temporaryblock.TemporaryBlockHandler;
 import com.megahardcore.service.IModule;
 import com.megahardcore.service.OurRandom;
-import com.megahardcore.task.ArmorWeightTask;
+import com.megahardcore.service.Profiler;
 import com.megahardcore.task.MoreMonstersTask;
-import com.megahardcore.task.WeightCheckTask;
 import org.bukkit.Bukkit;
-import org.bukkit.World;
 import org.bukkit.entity.Player;
 import org.bukkit.plugin.java.JavaPlugin;
 
@@ -77,6 +74,7 @@ public class MegaHardCore extends JavaPlugin
     public void onEnable()
     {
         // Register modules
+        registerModule(Profiler.class, new Profiler(this));
         registerModule(RootConfig.class, new RootConfig(this));
         registerModule(MessageConfig.class, new MessageConfig(this));
 
@@ -88,8 +86,13 @@ public class MegaHardCore extends JavaPlugin
 
         registerModule(DataStoreModule.class, new DataStoreModule(this));
         registerModule(BlockModule.class, new BlockModule(this));
+        registerModule(BlockMarkStore.class, new BlockMarkStore(this, new File(rootFolder, "marks")));
+        registerModule(FallingBlockGovernor.class, new FallingBlockGovernor(this));
         registerModule(UtilityModule.class, new UtilityModule(this));
+        registerModule(EntityStateStore.class, new EntityStateStore(this));
         registerModule(PlayerModule.class, new PlayerModule(this));
+        registerModule(PlayerIndexModule.class, new PlayerIndexModule(this));
+        registerModule(InventoryWeightModule.class, new InventoryWeightModule(this));
 
         //Register command
         getCommand("mhc").setExecutor(new Commander(this));
@@ -97,6 +100,7 @@ public class MegaHardCore extends JavaPlugin
         //Basic Modules
         registerModule(AntiFarming.class, new AntiFarming(this));
         registerModule(AntiGrinder.class, new AntiGrinder(this));
+        registerModule(ArmorWeight.class, new ArmorWeight(this));
         registerModule(DebugMode.class, new DebugMode(this));
         registerModule(Explosions.class, new Explosions(this));
         registerModule(HardenedStone.class, new HardenedStone(this));
@@ -141,25 +145,9 @@ public class MegaHardCore extends JavaPlugin
 
         OurRandom.reload();
 
-        // FEATURE: monsters spawn in the light under a configurable Y level
+        // FEATURE: monsters spawn in the light under a configurable Y level, players are spread over a window of 600 ticks
         MoreMonstersTask task = new MoreMonstersTask(this);
-        this.getServer().getScheduler().scheduleSyncRepeatingTask(this, task, 600L, 600L);
-
-        //Feature: check weight task if no swimming in armor active and feature active in at least one world
-        boolean active = false;
-        for (World world : getServer().getWorlds())
-            if (getModuleForClass(RootConfig.class).getBoolean(RootNode.NO_SWIMMING_IN_ARMOR, world.getName()))
-                active = true;
-        if (active)
-            this.getServer().getScheduler().scheduleSyncRepeatingTask(this, new WeightCheckTask(this), 20L * 5, 20L * 5);
-
-        //Armor task
-        active = false;
-        for (World world : getServer().getWorlds())
-            if (getModuleForClass(RootConfig.class).getBoolean(RootNode.ARMOR_SLOWDOWN_ENABLE, world.getName()))
-                active = true;
-        if (active)
-            this.getServer().getScheduler().scheduleSyncRepeatingTask(this, new ArmorWeightTask(this), 20L * 5, 20L * 3);
+        this.getServer().getScheduler().scheduleSyncRepeatingTask(this, Profiler.wrap(this, "MoreMonstersTask", task), 1L, 1L);
 
         //Metrics Plotter, this gets included by maven
         new ConfigPlotter(this, getModuleForClass(RootConfig.class));
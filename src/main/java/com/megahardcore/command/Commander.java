@@ -44,6 +44,7 @@ public class Commander extends CommandHandler
         registerCommand("enabled", new EnabledCommand());
         registerCommand("debugtoggle", new DebugToggleCommand());
         registerCommand("debug", new DebugCommand());
+        registerCommand("profile", new ProfileCommand());
     }
 
 
@@ -58,6 +59,7 @@ public class Commander extends CommandHandler
         {
             sender.sendMessage("    reload " + ChatColor.YELLOW + "- Reload the plugin");
             sender.sendMessage("    enabled [world]" + ChatColor.YELLOW + "- Is megahardcore enabled");
+            sender.sendMessage("    profile [start|stop|dump]" + ChatColor.YELLOW + "- Measure how long each feature takes");
         }
         return true;
     }
@@ -2,9 +2,9 @@ package com.megahardcore.command;
 
 
 import com.megahardcore.MegaHardCore;
+import com.megahardcore.features.Torches;
 import com.megahardcore.service.ICommand;
 import com.megahardcore.service.PermissionNode;
-import com.megahardcore.task.RemoveExposedTorchesTask;
 import org.bukkit.ChatColor;
 import org.bukkit.command.Command;
 import org.bukkit.command.CommandSender;
@@ -27,7 +27,7 @@ public class DebugCommand implements ICommand
                 {
                     if (args[0].equals("RemoveTorches"))
                     {
-                        plugin.getServer().getScheduler().runTask(plugin, new RemoveExposedTorchesTask(plugin, player.getLocation().getChunk(), true));
+                        plugin.getModuleForClass(Torches.class).removeExposedTorches(player.getLocation().getChunk(), true);
                         sender.sendMessage(ChatColor.GREEN + plugin.getTag() + "Removed Torches and Crops in the current chunk!");
                     }
                     return true;
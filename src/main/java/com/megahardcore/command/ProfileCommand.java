@@ -0,0 +1,90 @@
+/*
+ * This file is part of
+ * MegaHardCore Server Plugin for Minecraft
+ *
+ * Copyright (C) 2012 Ryan Hamshire
+ * Copyright (C) 2013 Diemex
+ *
+ * MegaHardCore is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MegaHardCore is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero Public License
+ * along with MegaHardCore.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.megahardcore.command;
+
+
+import com.megahardcore.MegaHardCore;
+import com.megahardcore.module.FallingBlockGovernor;
+import com.megahardcore.module.temporaryblock.TemporaryBlockHandler;
+import com.megahardcore.service.ICommand;
+import com.megahardcore.service.PermissionNode;
+import com.megahardcore.service.Profiler;
+import org.bukkit.ChatColor;
+import org.bukkit.command.Command;
+import org.bukkit.command.CommandSender;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.logging.Level;
+
+/**
+ * Start/stop the profiler and dump its measurements to a file
+ *
+ * @author Diemex
+ */
+public class ProfileCommand implements ICommand
+{
+    @Override
+    public boolean execute (MegaHardCore plugin, CommandSender sender, Command command, String label, String[] args)
+    {
+        if (sender.hasPermission(PermissionNode.ADMIN.getNode()))
+        {
+            Profiler profiler = plugin.getModuleForClass(Profiler.class);
+            String action = args.length > 0 ? args[0].toLowerCase() : "";
+            switch (action)
+            {
+                case "start":
+                    profiler.start();
+                    sender.sendMessage(ChatColor.GREEN + plugin.getTag() + " Profiling started");
+                    break;
+                case "stop":
+                    profiler.stop();
+                    sender.sendMessage(ChatColor.GREEN + plugin.getTag() + " Profiling stopped, use /mhc profile dump to save the results");
+                    break;
+                case "dump":
+                    try
+                    {
+                        File file = profiler.dump();
+                        sender.sendMessage(ChatColor.GREEN + plugin.getTag() + " Profile written to " + file.getPath());
+                    } catch (IOException e)
+                    {
+                        plugin.getLogger().log(Level.SEVERE, "Couldn't write profile", e);
+                        sender.sendMessage(ChatColor.RED + plugin.getTag() + " Couldn't write profile: " + e.getMessage());
+                    }
+                    break;
+                default:
+                    sender.sendMessage(ChatColor.RED + plugin.getTag() + " Usage: /mhc profile [start|stop|dump]");
+                    sender.sendMessage(ChatColor.GRAY + plugin.getTag() + " Profiler is " + (profiler.isRunning() ? "running" : "stopped"));
+                    FallingBlockGovernor governor = plugin.getModuleForClass(FallingBlockGovernor.class);
+                    sender.sendMessage(ChatColor.GRAY + plugin.getTag() + " Falling blocks: " + governor.getLive() + " live, " + governor.getSpawned() + " spawned, "
+                            + governor.getDenied() + " over limit, " + governor.getRelocated() + " relocated");
+                    TemporaryBlockHandler temporaryBlocks = plugin.getModuleForClass(TemporaryBlockHandler.class);
+                    sender.sendMessage(ChatColor.GRAY + plugin.getTag() + " Temporary blocks: " + temporaryBlocks.size() + " registered, " + temporaryBlocks.getHits() + " broken of "
+                            + temporaryBlocks.getLookups() + " lookups, " + temporaryBlocks.getExpired() + " expired");
+            }
+        } else
+        {
+            sender.sendMessage(ChatColor.RED + plugin.getTag() + " Lack permission: " + PermissionNode.ADMIN.getNode());
+        }
+        return true;
+    }
+}
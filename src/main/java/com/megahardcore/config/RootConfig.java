@@ -116,6 +116,7 @@ public class RootConfig extends MultiWorldConfig
                 set(world, node.getKey(), node.getValue());
             }
         }
+        compileSnapshots();
         //Save files
         mainMHCConfig.setHeader(createHeader());
         mainMHCConfig.save();
@@ -56,6 +56,11 @@ public enum RootNode implements ConfigNode
      * list of worlds where extra hard mode rules apply
      */
     WORLDS("Enabled Worlds", VarType.LIST, new DefaultWorlds(), "Set the worlds you want mhc active here. F.e. [world, world_nether]. \"@all\" enables mhc for all worlds"),
+    /**
+     * How often counts of shown messages are saved
+     */
+    MESSAGES_SAVE_SECONDS("Messages.Save Counts Every Seconds", VarType.INTEGER, SubType.NATURAL_NUMBER, 30,
+            "How often the counts of shown tutorial messages are written to the database. They are also saved when a player leaves. Read from the first world in the main config."),
 
     /**
      * #############
@@ -75,6 +80,11 @@ public enum RootNode implements ConfigNode
      * If players with op should bypass by default
      */
     BYPASS_OPS("Bypassing.Operators Bypass", VarType.BOOLEAN, false, "If activated ops automatically bypass. Disable if you want your ops to be able to play with mhc."),
+    /**
+     * How often cached bypass permissions are checked again
+     */
+    BYPASS_RECHECK_SECONDS("Bypassing.Recheck Permissions Every Seconds", VarType.INTEGER, SubType.NATURAL_NUMBER, 60,
+            "Bypasses are cached per player and updated on join, world and gamemode changes. Permission changes made with a permission plugin are picked up after this many seconds. 0 = only on those events"),
 
     /**
      * ##################
@@ -149,6 +159,16 @@ public enum RootNode implements ConfigNode
     RAIN_BREAKS_TORCHES("World Rules.Torches.Rain Breaks Torches", VarType.BOOLEAN, true,
             "When it rains there is a chance that torches will be removed in a chunk.",
             "Any kind of block above the torch is enough to protect the torch"),
+    /**
+     * How many chunks are checked for exposed torches per tick
+     */
+    RAIN_SWEEP_CHUNKS_PER_TICK("World Rules.Torches.Performance.Max Chunks Checked Per Tick", VarType.INTEGER, SubType.NATURAL_NUMBER, 4,
+            "When it starts raining one loaded chunk is checked every 15 ticks. Limits how many chunks can be checked in one tick. 0 = no limit"),
+    /**
+     * How many exposed torches and crops are removed per tick
+     */
+    RAIN_SWEEP_BLOCKS_PER_TICK("World Rules.Torches.Performance.Max Blocks Removed Per Tick", VarType.INTEGER, SubType.NATURAL_NUMBER, 64,
+            "How many exposed torches and crops can be removed in one tick, the rest is removed in the next ticks. 0 = no limit"),
 
     /**
      * ##########
@@ -408,6 +428,12 @@ public enum RootNode implements ConfigNode
     MONSTER_SPAWNS_IN_LIGHT_PERCENTAGE("General Monster Rules.Monsters Spawn In Light.Percentage", VarType.INTEGER, SubType.PERCENTAGE, Disable.ZERO, 100,
             "Spawns monsters at locations where player has been previously."),
 
+    /**
+     * how many monsters can be spawned in the light per tick
+     */
+    MONSTER_SPAWNS_IN_LIGHT_MAX_PER_TICK("General Monster Rules.Monsters Spawn In Light.Max Spawns Per Tick", VarType.INTEGER, SubType.NATURAL_NUMBER, 2,
+            "Server wide setting. Spawns over this limit are spawned in the following ticks. 0 = no limit"),
+
     /**
      * ##########
      * # HORSES #
@@ -444,6 +470,8 @@ public enum RootNode implements ConfigNode
             "Breaking the head will result in the zombie not resurrecting."),
     ZOMBIE_REANIMATE_SKULLS_DROP_PERCENTAGE("Zombies.Reanimate.Placed Skulls Drop Percentage", VarType.INTEGER, SubType.PERCENTAGE, 5,
             "What percentage of the placed skulls should drop as an item, when broken before the zombie respawns."),
+    ZOMBIES_REANIMATE_SKULLS_FORGET_MINUTES("Zombies.Reanimate.Forget Skulls After Minutes", VarType.INTEGER, SubType.NATURAL_NUMBER, 10,
+            "Placed skulls are remembered until the zombie respawns. Skulls of zombies which never respawned are forgotten after this many minutes."),
     ZOMBIES_REANIMATE_PERCENT("Zombies.Reanimate.Percent", VarType.INTEGER, SubType.PERCENTAGE, 50,
             "Percentage for the 1st respawn to occur. To reduce the amount of consecutive respawns the percentage reduced by 1/n respawns.",
             "F.e 1: 50%, 2: 1/2 of 50% = 25%, 3: 1/3 of 25% = 7.5% and so on"),
@@ -810,6 +838,67 @@ public enum RootNode implements ConfigNode
      * which materials beyond sand and gravel should be subject to gravity
      */
     MORE_FALLING_BLOCKS("Additional Falling Blocks.Enabled Blocks", VarType.BLOCKTYPE_LIST, new DefaultFallingBlocks()),
+    /**
+     * How many physics checks are processed per tick
+     */
+    MORE_FALLING_BLOCKS_CHECKS_PER_TICK("Additional Falling Blocks.Performance.Max Blocks Checked Per Tick", VarType.INTEGER, SubType.NATURAL_NUMBER, 400,
+            "How many blocks are checked for physics per tick in this world. Remaining checks are done in the next tick. 0 = no limit"),
+    /**
+     * How much time physics checks may take per tick
+     */
+    MORE_FALLING_BLOCKS_CHECKS_MAX_MICROS("Additional Falling Blocks.Performance.Max Time Per Tick (Microseconds)", VarType.INTEGER, SubType.NATURAL_NUMBER, 2000,
+            "How long physics checks may take per tick in this world. 1000 microseconds = 1 millisecond, a tick has 50 milliseconds. 0 = no limit"),
+    /**
+     * How many of our falling blocks can exist in a chunk
+     */
+    MORE_FALLING_BLOCKS_MAX_PER_CHUNK("Additional Falling Blocks.Performance.Max Falling Blocks Per Chunk", VarType.INTEGER, SubType.NATURAL_NUMBER, 48,
+            "How many falling blocks created by mhc can exist in a chunk at once. Blocks above the limit are moved to where they would land without an animation. 0 = no limit"),
+    /**
+     * How many of our falling blocks can exist in a world
+     */
+    MORE_FALLING_BLOCKS_MAX_PER_WORLD("Additional Falling Blocks.Performance.Max Falling Blocks Per World", VarType.INTEGER, SubType.NATURAL_NUMBER, 500,
+            "How many falling blocks created by mhc can exist in this world at once. Blocks above the limit are moved to where they would land without an animation. 0 = no limit"),
+
+    /**
+     * ###################
+     * # MATERIAL TRAITS #
+     * ###################
+     */
+    /**
+     * Materials to add to/remove from the tools trait
+     */
+    MATERIAL_TRAITS_TOOL("Material Traits.Tools", VarType.LIST, new ArrayList<String>(),
+            "Materials which count as a tool (one per item) for the inventory weight. Prefix with - to remove a default, f.e. [SHEARS, -WATCH]. Only read from the main config."),
+    /**
+     * Materials to add to/remove from the armor trait
+     */
+    MATERIAL_TRAITS_ARMOR("Material Traits.Armor", VarType.LIST, new ArrayList<String>(),
+            "Materials which count as armor. Prefix with - to remove a default, f.e. [PUMPKIN, -LEATHER_HELMET]. Only read from the main config."),
+    /**
+     * Materials to add to/remove from the breaks falling blocks trait
+     */
+    MATERIAL_TRAITS_BREAKS_FALLING_BLOCK("Material Traits.Breaks Falling Blocks", VarType.LIST, new ArrayList<String>(),
+            "Materials which break a falling block that lands on them. Prefix with - to remove a default, f.e. [FENCE, -WEB]. Only read from the main config."),
+    /**
+     * Materials to add to/remove from the natural spawn blocks trait
+     */
+    MATERIAL_TRAITS_NATURAL_OVERWORLD_SPAWN("Material Traits.Natural Spawn Blocks", VarType.LIST, new ArrayList<String>(),
+            "Materials which count as natural blocks for monster spawns (anti grinder). Prefix with - to remove a default, f.e. [SANDSTONE, -COBBLESTONE]. Only read from the main config."),
+    /**
+     * Materials to add to/remove from the natural nether spawn blocks trait
+     */
+    MATERIAL_TRAITS_NATURAL_NETHER_SPAWN("Material Traits.Natural Nether Spawn Blocks", VarType.LIST, new ArrayList<String>(),
+            "Materials which count as natural blocks for monster spawns in the nether (anti grinder). Prefix with - to remove a default, f.e. [QUARTZ_ORE, -GRAVEL]. Only read from the main config."),
+    /**
+     * Materials to add to/remove from the plants trait
+     */
+    MATERIAL_TRAITS_PLANT("Material Traits.Plants", VarType.LIST, new ArrayList<String>(),
+            "Materials which are affected by the farming rules. Prefix with - to remove a default, f.e. [NETHER_WARTS, -MELON_STEM]. Only read from the main config."),
+    /**
+     * Materials to add to/remove from the horse food trait
+     */
+    MATERIAL_TRAITS_HORSE_FOOD("Material Traits.Horse Food", VarType.LIST, new ArrayList<String>(),
+            "Materials which can be fed to horses. Prefix with - to remove a default, f.e. [HAY_BLOCK, -APPLE]. Only read from the main config."),
 
     /**
      * ##############################
@@ -860,8 +949,23 @@ public enum RootNode implements ConfigNode
      */
     EXPLOSIONS_Y("Explosions.Border Y", VarType.INTEGER, SubType.NATURAL_NUMBER, 55,
             "Determines where your surface is located. You can have seperate settings for the surface and caves."),
+    /**
+     * How many custom explosions are created per tick
+     */
+    EXPLOSIONS_MAX_PER_TICK("Explosions.Performance.Max Explosions Per Tick", VarType.INTEGER, SubType.NATURAL_NUMBER, 10,
+            "How many custom explosions can happen per tick in this world. Remaining explosions happen in the next tick. 0 = no limit"),
+    /**
+     * How many blocks can go flying per tick
+     */
+    EXPLOSIONS_MAX_FLYING_BLOCKS_PER_TICK("Explosions.Performance.Max Flying Blocks Per Tick", VarType.INTEGER, SubType.NATURAL_NUMBER, 100,
+            "How many blocks can be thrown up by explosions per tick in this world. Blocks above the limit are destroyed normally. 0 = no limit"),
+    /**
+     * Merge explosions which happen at nearly the same spot
+     */
+    EXPLOSIONS_MERGE("Explosions.Performance.Merge Overlapping Explosions", VarType.BOOLEAN, true,
+            "Custom explosions of the same kind which are close together and happen in the same tick are merged into one. Helps with tnt cannons."),
 
-    //WHEN ADDING NEW EXPLOSIONTYPES YOU HAVE TO ADD THE NODES TO EXPLOSIONTYPE AND ALSO UPDATE THE EXPLOSIONTASK
+    //WHEN ADDING NEW EXPLOSIONTYPES YOU HAVE TO ADD THE NODES TO EXPLOSIONTYPE AND ALSO UPDATE THE EXPLOSIONSCHEDULER
     /**
      * CREEPER Enable this custom explosion
      */
@@ -35,6 +35,8 @@ import org.bukkit.configuration.file.YamlConfiguration;
 
 import java.io.*;
 import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.logging.Level;
 
 /** Configuration handler for the messages.yml file. */
@@ -46,6 +48,11 @@ public class MessageConfig extends ModularConfig
     /** Configuration object reference. */
     private final YamlConfiguration config;
 
+    /**
+     * Compiled message templates indexed by the ordinal of the MessageNode
+     */
+    private MessageTemplate[] templates = new MessageTemplate[0];
+
 
     /**
      * Constructor.
@@ -73,6 +80,7 @@ public class MessageConfig extends ModularConfig
     public void closing()
     {
         OPTIONS.clear();
+        templates = new MessageTemplate[0];
         //reload();
         //save();
     }
@@ -181,6 +189,7 @@ public class MessageConfig extends ModularConfig
             config.load(file);
             loadSettings(config);
             boundsCheck();
+            compileTemplates();
         } catch (FileNotFoundException e)
         {
             plugin.getLogger().log(Level.SEVERE, "File messages.yml not found.", e);
@@ -227,6 +236,40 @@ public class MessageConfig extends ModularConfig
     }
 
 
+    /**
+     * Compile every message into a template, so sending doesn't have to search for placeholders every time
+     */
+    private void compileTemplates()
+    {
+        List<String> placeholders = new ArrayList<>();
+        for (MessageNode.Variables variable : MessageNode.Variables.values())
+            for (String name : variable.getVarNames())
+                placeholders.add(name);
+        String[] names = placeholders.toArray(new String[placeholders.size()]);
+
+        MessageNode[] nodes = MessageNode.values();
+        MessageTemplate[] compiled = new MessageTemplate[nodes.length];
+        for (MessageNode node : nodes)
+            if (!node.isCategoryNode() && node.getVarType() == ConfigNode.VarType.STRING)
+                compiled[node.ordinal()] = MessageTemplate.compile(getString(node), names);
+        templates = compiled;
+    }
+
+
+    /**
+     * Get the compiled template of a message
+     *
+     * @param node message to get
+     *
+     * @return the template or null if the node is not a message
+     */
+    public MessageTemplate getTemplate(MessageNode node)
+    {
+        final int i = node.ordinal();
+        return i < templates.length ? templates[i] : null;
+    }
+
+
     private void updateCat(MessageNode node, ConfigurationSection config)
     {
         String val = config.getString(node.getPath());
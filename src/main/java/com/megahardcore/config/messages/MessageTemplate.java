@@ -0,0 +1,227 @@
+/*
+ * This file is part of
+ * MegaHardCore Server Plugin for Minecraft
+ *
+ * Copyright (C) 2012 Ryan Hamshire
+ * Copyright (C) 2013 Diemex
+ *
+ * MegaHardCore is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MegaHardCore is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero Public License
+ * along with MegaHardCore.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.megahardcore.config.messages;
+
+
+import com.megahardcore.service.FindAndReplace;
+import de.diemex.scoreboardnotifier.message.MsgLineHolder;
+import de.diemex.scoreboardnotifier.message.StringUtil;
+import org.apache.commons.lang.Validate;
+import org.bukkit.ChatColor;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * A message which has been split into literal segments and placeholder slots when the config was loaded.
+ * <p/>
+ * Rendering only appends the segments and the values of the slots into a reused StringBuilder instead of searching the
+ * whole message once per placeholder. The scoreboard lines of a message are wrapped once and reused as long as the
+ * rendered text doesn't change. Not thread safe, only render on the main thread.
+ *
+ * @author Diemex
+ */
+public final class MessageTemplate
+{
+    /**
+     * Literal text between the slots, always one more than there are slots
+     */
+    private final String[] segments;
+
+    /**
+     * Same as segments but without color codes
+     */
+    private final String[] strippedSegments;
+
+    /**
+     * Placeholder each slot has been compiled from, e.g. $PLAYER
+     */
+    private final String[] slots;
+
+    private final StringBuilder buffer = new StringBuilder();
+
+    /**
+     * Wrapped lines of a message without slots, indexed by line color and if colors have been stripped
+     */
+    private final List<String>[] constantLines;
+
+    /**
+     * The last rendered text of a message with slots and its wrapped lines
+     */
+    private String lastText;
+    private ChatColor lastColor;
+    private List<String> lastLines;
+
+
+    @SuppressWarnings("unchecked")
+    private MessageTemplate (String[] segments, String[] slots)
+    {
+        this.segments = segments;
+        this.slots = slots;
+        strippedSegments = new String[segments.length];
+        for (int i = 0; i < segments.length; i++)
+            strippedSegments[i] = ChatColor.stripColor(segments[i]);
+        constantLines = slots.length == 0 ? new List[(ChatColor.values().length + 1) * 2] : null;
+    }
+
+
+    /**
+     * Split the message into literal segments and slots for the given placeholders
+     *
+     * @param text         message with color codes already translated
+     * @param placeholders all placeholders that may occur in the message, if two placeholders start at the same index
+     *                     the longer one wins
+     *
+     * @return the compiled template
+     */
+    public static MessageTemplate compile(String text, String... placeholders)
+    {
+        Validate.notNull(text, "Null string");
+        String[] sorted = placeholders.clone();
+        Arrays.sort(sorted, Comparator.comparingInt(String::length).reversed());
+
+        List<String> segments = new ArrayList<>();
+        List<String> slots = new ArrayList<>();
+        int start = 0;
+        int i = 0;
+        while (i < text.length())
+        {
+            String match = null;
+            for (String placeholder : sorted)
+                if (!placeholder.isEmpty() && text.startsWith(placeholder, i))
+                {
+                    match = placeholder;
+                    break;
+                }
+            if (match != null)
+            {
+                segments.add(text.substring(start, i));
+                slots.add(match);
+                i += match.length();
+                start = i;
+            } else
+                i++;
+        }
+        segments.add(text.substring(start));
+        return new MessageTemplate(segments.toArray(new String[segments.size()]), slots.toArray(new String[slots.size()]));
+    }
+
+
+    /**
+     * Does this message contain no placeholders, which means it always renders to the same text
+     *
+     * @return true if there are no slots
+     */
+    public boolean isConstant()
+    {
+        return slots.length == 0;
+    }
+
+
+    /**
+     * Fill in the placeholders
+     *
+     * @param args values for the placeholders, placeholders without a value are kept as they are
+     *
+     * @return the message text
+     */
+    public String render(FindAndReplace... args)
+    {
+        return render(false, args);
+    }
+
+
+    /**
+     * Fill in the placeholders
+     *
+     * @param stripColors remove all color codes from the message
+     * @param args        values for the placeholders, placeholders without a value are kept as they are
+     *
+     * @return the message text
+     */
+    public String render(boolean stripColors, FindAndReplace... args)
+    {
+        String[] literals = stripColors ? strippedSegments : segments;
+        if (slots.length == 0)
+            return literals[0];
+
+        buffer.setLength(0);
+        buffer.append(literals[0]);
+        for (int i = 0; i < slots.length; i++)
+        {
+            String value = slots[i];
+            for (FindAndReplace arg : args)
+                if (arg.matches(slots[i]))
+                {
+                    value = stripColors ? ChatColor.stripColor(arg.getReplaceWith()) : arg.getReplaceWith();
+                    break;
+                }
+            buffer.append(value);
+            buffer.append(literals[i + 1]);
+        }
+        return buffer.toString();
+    }
+
+
+    /**
+     * Get the message wrapped into scoreboard lines. The lines are cached for messages without placeholders and for the
+     * last set of values of a message with placeholders.
+     *
+     * @param lineColor   color of the lines, reduces the line size by 2
+     * @param stripColors remove all color codes from the message
+     * @param args        values for the placeholders
+     *
+     * @return unmodifiable lines of text that fit into the scoreboard without the line color
+     */
+    public List<String> getLines(ChatColor lineColor, boolean stripColors, FindAndReplace... args)
+    {
+        if (slots.length == 0)
+        {
+            int index = (lineColor != null ? lineColor.ordinal() + 1 : 0) * 2 + (stripColors ? 1 : 0);
+            if (constantLines[index] == null)
+                constantLines[index] = wrap(render(stripColors), lineColor);
+            return constantLines[index];
+        }
+
+        String text = render(stripColors, args);
+        if (lastLines == null || lastColor != lineColor || !lastText.equals(text))
+        {
+            lastText = text;
+            lastColor = lineColor;
+            lastLines = wrap(text, lineColor);
+        }
+        return lastLines;
+    }
+
+
+    private static List<String> wrap(String text, ChatColor lineColor)
+    {
+        List<MsgLineHolder> holders = StringUtil.getLines(text, lineColor);
+        List<String> lines = new ArrayList<>(holders.size());
+        for (MsgLineHolder holder : holders)
+            lines.add(holder.getPlainLine());
+        return Collections.unmodifiableList(lines);
+    }
+}
@@ -26,6 +26,7 @@ import com.megahardcore.MegaHardCore;
 import com.megahardcore.config.RootConfig;
 import com.megahardcore.config.RootNode;
 import com.megahardcore.config.messages.MessageNode;
+import com.megahardcore.module.BlockMarkStore;
 import com.megahardcore.module.BlockModule;
 import com.megahardcore.module.MsgModule;
 import com.megahardcore.module.PlayerModule;
@@ -63,7 +64,8 @@ public class AntiFarming extends ListenerModule
 
     private PlayerModule playerModule;
 
-    private BlockModule blockModule;
+    /** Marks water placed from buckets */
+    private BlockMarkStore blockMarks;
 
 
     public AntiFarming (MegaHardCore plugin)
@@ -78,7 +80,7 @@ public class AntiFarming extends ListenerModule
         super.starting();
         CFG = plugin.getModuleForClass(RootConfig.class);
         playerModule = plugin.getModuleForClass(PlayerModule.class);
-        blockModule = plugin.getModuleForClass(BlockModule.class);
+        blockMarks = plugin.getModuleForClass(BlockMarkStore.class);
     }
 
 
@@ -389,7 +391,7 @@ public class AntiFarming extends ListenerModule
         {
             // plan to change this block into a non-source block on the next tick
             Block block = event.getBlockClicked().getRelative(event.getBlockFace());
-            blockModule.mark(block);
+            blockMarks.mark(block, BlockMarkStore.Mark.BUCKET_WATER);
             EvaporateWaterTask task = new EvaporateWaterTask(block, plugin);
             plugin.getServer().getScheduler().scheduleSyncDelayedTask(plugin, task, 10L);
         }
@@ -405,7 +407,7 @@ public class AntiFarming extends ListenerModule
     public void onPlayerFillBucket(PlayerBucketFillEvent event)
     {
         Block block = event.getBlockClicked().getRelative(event.getBlockFace());
-        if (blockModule.isMarked(block))
+        if (blockMarks.isMarked(block, BlockMarkStore.Mark.BUCKET_WATER))
         {
             event.setCancelled(true);
             final Player player = event.getPlayer();
@@ -28,10 +28,10 @@ import com.megahardcore.config.RootNode;
 import com.megahardcore.module.BlockModule;
 import com.megahardcore.module.EntityHelper;
 import com.megahardcore.service.ListenerModule;
+import com.megahardcore.service.NeighbourhoodScanner;
 import org.bukkit.Location;
 import org.bukkit.Material;
 import org.bukkit.World;
-import org.bukkit.block.Block;
 import org.bukkit.block.BlockFace;
 import org.bukkit.entity.*;
 import org.bukkit.event.EventHandler;
@@ -44,6 +44,11 @@ import org.bukkit.event.entity.EntityDeathEvent;
 /** A MonsterGrinder Inhibitor which disables drops for Monsters which appear to be farmed or which have been killed in conditions where the Player had a clear advantage */
 public class AntiGrinder extends ListenerModule
 {
+    /**
+     * Points between the monster and its killer which have to be passable, as fraction of the monster's position
+     */
+    private static final double[] INTERPOLATION = {0.2, 0.5, 0.8};
+
     private RootConfig CFG;
 
     private BlockModule blockModule;
@@ -95,7 +100,7 @@ public class AntiGrinder extends ListenerModule
         LivingEntity entity = event.getEntity();
         CreatureSpawnEvent.SpawnReason reason = event.getSpawnReason();
 
-        final boolean inhibitMonsterGrindersEnabled = CFG.getBoolean(RootNode.INHIBIT_MONSTER_GRINDERS, world.getName());
+        final boolean inhibitMonsterGrindersEnabled = CFG.getSnapshot(world).getBoolean(RootNode.INHIBIT_MONSTER_GRINDERS);
 
         // FEATURE: inhibited monster grinders/farms
         if (inhibitMonsterGrindersEnabled && entity instanceof Monster)
@@ -159,12 +164,12 @@ public class AntiGrinder extends ListenerModule
         LivingEntity entity = event.getEntity();
         World world = entity.getWorld();
 
-        final boolean inhibitMonsterGrindersEnabled = CFG.getBoolean(RootNode.INHIBIT_MONSTER_GRINDERS, world.getName());
+        final boolean inhibitMonsterGrindersEnabled = CFG.getSnapshot(world).getBoolean(RootNode.INHIBIT_MONSTER_GRINDERS);
 
         // FEATURE: monsters which take environmental damage or spawn from spawners don't drop loot and exp (monster grinder inhibitor)
         if (inhibitMonsterGrindersEnabled && entity instanceof Monster && entity.getType() != EntityType.SQUID)
         {
-            if (EntityHelper.isLootLess(entity))
+            if (EntityHelper.isLootLess(plugin, entity))
             {
                 clearDrops(event);
                 return false;
@@ -183,28 +188,11 @@ public class AntiGrinder extends ListenerModule
                     default:
                     {
                         // no loot for monsters which die standing in water, to make building grinders even more difficult
-                        Block block = entity.getLocation().getBlock();
-                        Block underBlock = block.getRelative(BlockFace.DOWN);
-
-                        BlockFace[] adjacentFaces = BlockModule.getHorizontalAdjacentFaces();
-                        Block[] adjacentBlocks = new Block[adjacentFaces.length * 2 + 1];
-
+                        Location loc = entity.getLocation();
                         //All Blocks directly surrounding the Monster
-                        adjacentBlocks[0] = block;
-                        for (int i = 0; i < adjacentFaces.length; i++)
-                        {
-                            adjacentBlocks[i + 1] = block.getRelative(adjacentFaces[i]);
-                        }
-                        for (int i = 0; i < adjacentFaces.length; i++)
-                        {
-                            adjacentBlocks[i + adjacentFaces.length] = underBlock.getRelative(adjacentFaces[i]);
-                        }
-
-                        for (Block adjacentBlock : adjacentBlocks)
-                        {
-                            if (adjacentBlock != null && (adjacentBlock.getType() == Material.WATER || adjacentBlock.getType() == Material.STATIONARY_WATER))
-                                return clearDrops(event);
-                        }
+                        if (NeighbourhoodScanner.any(world, loc.getBlockX(), loc.getBlockY(), loc.getBlockZ(), NeighbourhoodScanner.STANDING,
+                                type -> type == Material.WATER || type == Material.STATIONARY_WATER))
+                            return clearDrops(event);
 
                         // also no loot for monsters who can't reach their (melee) killers
                         Player killer = entity.getKiller();
@@ -212,32 +200,28 @@ public class AntiGrinder extends ListenerModule
                         {
                             Location monsterEyeLocation = entity.getEyeLocation();
                             Location playerEyeLocation = killer.getEyeLocation();
+                            final int y = monsterEyeLocation.getBlockY();
 
                             // interpolate locations
-                            Location[] locations = new Location[]{
-                                    new Location(monsterEyeLocation.getWorld(), 0.2 * monsterEyeLocation.getX() + 0.8 * playerEyeLocation.getX(),
-                                            monsterEyeLocation.getY(), 0.2 * monsterEyeLocation.getZ() + 0.8 * playerEyeLocation.getZ()),
-                                    new Location(monsterEyeLocation.getWorld(), 0.5 * monsterEyeLocation.getX() + 0.5 * playerEyeLocation.getX(),
-                                            monsterEyeLocation.getY(), 0.5 * monsterEyeLocation.getZ() + 0.5 * playerEyeLocation.getZ()),
-                                    new Location(monsterEyeLocation.getWorld(), 0.8 * monsterEyeLocation.getX() + 0.2 * playerEyeLocation.getX(),
-                                            monsterEyeLocation.getY(), 0.8 * monsterEyeLocation.getZ() + 0.2 * playerEyeLocation.getZ()),};
-
-                            for (Location middleLocation : locations)
+                            for (int i = 0; i < INTERPOLATION.length; i++)
                             {
+                                final double weight = INTERPOLATION[i];
+                                final int x = Location.locToBlock(weight * monsterEyeLocation.getX() + (1 - weight) * playerEyeLocation.getX());
+                                final int z = Location.locToBlock(weight * monsterEyeLocation.getZ() + (1 - weight) * playerEyeLocation.getZ());
                                 // monster is blocked at eye level, unable to advance toward killer
-                                if (middleLocation.getBlock().getType() != Material.AIR)
+                                if (NeighbourhoodScanner.typeAt(world, x, y, z) != Material.AIR)
                                     return clearDrops(event);
                                     // monster doesn't have room above to hurdle a foot level block, unable to advance toward killer
                                 else
                                 {
-                                    Block bottom = middleLocation.getBlock().getRelative(BlockFace.DOWN);
-                                    Block top = middleLocation.getBlock().getRelative(BlockFace.UP);
-                                    if (top.getType() != Material.AIR &&
-                                            bottom.getType() != Material.AIR
-                                            || bottom.getType() == Material.FENCE
-                                            || bottom.getType() == Material.FENCE_GATE
-                                            || bottom.getType() == Material.COBBLE_WALL
-                                            || bottom.getType() == Material.NETHER_FENCE)
+                                    Material bottom = NeighbourhoodScanner.typeAt(world, x, y - 1, z);
+                                    Material top = NeighbourhoodScanner.typeAt(world, x, y + 1, z);
+                                    if (top != Material.AIR &&
+                                            bottom != Material.AIR
+                                            || bottom == Material.FENCE
+                                            || bottom == Material.FENCE_GATE
+                                            || bottom == Material.COBBLE_WALL
+                                            || bottom == Material.NETHER_FENCE)
                                     {
                                         return clearDrops(event);
                                     }
@@ -276,7 +260,7 @@ public class AntiGrinder extends ListenerModule
         Entity entity = event.getEntity();
         World world = entity.getWorld();
 
-        final boolean inhibitMonsterGrindersEnabled = CFG.getBoolean(RootNode.INHIBIT_MONSTER_GRINDERS, world.getName());
+        final boolean inhibitMonsterGrindersEnabled = CFG.getSnapshot(world).getBoolean(RootNode.INHIBIT_MONSTER_GRINDERS);
 
         // FEATURE: monsters which take environmental damage don't drop loot or experience (monster grinder inhibitor)
         if (inhibitMonsterGrindersEnabled && entity instanceof LivingEntity)
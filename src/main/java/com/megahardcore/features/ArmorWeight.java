@@ -0,0 +1,293 @@
+/*
+ * This file is part of
+ * MegaHardCore Server Plugin for Minecraft
+ *
+ * Copyright (C) 2012 Ryan Hamshire
+ * Copyright (C) 2013 Diemex
+ *
+ * MegaHardCore is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MegaHardCore is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero Public License
+ * along with MegaHardCore.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.megahardcore.features;
+
+
+import com.megahardcore.MegaHardCore;
+import com.megahardcore.config.RootConfig;
+import com.megahardcore.config.RootNode;
+import com.megahardcore.module.MaterialTraits;
+import com.megahardcore.module.PlayerModule;
+import com.megahardcore.service.ListenerModule;
+import com.megahardcore.service.Profiler;
+import com.megahardcore.service.config.ConfigSnapshot;
+import org.bukkit.GameMode;
+import org.bukkit.entity.HumanEntity;
+import org.bukkit.entity.Player;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.block.Action;
+import org.bukkit.event.inventory.InventoryClickEvent;
+import org.bukkit.event.inventory.InventoryDragEvent;
+import org.bukkit.event.inventory.InventoryType;
+import org.bukkit.event.player.PlayerChangedWorldEvent;
+import org.bukkit.event.player.PlayerGameModeChangeEvent;
+import org.bukkit.event.player.PlayerInteractEvent;
+import org.bukkit.event.player.PlayerItemBreakEvent;
+import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
+import org.bukkit.event.player.PlayerRespawnEvent;
+import org.bukkit.event.player.PlayerToggleFlightEvent;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Armor slows players down, the more armor points the slower.
+ * <p/>
+ * The speed is only computed again when the armor of a player might have changed or something else that affects the
+ * speed (flying, gamemode, world). The walk speed is only set if it actually changed. Every second a slice of the online
+ * players is checked again, so every player is checked every {@link #RECONCILE_SLICES} seconds in case we missed an
+ * event (dispensers, other plugins).
+ *
+ * @author Diemex
+ */
+public class ArmorWeight extends ListenerModule
+{
+    /** Players are split into this many groups, one group is checked again every second */
+    private static final int RECONCILE_SLICES = 15;
+
+    private RootConfig CFG;
+
+    /** Walk speed which we set last */
+    private final Map<UUID, Float> speeds = new HashMap<>();
+
+    /** Players which have to be updated in the next tick, the armor changes after the events fire */
+    private final Map<UUID, Player> pending = new LinkedHashMap<>();
+
+    private int slice = 0;
+
+    private int updateTaskId = -1, reconcileTaskId = -1;
+
+
+    public ArmorWeight (MegaHardCore plugin)
+    {
+        super(plugin);
+    }
+
+
+    /**
+     * For Testing Purposes / Dependency Injection Constructor
+     */
+    public ArmorWeight(MegaHardCore plugin, RootConfig CFG)
+    {
+        super(plugin);
+        this.CFG = CFG;
+    }
+
+
+    @Override
+    public void starting()
+    {
+        super.starting();
+        CFG = plugin.getModuleForClass(RootConfig.class);
+        for (Player player : plugin.getServer().getOnlinePlayers())
+            markDirty(player);
+        updateTaskId = plugin.getServer().getScheduler().scheduleSyncRepeatingTask(plugin, Profiler.wrap(plugin, "ArmorWeight", new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                if (!pending.isEmpty())
+                    updatePending();
+            }
+        }), 1L, 1L);
+        reconcileTaskId = plugin.getServer().getScheduler().scheduleSyncRepeatingTask(plugin, Profiler.wrap(plugin, "ArmorWeightReconcile", new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                reconcile(plugin.getServer().getOnlinePlayers());
+            }
+        }), 20L, 20L);
+    }
+
+
+    @Override
+    public void closing()
+    {
+        super.closing();
+        if (updateTaskId != -1)
+            plugin.getServer().getScheduler().cancelTask(updateTaskId);
+        if (reconcileTaskId != -1)
+            plugin.getServer().getScheduler().cancelTask(reconcileTaskId);
+        updateTaskId = reconcileTaskId = -1;
+        speeds.clear();
+        pending.clear();
+    }
+
+
+    /**
+     * Update the players whose armor might have changed
+     */
+    void updatePending()
+    {
+        for (Player player : pending.values())
+            update(player, false);
+        pending.clear();
+    }
+
+
+    /**
+     * Check the next slice of the online players again
+     *
+     * @param players all online players
+     */
+    void reconcile(Collection<? extends Player> players)
+    {
+        for (Player player : players)
+            if (Math.floorMod(player.getUniqueId().hashCode(), RECONCILE_SLICES) == slice)
+                update(player, true);
+        slice = (slice + 1) % RECONCILE_SLICES;
+    }
+
+
+    /**
+     * @return amount of players waiting for an update
+     */
+    int getPendingCount()
+    {
+        return pending.size();
+    }
+
+
+    /**
+     * Compute the speed of the player and set it if it changed
+     *
+     * @param player    player to update
+     * @param reconcile also compare with the speed the player actually has, another plugin might have changed it
+     */
+    private void update(Player player, boolean reconcile)
+    {
+        final ConfigSnapshot cfg = CFG.getSnapshot(player.getWorld());
+        if (!cfg.getBoolean(RootNode.ARMOR_SLOWDOWN_ENABLE))
+            return;
+        final float baseSpeed = (float) cfg.getDouble(RootNode.ARMOR_SLOWDOWN_BASESPEED);
+        final int slowdownPercent = cfg.getInt(RootNode.ARMOR_SLOWDOWN_PERCENT);
+        final float armorPoints = PlayerModule.getArmorPoints(player);
+
+        float speed = baseSpeed;
+        if (armorPoints != 0 && !player.isFlying() && player.getGameMode() != GameMode.CREATIVE)
+            speed = baseSpeed * (1 - armorPoints / 0.8F * (slowdownPercent / 100F));
+
+        Float last = speeds.get(player.getUniqueId());
+        if (last == null || last != speed || reconcile && player.getWalkSpeed() != speed)
+        {
+            player.setWalkSpeed(speed);
+            speeds.put(player.getUniqueId(), speed);
+        }
+    }
+
+
+    private void markDirty(HumanEntity human)
+    {
+        //Players in worlds without armor slowdown would only be skipped in update()
+        if (human instanceof Player && CFG.getSnapshot(human.getWorld()).getBoolean(RootNode.ARMOR_SLOWDOWN_ENABLE))
+            pending.put(human.getUniqueId(), (Player) human);
+    }
+
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onInventoryClick(InventoryClickEvent event)
+    {
+        //Shift clicks equip armor from anywhere in the inventory
+        if (event.getSlotType() == InventoryType.SlotType.ARMOR || event.isShiftClick())
+            markDirty(event.getWhoClicked());
+    }
+
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onInventoryDrag(InventoryDragEvent event)
+    {
+        for (int slot : event.getRawSlots())
+            if (event.getView().getSlotType(slot) == InventoryType.SlotType.ARMOR)
+            {
+                markDirty(event.getWhoClicked());
+                return;
+            }
+    }
+
+
+    /**
+     * Rightclicking armor puts it on
+     */
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerInteract(PlayerInteractEvent event)
+    {
+        if (event.hasItem() && (event.getAction() == Action.RIGHT_CLICK_AIR || event.getAction() == Action.RIGHT_CLICK_BLOCK)
+                && MaterialTraits.is(event.getMaterial(), MaterialTraits.Trait.ARMOR))
+            markDirty(event.getPlayer());
+    }
+
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerItemBreak(PlayerItemBreakEvent event)
+    {
+        markDirty(event.getPlayer());
+    }
+
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerRespawn(PlayerRespawnEvent event)
+    {
+        markDirty(event.getPlayer());
+    }
+
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerChangedWorld(PlayerChangedWorldEvent event)
+    {
+        markDirty(event.getPlayer());
+    }
+
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onPlayerGameModeChange(PlayerGameModeChangeEvent event)
+    {
+        markDirty(event.getPlayer());
+    }
+
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onPlayerToggleFlight(PlayerToggleFlightEvent event)
+    {
+        markDirty(event.getPlayer());
+    }
+
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerJoin(PlayerJoinEvent event)
+    {
+        markDirty(event.getPlayer());
+    }
+
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerQuit(PlayerQuitEvent event)
+    {
+        speeds.remove(event.getPlayer().getUniqueId());
+        pending.remove(event.getPlayer().getUniqueId());
+    }
+}
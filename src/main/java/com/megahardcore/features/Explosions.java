@@ -29,9 +29,11 @@ import com.megahardcore.config.RootNode;
 import com.megahardcore.events.fakeevents.FakeEntityExplodeEvent;
 import com.megahardcore.module.BlockModule;
 import com.megahardcore.module.ExplosionCompatStorage;
+import com.megahardcore.module.FallingBlockGovernor;
 import com.megahardcore.module.UtilityModule;
 import com.megahardcore.service.ListenerModule;
-import com.megahardcore.task.CreateExplosionTask;
+import com.megahardcore.service.Profiler;
+import com.megahardcore.task.ExplosionScheduler;
 import org.apache.commons.lang.Validate;
 import org.bukkit.Location;
 import org.bukkit.Material;
@@ -42,12 +44,12 @@ import org.bukkit.event.EventHandler;
 import org.bukkit.event.EventPriority;
 import org.bukkit.event.entity.EntityChangeBlockEvent;
 import org.bukkit.event.entity.EntityExplodeEvent;
-import org.bukkit.metadata.FixedMetadataValue;
 
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Iterator;
 import java.util.List;
+import java.util.stream.Collectors;
 
 /** Various changes to Explosions including: */
 public class Explosions extends ListenerModule
@@ -56,7 +58,10 @@ public class Explosions extends ListenerModule
 
     private BlockModule blockModule;
 
-    private final String tag = "megahardcore.explosion.fallingblock";
+    /** Queue of all custom explosions */
+    private ExplosionScheduler explosionScheduler;
+
+    private int explosionTaskId = -1;
 
 
     //     ___ ___  _  _ ___ _____ ___ _   _  ___ _____ ___  ___
@@ -81,6 +86,48 @@ public class Explosions extends ListenerModule
         super.starting();
         CFG = plugin.getModuleForClass(RootConfig.class);
         blockModule = plugin.getModuleForClass(BlockModule.class);
+        explosionScheduler = new ExplosionScheduler(plugin);
+        explosionTaskId = plugin.getServer().getScheduler().scheduleSyncRepeatingTask(plugin, Profiler.wrap(plugin, "ExplosionScheduler", explosionScheduler), 1L, 1L);
+    }
+
+
+    @Override
+    public void closing()
+    {
+        super.closing();
+        if (explosionTaskId != -1)
+            plugin.getServer().getScheduler().cancelTask(explosionTaskId);
+        explosionTaskId = -1;
+        if (explosionScheduler != null)
+            explosionScheduler.clear();
+    }
+
+
+    /**
+     * Create a custom explosion right away, if the explosion budget of this tick is used up it happens in the next tick.
+     * The type determines the power, if there should be fire and the blockDmg depending on the y-level.
+     *
+     * @param location where the explosion happens
+     * @param type     type of the explosion
+     * @param cause    entity responsible for the explosion, null for purely visual explosions
+     */
+    public void createExplosion(Location location, ExplosionType type, Entity cause)
+    {
+        explosionScheduler.queue(location, type, cause);
+    }
+
+
+    /**
+     * Create a custom explosion after the given amount of ticks
+     *
+     * @param location where the explosion happens
+     * @param type     type of the explosion
+     * @param cause    entity responsible for the explosion, null for purely visual explosions
+     * @param delay    ticks to wait, at most 15
+     */
+    public void createExplosion(Location location, ExplosionType type, Entity cause, int delay)
+    {
+        explosionScheduler.queue(location, type, cause, delay);
     }
 
 
@@ -118,8 +165,7 @@ public class Explosions extends ListenerModule
             {
                 if (!multipleExplosions)
                 {
-                    CreateExplosionTask explosionTask = new CreateExplosionTask(plugin, location, ExplosionType.TNT, sourceEntity);
-                    plugin.getServer().getScheduler().scheduleSyncDelayedTask(plugin, explosionTask, 1L);
+                    createExplosion(location, ExplosionType.TNT, sourceEntity, 1);
                 } else //multiple explosions will also handle the custom size
                 {
                     multipleExplosions(location, sourceEntity, ExplosionType.TNT);
@@ -140,7 +186,7 @@ public class Explosions extends ListenerModule
                 {
                     event.setCancelled(true);
                     // same as vanilla TNT, plus fire
-                    new CreateExplosionTask(plugin, sourceEntity.getLocation(), ExplosionType.GHAST_FIREBALL, sourceEntity).run();
+                    createExplosion(sourceEntity.getLocation(), ExplosionType.GHAST_FIREBALL, sourceEntity);
                 }
             }
         }
@@ -216,13 +262,20 @@ public class Explosions extends ListenerModule
             if (!explosionStorage.queueEmpty())
             {
                 //Just make sure that this explosion is in fact from us
-                Location savedLoc = explosionStorage.getCenterLocation();
-                Location eventLoc = event.getLocation();
-                if (savedLoc.getBlockX() == eventLoc.getBlockX() && savedLoc.getBlockY() == eventLoc.getBlockY() && savedLoc.getBlockZ() == eventLoc.getBlockZ())
+                final List<Entity> causes = explosionStorage.pollExplosionCauses(event.getLocation());
+                if (!causes.isEmpty())
                 {
                     // There is no way for us to pass the actual cause (the entity) of an explosion to bukkit other than this additional event
-                    FakeEntityExplodeEvent compatEvent = new FakeEntityExplodeEvent(explosionStorage.getExplosionCause(), explosionStorage.getCenterLocation(), event.blockList(), event.getYield());
+                    FakeEntityExplodeEvent compatEvent = new FakeEntityExplodeEvent(causes.get(0), event.getLocation(), event.blockList(), event.getYield());
                     plugin.getServer().getPluginManager().callEvent(compatEvent);
+                    //Merged explosions (tnt cannons): every entity gets its own event, so the damage is attributed to all of them
+                    for (int i = 1; i < causes.size() && !compatEvent.isCancelled(); i++)
+                    {
+                        FakeEntityExplodeEvent mergedEvent = new FakeEntityExplodeEvent(causes.get(i), event.getLocation(), event.blockList(), event.getYield());
+                        plugin.getServer().getPluginManager().callEvent(mergedEvent);
+                        if (mergedEvent.isCancelled())
+                            compatEvent.setCancelled(true);
+                    }
 
                     if (compatEvent.isCancelled())
                         //We cancel the event because we only want the event with the correct Entity to be logged
@@ -246,8 +299,6 @@ public class Explosions extends ListenerModule
                     List<Block> copy = new ArrayList<>(event.blockList());
                     event.blockList().clear(); //we don't want this event to be recorded, but we still want the explosion particles
                     compatEvent.blockList().addAll(copy);
-
-                    explosionStorage.clearQueue();
                 }
             }
         }
@@ -267,28 +318,24 @@ public class Explosions extends ListenerModule
         {
             Block block = event.getBlock();
             FallingBlock fallBaby = (FallingBlock) event.getEntity();
-            if (fallBaby.hasMetadata(tag))
+            Location loc = plugin.getModuleForClass(FallingBlockGovernor.class).getExplosionOrigin(fallBaby);
+            if (loc != null)
             {
-                Object obj = fallBaby.getMetadata(tag).size() > 0 ? fallBaby.getMetadata(tag).get(0).value() : null;
-                if (obj instanceof Location)
+                //Compare the distance to the original explosion, dont place block if the block landed far away (dont make landscape ugly)
+                if (event.getBlock().getLocation().distanceSquared(loc) > distance)
                 {
-                    Location loc = (Location) obj;
-                    //Compare the distance to the original explosion, dont place block if the block landed far away (dont make landscape ugly)
-                    if (event.getBlock().getLocation().distanceSquared(loc) > distance)
-                    {
-                        event.setCancelled(true);
-                        fallBaby.remove();
-                    }
-                    //If close place the block as if the player broke it first: stone -> cobble, gras -> dirt etc.
-                    else
-                    {
-                        Material type = BlockModule.getDroppedMaterial(fallBaby.getMaterial());
-                        if (type.isBlock())
-                            block.setType(type);
-                        else //if block doesnt drop something that can be placed again... thin glass, redstone ore
-                            block.setType(Material.AIR);
-                        event.setCancelled(true);
-                    }
+                    event.setCancelled(true);
+                    fallBaby.remove();
+                }
+                //If close place the block as if the player broke it first: stone -> cobble, gras -> dirt etc.
+                else
+                {
+                    Material type = BlockModule.getDroppedMaterial(fallBaby.getMaterial());
+                    if (type.isBlock())
+                        block.setType(type);
+                    else //if block doesnt drop something that can be placed again... thin glass, redstone ore
+                        block.setType(Material.AIR);
+                    event.setCancelled(true);
                 }
             }
         }
@@ -353,21 +400,19 @@ public class Explosions extends ListenerModule
         int random1 = (int) (serverTime + location.getBlockZ()) % 8;
         int random2 = (int) (serverTime + location.getBlockX()) % 8;
 
+        //add() modifies the location, clone to keep every step of the walk
         Location[] locations = new Location[]
                 {
-                        location.add(random1, 1, random2),
-                        location.add(-random2, 0, random1 / 2),
-                        location.add(-random1 / 2, -1, -random2),
-                        location.add(random1 / 2, 0, -random2 / 2)
+                        location.add(random1, 1, random2).clone(),
+                        location.add(-random2, 0, random1 / 2).clone(),
+                        location.add(-random1 / 2, -1, -random2).clone(),
+                        location.add(random1 / 2, 0, -random2 / 2).clone()
                 };
 
         final int explosionsNum = locations.length;
 
         for (int i = 0; i < explosionsNum; i++)
-        {
-            CreateExplosionTask task = new CreateExplosionTask(plugin, locations[i], explosionType, sourceEntity);
-            plugin.getServer().getScheduler().scheduleSyncDelayedTask(plugin, task, 3L * (i + 1));
-        }
+            createExplosion(locations[i], explosionType, sourceEntity, 3 * (i + 1));
     }
 
 
@@ -402,12 +447,18 @@ public class Explosions extends ListenerModule
     {
         final List<FallingBlock> fallingBlockList = new ArrayList<>();
         //Only a few of the blocks fly as an effect
+        final List<Block> flying = blocks.stream().filter(block -> block.getType().isSolid()).filter(block -> plugin.random(flyPercentage)).collect(Collectors.toList());
+        //limited per tick so big blasts don't flood the world with entities
+        final int maxFlying = explosionScheduler.takeFlyingBlocks(center.getWorld(), flying.size());
 //decide on the distance if block should be placed
 //fall.setMetadata("drops", new FixedMetadataValue(plugin, block.getDrops()));
 //block.setType(Material.AIR);
-        blocks.stream().filter(block -> block.getType().isSolid()).filter(block -> plugin.random(flyPercentage)).forEach(block -> {
-            FallingBlock fall = block.getLocation().getWorld().spawnFallingBlock(block.getLocation(), block.getType(), block.getData());
-            fall.setMetadata(tag, new FixedMetadataValue(plugin, block.getLocation())); //decide on the distance if block should be placed
+        final FallingBlockGovernor governor = plugin.getModuleForClass(FallingBlockGovernor.class);
+        flying.stream().limit(maxFlying).forEach(block -> {
+            //remember the origin to decide on the distance if block should be placed
+            FallingBlock fall = governor.spawn(block.getLocation(), block.getTypeId(), block.getData(), false, block.getLocation());
+            if (fall == null) //too many falling blocks around, it just gets destroyed
+                return;
             //fall.setMetadata("drops", new FixedMetadataValue(plugin, block.getDrops()));
             fall.setDropItem(CFG.getBoolean(RootNode.MORE_FALLING_BLOCKS_DROP_ITEM, block.getWorld().getName()));
             UtilityModule.moveUp(fall, upVel);
@@ -33,13 +33,14 @@ import com.megahardcore.module.PlayerModule;
 import com.megahardcore.module.UtilityModule;
 import com.megahardcore.service.Feature;
 import com.megahardcore.service.ListenerModule;
+import com.megahardcore.service.NeighbourhoodScanner;
 import com.megahardcore.service.PermissionNode;
+import com.megahardcore.service.config.ConfigSnapshot;
 import com.megahardcore.service.config.customtypes.BlockRelationsList;
 import com.megahardcore.service.config.customtypes.BlockType;
 import com.megahardcore.service.config.customtypes.BlockTypeList;
 import org.bukkit.World;
 import org.bukkit.block.Block;
-import org.bukkit.block.BlockFace;
 import org.bukkit.entity.Player;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.EventPriority;
@@ -49,7 +50,6 @@ import org.bukkit.event.block.BlockPistonRetractEvent;
 import org.bukkit.event.block.BlockPlaceEvent;
 import org.bukkit.inventory.ItemStack;
 
-import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -75,6 +75,27 @@ public class HardenedStone extends ListenerModule
     }
 
 
+    /**
+     * For Testing Purposes
+     * <p/>
+     * Dependency Injection Constructor
+     *
+     * @param plugin       plugin instance
+     * @param CFG          instantiated RootConfig
+     * @param messenger    MsgModule
+     * @param blockModule  BlockModule
+     * @param playerModule PlayerModule
+     */
+    public HardenedStone (MegaHardCore plugin, RootConfig CFG, MsgModule messenger, BlockModule blockModule, PlayerModule playerModule)
+    {
+        super(plugin);
+        this.CFG = CFG;
+        this.messenger = messenger;
+        this.blockModule = blockModule;
+        this.playerModule = playerModule;
+    }
+
+
     @Override
     public void starting()
     {
@@ -96,9 +117,10 @@ public class HardenedStone extends ListenerModule
         World world = block.getWorld();
         Player player = event.getPlayer();
 
-        final boolean hardStoneEnabled = CFG.getBoolean(RootNode.SUPER_HARD_STONE, world.getName());
-        final boolean hardStonePhysix = CFG.getBoolean(RootNode.SUPER_HARD_STONE_PHYSICS, world.getName());
-        final boolean applyPhysics = CFG.getBoolean(RootNode.SUPER_HARD_STONE_PHYSICS_APPLY, world.getName());
+        final ConfigSnapshot cfg = CFG.getSnapshot(world);
+        final boolean hardStoneEnabled = cfg.getBoolean(RootNode.SUPER_HARD_STONE);
+        final boolean hardStonePhysix = cfg.getBoolean(RootNode.SUPER_HARD_STONE_PHYSICS);
+        final boolean applyPhysics = cfg.getBoolean(RootNode.SUPER_HARD_STONE_PHYSICS_APPLY);
         final boolean playerBypasses = playerModule.playerBypasses(player, Feature.HARDENEDSTONE);
 
         final BlockTypeList tools = CFG.getBlocktypeList(RootNode.SUPER_HARD_STONE_TOOLS, world.getName());
@@ -143,12 +165,13 @@ public class HardenedStone extends ListenerModule
         // when ore is broken, it softens adjacent stone important to ensure players can reach the ore they break
         if (hardStonePhysix && physicsBlocks.contains(block))
         {
-            for (BlockFace face : blockModule.getTouchingFaces())
+            for (int i = 0; i < NeighbourhoodScanner.TOUCHING.size(); i++)
             {
-                Block adjacentBlock = block.getRelative(face);
-                if (stoneBlocks.contains(adjacentBlock))
+                Block adjacentBlock = block.getRelative(NeighbourhoodScanner.TOUCHING.face(i));
+                BlockType softened = stoneBlocks.get(adjacentBlock);
+                if (softened != null)
                 {
-                    adjacentBlock.setTypeIdAndData(stoneBlocks.get(adjacentBlock).getBlockId(), stoneBlocks.get(adjacentBlock).getByteMeta(), true);
+                    adjacentBlock.setTypeIdAndData(softened.getBlockId(), softened.getByteMeta(), true);
                     if (applyPhysics)
                         blockModule.applyPhysics(adjacentBlock, true);
                 }
@@ -175,13 +198,9 @@ public class HardenedStone extends ListenerModule
 
         if (hardstoneEnabled && blockOrePlacement && !playerBypasses && oreBlocks.contains(block))
         {
-            ArrayList<Block> adjacentBlocks = new ArrayList<>();
-            for (BlockFace face : blockModule.getTouchingFaces())
-                adjacentBlocks.add(block.getRelative(face));
-
-            for (Block adjacentBlock : adjacentBlocks)
+            for (int i = 0; i < NeighbourhoodScanner.TOUCHING.size(); i++)
             {
-                if (stoneBlocks.contains(adjacentBlock))
+                if (stoneBlocks.contains(block.getRelative(NeighbourhoodScanner.TOUCHING.face(i))))
                 {
                     messenger.send(player, MessageNode.NO_PLACING_ORE_AGAINST_STONE);
                     placeEvent.setCancelled(true);
@@ -27,7 +27,7 @@ import com.megahardcore.compatibility.CompatHandler;
 import com.megahardcore.config.RootConfig;
 import com.megahardcore.config.RootNode;
 import com.megahardcore.module.BlockModule;
-import com.megahardcore.module.EntityHelper;
+import com.megahardcore.module.FallingBlockGovernor;
 import com.megahardcore.module.PlayerModule;
 import com.megahardcore.service.Feature;
 import com.megahardcore.service.ListenerModule;
@@ -156,7 +156,8 @@ public class Physics extends ListenerModule
         final boolean environmentalDmg = CFG.getBoolean(RootNode.ENHANCED_ENVIRONMENTAL_DAMAGE, world.getName());
 
         //Only when Block has been marked to deal damage
-        if (entity.getType().equals(EntityType.FALLING_BLOCK) && damageAmount > 0 && EntityHelper.isMarkedForProcessing(entity))
+        final FallingBlockGovernor governor = plugin.getModuleForClass(FallingBlockGovernor.class);
+        if (entity.getType().equals(EntityType.FALLING_BLOCK) && damageAmount > 0 && governor.isDamagingEntities(entity))
         {
             List<Entity> entities = entity.getNearbyEntities(0, 1, 0);
             //Frighten the player
@@ -169,7 +170,8 @@ public class Physics extends ListenerModule
             });
         }
 
-        if (event.getEntity() instanceof FallingBlock && EntityHelper.isMarkedAsOurs(event.getEntity()))
+        //Blocks thrown by explosions are handled in Explosions
+        if (event.getEntity() instanceof FallingBlock && governor.isTracked(event.getEntity()) && governor.getExplosionOrigin(event.getEntity()) == null)
         {
             BlockState newState = event.getBlock().getState();
             newState.setType(event.getTo());
@@ -27,8 +27,6 @@ import com.megahardcore.config.RootConfig;
 import com.megahardcore.config.RootNode;
 import com.megahardcore.events.MhcPlayerExtinguishFireEvent;
 import com.megahardcore.events.MhcPlayerInventoryLossEvent;
-import com.megahardcore.module.DataStoreModule;
-import com.megahardcore.module.PlayerData;
 import com.megahardcore.module.PlayerModule;
 import com.megahardcore.service.Feature;
 import com.megahardcore.service.ListenerModule;
@@ -112,9 +110,6 @@ public class Players extends ListenerModule
             SetPlayerHealthAndFoodTask task = new SetPlayerHealthAndFoodTask(player, (int) player.getMaxHealth() * respawnHealthPercentage / 100, respawnFood);
             plugin.getServer().getScheduler().scheduleSyncDelayedTask(plugin, task, 10L); // half-second delay
         }
-        // FEATURE: players can't swim when they're carrying a lot of weight, reset the cached value
-        PlayerData playerData = plugin.getModuleForClass(DataStoreModule.class).getPlayerData(player.getName());
-        playerData.cachedWeightStatus = -1.0F;
     }
 
 
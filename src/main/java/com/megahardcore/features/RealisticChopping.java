@@ -25,11 +25,11 @@ package com.megahardcore.features;
 import com.megahardcore.MegaHardCore;
 import com.megahardcore.config.RootConfig;
 import com.megahardcore.config.RootNode;
-import com.megahardcore.module.BlockModule;
 import com.megahardcore.module.PlayerModule;
 import com.megahardcore.service.Feature;
 import com.megahardcore.service.ListenerModule;
-import com.megahardcore.task.FallingLogsTask;
+import com.megahardcore.service.Profiler;
+import com.megahardcore.task.TreeFellingTask;
 import org.bukkit.Material;
 import org.bukkit.World;
 import org.bukkit.block.Block;
@@ -39,10 +39,6 @@ import org.bukkit.event.EventHandler;
 import org.bukkit.event.EventPriority;
 import org.bukkit.event.block.BlockBreakEvent;
 
-import java.util.Arrays;
-import java.util.LinkedList;
-import java.util.List;
-
 /**
  * When chopping down trees the logs fall down and loose logs fall down on the side and can injure you
  */
@@ -54,9 +50,11 @@ public class RealisticChopping extends ListenerModule
     private RootConfig CFG;
 
     /**
-     * Stuff like FallingBlocks etc.
+     * Works out how trees fall and lets them fall
      */
-    private BlockModule blockModule;
+    private TreeFellingTask treeFelling;
+
+    private int treeFellingTaskId = -1;
 
     /**
      * Permissions etc.
@@ -78,8 +76,21 @@ public class RealisticChopping extends ListenerModule
     {
         super.starting();
         CFG = plugin.getModuleForClass(RootConfig.class);
-        blockModule = plugin.getModuleForClass(BlockModule.class);
         playerModule = plugin.getModuleForClass(PlayerModule.class);
+        treeFelling = new TreeFellingTask(plugin);
+        treeFellingTaskId = plugin.getServer().getScheduler().scheduleSyncRepeatingTask(plugin, Profiler.wrap(plugin, "TreeFellingTask", treeFelling), 1L, 1L);
+    }
+
+
+    @Override
+    public void closing()
+    {
+        super.closing();
+        if (treeFellingTaskId != -1)
+            plugin.getServer().getScheduler().cancelTask(treeFellingTaskId);
+        treeFellingTaskId = -1;
+        if (treeFelling != null)
+            treeFelling.shutdown();
     }
 
 
@@ -101,7 +112,7 @@ public class RealisticChopping extends ListenerModule
         // FEATURE: trees chop more naturally
         if ((block.getType() == Material.LOG || block.getType() == Material.LOG_2) && betterTreeChoppingEnabled && !playerHasBypass)
         {
-            //Are there any leaves above the log? -> tree
+            //Are there any leaves above the log? -> tree, checked right away so logs in buildings don't cost a snapshot
             boolean isTree = false;
             checkers:
             for (int i = 1; i < 30; i++)
@@ -129,35 +140,7 @@ public class RealisticChopping extends ListenerModule
             }
 
             if (isTree)
-            {
-                Block aboveLog = block.getRelative(BlockFace.UP);
-                loop:
-                for (int limit = 0; limit < 30; limit++)
-                {
-                    switch (aboveLog.getType())
-                    {
-                        case AIR:
-                        {
-                            List<Block> logs = new LinkedList<>(Arrays.asList(blockModule.getBlocksInArea(aboveLog.getLocation(), 1, 5, Material.LOG)));
-                            logs.addAll(Arrays.asList(blockModule.getBlocksInArea(aboveLog.getLocation(), 3, 5, Material.LOG_2)));
-                            //TODO MhcRealisticChoppingLooseLogEvent
-//check 2 blocks down for logs to see if it it's a stem
-/*so they don't fall at once*/
-                            logs.stream().filter(log -> log.getRelative(BlockFace.DOWN).getType() != Material.LOG && !(log.getRelative(BlockFace.DOWN, 2).getType() == Material.LOG || log.getRelative(BlockFace.DOWN, 2).getType() == Material.LOG_2)).forEach(log -> plugin.getServer().getScheduler().runTaskLater(plugin, new FallingLogsTask(plugin, log), plugin.getRandom().nextInt(50/*so they don't fall at once*/)));
-                            break; //can air fall?
-                        }
-                        case LOG:
-                        case LOG_2:
-                        {
-                            blockModule.applyPhysics(aboveLog, false);
-                            break;
-                        }
-                        default: //we reached something that is not part of a tree or leaves
-                            break loop;
-                    }
-                    aboveLog = aboveLog.getRelative(BlockFace.UP);
-                }
-            }
+                treeFelling.queue(block);
         }
     }
 }
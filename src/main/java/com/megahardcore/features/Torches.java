@@ -31,6 +31,7 @@ import com.megahardcore.module.PlayerModule;
 import com.megahardcore.service.Feature;
 import com.megahardcore.service.ListenerModule;
 import com.megahardcore.service.PermissionNode;
+import com.megahardcore.service.Profiler;
 import com.megahardcore.task.RemoveExposedTorchesTask;
 import org.bukkit.Chunk;
 import org.bukkit.Material;
@@ -58,6 +59,11 @@ public class Torches extends ListenerModule
 
     private PlayerModule playerModule;
 
+    /** Removes torches and crops when it rains */
+    private RemoveExposedTorchesTask rainSweep;
+
+    private int rainSweepId = -1;
+
 
     public Torches (MegaHardCore plugin)
     {
@@ -72,6 +78,34 @@ public class Torches extends ListenerModule
         CFG = plugin.getModuleForClass(RootConfig.class);
         messenger = plugin.getModuleForClass(MsgModule.class);
         playerModule = plugin.getModuleForClass(PlayerModule.class);
+        rainSweep = new RemoveExposedTorchesTask(plugin);
+        rainSweepId = plugin.getServer().getScheduler().scheduleSyncRepeatingTask(plugin, Profiler.wrap(plugin, "RemoveExposedTorchesTask", rainSweep), 1L, 1L);
+    }
+
+
+    @Override
+    public void closing()
+    {
+        super.closing();
+        if (rainSweepId != -1)
+            plugin.getServer().getScheduler().cancelTask(rainSweepId);
+        rainSweepId = -1;
+        if (rainSweep != null)
+            rainSweep.shutdown();
+        rainSweep = null;
+    }
+
+
+    /**
+     * Remove exposed torches and crops in the given chunk
+     *
+     * @param chunk chunk to check
+     * @param force if checks for rain should be bypassed (debugging/testing)
+     */
+    public void removeExposedTorches(Chunk chunk, boolean force)
+    {
+        if (rainSweep != null)
+            rainSweep.queueChunk(chunk, force);
     }
 
 
@@ -139,19 +173,9 @@ public class Torches extends ListenerModule
         {
             if (rainBreaksTorchesEnabled || snowBreaksCrops)
             {
-                // plan to remove torches chunk by chunk gradually throughout the rainperiod
-                Chunk[] chunks = world.getLoadedChunks();
-                if (chunks.length > 0)
-                {
-                    int startOffset = plugin.getRandom().nextInt(chunks.length);
-                    for (int i = 0; i < chunks.length; i++)
-                    {
-                        Chunk chunk = chunks[(startOffset + i) % chunks.length];
-
-                        RemoveExposedTorchesTask task = new RemoveExposedTorchesTask(plugin, chunk);
-                        plugin.getServer().getScheduler().scheduleSyncDelayedTask(plugin, task, i * 15L);
-                    }
-                }
+                // check the loaded chunks one after another for as long as the storm lasts
+                if (rainSweep != null)
+                    rainSweep.queueWorld(world);
             }
         }
     }
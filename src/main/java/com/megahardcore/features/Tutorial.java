@@ -11,6 +11,7 @@ import com.megahardcore.module.MaterialHelper;
 import com.megahardcore.module.MsgModule;
 import com.megahardcore.service.FindAndReplace;
 import com.megahardcore.service.ListenerModule;
+import com.megahardcore.service.Profiler;
 import com.megahardcore.task.WeightCheckTask;
 import com.megahardcore.events.*;
 import org.bukkit.Material;
@@ -43,6 +44,11 @@ public class Tutorial extends ListenerModule
 
     private BlockModule blockModule;
 
+    /** Shows the weight of the inventory while clicking in it */
+    private WeightCheckTask weightCheck;
+
+    private int weightCheckTaskId = -1;
+
 
     public Tutorial (MegaHardCore plugin)
     {
@@ -57,6 +63,30 @@ public class Tutorial extends ListenerModule
         messenger = plugin.getModuleForClass(MsgModule.class);
         CFG = plugin.getModuleForClass(RootConfig.class);
         blockModule = plugin.getModuleForClass(BlockModule.class);
+
+        //only if no swimming in armor is active in at least one world
+        boolean active = false;
+        for (World world : plugin.getServer().getWorlds())
+            if (CFG.getBoolean(RootNode.NO_SWIMMING_IN_ARMOR, world.getName()))
+                active = true;
+        if (active)
+        {
+            weightCheck = new WeightCheckTask(plugin);
+            weightCheckTaskId = plugin.getServer().getScheduler().scheduleSyncRepeatingTask(plugin, Profiler.wrap(plugin, "WeightCheckTask", weightCheck), WeightCheckTask.INTERVAL, WeightCheckTask.INTERVAL);
+        }
+    }
+
+
+    @Override
+    public void closing()
+    {
+        super.closing();
+        if (weightCheckTaskId != -1)
+            plugin.getServer().getScheduler().cancelTask(weightCheckTaskId);
+        weightCheckTaskId = -1;
+        if (weightCheck != null)
+            weightCheck.clear();
+        weightCheck = null;
     }
 
 
@@ -334,9 +364,9 @@ public class Tutorial extends ListenerModule
     @EventHandler
     public void onInventoryClick(InventoryClickEvent event)
     {
-        if (CFG.getBoolean(RootNode.NO_SWIMMING_IN_ARMOR, event.getWhoClicked().getWorld().getName())
+        if (weightCheck != null && CFG.getBoolean(RootNode.NO_SWIMMING_IN_ARMOR, event.getWhoClicked().getWorld().getName())
                 && event.getWhoClicked() instanceof Player && messenger.popupsAreEnabled(MsgCategory.NOTIFICATION))
-            WeightCheckTask.updateLastCLick(event.getWhoClicked().getUniqueId());
+            weightCheck.updateLastClick((Player) event.getWhoClicked());
     }
 
     //TODO Farming: NetherWart, Mushrooms
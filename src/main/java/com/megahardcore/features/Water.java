@@ -26,25 +26,22 @@ import com.megahardcore.MegaHardCore;
 import com.megahardcore.config.RootConfig;
 import com.megahardcore.config.RootNode;
 import com.megahardcore.config.messages.MessageNode;
-import com.megahardcore.module.DataStoreModule;
+import com.megahardcore.module.InventoryWeightModule;
 import com.megahardcore.module.MsgModule;
-import com.megahardcore.module.PlayerData;
 import com.megahardcore.module.PlayerModule;
 import com.megahardcore.service.Feature;
 import com.megahardcore.service.ListenerModule;
+import com.megahardcore.service.NeighbourhoodScanner;
+import com.megahardcore.service.config.ConfigSnapshot;
 import org.bukkit.Location;
 import org.bukkit.Material;
 import org.bukkit.World;
 import org.bukkit.block.Block;
 import org.bukkit.block.BlockFace;
-import org.bukkit.entity.HumanEntity;
 import org.bukkit.entity.Player;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.EventPriority;
-import org.bukkit.event.inventory.InventoryClickEvent;
-import org.bukkit.event.player.PlayerDropItemEvent;
 import org.bukkit.event.player.PlayerMoveEvent;
-import org.bukkit.event.player.PlayerPickupItemEvent;
 import org.bukkit.util.Vector;
 
 
@@ -59,6 +56,8 @@ public class Water extends ListenerModule
 
     private PlayerModule playerModule;
 
+    private InventoryWeightModule inventoryWeight;
+
 
     public Water (MegaHardCore plugin)
     {
@@ -66,6 +65,27 @@ public class Water extends ListenerModule
     }
 
 
+    /**
+     * For Testing Purposes
+     * <p/>
+     * Dependency Injection Constructor
+     *
+     * @param plugin       plugin instance
+     * @param CFG          instantiated RootConfig
+     * @param messenger    MsgModule
+     * @param playerModule    PlayerModule
+     * @param inventoryWeight InventoryWeightModule
+     */
+    public Water (MegaHardCore plugin, RootConfig CFG, MsgModule messenger, PlayerModule playerModule, InventoryWeightModule inventoryWeight)
+    {
+        super(plugin);
+        this.CFG = CFG;
+        this.messenger = messenger;
+        this.playerModule = playerModule;
+        this.inventoryWeight = inventoryWeight;
+    }
+
+
     @Override
     public void starting()
     {
@@ -73,6 +93,7 @@ public class Water extends ListenerModule
         CFG = plugin.getModuleForClass(RootConfig.class);
         messenger = plugin.getModuleForClass(MsgModule.class);
         playerModule = plugin.getModuleForClass(PlayerModule.class);
+        inventoryWeight = plugin.getModuleForClass(InventoryWeightModule.class);
     }
 
 
@@ -91,17 +112,18 @@ public class Water extends ListenerModule
         Block fromBlock = from.getBlock();
         Block toBlock = to.getBlock();
 
-        final boolean noSwimingInArmor = CFG.getBoolean(RootNode.NO_SWIMMING_IN_ARMOR, world.getName());
+        final ConfigSnapshot cfg = CFG.getSnapshot(world);
+        final boolean noSwimingInArmor = cfg.getBoolean(RootNode.NO_SWIMMING_IN_ARMOR);
         final boolean playerBypasses = playerModule.playerBypasses(player, Feature.MONSTER_GLYDIA);
-        final boolean blockWaterElevators = CFG.getBoolean(RootNode.NO_SWIMMING_IN_ARMOR_BLOCK_ELEVATORS, world.getName());
+        final boolean blockWaterElevators = cfg.getBoolean(RootNode.NO_SWIMMING_IN_ARMOR_BLOCK_ELEVATORS);
 
-        final float maxWeight = (float) CFG.getDouble(RootNode.NO_SWIMMING_IN_ARMOR_MAX_POINTS, world.getName());
-        final float armorPoints = (float) CFG.getDouble(RootNode.NO_SWIMMING_IN_ARMOR_ARMOR_POINTS, world.getName());
-        final float inventoryPoints = (float) CFG.getDouble(RootNode.NO_SWIMMING_IN_ARMOR_INV_POINTS, world.getName());
-        final float toolPoints = (float) CFG.getDouble(RootNode.NO_SWIMMING_IN_ARMOR_TOOL_POINTS, world.getName());
+        final float maxWeight = (float) cfg.getDouble(RootNode.NO_SWIMMING_IN_ARMOR_MAX_POINTS);
+        final float armorPoints = (float) cfg.getDouble(RootNode.NO_SWIMMING_IN_ARMOR_ARMOR_POINTS);
+        final float inventoryPoints = (float) cfg.getDouble(RootNode.NO_SWIMMING_IN_ARMOR_INV_POINTS);
+        final float toolPoints = (float) cfg.getDouble(RootNode.NO_SWIMMING_IN_ARMOR_TOOL_POINTS);
 
-        final int drowningRate = CFG.getInt(RootNode.NO_SWIMMING_IN_ARMOR_DROWN_RATE, world.getName());
-        final int overEncumbranceExtra = CFG.getInt(RootNode.NO_SWIMMING_IN_ARMOR_ENCUMBRANCE_EXTRA, world.getName());
+        final int drowningRate = cfg.getInt(RootNode.NO_SWIMMING_IN_ARMOR_DROWN_RATE);
+        final int overEncumbranceExtra = cfg.getInt(RootNode.NO_SWIMMING_IN_ARMOR_ENCUMBRANCE_EXTRA);
 
         final float normalDrownVel = -0.5F;
         final float overwaterDrownVel = -0.7F;
@@ -112,50 +134,29 @@ public class Water extends ListenerModule
             // only care about moving up
             if (to.getY() > from.getY())
             {
-                PlayerData playerData = plugin.getModuleForClass(DataStoreModule.class).getPlayerData(player.getName());
                 // only when in water
                 Block underFromBlock = fromBlock.getRelative(BlockFace.DOWN);
                 if (fromBlock.getType() == Material.STATIONARY_WATER && toBlock.getType() == Material.STATIONARY_WATER && underFromBlock.getType() == Material.STATIONARY_WATER && underFromBlock.getRelative(BlockFace.DOWN).getType() == Material.STATIONARY_WATER)
                 {
-                    // if no cached value, calculate
-                    if (playerData.cachedWeightStatus <= 0)
-                    {
-                        playerData.cachedWeightStatus = PlayerModule.inventoryWeight(player, armorPoints, inventoryPoints, toolPoints);
-                    }
+                    final float weight = inventoryWeight.getWeight(player, armorPoints, inventoryPoints, toolPoints);
                     // if too heavy let player feel the weight by pulling them down, if in boat can always swim
-                    if (playerData.cachedWeightStatus > maxWeight && !player.isInsideVehicle())
+                    if (weight > maxWeight && !player.isInsideVehicle())
                     {
-                        drown(player, drowningRate, overEncumbranceExtra, playerData.cachedWeightStatus, maxWeight, normalDrownVel, overwaterDrownVel);
+                        drown(player, drowningRate, overEncumbranceExtra, weight, maxWeight, normalDrownVel, overwaterDrownVel);
                     }
                 }
                 //when you swim up waterfalls and basically are flying with only a tip of your body in water
                 else if (blockWaterElevators && !playerModule.isPlayerOnLadder(player) && !player.isInsideVehicle() && !player.isFlying())
                 {
-                    if (playerData.cachedWeightStatus <= 0)
-                    {
-                        playerData.cachedWeightStatus = PlayerModule.inventoryWeight(player, armorPoints, inventoryPoints, toolPoints);
-                    } else if (playerData.cachedWeightStatus > maxWeight)
+                    final float weight = inventoryWeight.getWeight(player, armorPoints, inventoryPoints, toolPoints);
+                    if (weight > maxWeight)
                     {
                         //Detect waterfalls
-                        BlockFace[] faces = {
-                                BlockFace.WEST,
-                                BlockFace.NORTH_WEST,
-                                BlockFace.NORTH,
-                                BlockFace.NORTH_EAST,
-                                BlockFace.EAST,
-                                BlockFace.SOUTH_EAST,
-                                BlockFace.SOUTH,
-                                BlockFace.SOUTH_WEST};
                         Location loc = player.getLocation();
-                        boolean isWaterNear = false;
-                        for (BlockFace face : faces)
-                        {
-                            Material nearType = loc.getBlock().getRelative(face).getType();
-                            if (nearType.equals(Material.STATIONARY_WATER))
-                                isWaterNear = true;
-                        }
+                        boolean isWaterNear = NeighbourhoodScanner.any(loc.getWorld(), loc.getBlockX(), loc.getBlockY(), loc.getBlockZ(),
+                                NeighbourhoodScanner.HORIZONTAL, type -> type == Material.STATIONARY_WATER);
                         if (isWaterNear)
-                            drown(player, drowningRate, overEncumbranceExtra, playerData.cachedWeightStatus, maxWeight, normalDrownVel + 0.3F, normalDrownVel + 0.3F); //the water flowing down pulls you down
+                            drown(player, drowningRate, overEncumbranceExtra, weight, maxWeight, normalDrownVel + 0.3F, normalDrownVel + 0.3F); //the water flowing down pulls you down
                     }
                 }
             }
@@ -189,53 +190,4 @@ public class Water extends ListenerModule
             }
         }
     }
-
-
-    /**
-     * when a player drops an item
-     *
-     * @param event - Event that occurred.
-     */
-    @EventHandler(ignoreCancelled = true, priority = EventPriority.MONITOR)
-    void onPlayerDropItem(PlayerDropItemEvent event)
-    {
-        // FEATURE: players can't swim when they're carrying a lot of weight
-        Player player = event.getPlayer();
-        PlayerData playerData = plugin.getModuleForClass(DataStoreModule.class).getPlayerData(player.getName());
-        playerData.cachedWeightStatus = -1.0F;
-    }
-
-
-    /**
-     * when a player picks up an item
-     *
-     * @param event - Event that occurred.
-     */
-    @EventHandler(ignoreCancelled = true, priority = EventPriority.MONITOR)
-    void onPlayerPickupItem(PlayerPickupItemEvent event)
-    {
-        // FEATURE: players can't swim when they're carrying a lot of weight
-        Player player = event.getPlayer();
-        PlayerData playerData = plugin.getModuleForClass(DataStoreModule.class).getPlayerData(player.getName());
-        playerData.cachedWeightStatus = -1.0F;
-    }
-
-
-    /**
-     * When a player interacts with an inventory.
-     *
-     * @param event - Event that occurred.
-     */
-    @EventHandler(ignoreCancelled = true, priority = EventPriority.MONITOR)
-    void onPlayerInventoryClick(InventoryClickEvent event)
-    {
-        // FEATURE: players can't swim when they're carrying a lot of weight
-        HumanEntity humanEntity = event.getWhoClicked();
-        if (humanEntity instanceof Player)
-        {
-            Player player = (Player) humanEntity;
-            PlayerData playerData = plugin.getModuleForClass(DataStoreModule.class).getPlayerData(player.getName());
-            playerData.cachedWeightStatus = -1.0F;
-        }
-    }
 }
@@ -26,9 +26,10 @@ import com.megahardcore.MegaHardCore;
 import com.megahardcore.config.ExplosionType;
 import com.megahardcore.config.RootConfig;
 import com.megahardcore.config.RootNode;
+import com.megahardcore.features.Explosions;
 import com.megahardcore.module.EntityHelper;
+import com.megahardcore.module.EntityStateStore;
 import com.megahardcore.service.ListenerModule;
-import com.megahardcore.task.CreateExplosionTask;
 import org.bukkit.Location;
 import org.bukkit.Material;
 import org.bukkit.World;
@@ -41,7 +42,6 @@ import org.bukkit.event.entity.CreatureSpawnEvent;
 import org.bukkit.event.entity.EntityDamageEvent;
 import org.bukkit.event.entity.EntityDeathEvent;
 import org.bukkit.inventory.ItemStack;
-import org.bukkit.metadata.FixedMetadataValue;
 import org.bukkit.util.Vector;
 
 /**
@@ -107,7 +107,7 @@ public class Blazes extends ListenerModule
         }
 
         // FEATURE: blazes near bedrock
-        if (entityType == EntityType.SKELETON && world.getEnvironment() == World.Environment.NORMAL && location.getBlockY() < 20 && !EntityHelper.isMarkedAsOurs(entity))
+        if (entityType == EntityType.SKELETON && world.getEnvironment() == World.Environment.NORMAL && location.getBlockY() < 20 && !EntityHelper.isMarkedAsOurs(plugin, entity))
         {
             if (plugin.random(nearBedrockSpawnPercent))
             {
@@ -137,7 +137,7 @@ public class Blazes extends ListenerModule
         int blazeSplitPercent = CFG.getInt(RootNode.NETHER_BLAZES_SPLIT_ON_DEATH_PERCENT, world.getName());
 
         // FEATURE: nether blazes drop extra loot (glowstone and gunpowder)
-        if (entity instanceof Blaze && !EntityHelper.isLootLess(entity))
+        if (entity instanceof Blaze && !EntityHelper.isLootLess(plugin, entity))
         {
             if (world.getEnvironment() == World.Environment.NETHER)
             {
@@ -164,7 +164,7 @@ public class Blazes extends ListenerModule
             //Label explosion as creeper
             Creeper creeper = world.spawn(entity.getLocation(), Creeper.class);
             creeper.remove();
-            new CreateExplosionTask(plugin, entity.getLocation(), ExplosionType.OVERWORLD_BLAZE, creeper).run(); // equal to a TNT blast, sets fires
+            plugin.getModuleForClass(Explosions.class).createExplosion(entity.getLocation(), ExplosionType.OVERWORLD_BLAZE, creeper); // equal to a TNT blast, sets fires
             // fire a fireball straight up in normal worlds
             Fireball fireball = (Fireball) world.spawnEntity(entity.getLocation(), EntityType.FIREBALL);
             fireball.setDirection(new Vector(0, 10, 0));
@@ -176,7 +176,8 @@ public class Blazes extends ListenerModule
         if (blazeSplitPercent > 0 && world.getEnvironment() == World.Environment.NETHER && entity instanceof Blaze)
         {
             //Blazes which have split already are less likely to split
-            int respawnCount = entity.getMetadata("megahardcore.blaze.splitcount").size() > 0 ? entity.getMetadata("megahardcore.blaze.splitcount").get(0).asInt() : 0;
+            EntityStateStore states = plugin.getModuleForClass(EntityStateStore.class);
+            int respawnCount = states.getBlazeSplitCount(entity);
             respawnCount++;
             blazeSplitPercent = (int) (1.0D / respawnCount * blazeSplitPercent);
             if (plugin.random(blazeSplitPercent))
@@ -185,14 +186,14 @@ public class Blazes extends ListenerModule
                 Entity firstNewBlaze = EntityHelper.spawn(entity.getLocation(), EntityType.BLAZE);
                 firstNewBlaze.setVelocity(new Vector(1, 0, 1));
                 //Save the new splitcounter
-                firstNewBlaze.setMetadata("megahardcore.blaze.splitcount", new FixedMetadataValue(plugin, respawnCount));
+                states.setBlazeSplitCount(firstNewBlaze, respawnCount);
 
                 Entity secondNewBlaze = EntityHelper.spawn(entity.getLocation(), EntityType.BLAZE);
                 secondNewBlaze.setVelocity(new Vector(-1, 0, -1));
-                secondNewBlaze.setMetadata("megahardcore.blaze.splitcount", new FixedMetadataValue(plugin, respawnCount));
+                states.setBlazeSplitCount(secondNewBlaze, respawnCount);
 
                 // if this blaze was marked lootless, mark the new blazes the same
-                if (EntityHelper.isLootLess(entity))
+                if (EntityHelper.isLootLess(plugin, entity))
                 {
                     EntityHelper.markLootLess(plugin, (LivingEntity) firstNewBlaze);
                     EntityHelper.markLootLess(plugin, (LivingEntity) secondNewBlaze);
@@ -218,7 +219,7 @@ public class Blazes extends ListenerModule
         final boolean blazeFireOnDmg = CFG.getBoolean(RootNode.BLAZES_DROP_FIRE_ON_DAMAGE, world.getName());
 
         // FEATURE: magma cubes become blazes when they take damage
-        if (magmacubesBlazeOnDmg && entityType == EntityType.MAGMA_CUBE && !entity.isDead() && EntityHelper.hasFlagIgnore(entity))
+        if (magmacubesBlazeOnDmg && entityType == EntityType.MAGMA_CUBE && !entity.isDead() && EntityHelper.hasFlagIgnore(plugin, entity))
         {
             //Magmacube gets replaced by blaze
             entity.remove();
@@ -227,7 +228,7 @@ public class Blazes extends ListenerModule
             //Explosion labeled as fireball
             Fireball ball = world.spawn(entity.getLocation(), Fireball.class);
             ball.remove();
-            new CreateExplosionTask(plugin, entity.getLocation(), ExplosionType.MAGMACUBE_FIRE, ball).run(); // fiery explosion for effect
+            plugin.getModuleForClass(Explosions.class).createExplosion(entity.getLocation(), ExplosionType.MAGMACUBE_FIRE, ball); // fiery explosion for effect
             //TODO MhcMagmaCubeExplodeEvent
         }
 
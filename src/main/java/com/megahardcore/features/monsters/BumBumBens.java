@@ -28,12 +28,12 @@ import com.megahardcore.config.RootConfig;
 import com.megahardcore.config.RootNode;
 import com.megahardcore.events.MhcCreeperDropTntEvent;
 import com.megahardcore.events.fakeevents.FakeEntityExplodeEvent;
+import com.megahardcore.features.Explosions;
 import com.megahardcore.module.EntityHelper;
 import com.megahardcore.module.PlayerModule;
 import com.megahardcore.service.Feature;
 import com.megahardcore.service.ListenerModule;
 import com.megahardcore.task.CoolCreeperExplosion;
-import com.megahardcore.task.CreateExplosionTask;
 import org.bukkit.Effect;
 import org.bukkit.World;
 import org.bukkit.entity.*;
@@ -78,7 +78,7 @@ public class BumBumBens extends ListenerModule
     public void onEntitySpawn(CreatureSpawnEvent event)
     {
         LivingEntity entity = event.getEntity();
-        if (EntityHelper.isMarkedAsOurs(entity))
+        if (EntityHelper.isMarkedAsOurs(plugin, entity))
             return;
         EntityType entityType = entity.getType();
         World world = entity.getWorld();
@@ -188,7 +188,7 @@ public class BumBumBens extends ListenerModule
                     EntityHelper.markLootLess(plugin, (LivingEntity) entity);
                     entity.remove();
                     if (customCharged)
-                        new CreateExplosionTask(plugin, entity.getLocation(), ExplosionType.CREEPER_CHARGED, entity).run(); // equal to a TNT blast
+                        plugin.getModuleForClass(Explosions.class).createExplosion(entity.getLocation(), ExplosionType.CREEPER_CHARGED, entity); // equal to a TNT blast
                     return;
                 }
             }
@@ -208,7 +208,7 @@ public class BumBumBens extends ListenerModule
                         || event.getCause().equals(EntityDamageEvent.DamageCause.LAVA))
                         && !creeper.hasPotionEffect(PotionEffectType.FIRE_RESISTANCE))
                 {
-                    if (EntityHelper.hasFlagIgnore(entity))
+                    if (EntityHelper.hasFlagIgnore(plugin, entity))
                     {
                         EntityHelper.flagIgnore(plugin, entity);
                         CoolCreeperExplosion bigBoom = new CoolCreeperExplosion(creeper, plugin);
@@ -243,9 +243,9 @@ public class BumBumBens extends ListenerModule
             event.setCancelled(true);
             EntityHelper.flagIgnore(plugin, entity);//Ignore this creeper in further calls to this method
             if (((Creeper) entity).isPowered())
-                new CreateExplosionTask(plugin, entity.getLocation(), ExplosionType.CREEPER_CHARGED, entity).run();
+                plugin.getModuleForClass(Explosions.class).createExplosion(entity.getLocation(), ExplosionType.CREEPER_CHARGED, entity);
             else //normal creeper
-                new CreateExplosionTask(plugin, entity.getLocation(), ExplosionType.CREEPER, entity).run();
+                plugin.getModuleForClass(Explosions.class).createExplosion(entity.getLocation(), ExplosionType.CREEPER, entity);
         }
     }
 }
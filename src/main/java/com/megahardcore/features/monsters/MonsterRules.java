@@ -26,6 +26,7 @@ import com.megahardcore.MegaHardCore;
 import com.megahardcore.config.RootConfig;
 import com.megahardcore.config.RootNode;
 import com.megahardcore.module.EntityHelper;
+import com.megahardcore.module.PlayerIndexModule;
 import com.megahardcore.service.ListenerModule;
 import org.bukkit.Location;
 import org.bukkit.Material;
@@ -48,6 +49,8 @@ public class MonsterRules extends ListenerModule
 {
     private RootConfig CFG = null;
 
+    private PlayerIndexModule playerIndex;
+
 
 	public MonsterRules (MegaHardCore plugin) {
         super(plugin);
@@ -59,6 +62,7 @@ public class MonsterRules extends ListenerModule
     {
         super.starting();
         CFG = plugin.getModuleForClass(RootConfig.class);
+        playerIndex = plugin.getModuleForClass(PlayerIndexModule.class);
     }
 
 
@@ -92,12 +96,12 @@ public class MonsterRules extends ListenerModule
                     if (!entityType.equals(EntityType.SILVERFISH)) //no multiple silverfish per block
                     {
                         //Mc 1.6: "Social" Zombies can spawn very close when calling for help. Do not spawn more monsters if that is the case
-                        if (entityType == EntityType.ZOMBIE ? !EntityHelper.arePlayersNearby(event.getLocation(), 16.0) : !EntityHelper.arePlayersNearby(event.getLocation(), 12.0))
+                        if (entityType == EntityType.ZOMBIE ? !playerIndex.arePlayersNearby(event.getLocation(), 16.0) : !playerIndex.arePlayersNearby(event.getLocation(), 12.0))
                         {
                             for (int i = 1; i < multiplier; i++)
                             {
                                 Entity newEntity = EntityHelper.spawnRandomMob(event.getLocation());
-                                if (EntityHelper.isLootLess(entity))
+                                if (EntityHelper.isLootLess(plugin, entity))
                                 {
                                     EntityHelper.markLootLess(plugin, (LivingEntity) newEntity);
                                 }
@@ -27,6 +27,7 @@ import com.megahardcore.config.RootConfig;
 import com.megahardcore.config.RootNode;
 import com.megahardcore.module.EntityHelper;
 import com.megahardcore.service.ListenerModule;
+import com.megahardcore.service.NeighbourhoodScanner;
 import com.megahardcore.task.WebCleanupTask;
 import org.bukkit.Location;
 import org.bukkit.Material;
@@ -77,7 +78,7 @@ public class Spiders extends ListenerModule
     public void onEntitySpawn(CreatureSpawnEvent event)
     {
         LivingEntity entity = event.getEntity();
-        if (EntityHelper.isMarkedAsOurs(entity))
+        if (EntityHelper.isMarkedAsOurs(plugin, entity))
             return;
         Location location = event.getLocation();
         World world = location.getWorld();
@@ -117,7 +118,7 @@ public class Spiders extends ListenerModule
         if (spidersDropWebOnDeath)
         {
             //Reduce amount of web dropped by spiders which die in caves from environmental damage
-            if (entity instanceof Spider && (!EntityHelper.isLootLess(entity) || plugin.getRandom().nextInt(3) == 1))
+            if (entity instanceof Spider && (!EntityHelper.isLootLess(plugin, entity) || plugin.getRandom().nextInt(3) == 1))
             {
                 // random web placement
                 long serverTime = world.getFullTime();
@@ -152,18 +153,7 @@ public class Spiders extends ListenerModule
                     {
                         // don't place next to cactus, because it will break the
                         // cactus
-                        Block[] adjacentBlocks = new Block[]{block.getRelative(BlockFace.EAST), block.getRelative(BlockFace.WEST),
-                                block.getRelative(BlockFace.NORTH), block.getRelative(BlockFace.SOUTH)};
-
-                        boolean nextToCactus = false;
-                        for (Block adjacentBlock : adjacentBlocks)
-                        {
-                            if (adjacentBlock.getType() == Material.CACTUS)
-                            {
-                                nextToCactus = true;
-                                break;
-                            }
-                        }
+                        boolean nextToCactus = NeighbourhoodScanner.any(block, NeighbourhoodScanner.SIDES, type -> type == Material.CACTUS);
 
                         if (!nextToCactus)
                         {
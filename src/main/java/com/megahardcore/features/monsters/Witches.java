@@ -26,9 +26,9 @@ import com.megahardcore.MegaHardCore;
 import com.megahardcore.config.ExplosionType;
 import com.megahardcore.config.RootConfig;
 import com.megahardcore.config.RootNode;
+import com.megahardcore.features.Explosions;
 import com.megahardcore.module.EntityHelper;
 import com.megahardcore.service.ListenerModule;
-import com.megahardcore.task.CreateExplosionTask;
 import org.bukkit.Location;
 import org.bukkit.Material;
 import org.bukkit.World;
@@ -74,7 +74,7 @@ public class Witches extends ListenerModule
     public void onEntitySpawn(CreatureSpawnEvent event)
     {
         LivingEntity entity = event.getEntity();
-        if (EntityHelper.isMarkedAsOurs(entity))
+        if (EntityHelper.isMarkedAsOurs(plugin, entity))
             return;
         Location location = event.getLocation();
         World world = location.getWorld();
@@ -173,7 +173,7 @@ public class Witches extends ListenerModule
             if (makeExplosion)
             {
                 // explosion just for show, no damage
-                new CreateExplosionTask(plugin, location, ExplosionType.EFFECT, null).run();
+                plugin.getModuleForClass(Explosions.class).createExplosion(location, ExplosionType.EFFECT, null);
 
                 event.getAffectedEntities().stream().filter(target -> target.getType() == EntityType.PLAYER).forEach(target -> target.damage(3));
             }
@@ -25,14 +25,15 @@ package com.megahardcore.features.monsters;
 import com.megahardcore.MegaHardCore;
 import com.megahardcore.config.RootConfig;
 import com.megahardcore.config.RootNode;
-import com.megahardcore.module.BlockModule;
 import com.megahardcore.module.EntityHelper;
+import com.megahardcore.module.EntityStateStore;
 import com.megahardcore.module.PlayerModule;
 import com.megahardcore.module.temporaryblock.TemporaryBlock;
 import com.megahardcore.module.temporaryblock.TemporaryBlockBreakEvent;
 import com.megahardcore.module.temporaryblock.TemporaryBlockHandler;
 import com.megahardcore.service.Feature;
 import com.megahardcore.service.ListenerModule;
+import com.megahardcore.service.NeighbourhoodScanner;
 import com.megahardcore.service.OurRandom;
 import com.megahardcore.service.config.customtypes.PotionEffectHolder;
 import com.megahardcore.task.RespawnZombieTask;
@@ -40,7 +41,6 @@ import org.bukkit.Material;
 import org.bukkit.SkullType;
 import org.bukkit.World;
 import org.bukkit.block.Block;
-import org.bukkit.block.BlockFace;
 import org.bukkit.block.Skull;
 import org.bukkit.entity.*;
 import org.bukkit.event.EventHandler;
@@ -49,9 +49,10 @@ import org.bukkit.event.entity.CreatureSpawnEvent;
 import org.bukkit.event.entity.EntityDamageByEntityEvent;
 import org.bukkit.event.entity.EntityDamageEvent;
 import org.bukkit.event.entity.EntityDeathEvent;
-import org.bukkit.metadata.FixedMetadataValue;
 import org.bukkit.potion.PotionEffect;
 
+import java.util.concurrent.TimeUnit;
+
 /** Zombies <p> can resurrect themselves , make players slow when hit </p> */
 public class Zombies extends ListenerModule
 {
@@ -101,9 +102,10 @@ public class Zombies extends ListenerModule
 
         int zombiesReanimatePercent = CFG.getInt(RootNode.ZOMBIES_REANIMATE_PERCENT, world.getName());
         boolean placeSkulls = CFG.getBoolean(RootNode.ZOMBIES_REANIMATE_SKULLS, world.getName());
+        int forgetSkullsMinutes = CFG.getInt(RootNode.ZOMBIES_REANIMATE_SKULLS_FORGET_MINUTES, world.getName());
 
         // FEATURE: zombies may reanimate if not on fire when they die
-        if (zombiesReanimatePercent > 0 && EntityHelper.hasFlagIgnore(entity))
+        if (zombiesReanimatePercent > 0 && EntityHelper.hasFlagIgnore(plugin, entity))
         {
             if (entity.getType() == EntityType.ZOMBIE)
             {
@@ -114,14 +116,12 @@ public class Zombies extends ListenerModule
                     player = (Player) zombie.getTarget();
 
                 //Zombies which have respawned already are less likely to respawn
-                int respawnCount = entity.getMetadata("megahardcore.zombie.respawncount").size() > 0 ? entity.getMetadata("megahardcore.zombie.respawncount").get(0).asInt() : 0;
+                int respawnCount = plugin.getModuleForClass(EntityStateStore.class).getZombieRespawnCount(entity);
                 respawnCount++;
                 zombiesReanimatePercent = (int) ((1.0D / respawnCount) * zombiesReanimatePercent);
 
                 if (!zombie.isVillager() && entity.getFireTicks() < 1 && OurRandom.percentChance(zombiesReanimatePercent))
                 {
-                    //Save the incremented respawncount
-                    entity.setMetadata("megahardcore.zombie.respawncount", new FixedMetadataValue(plugin, respawnCount));
                     TemporaryBlock tempBlock = null;
                     //Water washes skulls away which then drop to the ground, cancelling the BlockFromToEvent didn't prevent the skull from dropping
                     Material type = entity.getLocation().getBlock().getType();
@@ -132,12 +132,11 @@ public class Zombies extends ListenerModule
                         Skull skull = (Skull) block.getState();
                         skull.setSkullType(SkullType.ZOMBIE);
                         //Random rotation
-                        BlockFace[] faces = BlockModule.getHorizontalAdjacentFaces();
-                        skull.setRotation(faces[OurRandom.nextInt(faces.length)]);
+                        skull.setRotation(NeighbourhoodScanner.HORIZONTAL.face(OurRandom.nextInt(NeighbourhoodScanner.HORIZONTAL.size())));
                         skull.update();
-                        tempBlock = temporaryBlockHandler.addTemporaryBlock(entity.getLocation(), "respawn_skull");
+                        tempBlock = temporaryBlockHandler.addTemporaryBlock(entity.getLocation(), TimeUnit.MINUTES.toMillis(forgetSkullsMinutes), "respawn_skull");
                     }
-                    RespawnZombieTask task = new RespawnZombieTask(plugin, entity.getLocation(), player, tempBlock);
+                    RespawnZombieTask task = new RespawnZombieTask(plugin, entity.getLocation(), player, tempBlock, respawnCount);
                     int respawnSeconds = plugin.getRandom().nextInt(6) + 3; // 3-8 seconds
                     plugin.getServer().getScheduler().scheduleSyncDelayedTask(plugin, task, 20L * respawnSeconds); // /20L ~ 1 second
                 }
@@ -0,0 +1,580 @@
+/*
+ * This file is part of
+ * MegaHardCore Server Plugin for Minecraft
+ *
+ * Copyright (C) 2012 Ryan Hamshire
+ * Copyright (C) 2013 Diemex
+ *
+ * MegaHardCore is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MegaHardCore is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero Public License
+ * along with MegaHardCore.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.megahardcore.module;
+
+
+import com.megahardcore.MegaHardCore;
+import com.megahardcore.service.ListenerModule;
+import com.megahardcore.service.LongObjectMap;
+import org.bukkit.Chunk;
+import org.bukkit.block.Block;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.world.ChunkLoadEvent;
+import org.bukkit.event.world.ChunkUnloadEvent;
+import org.bukkit.event.world.WorldUnloadEvent;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.logging.Level;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Marks blocks for whatever reason, f.e. water placed by a player which is about to evaporate.
+ * <p/>
+ * Replaces block metadata, which is keyed by a String per lookup and never freed for unloaded chunks. Marks are kept per
+ * world and chunk, every chunk holds a bitset of 16x16x16 blocks per section and mark type which is only created when
+ * something in that section gets marked. Looking up or setting a mark are a few bit operations. Marks are dropped when
+ * the chunk unloads, unless the type is persistent, then they are saved to a small file per region of 32x32 chunks and
+ * loaded again with the chunk. A reload of the plugin keeps the marks of loaded chunks.
+ *
+ * @author Diemex
+ */
+public class BlockMarkStore extends ListenerModule
+{
+    /**
+     * Types of marks
+     */
+    public enum Mark
+    {
+        /**
+         * Water placed from a bucket, can't be picked up again until it has been turned into flowing water. Kept when
+         * the chunk unloads, otherwise walking away would be enough to pick the water up again
+         */
+        BUCKET_WATER(true);
+
+        /**
+         * Save marks when the chunk unloads and load them again with the chunk
+         */
+        private final boolean persistent;
+
+
+        Mark(boolean persistent)
+        {
+            this.persistent = persistent;
+        }
+
+
+        public boolean isPersistent()
+        {
+            return persistent;
+        }
+    }
+
+    private static final Mark[] MARKS = Mark.values();
+
+    /** Skip all file access if no type of mark is persistent */
+    private static final boolean ANY_PERSISTENT;
+
+    static
+    {
+        boolean persistent = false;
+        for (Mark mark : MARKS)
+            persistent |= mark.persistent;
+        ANY_PERSISTENT = persistent;
+    }
+
+    private static final int SECTIONS = 16;
+
+    /** Longs per section, 4096 bits */
+    private static final int SECTION_LONGS = 16 * 16 * 16 / 64;
+
+    /** Version of the region files */
+    private static final int VERSION = 1;
+
+    private static final Pattern REGION_FILE = Pattern.compile("r\\.(-?\\d+)\\.(-?\\d+)\\.dat");
+
+    /** Folder for the region files of persistent marks, one subfolder per world */
+    private final File folder;
+
+    /** Marked chunks per world */
+    private final Map<UUID, LongObjectMap<ChunkMarks>> worlds = new HashMap<>();
+
+    /** Regions which have a file per world, listed once per world so loading a chunk doesn't have to touch the disk */
+    private final Map<UUID, Set<Long>> regionFiles = new HashMap<>();
+
+
+    /**
+     * Constructor
+     *
+     * @param plugin owning plugin
+     * @param folder folder to save persistent marks in
+     */
+    public BlockMarkStore (MegaHardCore plugin, File folder)
+    {
+        super(plugin);
+        this.folder = folder;
+    }
+
+
+    /**
+     * Saves the persistent marks in case the server shuts down. The marks stay in memory, a reload keeps them
+     */
+    @Override
+    public void closing()
+    {
+        super.closing();
+        for (UUID world : worlds.keySet())
+            saveChanged(world);
+    }
+
+
+    /**
+     * Mark a block
+     *
+     * @param block block to mark
+     * @param mark  type of the mark
+     */
+    public void mark(Block block, Mark mark)
+    {
+        set(block.getWorld().getUID(), block.getX(), block.getY(), block.getZ(), mark, true);
+    }
+
+
+    /**
+     * Remove the mark from a block
+     *
+     * @param block block to remove the mark from
+     * @param mark  type of the mark
+     */
+    public void removeMark(Block block, Mark mark)
+    {
+        set(block.getWorld().getUID(), block.getX(), block.getY(), block.getZ(), mark, false);
+    }
+
+
+    /**
+     * Has this block been marked?
+     *
+     * @param block to check
+     * @param mark  type of the mark
+     *
+     * @return if it has been marked
+     */
+    public boolean isMarked(Block block, Mark mark)
+    {
+        return isMarked(block.getWorld().getUID(), block.getX(), block.getY(), block.getZ(), mark);
+    }
+
+
+    /**
+     * Has the block at the coordinates been marked?
+     *
+     * @return if it has been marked
+     */
+    public boolean isMarked(UUID world, int x, int y, int z, Mark mark)
+    {
+        if (y < 0 || y >= SECTIONS * 16)
+            return false;
+        LongObjectMap<ChunkMarks> chunks = worlds.get(world);
+        ChunkMarks chunk = chunks != null ? chunks.get(chunkKey(x >> 4, z >> 4)) : null;
+        if (chunk == null)
+            return false;
+        long[] bits = chunk.sections[mark.ordinal()][y >> 4];
+        final int index = index(x, y, z);
+        return bits != null && (bits[index >> 6] & 1L << index) != 0;
+    }
+
+
+    /**
+     * Set or clear the mark of the block at the coordinates
+     */
+    public void set(UUID world, int x, int y, int z, Mark mark, boolean marked)
+    {
+        if (y < 0 || y >= SECTIONS * 16)
+            return;
+        LongObjectMap<ChunkMarks> chunks = worlds.get(world);
+        if (chunks == null)
+        {
+            if (!marked)
+                return;
+            chunks = new LongObjectMap<>();
+            worlds.put(world, chunks);
+        }
+        final long key = chunkKey(x >> 4, z >> 4);
+        ChunkMarks chunk = chunks.get(key);
+        if (chunk == null)
+        {
+            if (!marked)
+                return;
+            chunk = new ChunkMarks();
+            chunks.put(key, chunk);
+        }
+
+        final int index = index(x, y, z);
+        if (marked)
+            chunk.set(mark.ordinal(), y >> 4, index);
+        else if (!chunk.clear(mark.ordinal(), y >> 4, index))
+            return;
+        else if (chunk.isEmpty() && !chunk.stored) //a stored chunk has to be kept until it has been removed from its file
+            chunks.remove(key);
+        if (mark.persistent)
+            chunk.changed = true;
+    }
+
+
+    private static int index(int x, int y, int z)
+    {
+        return (y & 15) << 8 | (z & 15) << 4 | x & 15;
+    }
+
+
+    private static long chunkKey(int chunkX, int chunkZ)
+    {
+        return (long) chunkX << 32 | chunkZ & 0xFFFFFFFFL;
+    }
+
+
+    /**
+     * Free the marks of the chunk, persistent marks are saved first
+     */
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onChunkUnload(ChunkUnloadEvent event)
+    {
+        Chunk chunk = event.getChunk();
+        final UUID world = chunk.getWorld().getUID();
+        LongObjectMap<ChunkMarks> chunks = worlds.get(world);
+        if (chunks == null)
+            return;
+        ChunkMarks marks = chunks.remove(chunkKey(chunk.getX(), chunk.getZ()));
+        if (marks != null && marks.changed)
+        {
+            Map<Integer, ChunkMarks> changed = new HashMap<>();
+            changed.put(regionIndex(chunk.getX(), chunk.getZ()), marks);
+            saveRegion(world, chunk.getX() >> 5, chunk.getZ() >> 5, changed);
+        }
+    }
+
+
+    /**
+     * Load the persistent marks of the chunk
+     */
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onChunkLoad(ChunkLoadEvent event)
+    {
+        if (!ANY_PERSISTENT || event.isNewChunk())
+            return;
+        Chunk chunk = event.getChunk();
+        final UUID world = chunk.getWorld().getUID();
+        final int regionX = chunk.getX() >> 5, regionZ = chunk.getZ() >> 5;
+        if (!getRegionFiles(world).contains(chunkKey(regionX, regionZ)))
+            return;
+        ChunkMarks loaded = readRegion(regionFile(world, regionX, regionZ)).get(regionIndex(chunk.getX(), chunk.getZ()));
+        if (loaded == null)
+            return;
+        LongObjectMap<ChunkMarks> chunks = worlds.get(world);
+        if (chunks == null)
+        {
+            chunks = new LongObjectMap<>();
+            worlds.put(world, chunks);
+        }
+        //Marks set before the chunk finished loading are newer than the saved ones
+        if (!chunks.containsKey(chunkKey(chunk.getX(), chunk.getZ())))
+            chunks.put(chunkKey(chunk.getX(), chunk.getZ()), loaded);
+    }
+
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onWorldUnload(WorldUnloadEvent event)
+    {
+        final UUID world = event.getWorld().getUID();
+        saveChanged(world);
+        worlds.remove(world);
+        regionFiles.remove(world);
+    }
+
+
+    /**
+     * Save all chunks of a world with changed persistent marks, one write per region
+     */
+    private void saveChanged(UUID world)
+    {
+        LongObjectMap<ChunkMarks> chunks = worlds.get(world);
+        if (!ANY_PERSISTENT || chunks == null)
+            return;
+        final Map<Long, Map<Integer, ChunkMarks>> regions = new HashMap<>();
+        chunks.forEach((key, chunk) -> {
+            if (!chunk.changed)
+                return;
+            final int chunkX = (int) (key >> 32), chunkZ = (int) key;
+            final long region = chunkKey(chunkX >> 5, chunkZ >> 5);
+            Map<Integer, ChunkMarks> changed = regions.get(region);
+            if (changed == null)
+            {
+                changed = new HashMap<>();
+                regions.put(region, changed);
+            }
+            changed.put(regionIndex(chunkX, chunkZ), chunk);
+        });
+        for (Map.Entry<Long, Map<Integer, ChunkMarks>> region : regions.entrySet())
+            saveRegion(world, (int) (region.getKey() >> 32), (int) (long) region.getKey(), region.getValue());
+    }
+
+
+    /**
+     * Write the changed chunks into their region file, chunks without persistent marks are removed from the file
+     *
+     * @param changed chunks by their index in the region
+     */
+    private void saveRegion(UUID world, int regionX, int regionZ, Map<Integer, ChunkMarks> changed)
+    {
+        Set<Long> existing = getRegionFiles(world);
+        final long regionKey = chunkKey(regionX, regionZ);
+        File file = regionFile(world, regionX, regionZ);
+        Map<Integer, ChunkMarks> region = existing.contains(regionKey) ? readRegion(file) : new HashMap<>();
+        boolean modified = false;
+        for (Map.Entry<Integer, ChunkMarks> entry : changed.entrySet())
+        {
+            ChunkMarks chunk = entry.getValue();
+            chunk.changed = false;
+            chunk.stored = chunk.hasPersistent();
+            if (chunk.stored)
+                region.put(entry.getKey(), chunk);
+            else if (region.remove(entry.getKey()) == null)
+                continue;
+            modified = true;
+        }
+        if (!modified)
+            return;
+        if (writeRegion(file, region))
+            existing.add(regionKey);
+        else
+            existing.remove(regionKey);
+    }
+
+
+    /**
+     * Regions of the world which have a file, listed from disk the first time
+     */
+    private Set<Long> getRegionFiles(UUID world)
+    {
+        Set<Long> regions = regionFiles.get(world);
+        if (regions == null)
+        {
+            regions = new HashSet<>();
+            File[] files = new File(folder, world.toString()).listFiles();
+            if (files != null)
+                for (File file : files)
+                {
+                    Matcher matcher = REGION_FILE.matcher(file.getName());
+                    if (matcher.matches())
+                        regions.add(chunkKey(Integer.parseInt(matcher.group(1)), Integer.parseInt(matcher.group(2))));
+                }
+            regionFiles.put(world, regions);
+        }
+        return regions;
+    }
+
+
+    private File regionFile(UUID world, int regionX, int regionZ)
+    {
+        return new File(folder, world + File.separator + "r." + regionX + "." + regionZ + ".dat");
+    }
+
+
+    private static int regionIndex(int chunkX, int chunkZ)
+    {
+        return (chunkZ & 31) << 5 | chunkX & 31;
+    }
+
+
+    /**
+     * Read all chunks of a region file
+     *
+     * @return chunks by their index in the region
+     */
+    private Map<Integer, ChunkMarks> readRegion(File file)
+    {
+        Map<Integer, ChunkMarks> region = new HashMap<>();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file))))
+        {
+            if (in.readInt() != VERSION)
+                return region;
+            final int chunkCount = in.readShort();
+            for (int i = 0; i < chunkCount; i++)
+            {
+                final int regionIndex = in.readShort();
+                ChunkMarks chunk = new ChunkMarks();
+                final int markCount = in.readByte();
+                for (int m = 0; m < markCount; m++)
+                {
+                    final String name = in.readUTF();
+                    final int sectionMask = in.readShort() & 0xFFFF;
+                    Mark mark = null;
+                    for (Mark candidate : MARKS)
+                        if (candidate.name().equals(name))
+                            mark = candidate;
+                    for (int s = 0; s < SECTIONS; s++)
+                    {
+                        if ((sectionMask & 1 << s) == 0)
+                            continue;
+                        long[] bits = new long[SECTION_LONGS];
+                        for (int l = 0; l < SECTION_LONGS; l++)
+                            bits[l] = in.readLong();
+                        //Marks which have been removed or aren't persistent anymore are skipped
+                        if (mark != null && mark.persistent)
+                            chunk.sections[mark.ordinal()][s] = bits;
+                    }
+                }
+                chunk.stored = true;
+                region.put(regionIndex, chunk);
+            }
+        } catch (IOException e)
+        {
+            plugin.getLogger().log(Level.WARNING, "Couldn't read block marks from " + file, e);
+        }
+        return region;
+    }
+
+
+    /**
+     * Write the persistent marks of all chunks of a region, deletes the file if there are none
+     *
+     * @return if the file exists now
+     */
+    private boolean writeRegion(File file, Map<Integer, ChunkMarks> region)
+    {
+        if (region.isEmpty())
+        {
+            if (file.exists() && !file.delete())
+            {
+                plugin.getLogger().warning("Couldn't delete " + file);
+                return true;
+            }
+            return false;
+        }
+        file.getParentFile().mkdirs();
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file))))
+        {
+            out.writeInt(VERSION);
+            out.writeShort(region.size());
+            for (Map.Entry<Integer, ChunkMarks> entry : region.entrySet())
+            {
+                out.writeShort(entry.getKey());
+                ChunkMarks chunk = entry.getValue();
+                int markCount = 0;
+                for (Mark mark : MARKS)
+                    if (mark.persistent && chunk.sectionMask(mark.ordinal()) != 0)
+                        markCount++;
+                out.writeByte(markCount);
+                for (Mark mark : MARKS)
+                {
+                    final int sectionMask = chunk.sectionMask(mark.ordinal());
+                    if (!mark.persistent || sectionMask == 0)
+                        continue;
+                    out.writeUTF(mark.name());
+                    out.writeShort(sectionMask);
+                    for (long[] bits : chunk.sections[mark.ordinal()])
+                        if (bits != null)
+                            for (long l : bits)
+                                out.writeLong(l);
+                }
+            }
+        } catch (IOException e)
+        {
+            plugin.getLogger().log(Level.WARNING, "Couldn't save block marks to " + file, e);
+        }
+        return true;
+    }
+
+
+    /**
+     * Marks of a chunk: per mark type 16 sections, null if nothing in the section is marked
+     */
+    private static class ChunkMarks
+    {
+        private final long[][][] sections = new long[MARKS.length][SECTIONS][];
+
+        /** Persistent marks changed since the chunk has been loaded or saved */
+        private boolean changed = false;
+
+        /** The region file contains this chunk */
+        private boolean stored = false;
+
+
+        private void set(int mark, int section, int index)
+        {
+            long[] bits = sections[mark][section];
+            if (bits == null)
+                bits = sections[mark][section] = new long[SECTION_LONGS];
+            bits[index >> 6] |= 1L << index;
+        }
+
+
+        /**
+         * @return true if the mark was set
+         */
+        private boolean clear(int mark, int section, int index)
+        {
+            long[] bits = sections[mark][section];
+            if (bits == null || (bits[index >> 6] & 1L << index) == 0)
+                return false;
+            bits[index >> 6] &= ~(1L << index);
+            for (long l : bits)
+                if (l != 0)
+                    return true;
+            sections[mark][section] = null;
+            return true;
+        }
+
+
+        private int sectionMask(int mark)
+        {
+            int mask = 0;
+            for (int s = 0; s < SECTIONS; s++)
+                if (sections[mark][s] != null)
+                    mask |= 1 << s;
+            return mask;
+        }
+
+
+        private boolean isEmpty()
+        {
+            for (long[][] mark : sections)
+                for (long[] bits : mark)
+                    if (bits != null)
+                        return false;
+            return true;
+        }
+
+
+        private boolean hasPersistent()
+        {
+            for (Mark mark : MARKS)
+                if (mark.persistent && sectionMask(mark.ordinal()) != 0)
+                    return true;
+            return false;
+        }
+    }
+}
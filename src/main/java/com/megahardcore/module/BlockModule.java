@@ -27,6 +27,8 @@ import com.megahardcore.compatibility.CompatHandler;
 import com.megahardcore.config.RootConfig;
 import com.megahardcore.config.RootNode;
 import com.megahardcore.service.MHCModule;
+import com.megahardcore.service.Profiler;
+import com.megahardcore.service.config.MultiWorldConfig;
 import com.megahardcore.task.BlockPhysicsCheckTask;
 import org.bukkit.Location;
 import org.bukkit.Material;
@@ -35,23 +37,23 @@ import org.bukkit.block.Biome;
 import org.bukkit.block.Block;
 import org.bukkit.block.BlockFace;
 import org.bukkit.entity.FallingBlock;
+import org.bukkit.inventory.ItemStack;
 import org.bukkit.material.MaterialData;
-import org.bukkit.metadata.FixedMetadataValue;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.UUID;
-import java.util.regex.Pattern;
 
 /** Module that manages blocks and physics logic. */
 public class BlockModule extends MHCModule
 {
-    /** Marks a block/location for whatever reason... currently used by waterbucket restrictions */
-    private final String MARK = "MegaHardCore.Mark";
-
     private RootConfig CFG;
 
-    private final Pattern slabPattern = Pattern.compile("(?!DOUBLE).*STEP");
+    /** Queue of all pending physics checks */
+    private BlockPhysicsCheckTask physicsTask;
+
+    private int physicsTaskId = -1;
 
 
     /**
@@ -69,11 +71,21 @@ public class BlockModule extends MHCModule
     public void starting()
     {
         CFG = plugin.getModuleForClass(RootConfig.class);
+        //Traits are server wide, read them for the first world listed in the main config
+        Collection<String> worlds = RootConfig.mainMHCConfig.getWorlds();
+        MaterialTraits.load(CFG, worlds.isEmpty() ? MultiWorldConfig.ALL_WORLDS : worlds.iterator().next(), plugin.getLogger());
+        physicsTask = new BlockPhysicsCheckTask(plugin);
+        physicsTaskId = plugin.getServer().getScheduler().scheduleSyncRepeatingTask(plugin, Profiler.wrap(plugin, "BlockPhysicsCheckTask", physicsTask), 1L, 1L);
+        // check if it was scheduled. If not, notify in console.
+        if (physicsTaskId == -1)
+        {
+            plugin.getLogger().severe("Failed schedule BlockPhysicsCheck task!");
+        }
     }
 
 
     /**
-     * Schedule the physics task
+     * Queue a physics check, checks for the same block are merged
      *
      * @param block          - Target block.
      * @param recursionCount - Number of times to execute.
@@ -82,12 +94,8 @@ public class BlockModule extends MHCModule
      */
     public void physicsCheck(Block block, int recursionCount, boolean forceCheck, int wait)
     {
-        int id = plugin.getServer().getScheduler().scheduleSyncDelayedTask(plugin, new BlockPhysicsCheckTask(plugin, block, recursionCount, forceCheck), wait);
-        // check if it was scheduled. If not, notify in console.
-        if (id == -1)
-        {
-            plugin.getLogger().severe("Failed schedule BlockPhysicsCheck task!");
-        }
+        if (physicsTask != null)
+            physicsTask.queue(block, recursionCount, forceCheck, wait);
     }
 
 
@@ -109,7 +117,14 @@ public class BlockModule extends MHCModule
         if ((block.getType() == Material.GRASS || block.getType() == Material.MYCEL) && CFG.getBoolean(RootNode.MORE_FALLING_BLOCKS_TURN_TO_DIRT, block.getWorld().getName()))
             block.setType(Material.DIRT);
 
-        FallingBlock fallingBlock = block.getWorld().spawnFallingBlock(block.getLocation(), block.getTypeId(), block.getData());
+        FallingBlockGovernor governor = plugin.getModuleForClass(FallingBlockGovernor.class);
+        FallingBlock fallingBlock = governor.spawn(block.getLocation(), block.getTypeId(), block.getData(), damageEntities, null);
+        if (fallingBlock == null) //too many falling blocks around, skip the animation
+        {
+            relocate(block);
+            governor.countRelocated();
+            return null;
+        }
         fallingBlock.setDropItem(CFG.getBoolean(RootNode.MORE_FALLING_BLOCKS_DROP_ITEM, block.getWorld().getName()));
         // remove original block
         CompatHandler.logFallingBlockFall(block);
@@ -137,49 +152,41 @@ public class BlockModule extends MHCModule
             }
         }
 
-        if (damageEntities) //mark so we know the block is from us
-            EntityHelper.markForProcessing(plugin, fallingBlock);
-
-        EntityHelper.markAsOurs(plugin, fallingBlock);
-
         return fallingBlock.getUniqueId();
     }
 
 
     /**
-     * Mark this block for whatever reason
-     * <p/>
-     * remember to remove the mark as block metadata persists
-     *
-     * @param block to mark
-     */
-    public void mark(Block block)
-    {
-        block.setMetadata(MARK, new FixedMetadataValue(plugin, true));
-    }
-
-
-    /**
-     * Removes Metadata from the block
+     * Move a block straight down to where it would land as a FallingBlock, without spawning an entity
      *
-     * @param block to remove the metadata from
+     * @param block block to move
      */
-    public void removeMark(Block block)
+    private void relocate(Block block)
     {
-        block.removeMetadata(MARK, plugin);
-    }
-
+        Block target = block;
+        Block below = block.getRelative(BlockFace.DOWN);
+        while (below.getY() > 0 && (below.getType() == Material.AIR || below.isLiquid()))
+        {
+            target = below;
+            below = target.getRelative(BlockFace.DOWN);
+        }
+        if (target == block)
+            return;
 
-    /**
-     * Has this block been marked?
-     *
-     * @param block to check
-     *
-     * @return if it has been marked
-     */
-    public boolean isMarked(Block block)
-    {
-        return block.getMetadata(MARK).size() > 0;
+        final int typeId = block.getTypeId();
+        final byte data = block.getData();
+        CompatHandler.logFallingBlockFall(block);
+        block.setType(Material.AIR);
+        //Blocks like torches break a FallingBlock that lands on them
+        if (breaksFallingBlock(below.getType()) && below.getType() != Material.AIR)
+        {
+            if (CFG.getBoolean(RootNode.MORE_FALLING_BLOCKS_DROP_ITEM, block.getWorld().getName()))
+                target.getWorld().dropItemNaturally(target.getLocation(), new ItemStack(typeId, 1, (short) data));
+            return;
+        }
+        target.setTypeIdAndData(typeId, data, true);
+        CompatHandler.logFallingBlockLand(target.getState());
+        physicsCheck(below, 10, false, 1);
     }
 
 
@@ -250,40 +257,6 @@ public class BlockModule extends MHCModule
     }
 
 
-    /** Get all "touching" BlockFaces including top/bottom */
-    public BlockFace[] getTouchingFaces()
-    {
-        return new BlockFace[]{
-                BlockFace.WEST,
-                BlockFace.NORTH,
-                BlockFace.EAST,
-                BlockFace.SOUTH,
-                BlockFace.UP,
-                BlockFace.DOWN
-        };
-    }
-
-
-    /**
-     * All horizontal Blockfaces including diagonal onea
-     *
-     * @return Blockfaces[]
-     */
-    public static BlockFace[] getHorizontalAdjacentFaces()
-    {
-        return new BlockFace[]{
-                BlockFace.WEST,
-                BlockFace.NORTH_WEST,
-                BlockFace.NORTH,
-                BlockFace.NORTH_EAST,
-                BlockFace.EAST,
-                BlockFace.SOUTH_EAST,
-                BlockFace.SOUTH,
-                BlockFace.SOUTH_WEST
-        };
-    }
-
-
     /**
      * Get all the blocks in a specific area centered around the Location passed in
      *
@@ -325,27 +298,14 @@ public class BlockModule extends MHCModule
      */
     public boolean breaksFallingBlock(Material mat)
     {
-        return (mat.isTransparent() &&
-                mat != Material.PORTAL &&
-                mat != Material.ENDER_PORTAL) ||
-                mat == Material.WEB ||
-                mat == Material.DAYLIGHT_DETECTOR ||
-                mat == Material.TRAP_DOOR ||
-                mat == Material.SIGN_POST ||
-                mat == Material.WALL_SIGN ||
-                //Match all slabs besides double slab
-                slabPattern.matcher(mat.name()).matches();
+        return MaterialTraits.is(mat, MaterialTraits.Trait.BREAKS_FALLING_BLOCK);
     }
 
 
     /** Returns if Material is a plant that should be affected by the farming Rules */
     public boolean isPlant(Material material)
     {
-        return material.equals(Material.CROPS)
-                || material.equals(Material.POTATO)
-                || material.equals(Material.CARROT)
-                || material.equals(Material.MELON_STEM)
-                || material.equals(Material.PUMPKIN_STEM);
+        return MaterialTraits.is(material, MaterialTraits.Trait.PLANT);
     }
 
 
@@ -358,65 +318,35 @@ public class BlockModule extends MHCModule
      */
     public static boolean isHorseFood(Material material)
     {
-        return material.equals(Material.CARROT_ITEM)
-                || material.equals(Material.POTATO_ITEM)
-                || material.equals(Material.APPLE)
-                //|| material.equals(Material.HAY_BLOCK)
-                || material.equals(Material.WHEAT);
+        return MaterialTraits.is(material, MaterialTraits.Trait.HORSE_FOOD);
     }
 
 
     /** Is the given material a tool, e.g. doesn't stack */
     public static boolean isTool(Material material)
     {
-        return material.name().endsWith("AXE") //axe & pickaxe
-                || material.name().endsWith("SPADE")
-                || material.name().endsWith("SWORD")
-                || material.name().endsWith("HOE")
-                || material.name().endsWith("BUCKET") //water, milk, lava,..
-                || material.equals(Material.BOW)
-                || material.equals(Material.FISHING_ROD)
-                || material.equals(Material.WATCH)
-                || material.equals(Material.COMPASS)
-                || material.equals(Material.FLINT_AND_STEEL);
+        return MaterialTraits.is(material, MaterialTraits.Trait.TOOL);
     }
 
 
     /** is the given material armor */
     public boolean isArmor(Material material)
     {
-        return material.name().endsWith("HELMET")
-                || material.name().endsWith("CHESTPLATE")
-                || material.name().endsWith("LEGGINGS")
-                || material.name().endsWith("BOOTS");
+        return MaterialTraits.is(material, MaterialTraits.Trait.ARMOR);
     }
 
 
     /** Consider this block a natural block for spawning? */
     public boolean isNaturalSpawnMaterial(Material material)
     {
-        return material == Material.GRASS
-                || material == Material.DIRT
-                || material == Material.STONE
-                || material == Material.SAND
-                || material == Material.GRAVEL
-                || material == Material.MOSSY_COBBLESTONE
-                || material == Material.OBSIDIAN
-                || material == Material.COBBLESTONE
-                || material == Material.BEDROCK
-                || material == Material.AIR      //Ghast, Bat
-                || material == Material.WATER;  //Squid
+        return MaterialTraits.is(material, MaterialTraits.Trait.NATURAL_OVERWORLD_SPAWN);
     }
 
 
     /** Is this a natural block for netherspawning? */
     public boolean isNaturalNetherSpawn(Material material)
     {
-        return material == Material.NETHERRACK
-                || material == Material.NETHER_BRICK
-                || material == Material.SOUL_SAND
-                || material == Material.GRAVEL
-                || material == Material.AIR;
+        return MaterialTraits.is(material, MaterialTraits.Trait.NATURAL_NETHER_SPAWN);
     }
 
 
@@ -491,5 +421,10 @@ public class BlockModule extends MHCModule
 
     @Override
     public void closing()
-    {/*ignored*/}
+    {
+        if (physicsTaskId != -1)
+            plugin.getServer().getScheduler().cancelTask(physicsTaskId);
+        physicsTaskId = -1;
+        physicsTask = null;
+    }
 }
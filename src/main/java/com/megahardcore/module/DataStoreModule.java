@@ -25,15 +25,11 @@ package com.megahardcore.module;
 import com.megahardcore.MegaHardCore;
 import com.megahardcore.config.RootConfig;
 import com.megahardcore.service.MHCModule;
-import org.bukkit.Location;
-import org.bukkit.entity.Player;
 
-import java.util.AbstractMap.SimpleEntry;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.CopyOnWriteArrayList;
 
 /** Manages miscellaneous data. */
 public class DataStoreModule extends MHCModule
@@ -42,9 +38,6 @@ public class DataStoreModule extends MHCModule
     /** In-memory cache for player data */
     private final Map<String, PlayerData> playerNameToPlayerDataMap = new ConcurrentHashMap<>();
 
-    /** List of previous locations. */
-    private final List<SimpleEntry<Player, Location>> previousLocations = new CopyOnWriteArrayList<>();
-
     /** List of Players fighting the dragon */
     private final List<String> playersFightingDragon = new ArrayList<>();
 
@@ -87,7 +80,6 @@ public class DataStoreModule extends MHCModule
     public void closing()
     {
         playerNameToPlayerDataMap.clear();
-        previousLocations.clear();
         playersFightingDragon.clear();
     }
 
@@ -116,17 +108,6 @@ public class DataStoreModule extends MHCModule
     }
 
 
-    /**
-     * Get the list of previous locations of players.
-     *
-     * @return List of players to location entries.
-     */
-    public List<SimpleEntry<Player, Location>> getPreviousLocations()
-    {
-        return previousLocations;
-    }
-
-
     /**
      * Gets all Players fighting the Dragon
      *
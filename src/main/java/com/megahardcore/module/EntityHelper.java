@@ -22,6 +22,7 @@
 package com.megahardcore.module;
 
 
+import com.megahardcore.MegaHardCore;
 import com.megahardcore.compatibility.CompatHandler;
 import org.apache.commons.lang.Validate;
 import org.bukkit.Location;
@@ -30,29 +31,19 @@ import org.bukkit.block.Block;
 import org.bukkit.block.BlockFace;
 import org.bukkit.entity.*;
 import org.bukkit.inventory.ItemStack;
-import org.bukkit.metadata.FixedMetadataValue;
-import org.bukkit.metadata.MetadataValue;
-import org.bukkit.plugin.Plugin;
 import org.bukkit.projectiles.ProjectileSource;
 
-import java.util.List;
 import java.util.Random;
 
 /** Module that contains logic dealing with entities. */
 public class EntityHelper
 {
 
-    /** Getter for environmental damage for the specified entity */
-    private static final String IGNORE = "megahardcore.ignore.me";
-
-    /** Getter to set a flag to ignore a entity in further processing */
-    private static final String ENVIRONMENTAL_DAMAGE = "extrahard_environmentalDamage";
-
-    /** Process this Entity */
-    private static final String PROCESS_ENTITY = "megahardcore_process_entity";
-
-    /** Our Entity - created by us */
-    private static final String OURS = "megahardcore_our_entity";
+    /** Get the store which holds the state of our entities */
+    private static EntityStateStore states(MegaHardCore plugin)
+    {
+        return plugin.getModuleForClass(EntityStateStore.class);
+    }
 
 
     /**
@@ -60,9 +51,9 @@ public class EntityHelper
      *
      * @param entity - Entity to modify.
      */
-    public static void markLootLess(Plugin plugin, LivingEntity entity)
+    public static void markLootLess(MegaHardCore plugin, LivingEntity entity)
     {
-        entity.setMetadata(ENVIRONMENTAL_DAMAGE, new FixedMetadataValue(plugin, entity.getMaxHealth()));
+        states(plugin).setEnvironmentalDamage(entity, entity.getMaxHealth());
     }
 
 
@@ -72,13 +63,9 @@ public class EntityHelper
      * @param entity - Entity to check.
      * @param damage - Amount of damage.
      */
-    public static void addEnvironmentalDamage(Plugin plugin, LivingEntity entity, double damage)
+    public static void addEnvironmentalDamage(MegaHardCore plugin, LivingEntity entity, double damage)
     {
-        double currentTotalDamage = 0.0;
-        List<MetadataValue> meta = entity.getMetadata(ENVIRONMENTAL_DAMAGE);
-        if (meta.size() > 0)
-            currentTotalDamage = meta.get(0).asDouble();
-        entity.setMetadata(ENVIRONMENTAL_DAMAGE, new FixedMetadataValue(plugin, currentTotalDamage + damage));
+        states(plugin).addEnvironmentalDamage(entity, damage);
     }
 
 
@@ -89,12 +76,9 @@ public class EntityHelper
      *
      * @return True if the entity is lootable, else false.
      */
-    public static boolean isLootLess(LivingEntity entity)
+    public static boolean isLootLess(MegaHardCore plugin, LivingEntity entity)
     {
-        double currentTotalDamage = 0.0;
-        List<MetadataValue> meta = entity.getMetadata(ENVIRONMENTAL_DAMAGE);
-        if (meta.size() > 0)
-            currentTotalDamage = meta.get(0).asDouble();
+        final double currentTotalDamage = states(plugin).getEnvironmentalDamage(entity);
         // wither is exempt. he can't be farmed because creating him requires combining non-farmable components
         return !(entity instanceof Wither) && (currentTotalDamage > entity.getMaxHealth() / 2.0);
     }
@@ -122,57 +106,33 @@ public class EntityHelper
 
 
     /** Flag an entity to be ignored in further processing. E.g if an event could be called multiple times */
-    public static void flagIgnore(Plugin plugin, Entity entity)
+    public static void flagIgnore(MegaHardCore plugin, Entity entity)
     {
         if (entity != null)
-            entity.setMetadata(IGNORE, new FixedMetadataValue(plugin, true));
+            states(plugin).setFlag(entity, EntityStateStore.IGNORE);
     }
 
 
     /** Check if an entity has been flagged to be ignored */
-    public static boolean hasFlagIgnore(Entity entity)
-    {
-        return entity == null || !entity.hasMetadata(IGNORE);
-    }
-
-
-    /** Mark an Entity to be processed. E.g when only a small number of Entities should be processed */
-    public static void markForProcessing(Plugin plugin, Entity entity)
-    {
-        Validate.notNull(entity, "Entity can't be null");
-        {
-            entity.setMetadata(PROCESS_ENTITY, new FixedMetadataValue(plugin, true));
-        }
-    }
-
-
-    /** Check if an entity has been flagged to be processed */
-    public static boolean isMarkedForProcessing(Entity entity)
+    public static boolean hasFlagIgnore(MegaHardCore plugin, Entity entity)
     {
-        Validate.notNull(entity, "Entity can't be null");
-        List<MetadataValue> meta = entity.getMetadata(PROCESS_ENTITY);
-
-        return entity.hasMetadata(PROCESS_ENTITY) && meta != null;
+        return entity == null || !states(plugin).hasFlag(entity, EntityStateStore.IGNORE);
     }
 
 
     /** Mark an Entity to be processed. E.g when only a small number of Entities should be processed */
-    public static void markAsOurs(Plugin plugin, Entity entity)
+    public static void markAsOurs(MegaHardCore plugin, Entity entity)
     {
         Validate.notNull(entity, "Entity can't be null");
-        {
-            entity.setMetadata(OURS, new FixedMetadataValue(plugin, true));
-        }
+        states(plugin).setFlag(entity, EntityStateStore.OURS);
     }
 
 
     /** Check if an entity has been flagged to be processed */
-    public static boolean isMarkedAsOurs(Entity entity)
+    public static boolean isMarkedAsOurs(MegaHardCore plugin, Entity entity)
     {
         Validate.notNull(entity, "Entity can't be null");
-        List<MetadataValue> meta = entity.getMetadata(PROCESS_ENTITY);
-
-        return entity.hasMetadata(OURS) && meta != null;
+        return states(plugin).hasFlag(entity, EntityStateStore.OURS);
     }
 
 
@@ -292,27 +252,6 @@ public class EntityHelper
     }
 
 
-    /**
-     * Test if there is one ore more Players near a Location. This method should be used to check if the distance between players and spawned mobs is big enough.
-     *
-     * @param loc      location around which to check
-     * @param distance distance around the location to check for players
-     *
-     * @return false if no players found, true if there where one or more players
-     */
-    public static boolean arePlayersNearby(Location loc, double distance)
-    {
-        double squared = Math.pow(distance, 2.0);
-        List<Player> otherEntities = loc.getWorld().getPlayers();
-        for (Player player : otherEntities)
-        {
-            double playerDist = player.getLocation().distanceSquared(loc);
-            if (playerDist < squared)
-                return true;
-        }
-        return false;
-    }
-
     /**
      * Computes the EntityType of the given Projectile's shooter, so we can add damage or effect to impacts, nerf things, etc.
      * @param projectile Projectile object
@@ -0,0 +1,263 @@
+/*
+ * This file is part of
+ * MegaHardCore Server Plugin for Minecraft
+ *
+ * Copyright (C) 2012 Ryan Hamshire
+ * Copyright (C) 2013 Diemex
+ *
+ * MegaHardCore is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MegaHardCore is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero Public License
+ * along with MegaHardCore.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.megahardcore.module;
+
+
+import com.megahardcore.MegaHardCore;
+import com.megahardcore.service.ListenerModule;
+import com.megahardcore.service.LongObjectMap;
+import com.megahardcore.service.Profiler;
+import org.bukkit.Chunk;
+import org.bukkit.entity.Entity;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.entity.EntityDeathEvent;
+import org.bukkit.event.world.ChunkUnloadEvent;
+
+/**
+ * Stores our state of entities (environmental damage, flags, respawn counts...) in compact records.
+ * <p/>
+ * Replaces Bukkit metadata which creates a new value and a string key for every access. Records are keyed by the
+ * entity id and removed when the entity dies or its chunk unloads. Entities which vanish otherwise (despawn, remove())
+ * are removed by {@link #removeInvalid()} every minute. Only access from the main thread.
+ * <p/>
+ * The int id is used instead of the UUID so lookups work on a primitive map without hashing a UUID. Ids are handed out
+ * by a counter which only goes up while the server runs, so an id is never reused for another entity. Entities which are
+ * loaded again with their chunk get a new id, their records have already been dropped on the chunk unload. A /mhc reload
+ * keeps the entities and with them their ids, that's why the records are kept over a reload.
+ *
+ * @author Diemex
+ */
+public final class EntityStateStore extends ListenerModule
+{
+    /** Flag an entity to be ignored in further processing */
+    public static final int IGNORE = 1;
+
+    /** Our Entity - created by us */
+    public static final int OURS = 1 << 1;
+
+    /** Ticks between two sweeps for invalid entities */
+    private static final long SWEEP_INTERVAL = 20L * 60;
+
+    private final LongObjectMap<EntityState> states = new LongObjectMap<>(256);
+
+    private int sweepTaskId = -1;
+
+
+    /** Constructor */
+    public EntityStateStore(MegaHardCore plugin)
+    {
+        super(plugin);
+    }
+
+
+    @Override
+    public void starting()
+    {
+        super.starting();
+        sweepTaskId = plugin.getServer().getScheduler().scheduleSyncRepeatingTask(plugin, Profiler.wrap(plugin, "EntityStateSweep", new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                removeInvalid();
+            }
+        }), SWEEP_INTERVAL, SWEEP_INTERVAL);
+    }
+
+
+    /** The states are kept over a reload, the entities are still around */
+    @Override
+    public void closing()
+    {
+        super.closing();
+        plugin.getServer().getScheduler().cancelTask(sweepTaskId);
+        sweepTaskId = -1;
+    }
+
+
+    /**
+     * Get the state of an entity
+     *
+     * @param entity entity to look up
+     *
+     * @return the state or null if nothing has been stored for this entity
+     */
+    private EntityState get(Entity entity)
+    {
+        return states.get(entity.getEntityId());
+    }
+
+
+    /**
+     * Get the state of an entity, creates an empty state if there is none
+     *
+     * @param entity entity to look up
+     *
+     * @return state of the entity
+     */
+    private EntityState getOrCreate(Entity entity)
+    {
+        EntityState state = states.get(entity.getEntityId());
+        if (state == null)
+        {
+            state = new EntityState(entity);
+            states.put(entity.getEntityId(), state);
+        }
+        return state;
+    }
+
+
+    public boolean hasFlag(Entity entity, int flag)
+    {
+        EntityState state = get(entity);
+        return state != null && (state.flags & flag) != 0;
+    }
+
+
+    public void setFlag(Entity entity, int flag)
+    {
+        getOrCreate(entity).flags |= flag;
+    }
+
+
+    public double getEnvironmentalDamage(Entity entity)
+    {
+        EntityState state = get(entity);
+        return state != null ? state.environmentalDamage : 0.0;
+    }
+
+
+    public void setEnvironmentalDamage(Entity entity, double damage)
+    {
+        getOrCreate(entity).environmentalDamage = damage;
+    }
+
+
+    public void addEnvironmentalDamage(Entity entity, double damage)
+    {
+        getOrCreate(entity).environmentalDamage += damage;
+    }
+
+
+    public int getZombieRespawnCount(Entity entity)
+    {
+        EntityState state = get(entity);
+        return state != null ? state.zombieRespawnCount : 0;
+    }
+
+
+    public void setZombieRespawnCount(Entity entity, int count)
+    {
+        getOrCreate(entity).zombieRespawnCount = count;
+    }
+
+
+    public int getBlazeSplitCount(Entity entity)
+    {
+        EntityState state = get(entity);
+        return state != null ? state.blazeSplitCount : 0;
+    }
+
+
+    public void setBlazeSplitCount(Entity entity, int count)
+    {
+        getOrCreate(entity).blazeSplitCount = count;
+    }
+
+
+    /**
+     * Forget everything about this entity
+     *
+     * @param entity entity to remove
+     */
+    public void remove(Entity entity)
+    {
+        states.remove(entity.getEntityId());
+    }
+
+
+    /**
+     * Remove the states of entities which are no longer valid
+     *
+     * @return amount of removed states
+     */
+    public int removeInvalid()
+    {
+        return states.removeIf((id, state) -> !state.entity.isValid());
+    }
+
+
+    /** @return amount of entities with a state */
+    public int size()
+    {
+        return states.size();
+    }
+
+
+    public void clear()
+    {
+        states.clear();
+    }
+
+
+    /** Remove the state when the entity dies, after all other handlers had a chance to read it */
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onEntityDeath(EntityDeathEvent event)
+    {
+        remove(event.getEntity());
+    }
+
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onChunkUnload(ChunkUnloadEvent event)
+    {
+        if (states.isEmpty())
+            return;
+        Chunk chunk = event.getChunk();
+        for (Entity entity : chunk.getEntities())
+            states.remove(entity.getEntityId());
+    }
+
+
+    /**
+     * State of a single entity
+     */
+    private static final class EntityState
+    {
+        private final Entity entity;
+
+        private double environmentalDamage;
+
+        private int flags;
+
+        private int zombieRespawnCount;
+
+        private int blazeSplitCount;
+
+
+        private EntityState(Entity entity)
+        {
+            this.entity = entity;
+        }
+    }
+}
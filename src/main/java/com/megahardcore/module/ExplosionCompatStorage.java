@@ -2,16 +2,46 @@ package com.megahardcore.module;
 
 
 import com.megahardcore.MegaHardCore;
+import com.megahardcore.service.LongObjectMap;
 import com.megahardcore.service.MHCModule;
+import com.megahardcore.service.PackedLocation;
+import com.megahardcore.service.Profiler;
 import org.apache.commons.lang.Validate;
 import org.bukkit.Location;
 import org.bukkit.entity.Entity;
 
-/** @author Diemex */
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Remembers which entity caused our custom explosions until the EntityExplodeEvent for it comes around.
+ * <p/>
+ * Explosions are stored per world by the packed block coordinates of their center. Every location has a FIFO of causes,
+ * so multiple explosions at the same spot in the same tick keep their attribution. Merged explosions keep the entities of
+ * all explosions they have been merged from. Entries that never got picked up (f.e.
+ * because the explosion didn't fire an event) expire after a few ticks.
+ *
+ * @author Diemex
+ */
 public class ExplosionCompatStorage extends MHCModule
 {
-    private Entity explosionCause;
-    private Location centerLocation;
+    /** Ticks an explosion is remembered */
+    private static final long LIFETIME = 5;
+
+    /** Pending explosions per world by packed coordinates */
+    private final Map<UUID, LongObjectMap<ArrayDeque<PendingExplosion>>> pending = new HashMap<>();
+
+    private int size = 0;
+
+    /** Ticks since this module has been started */
+    private long tick = 0;
+
+    private int tickTaskId = -1;
 
 
     /**
@@ -35,51 +65,174 @@ public class ExplosionCompatStorage extends MHCModule
      * @param cause          the entity responsible for this explosion
      */
     public void queueExplosion(Location centerLocation, Entity cause)
+    {
+        queueExplosion(centerLocation, cause, null);
+    }
+
+
+    /**
+     * Queue an explosion which several explosions have been merged into
+     *
+     * @param centerLocation the location where the explosion occurred
+     * @param cause          the entity responsible for this explosion
+     * @param merged         entities of the explosions merged into this one, may be null
+     */
+    public void queueExplosion(Location centerLocation, Entity cause, List<Entity> merged)
     {
         Validate.notNull(centerLocation, "No location provided");
         Validate.notNull(cause, "No valid explosion cause");
 
-        this.centerLocation = centerLocation;
-        this.explosionCause = cause;
+        final UUID world = centerLocation.getWorld().getUID();
+        LongObjectMap<ArrayDeque<PendingExplosion>> worldMap = pending.get(world);
+        if (worldMap == null)
+        {
+            worldMap = new LongObjectMap<>();
+            pending.put(world, worldMap);
+        }
+        final long key = PackedLocation.pack(centerLocation.getBlockX(), centerLocation.getBlockY(), centerLocation.getBlockZ());
+        ArrayDeque<PendingExplosion> queue = worldMap.get(key);
+        if (queue == null)
+        {
+            queue = new ArrayDeque<>(2);
+            worldMap.put(key, queue);
+        }
+        queue.add(new PendingExplosion(cause, merged, tick + LIFETIME));
+        size++;
     }
 
 
-    public Location getCenterLocation()
+    /**
+     * Take the oldest explosion queued at the block of this location
+     *
+     * @param location location of the explosion
+     *
+     * @return entity responsible for the explosion or null if none has been queued here
+     */
+    public Entity pollExplosionCause(Location location)
     {
-        return centerLocation;
+        List<Entity> causes = pollExplosionCauses(location);
+        return causes.isEmpty() ? null : causes.get(0);
     }
 
 
-    public Entity getExplosionCause()
+    /**
+     * Take the oldest explosion queued at the block of this location including the entities of merged explosions
+     *
+     * @param location location of the explosion
+     *
+     * @return entities responsible for the explosion, the main cause first. Empty if none has been queued here
+     */
+    public List<Entity> pollExplosionCauses(Location location)
     {
-        return explosionCause;
+        if (size == 0)
+            return Collections.emptyList();
+        LongObjectMap<ArrayDeque<PendingExplosion>> worldMap = pending.get(location.getWorld().getUID());
+        if (worldMap == null)
+            return Collections.emptyList();
+        final long key = PackedLocation.pack(location.getBlockX(), location.getBlockY(), location.getBlockZ());
+        ArrayDeque<PendingExplosion> queue = worldMap.get(key);
+        if (queue == null)
+            return Collections.emptyList();
+        PendingExplosion explosion = queue.poll();
+        size--;
+        if (queue.isEmpty())
+            worldMap.remove(key);
+        if (explosion.merged == null || explosion.merged.isEmpty())
+            return Collections.singletonList(explosion.cause);
+        List<Entity> causes = new ArrayList<>(explosion.merged.size() + 1);
+        causes.add(explosion.cause);
+        causes.addAll(explosion.merged);
+        return causes;
     }
 
 
-    /** Clear the current explosion from the queue. */
+    /** Clear all queued explosions. */
     public void clearQueue()
     {
-        this.explosionCause = null;
-        this.centerLocation = null;
+        pending.clear();
+        size = 0;
     }
 
 
     public boolean queueEmpty()
     {
-        return explosionCause == null && centerLocation == null;
+        return size == 0;
+    }
+
+
+    /**
+     * Advance by one tick and remove explosions which haven't been picked up in time, runs every tick
+     */
+    public void tick()
+    {
+        tick++;
+        if (size > 0)
+            removeExpired();
+    }
+
+
+    /**
+     * Remove explosions which haven't been picked up in time
+     */
+    private void removeExpired()
+    {
+        for (LongObjectMap<ArrayDeque<PendingExplosion>> worldMap : pending.values())
+        {
+            worldMap.removeIf((key, queue) -> {
+                while (!queue.isEmpty() && queue.peek().expiresAt <= tick)
+                {
+                    queue.poll();
+                    size--;
+                }
+                return queue.isEmpty();
+            });
+        }
+        pending.values().removeIf(LongObjectMap::isEmpty);
     }
 
 
     @Override
     public void starting()
     {
+        tickTaskId = plugin.getServer().getScheduler().scheduleSyncRepeatingTask(plugin, Profiler.wrap(plugin, "ExplosionCompatExpiry", new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                tick();
+            }
+        }), 1L, 1L);
     }
 
 
     @Override
     public void closing()
     {
-        explosionCause = null;
-        centerLocation = null;
+        if (tickTaskId != -1)
+            plugin.getServer().getScheduler().cancelTask(tickTaskId);
+        tickTaskId = -1;
+        clearQueue();
+    }
+
+
+    /**
+     * An explosion waiting for its event
+     */
+    private static class PendingExplosion
+    {
+        private final Entity cause;
+
+        /** Entities of merged explosions, may be null */
+        private final List<Entity> merged;
+
+        private final long expiresAt;
+
+
+        PendingExplosion(Entity cause, List<Entity> merged, long expiresAt)
+        {
+            this.cause = cause;
+            this.merged = merged;
+            this.expiresAt = expiresAt;
+        }
     }
 }
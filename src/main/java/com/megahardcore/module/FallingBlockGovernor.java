@@ -0,0 +1,333 @@
+/*
+ * This file is part of
+ * MegaHardCore Server Plugin for Minecraft
+ *
+ * Copyright (C) 2012 Ryan Hamshire
+ * Copyright (C) 2013 Diemex
+ *
+ * MegaHardCore is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MegaHardCore is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero Public License
+ * along with MegaHardCore.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.megahardcore.module;
+
+
+import com.megahardcore.MegaHardCore;
+import com.megahardcore.config.RootConfig;
+import com.megahardcore.config.RootNode;
+import com.megahardcore.service.ListenerModule;
+import com.megahardcore.service.LongObjectMap;
+import com.megahardcore.service.Profiler;
+import com.megahardcore.service.config.ConfigSnapshot;
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.entity.Entity;
+import org.bukkit.entity.FallingBlock;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.entity.EntityChangeBlockEvent;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Keeps track of all FallingBlocks spawned by us and limits how many of them can exist per chunk and per world.
+ * <p/>
+ * Tracked blocks are kept in a set by entity id, together with what we need to know when they land (should they damage
+ * entities, where did the explosion that threw them happen). When a limit is reached {@link #spawn} refuses to spawn
+ * more and the caller has to degrade, f.e. by moving the block to where it would have landed. Blocks are untracked when
+ * they land, blocks which vanish otherwise are swept out every second.
+ *
+ * @author Diemex
+ */
+public class FallingBlockGovernor extends ListenerModule
+{
+    /** How often vanished blocks are removed in ticks */
+    private static final long SWEEP_INTERVAL = 20L;
+
+    private RootConfig CFG;
+
+    /** Our falling blocks by entity id */
+    private final LongObjectMap<TrackedBlock> tracked = new LongObjectMap<>(256);
+
+    /** Live blocks per world and per chunk */
+    private final Map<UUID, WorldCount> counts = new HashMap<>();
+
+    private int sweepTaskId = -1;
+
+    /** Metrics */
+    private long spawned, denied, relocated;
+
+
+    public FallingBlockGovernor (MegaHardCore plugin)
+    {
+        super(plugin);
+    }
+
+
+    /**
+     * For Testing Purposes / Dependency Injection Constructor
+     */
+    public FallingBlockGovernor(MegaHardCore plugin, RootConfig CFG)
+    {
+        super(plugin);
+        this.CFG = CFG;
+    }
+
+
+    @Override
+    public void starting()
+    {
+        super.starting();
+        CFG = plugin.getModuleForClass(RootConfig.class);
+        sweepTaskId = plugin.getServer().getScheduler().scheduleSyncRepeatingTask(plugin, Profiler.wrap(plugin, "FallingBlockSweep", new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                if (!tracked.isEmpty())
+                    removeInvalid();
+            }
+        }), SWEEP_INTERVAL, SWEEP_INTERVAL);
+    }
+
+
+    @Override
+    public void closing()
+    {
+        super.closing();
+        if (sweepTaskId != -1)
+            plugin.getServer().getScheduler().cancelTask(sweepTaskId);
+        sweepTaskId = -1;
+        tracked.clear();
+        counts.clear();
+    }
+
+
+    /**
+     * Spawn a FallingBlock if the limits of the chunk and world allow it
+     *
+     * @param location       where to spawn the block
+     * @param typeId         id of the block
+     * @param data           data value of the block
+     * @param damageEntities should the block damage entities it lands on
+     * @param origin         center of the explosion that threw this block, null if not thrown by an explosion
+     *
+     * @return the spawned block or null if a limit has been reached
+     */
+    public FallingBlock spawn(Location location, int typeId, byte data, boolean damageEntities, Location origin)
+    {
+        final World world = location.getWorld();
+        final ConfigSnapshot cfg = CFG.getSnapshot(world);
+        final int maxPerChunk = cfg.getInt(RootNode.MORE_FALLING_BLOCKS_MAX_PER_CHUNK);
+        final int maxPerWorld = cfg.getInt(RootNode.MORE_FALLING_BLOCKS_MAX_PER_WORLD);
+
+        WorldCount count = counts.get(world.getUID());
+        if (count == null)
+        {
+            count = new WorldCount();
+            counts.put(world.getUID(), count);
+        }
+        final long chunk = chunkKey(location.getBlockX() >> 4, location.getBlockZ() >> 4);
+        int[] chunkCount = count.chunks.get(chunk);
+        if ((maxPerWorld > 0 && count.total >= maxPerWorld) || (maxPerChunk > 0 && chunkCount != null && chunkCount[0] >= maxPerChunk))
+        {
+            denied++;
+            return null;
+        }
+
+        FallingBlock fallingBlock = world.spawnFallingBlock(location, typeId, data);
+        if (chunkCount == null)
+        {
+            chunkCount = new int[1];
+            count.chunks.put(chunk, chunkCount);
+        }
+        chunkCount[0]++;
+        count.total++;
+        tracked.put(fallingBlock.getEntityId(), new TrackedBlock(fallingBlock, world.getUID(), chunk, damageEntities, origin));
+        spawned++;
+        return fallingBlock;
+    }
+
+
+    /**
+     * Count a block that has been moved to its landing position instead of falling
+     */
+    public void countRelocated()
+    {
+        relocated++;
+    }
+
+
+    /**
+     * Has this entity been spawned by us
+     */
+    public boolean isTracked(Entity entity)
+    {
+        return !tracked.isEmpty() && tracked.containsKey(entity.getEntityId());
+    }
+
+
+    /**
+     * Should this falling block damage the entities it lands on
+     */
+    public boolean isDamagingEntities(Entity entity)
+    {
+        TrackedBlock block = tracked.isEmpty() ? null : tracked.get(entity.getEntityId());
+        return block != null && block.damageEntities;
+    }
+
+
+    /**
+     * Get the center of the explosion which threw this block
+     *
+     * @return location or null if not thrown by an explosion
+     */
+    public Location getExplosionOrigin(Entity entity)
+    {
+        TrackedBlock block = tracked.isEmpty() ? null : tracked.get(entity.getEntityId());
+        return block != null ? block.origin : null;
+    }
+
+
+    /**
+     * Stop tracking a block
+     */
+    private void untrack(long entityId)
+    {
+        TrackedBlock block = tracked.remove(entityId);
+        if (block != null)
+            decrement(block);
+    }
+
+
+    private void decrement(TrackedBlock block)
+    {
+        WorldCount count = counts.get(block.world);
+        if (count == null)
+            return;
+        count.total--;
+        int[] chunkCount = count.chunks.get(block.chunk);
+        if (chunkCount != null && --chunkCount[0] <= 0)
+            count.chunks.remove(block.chunk);
+        if (count.total <= 0)
+            counts.remove(block.world);
+    }
+
+
+    /**
+     * Remove blocks which have vanished without landing (broken, unloaded, removed), runs every second
+     */
+    public void removeInvalid()
+    {
+        tracked.removeIf((id, block) -> {
+            if (block.entity.isValid())
+                return false;
+            decrement(block);
+            return true;
+        });
+    }
+
+
+    /**
+     * Landed blocks are no longer ours to count. Runs after everyone else has looked at the block
+     */
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onBlockLand(EntityChangeBlockEvent event)
+    {
+        if (event.getEntity() instanceof FallingBlock && !tracked.isEmpty())
+            untrack(event.getEntity().getEntityId());
+    }
+
+
+    private static long chunkKey(int chunkX, int chunkZ)
+    {
+        return (long) chunkX << 32 | chunkZ & 0xFFFFFFFFL;
+    }
+
+
+    /**
+     * Amount of our FallingBlocks that currently exist
+     */
+    public int getLive()
+    {
+        return tracked.size();
+    }
+
+
+    /**
+     * Amount of FallingBlocks spawned since the start
+     */
+    public long getSpawned()
+    {
+        return spawned;
+    }
+
+
+    /**
+     * How often a limit prevented spawning a FallingBlock
+     */
+    public long getDenied()
+    {
+        return denied;
+    }
+
+
+    /**
+     * How many blocks have been moved to their landing position instead
+     */
+    public long getRelocated()
+    {
+        return relocated;
+    }
+
+
+    /**
+     * A FallingBlock spawned by us
+     */
+    private static class TrackedBlock
+    {
+        private final FallingBlock entity;
+
+        private final UUID world;
+
+        /** Chunk the block has been counted in */
+        private final long chunk;
+
+        private final boolean damageEntities;
+
+        private final Location origin;
+
+
+        TrackedBlock(FallingBlock entity, UUID world, long chunk, boolean damageEntities, Location origin)
+        {
+            this.entity = entity;
+            this.world = world;
+            this.chunk = chunk;
+            this.damageEntities = damageEntities;
+            this.origin = origin;
+        }
+    }
+
+
+    /**
+     * Live blocks of one world
+     */
+    private static class WorldCount
+    {
+        private int total = 0;
+
+        private final LongObjectMap<int[]> chunks = new LongObjectMap<>();
+    }
+}
@@ -0,0 +1,385 @@
+/*
+ * This file is part of
+ * MegaHardCore Server Plugin for Minecraft
+ *
+ * Copyright (C) 2012 Ryan Hamshire
+ * Copyright (C) 2013 Diemex
+ *
+ * MegaHardCore is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MegaHardCore is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero Public License
+ * along with MegaHardCore.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.megahardcore.module;
+
+
+import com.megahardcore.MegaHardCore;
+import com.megahardcore.service.ListenerModule;
+import com.megahardcore.service.Profiler;
+import org.bukkit.Material;
+import org.bukkit.entity.HumanEntity;
+import org.bukkit.entity.Player;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.block.Action;
+import org.bukkit.event.block.BlockPlaceEvent;
+import org.bukkit.event.entity.PlayerDeathEvent;
+import org.bukkit.event.inventory.InventoryClickEvent;
+import org.bukkit.event.inventory.InventoryDragEvent;
+import org.bukkit.event.inventory.InventoryType;
+import org.bukkit.event.player.PlayerDropItemEvent;
+import org.bukkit.event.player.PlayerInteractEvent;
+import org.bukkit.event.player.PlayerItemBreakEvent;
+import org.bukkit.event.player.PlayerItemConsumeEvent;
+import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.event.player.PlayerPickupItemEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
+import org.bukkit.event.player.PlayerRespawnEvent;
+import org.bukkit.inventory.ItemStack;
+import org.bukkit.inventory.PlayerInventory;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Keeps a running total of the inventory weight of every player.
+ * <p/>
+ * Events only mark the slots they might have changed, the next tick the marked slots are compared with what has been
+ * counted before and the totals are adjusted by the difference. What an item weighs comes from a table indexed by the
+ * Material ordinal. Every now and then all slots are compared to catch changes we didn't get an event for (other
+ * plugins, dispensers...).
+ *
+ * @author Diemex
+ */
+public class InventoryWeightModule extends ListenerModule
+{
+    /** Slots 0-35 are the contents, 36-39 the armor */
+    private static final int CONTENT_SLOTS = 36, SLOTS = 40;
+
+    private static final long ALL_CONTENTS = (1L << CONTENT_SLOTS) - 1, ALL_SLOTS = (1L << SLOTS) - 1;
+
+    /** A full stack is worth this many units, so that 1/16 and 1/64 stacks are whole numbers */
+    private static final int STACK_UNITS = 64;
+
+    /** How often all slots of all players are compared, in ticks */
+    private static final long RECONCILE_INTERVAL = 20L * 30;
+
+    /** Units a single item of this Material is worth */
+    private static final int[] UNITS_PER_ITEM;
+
+    static
+    {
+        Material[] materials = Material.values();
+        UNITS_PER_ITEM = new int[materials.length];
+        for (Material material : materials)
+        {
+            UNITS_PER_ITEM[material.ordinal()] = STACK_UNITS / Math.max(1, material.getMaxStackSize());
+        }
+    }
+
+    private final Map<UUID, Weight> weights = new HashMap<>();
+
+    /** Players with changed slots */
+    private final Map<UUID, Player> pending = new LinkedHashMap<>();
+
+    private int updateTaskId = -1, reconcileTaskId = -1;
+
+
+    public InventoryWeightModule (MegaHardCore plugin)
+    {
+        super(plugin);
+    }
+
+
+    @Override
+    public void starting()
+    {
+        super.starting();
+        for (Player player : plugin.getServer().getOnlinePlayers())
+            markDirty(player, ALL_SLOTS);
+        updateTaskId = plugin.getServer().getScheduler().scheduleSyncRepeatingTask(plugin, Profiler.wrap(plugin, "InventoryWeight", new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                if (!pending.isEmpty())
+                    updatePending();
+            }
+        }), 1L, 1L);
+        reconcileTaskId = plugin.getServer().getScheduler().scheduleSyncRepeatingTask(plugin, Profiler.wrap(plugin, "InventoryWeightReconcile", new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                for (Player player : plugin.getServer().getOnlinePlayers())
+                    markDirty(player, ALL_SLOTS);
+            }
+        }), RECONCILE_INTERVAL, RECONCILE_INTERVAL);
+    }
+
+
+    @Override
+    public void closing()
+    {
+        super.closing();
+        if (updateTaskId != -1)
+            plugin.getServer().getScheduler().cancelTask(updateTaskId);
+        if (reconcileTaskId != -1)
+            plugin.getServer().getScheduler().cancelTask(reconcileTaskId);
+        updateTaskId = reconcileTaskId = -1;
+        weights.clear();
+        pending.clear();
+    }
+
+
+    /**
+     * Get the weight of the inventory, same as PlayerModule.inventoryWeight but from the running totals
+     *
+     * @param armorPoints     Points per piece of worn armor
+     * @param inventoryPoints Points per full stack of one item
+     * @param toolPoints      Points per tool (which doesn't stack)
+     */
+    public float getWeight(Player player, float armorPoints, float inventoryPoints, float toolPoints)
+    {
+        Weight weight = weights.get(player.getUniqueId());
+        if (weight == null) //not counted yet
+        {
+            weight = new Weight();
+            weights.put(player.getUniqueId(), weight);
+            weight.dirty = ALL_SLOTS;
+            update(player, weight);
+        }
+        return weight.armor * armorPoints + weight.tools * toolPoints + inventoryPoints * weight.units / STACK_UNITS;
+    }
+
+
+    /**
+     * Mark slots of the player's inventory to be compared next tick
+     *
+     * @param slots bitmask of the slots
+     */
+    private void markDirty(Player player, long slots)
+    {
+        Weight weight = weights.get(player.getUniqueId());
+        if (weight == null)
+        {
+            weight = new Weight();
+            weights.put(player.getUniqueId(), weight);
+            slots = ALL_SLOTS;
+        }
+        weight.dirty |= slots;
+        pending.put(player.getUniqueId(), player);
+    }
+
+
+    private void markSlot(Player player, int slot)
+    {
+        if (slot >= 0 && slot < SLOTS)
+            markDirty(player, 1L << slot);
+        else
+            markDirty(player, ALL_SLOTS);
+    }
+
+
+    /**
+     * Compare the marked slots of all players, runs every tick
+     */
+    public void updatePending()
+    {
+        for (Player player : pending.values())
+        {
+            Weight weight = weights.get(player.getUniqueId());
+            if (player.isOnline() && weight != null)
+                update(player, weight);
+        }
+        pending.clear();
+    }
+
+
+    /**
+     * Compare the dirty slots and adjust the totals by the difference
+     */
+    private static void update(Player player, Weight weight)
+    {
+        final PlayerInventory inventory = player.getInventory();
+        long dirty = weight.dirty;
+        weight.dirty = 0;
+        while (dirty != 0)
+        {
+            final int slot = Long.numberOfTrailingZeros(dirty);
+            dirty &= dirty - 1;
+
+            final ItemStack stack = inventory.getItem(slot);
+            final boolean empty = stack == null || stack.getType() == Material.AIR;
+            int units = 0, tools = 0, armor = 0;
+            if (!empty)
+            {
+                if (slot >= CONTENT_SLOTS)
+                    armor = 1;
+                else if (MaterialTraits.is(stack.getType(), MaterialTraits.Trait.TOOL))
+                    tools = 1;
+                else
+                    units = UNITS_PER_ITEM[stack.getType().ordinal()] * stack.getAmount();
+            }
+            weight.units += units - weight.slotUnits[slot];
+            weight.tools += tools - weight.slotTools[slot];
+            weight.armor += armor - weight.slotArmor[slot];
+            weight.slotUnits[slot] = units;
+            weight.slotTools[slot] = (byte) tools;
+            weight.slotArmor[slot] = (byte) armor;
+        }
+    }
+
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onInventoryClick(InventoryClickEvent event)
+    {
+        HumanEntity human = event.getWhoClicked();
+        if (!(human instanceof Player))
+            return;
+        Player player = (Player) human;
+        switch (event.getAction())
+        {
+            case NOTHING:
+                return;
+            case PICKUP_ALL:
+            case PICKUP_SOME:
+            case PICKUP_HALF:
+            case PICKUP_ONE:
+            case PLACE_ALL:
+            case PLACE_SOME:
+            case PLACE_ONE:
+            case SWAP_WITH_CURSOR:
+            case DROP_ALL_SLOT:
+            case DROP_ONE_SLOT:
+            case CLONE_STACK:
+            case DROP_ALL_CURSOR:
+            case DROP_ONE_CURSOR:
+                //Only the clicked slot and the cursor change, the cursor doesn't count
+                if (event.getClickedInventory() != null && event.getClickedInventory().getType() == InventoryType.PLAYER)
+                    markSlot(player, event.getSlot());
+                return;
+            default: //shift clicks, number keys, collecting to the cursor... can touch any slot
+                markDirty(player, ALL_SLOTS);
+        }
+    }
+
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onInventoryDrag(InventoryDragEvent event)
+    {
+        if (event.getWhoClicked() instanceof Player)
+            markDirty((Player) event.getWhoClicked(), ALL_SLOTS);
+    }
+
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onPlayerPickupItem(PlayerPickupItemEvent event)
+    {
+        //Items can be merged into any stack
+        markDirty(event.getPlayer(), ALL_CONTENTS);
+    }
+
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onPlayerDropItem(PlayerDropItemEvent event)
+    {
+        markSlot(event.getPlayer(), event.getPlayer().getInventory().getHeldItemSlot());
+    }
+
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onBlockPlace(BlockPlaceEvent event)
+    {
+        markSlot(event.getPlayer(), event.getPlayer().getInventory().getHeldItemSlot());
+    }
+
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onPlayerItemConsume(PlayerItemConsumeEvent event)
+    {
+        markSlot(event.getPlayer(), event.getPlayer().getInventory().getHeldItemSlot());
+    }
+
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerItemBreak(PlayerItemBreakEvent event)
+    {
+        //Could also be a piece of armor
+        markDirty(event.getPlayer(), ALL_SLOTS);
+    }
+
+
+    /** Armor can be put on by right clicking */
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerInteract(PlayerInteractEvent event)
+    {
+        if (event.hasItem() && (event.getAction() == Action.RIGHT_CLICK_AIR || event.getAction() == Action.RIGHT_CLICK_BLOCK))
+            markDirty(event.getPlayer(), 1L << event.getPlayer().getInventory().getHeldItemSlot() | ALL_SLOTS & ~ALL_CONTENTS);
+    }
+
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerDeath(PlayerDeathEvent event)
+    {
+        markDirty(event.getEntity(), ALL_SLOTS);
+    }
+
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerRespawn(PlayerRespawnEvent event)
+    {
+        markDirty(event.getPlayer(), ALL_SLOTS);
+    }
+
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerJoin(PlayerJoinEvent event)
+    {
+        markDirty(event.getPlayer(), ALL_SLOTS);
+    }
+
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerQuit(PlayerQuitEvent event)
+    {
+        weights.remove(event.getPlayer().getUniqueId());
+        pending.remove(event.getPlayer().getUniqueId());
+    }
+
+
+    /**
+     * Running totals and what each slot has contributed to them
+     */
+    private static class Weight
+    {
+        /** Pieces of armor worn */
+        private int armor;
+
+        /** Amount of tools */
+        private int tools;
+
+        /** Weight of all other items, {@link #STACK_UNITS} per full stack */
+        private int units;
+
+        /** Slots which need to be compared again */
+        private long dirty;
+
+        private final int[] slotUnits = new int[SLOTS];
+
+        private final byte[] slotTools = new byte[SLOTS];
+
+        private final byte[] slotArmor = new byte[SLOTS];
+    }
+}
@@ -0,0 +1,242 @@
+/*
+ * This file is part of
+ * MegaHardCore Server Plugin for Minecraft
+ *
+ * Copyright (C) 2012 Ryan Hamshire
+ * Copyright (C) 2013 Diemex
+ *
+ * MegaHardCore is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MegaHardCore is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero Public License
+ * along with MegaHardCore.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.megahardcore.module;
+
+
+import com.megahardcore.config.RootNode;
+import com.megahardcore.service.config.MultiWorldConfig;
+import org.bukkit.Material;
+
+import java.util.List;
+import java.util.logging.Logger;
+
+/**
+ * Classification of Materials, computed once and looked up by ordinal.
+ * <p/>
+ * Every Material has a bitmask of its {@link Trait}s. The defaults are built when the class is loaded, the lists in the
+ * "Material Traits" section of the main config can add or remove Materials on top of them.
+ *
+ * @author Diemex
+ */
+public final class MaterialTraits
+{
+    /**
+     * Traits a Material can have
+     */
+    public enum Trait
+    {
+        /** Doesn't stack, counts per item for the inventory weight */
+        TOOL(RootNode.MATERIAL_TRAITS_TOOL),
+        /** Can be worn */
+        ARMOR(RootNode.MATERIAL_TRAITS_ARMOR),
+        /** A FallingBlock landing on this breaks and drops */
+        BREAKS_FALLING_BLOCK(RootNode.MATERIAL_TRAITS_BREAKS_FALLING_BLOCK),
+        /** Natural block for monsters to spawn on */
+        NATURAL_OVERWORLD_SPAWN(RootNode.MATERIAL_TRAITS_NATURAL_OVERWORLD_SPAWN),
+        /** Natural block for monsters to spawn on in the nether */
+        NATURAL_NETHER_SPAWN(RootNode.MATERIAL_TRAITS_NATURAL_NETHER_SPAWN),
+        /** Affected by the farming rules */
+        PLANT(RootNode.MATERIAL_TRAITS_PLANT),
+        /** Horses eat this */
+        HORSE_FOOD(RootNode.MATERIAL_TRAITS_HORSE_FOOD);
+
+        private final RootNode node;
+
+        private final int bit;
+
+
+        Trait(RootNode node)
+        {
+            this.node = node;
+            this.bit = 1 << ordinal();
+        }
+    }
+
+    /**
+     * Traits by Material ordinal. The array is replaced as a whole on reload so other threads never see a half built
+     * table
+     */
+    private static volatile int[] traits = defaults();
+
+
+    private MaterialTraits()
+    {
+    }
+
+
+    /**
+     * Does the Material have the given Trait
+     *
+     * @param material Material to check
+     * @param trait    Trait to look for
+     *
+     * @return true if the Material has the trait
+     */
+    public static boolean is(Material material, Trait trait)
+    {
+        return (traits[material.ordinal()] & trait.bit) != 0;
+    }
+
+
+    /**
+     * Rebuild the table and apply the overrides from the main config
+     *
+     * @param config config to read from
+     * @param world  the traits are server wide, the lists are read for this world of the main config
+     * @param logger to warn about unknown Materials
+     */
+    public static void load(MultiWorldConfig config, String world, Logger logger)
+    {
+        int[] table = defaults();
+        for (Trait trait : Trait.values())
+        {
+            List list = config.getStringList(trait.node, world);
+            for (Object obj : list)
+            {
+                String entry = String.valueOf(obj).trim();
+                boolean remove = entry.startsWith("-");
+                if (remove)
+                    entry = entry.substring(1).trim();
+                Material material = Material.matchMaterial(entry);
+                if (material == null)
+                {
+                    if (logger != null)
+                        logger.warning("Unknown Material \"" + entry + "\" in " + trait.node.getPath());
+                    continue;
+                }
+                if (remove)
+                    table[material.ordinal()] &= ~trait.bit;
+                else
+                    table[material.ordinal()] |= trait.bit;
+            }
+        }
+        traits = table;
+    }
+
+
+    /**
+     * Reset to the built in defaults
+     */
+    public static void reset()
+    {
+        traits = defaults();
+    }
+
+
+    private static int[] defaults()
+    {
+        Material[] materials = Material.values();
+        int[] table = new int[materials.length];
+        for (Material material : materials)
+        {
+            int mask = 0;
+            if (isDefaultTool(material))
+                mask |= Trait.TOOL.bit;
+            if (isDefaultArmor(material))
+                mask |= Trait.ARMOR.bit;
+            if (isDefaultFallingBlockBreaker(material))
+                mask |= Trait.BREAKS_FALLING_BLOCK.bit;
+            table[material.ordinal()] = mask;
+        }
+
+        set(table, Trait.NATURAL_OVERWORLD_SPAWN,
+                Material.GRASS,
+                Material.DIRT,
+                Material.STONE,
+                Material.SAND,
+                Material.GRAVEL,
+                Material.MOSSY_COBBLESTONE,
+                Material.OBSIDIAN,
+                Material.COBBLESTONE,
+                Material.BEDROCK,
+                Material.AIR,      //Ghast, Bat
+                Material.WATER);  //Squid
+
+        set(table, Trait.NATURAL_NETHER_SPAWN,
+                Material.NETHERRACK,
+                Material.NETHER_BRICK,
+                Material.SOUL_SAND,
+                Material.GRAVEL,
+                Material.AIR);
+
+        set(table, Trait.PLANT,
+                Material.CROPS,
+                Material.POTATO,
+                Material.CARROT,
+                Material.MELON_STEM,
+                Material.PUMPKIN_STEM);
+
+        set(table, Trait.HORSE_FOOD,
+                Material.CARROT_ITEM,
+                Material.POTATO_ITEM,
+                Material.APPLE,
+                //Material.HAY_BLOCK,
+                Material.WHEAT);
+        return table;
+    }
+
+
+    private static void set(int[] table, Trait trait, Material... materials)
+    {
+        for (Material material : materials)
+            table[material.ordinal()] |= trait.bit;
+    }
+
+
+    private static boolean isDefaultTool(Material material)
+    {
+        return material.name().endsWith("AXE") //axe & pickaxe
+                || material.name().endsWith("SPADE")
+                || material.name().endsWith("SWORD")
+                || material.name().endsWith("HOE")
+                || material.name().endsWith("BUCKET") //water, milk, lava,..
+                || material.equals(Material.BOW)
+                || material.equals(Material.FISHING_ROD)
+                || material.equals(Material.WATCH)
+                || material.equals(Material.COMPASS)
+                || material.equals(Material.FLINT_AND_STEEL);
+    }
+
+
+    private static boolean isDefaultArmor(Material material)
+    {
+        return material.name().endsWith("HELMET")
+                || material.name().endsWith("CHESTPLATE")
+                || material.name().endsWith("LEGGINGS")
+                || material.name().endsWith("BOOTS");
+    }
+
+
+    private static boolean isDefaultFallingBlockBreaker(Material mat)
+    {
+        return (mat.isTransparent() &&
+                mat != Material.PORTAL &&
+                mat != Material.ENDER_PORTAL) ||
+                mat == Material.WEB ||
+                mat == Material.DAYLIGHT_DETECTOR ||
+                mat == Material.TRAP_DOOR ||
+                mat == Material.SIGN_POST ||
+                mat == Material.WALL_SIGN ||
+                //Match all slabs besides double slab
+                (mat.name().endsWith("STEP") && !mat.name().startsWith("DOUBLE"));
+    }
+}
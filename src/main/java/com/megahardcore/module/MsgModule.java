@@ -25,6 +25,7 @@ package com.megahardcore.module;
 import com.megahardcore.MegaHardCore;
 import com.megahardcore.config.messages.MessageConfig;
 import com.megahardcore.config.messages.MessageNode;
+import com.megahardcore.config.messages.MessageTemplate;
 import com.megahardcore.config.messages.MsgCategory;
 import com.megahardcore.service.MHCModule;
 import com.megahardcore.service.FindAndReplace;
@@ -81,17 +82,20 @@ public class MsgModule extends MHCModule
     public void closing()
     {
         timeouts.clear();
+        if (manager != null)
+            manager.close();
     }
 
 
-    private void send(Player player, MessageNode node, String message)
+    private void deliver(Player player, MessageNode node, FindAndReplace[] fars)
     {
+        MessageTemplate template = messages.getTemplate(node);
         switch (messages.getCat(node))
         {
             case NOTIFICATION:
                 if (player == null)
                 {
-                    plugin.getLogger().warning("Could not send the following message: " + message);
+                    plugin.getLogger().warning("Could not send the following message: " + template.render(fars));
                 } else
                 {
                     // FEATURE: don't spam messages
@@ -101,9 +105,9 @@ public class MsgModule extends MHCModule
                     if (!node.equals(playerData.lastMessageSent) || now - playerData.lastMessageTimestamp > 30000)
                     {
                         if (popupsAreEnabled(MsgCategory.NOTIFICATION))
-                            sendPopup(player, MsgCategory.NOTIFICATION, message);
+                            sendPopup(player, MsgCategory.NOTIFICATION, template, fars);
                         else
-                            player.sendMessage(message);
+                            player.sendMessage(template.render(fars));
                         playerData.lastMessageSent = node;
                         playerData.lastMessageTimestamp = now;
                     }
@@ -112,6 +116,9 @@ public class MsgModule extends MHCModule
                 break;
             case TUTORIAL:
                 Validate.notNull(player);
+                //counts get loaded in the background on join, until then we don't know if the player has seen it
+                if (!persistModule.isLoaded(player.getName()))
+                    break;
                 if (persistModule.getCountFor(node, player.getName()) < messages.getMsgCount(node))
                 {
                     long now = Calendar.getInstance().getTimeInMillis();
@@ -119,18 +126,17 @@ public class MsgModule extends MHCModule
                     if (!timeouts.contains(player.getName(), node) || now - timeouts.get(player.getName(), node) > 120000) //only if contains
                     {
                         timeouts.put(player.getName(), node, now);
-                        String msgText = messages.getString(node);
                         if (manager != null)
-                            sendPopup(player, MsgCategory.TUTORIAL, msgText);
+                            sendPopup(player, MsgCategory.TUTORIAL, template, fars);
                         else
-                            player.sendMessage(ChatColor.DARK_RED + plugin.getTag() + ChatColor.WHITE + " " + msgText);
+                            player.sendMessage(ChatColor.DARK_RED + plugin.getTag() + ChatColor.WHITE + " " + template.render(fars));
                         persistModule.increment(node, player.getName());
                     }
                 } else
-                    timeouts.remove(player, message);
+                    timeouts.remove(player.getName(), node);
                 break;
             case BROADCAST:
-                plugin.getServer().broadcastMessage(message);
+                plugin.getServer().broadcastMessage(template.render(fars));
                 break;
             default:
                 throw new UnsupportedOperationException(messages.getCat(node) + " not implemented");
@@ -158,7 +164,7 @@ public class MsgModule extends MHCModule
      */
     public void send(Player player, MessageNode node)
     {
-        send(player, node, messages.getString(node));
+        deliver(player, node, new FindAndReplace[0]);
     }
 
 
@@ -170,12 +176,7 @@ public class MsgModule extends MHCModule
      */
     public void send(Player player, MessageNode message, FindAndReplace... fars)
     {
-        String msgText = messages.getString(message);
-        for (FindAndReplace far : fars)
-        {   /* Replace the placeholder with the actual value */
-            msgText = far.replace(msgText);
-        }
-        send(player, message, msgText);
+        deliver(player, message, fars);
     }
 
 
@@ -192,7 +193,7 @@ public class MsgModule extends MHCModule
     {
         if (!player.hasPermission(perm.getNode()))
         {
-            send(player, node, messages.getString(node));
+            deliver(player, node, new FindAndReplace[0]);
             if (sound != null)
                 player.playSound(player.getLocation(), sound, 1, soundPitch);
         }
@@ -251,40 +252,80 @@ public class MsgModule extends MHCModule
     {
         if (popupsAreEnabled(category))
         {
-            int length;
-            ChatColor titleColor;
-            ChatColor textColor;
-            String titleText = messages.getString(MessageNode.SB_MSG_TITLE);
-
             if (stripColors)
                 for (int i = 0; i < message.size(); i++)
                     message.set(i, ChatColor.stripColor(message.get(i)));
 
-            switch (category)
-            {
-                case BROADCAST:
-                    length = messages.getInt(MessageNode.SB_MSG_BROADCAST_LEN);
-                    titleColor = null;
-                    textColor = messages.getColor(MessageNode.SB_MSG_BROADCAST_TEXT_CLR);
-                    break;
-                case ONE_TIME:
-                case NOTIFICATION:
-                    length = messages.getInt(MessageNode.SB_MSG_NOTIFICATION_LEN);
-                    titleColor = null;
-                    textColor = messages.getColor(MessageNode.SB_MSG_NOTIFICATION_TEXT_CLR);
-                    break;
-                case TUTORIAL:
-                    length = messages.getInt(MessageNode.SB_MSG_TUTORIAL_LEN);
-                    titleColor = null;
-                    textColor = messages.getColor(MessageNode.SB_MSG_TUTORIAL_TEXT_CLR);
-                    break;
-                case DISABLED:
-                default:
-                    length = 0;
-                    titleColor = null;
-                    textColor = null;
-            }
-            manager.showPopup(player.getName(), category.getUniqueIdentifier(), length, titleColor, textColor, titleText, message);
+            manager.showPopup(player.getName(), category.getUniqueIdentifier(), getPopupLength(category), null, getPopupTextColor(category), messages.getString(MessageNode.SB_MSG_TITLE), message);
+        }
+    }
+
+
+    /**
+     * Send a message as popup, the lines are wrapped by the template and reused while the message stays the same
+     *
+     * @param player   player to send the message to
+     * @param category type defines the length color for consistency
+     * @param template compiled message
+     * @param fars     values for the placeholders
+     */
+    private void sendPopup(Player player, MsgCategory category, MessageTemplate template, FindAndReplace[] fars)
+    {
+        if (popupsAreEnabled(category))
+        {
+            ChatColor textColor = getPopupTextColor(category);
+            List<String> lines = template.getLines(textColor, messages.getBoolean(MessageNode.SB_MSG_REMOVE_COLOR), fars);
+            manager.showPopup(player.getName(), category.getUniqueIdentifier(), getPopupLength(category), null, textColor, messages.getString(MessageNode.SB_MSG_TITLE), lines);
+        }
+    }
+
+
+    /**
+     * How long popups of a category are displayed
+     *
+     * @param category category of the message
+     *
+     * @return length in ticks
+     */
+    private int getPopupLength(MsgCategory category)
+    {
+        switch (category)
+        {
+            case BROADCAST:
+                return messages.getInt(MessageNode.SB_MSG_BROADCAST_LEN);
+            case ONE_TIME:
+            case NOTIFICATION:
+                return messages.getInt(MessageNode.SB_MSG_NOTIFICATION_LEN);
+            case TUTORIAL:
+                return messages.getInt(MessageNode.SB_MSG_TUTORIAL_LEN);
+            case DISABLED:
+            default:
+                return 0;
+        }
+    }
+
+
+    /**
+     * Color of the text of popups of a category
+     *
+     * @param category category of the message
+     *
+     * @return the color or null if the text isn't colored
+     */
+    private ChatColor getPopupTextColor(MsgCategory category)
+    {
+        switch (category)
+        {
+            case BROADCAST:
+                return messages.getColor(MessageNode.SB_MSG_BROADCAST_TEXT_CLR);
+            case ONE_TIME:
+            case NOTIFICATION:
+                return messages.getColor(MessageNode.SB_MSG_NOTIFICATION_TEXT_CLR);
+            case TUTORIAL:
+                return messages.getColor(MessageNode.SB_MSG_TUTORIAL_TEXT_CLR);
+            case DISABLED:
+            default:
+                return null;
         }
     }
 
@@ -23,19 +23,35 @@ package com.megahardcore.module;
 
 
 import com.megahardcore.MegaHardCore;
+import com.megahardcore.config.RootConfig;
+import com.megahardcore.config.RootNode;
 import com.megahardcore.config.messages.MessageConfig;
 import com.megahardcore.config.messages.MessageNode;
 import com.megahardcore.config.messages.MsgCategory;
-import com.megahardcore.service.MHCModule;
-import com.google.common.collect.Table;
-import org.apache.commons.lang.Validate;
+import com.megahardcore.service.ListenerModule;
+import com.megahardcore.service.config.MultiWorldConfig;
+import org.bukkit.entity.Player;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
 
 import java.sql.*;
-import java.util.HashMap;
-import java.util.Map;
-
-/** @author Diemex */
-public class MsgPersistModule extends MHCModule
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Persists how often a message has been shown to a player.
+ * <p/>
+ * Counts of online players are held in memory and written back to the db in batches. All db access happens on a single
+ * background thread which owns the one connection to the db, so nothing touches the disk on the main thread.
+ *
+ * @author Diemex
+ */
+public class MsgPersistModule extends ListenerModule
 {
     private final String dbFile;
 
@@ -45,11 +61,20 @@ public class MsgPersistModule extends MHCModule
 
     private MessageConfig messages;
 
-    /** Buffer player ids (playerName, playerId) */
-    private Map<String, Integer> playerIdBuffer;
+    /** Messages which have their own column in the db */
+    private MessageNode[] columns;
+
+    /** Query to write all columns of one player */
+    private String updateQuery;
+
+    /** Counts of all loaded players (playerName, counts) */
+    private final Map<String, MsgCounts> counts = new ConcurrentHashMap<>();
+
+    /** Thread doing all the db work */
+    private ScheduledExecutorService executor;
 
-    /** Buffer data from the db (playerid, message, value) */
-    private Table<Integer, MessageNode, Integer> buffer;
+    /** Only to be used from the executor thread */
+    private Connection connection;
 
 
     /**
@@ -64,122 +89,212 @@ public class MsgPersistModule extends MHCModule
     }
 
 
+    /**
+     * For Testing Purposes / Dependency Injection Constructor
+     */
+    public MsgPersistModule(MegaHardCore plugin, String dbFile, ScheduledExecutorService executor)
+    {
+        this(plugin, dbFile);
+        this.executor = executor;
+    }
+
+
     @Override
     public void starting()
     {
+        super.starting();
         messages = plugin.getModuleForClass(MessageConfig.class);
-        playerIdBuffer = new HashMap<>();
-        testJDBC();
-        initializeTables();
+
+        List<MessageNode> persisted = new ArrayList<>();
+        for (MessageNode node : MessageNode.getMessageNodes())
+        {
+            MsgCategory cat = messages.getCat(node);
+            if (node.getColumnName() != null && (cat == MsgCategory.TUTORIAL || cat == MsgCategory.ONE_TIME))
+                persisted.add(node);
+        }
+        columns = persisted.toArray(new MessageNode[persisted.size()]);
+
+        StringBuilder update = new StringBuilder("UPDATE ").append(msgTable).append(" SET ");
+        for (int i = 0; i < columns.length; i++)
+        {
+            if (i > 0) update.append(", ");
+            update.append(columns[i].getColumnName()).append(" = ?");
+        }
+        updateQuery = update.append(" WHERE id = ?").toString();
+
+        if (executor == null)
+            executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "MegaHardCore-MsgPersist");
+                thread.setDaemon(true);
+                return thread;
+            });
+        executor.execute(() -> {
+            if (testJDBC())
+            {
+                openConnection();
+                initializeTables();
+            }
+        });
+        //Server wide setting, read for the first world listed in the main config
+        Collection<String> worlds = RootConfig.mainMHCConfig.getWorlds();
+        final long flushInterval = Math.max(1, plugin.getModuleForClass(RootConfig.class).getInt(RootNode.MESSAGES_SAVE_SECONDS,
+                worlds.isEmpty() ? MultiWorldConfig.ALL_WORLDS : worlds.iterator().next()));
+        executor.scheduleWithFixedDelay(() -> flush(counts.values()), flushInterval, flushInterval, TimeUnit.SECONDS);
+
+        //Players that are already online, e.g. on /mhc reload
+        for (Player player : plugin.getServer().getOnlinePlayers())
+            load(player.getName());
     }
 
 
     @Override
     public void closing()
     {
-        playerIdBuffer = null;
+        super.closing();
+        if (executor != null)
+        {
+            final List<MsgCounts> toFlush = new ArrayList<>(counts.values());
+            executor.execute(() -> {
+                flush(toFlush);
+                closeConnection();
+            });
+            executor.shutdown();
+            //On /mhc reload the counts are saved in the background, only wait for them when the server stops
+            if (!plugin.isEnabled())
+            {
+                try
+                {
+                    if (!executor.awaitTermination(10, TimeUnit.SECONDS))
+                        plugin.getLogger().severe("Timed out while saving message counts to " + dbFile);
+                } catch (InterruptedException e)
+                {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            executor = null;
+        }
+        counts.clear();
+    }
+
+
+    /** Load the counts when a player joins */
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerJoin(PlayerJoinEvent event)
+    {
+        load(event.getPlayer().getName());
+    }
+
+
+    /** Write the counts back and free the memory when a player leaves */
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerQuit(PlayerQuitEvent event)
+    {
+        final String playerName = event.getPlayer().getName();
+        executor.execute(() -> {
+            MsgCounts playerCounts = counts.remove(playerName);
+            if (playerCounts != null)
+                flush(Collections.singletonList(playerCounts));
+        });
     }
 
 
     /** Make sure JDBC is enabled/loaded */
-    protected void testJDBC()
+    protected boolean testJDBC()
     {
         try
         {
             Class.forName("org.sqlite.JDBC");
+            return true;
         } catch (ClassNotFoundException e)
         {
             plugin.getLogger().severe("JDBC Driver not found : " + e);
-            closing();
+            return false;
         }
     }
 
 
-    /**
-     * Get the id of the Player. Buffers id in a Map. Creates new id if Player not in the db yet.
-     *
-     * @param playerName name of the Player
-     *
-     * @return id of Player
-     */
-    private int getPlayerId(String playerName)
+    /** Open the connection used for the lifetime of this module */
+    private void openConnection()
     {
-        if (playerIdBuffer.containsKey(playerName))
-            return playerIdBuffer.get(playerName);
-        int id = 0;
-
-        Connection conn = null;
-        Statement aStatement = null;
-        ResultSet resultSet = null;
         try
         {
-            conn = retrieveConnection();
-            aStatement = conn.createStatement();
-            String playerIdQuery = String.format(
-                    "SELECT id FROM %s WHERE %s = %s", playerTable, "name", '"' + playerName + '"');
-
-            resultSet = aStatement.executeQuery(playerIdQuery);
-            if (resultSet.next())
-                id = resultSet.getInt("id");
-
-            if (id == 0) //Create a new Player
+            connection = DriverManager.getConnection("jdbc:sqlite:" + dbFile);
+            try (Statement statement = connection.createStatement())
             {
-                String newPlayerQuery = String.format( //new id
-                        "INSERT INTO %s (%s) VALUES (%s)", playerTable, "name", '"' + playerName + '"');
-                aStatement.executeUpdate(newPlayerQuery);
-
-                //Get the id of the just inserted row, I tried getGeneratedKeys() but that wasn't supported by jdbc
-                resultSet = aStatement.executeQuery(playerIdQuery);
-                if (resultSet.next())
-                    id = resultSet.getInt("id");
-
-                String newPlayerDataQuery = String.format( //empty row in messages
-                        "INSERT INTO %s (%s) VALUES (%s)", msgTable, "id", id);
-                aStatement.executeUpdate(newPlayerDataQuery);
-                aStatement.close();
+                //Readers don't block the writer and the other way around
+                statement.execute("PRAGMA journal_mode=WAL");
             }
+        } catch (SQLException e)
+        {
+            connection = null;
+            e.printStackTrace();
+        }
+    }
+
 
-            playerIdBuffer.put(playerName, id);
+    private void closeConnection()
+    {
+        try
+        {
+            if (connection != null) connection.close();
         } catch (SQLException e)
         {
             e.printStackTrace();
         } finally
         {
-            try
-            {
-                if (conn != null) conn.close();
-                if (aStatement != null) aStatement.close();
-                if (resultSet != null) resultSet.close();
-            } catch (SQLException e)
-            {
-                e.printStackTrace();
-            }
+            connection = null;
         }
-
-        return id;
     }
 
 
     /**
-     * Get a connection to our database
+     * Get the id of the Player. Creates new id if Player not in the db yet. Only call from the executor.
+     *
+     * @param playerName name of the Player
      *
-     * @return a connection
+     * @return id of Player
      */
-    private Connection retrieveConnection() throws SQLException
+    private int getPlayerId(String playerName) throws SQLException
     {
-        return DriverManager.getConnection("jdbc:sqlite:" + dbFile);
+        int id = 0;
+        final String playerIdQuery = String.format("SELECT id FROM %s WHERE %s = ?", playerTable, "name");
+        try (PreparedStatement select = connection.prepareStatement(playerIdQuery))
+        {
+            select.setString(1, playerName);
+            try (ResultSet resultSet = select.executeQuery())
+            {
+                if (resultSet.next())
+                    id = resultSet.getInt("id");
+            }
+
+            if (id == 0) //Create a new Player
+            {
+                try (PreparedStatement insert = connection.prepareStatement(
+                        String.format("INSERT INTO %s (%s) VALUES (?)", playerTable, "name")))
+                {
+                    insert.setString(1, playerName);
+                    insert.executeUpdate();
+                }
+
+                //Get the id of the just inserted row, I tried getGeneratedKeys() but that wasn't supported by jdbc
+                try (ResultSet resultSet = select.executeQuery())
+                {
+                    if (resultSet.next())
+                        id = resultSet.getInt("id");
+                }
+            }
+        }
+        return id;
     }
 
 
-    /** Creates tables if they do not exist. */
+    /** Creates tables if they do not exist. Only call from the executor. */
     private void initializeTables()
     {
-        Connection conn = null;
-        Statement statement = null;
-        try
+        if (connection == null)
+            return;
+        try (Statement statement = connection.createStatement())
         {
-            conn = retrieveConnection();
-            statement = conn.createStatement();
             statement.setQueryTimeout(30);
 
             //One table holding the playername id relation
@@ -188,30 +303,24 @@ public class MsgPersistModule extends MHCModule
             statement.executeUpdate(playerQuery);
 
             //One column for every message
-            StringBuilder columns = new StringBuilder();
-            for (MessageNode node : MessageNode.getMessageNodes())
+            StringBuilder columnList = new StringBuilder();
+            for (MessageNode node : columns)
             {
-                MsgCategory cat = messages.getCat(node);
-                if (node.getColumnName() != null && (cat == MsgCategory.TUTORIAL || cat == MsgCategory.ONE_TIME))
-                {
-                    columns.append(',');
-                    columns.append(node.getColumnName());
-                }
+                columnList.append(',');
+                columnList.append(node.getColumnName());
             }
 
             String msgQuery = String.format(
-                    "CREATE TABLE IF NOT EXISTS %s (id INTEGER PRIMARY KEY UNIQUE %s)", msgTable, columns);
+                    "CREATE TABLE IF NOT EXISTS %s (id INTEGER PRIMARY KEY UNIQUE %s)", msgTable, columnList);
             statement.executeUpdate(msgQuery);
 
             //Check if all columns are present
-            DatabaseMetaData dmd = conn.getMetaData();
+            DatabaseMetaData dmd = connection.getMetaData();
             //Add missing columns
-            for (MessageNode node : MessageNode.getMessageNodes())
+            for (MessageNode node : columns)
             {
-                MsgCategory cat = messages.getCat(node);
-                if (cat == MsgCategory.TUTORIAL || cat == MsgCategory.ONE_TIME)
+                try (ResultSet set = dmd.getColumns(null, null, msgTable, node.getColumnName()))
                 {
-                    ResultSet set = dmd.getColumns(null, null, msgTable, node.getColumnName());
                     if (!set.next())
                     {
                         String updateQuery = String.format(
@@ -223,65 +332,102 @@ public class MsgPersistModule extends MHCModule
         } catch (SQLException e)
         {
             e.printStackTrace();
-        } finally
-        {
-            try
-            {
-                if (conn != null) conn.close();
-                if (statement != null) statement.close();
-            } catch (SQLException e)
-            {
-                e.printStackTrace();
-            }
         }
     }
 
 
     /**
-     * Increment the count of a certain message by one
+     * Load all counts of a player into memory in the background. If the counts can't be loaded the player starts with
+     * zero counts which are never saved, otherwise they wouldn't get any tutorial messages at all.
      *
-     * @param node       to increment
-     * @param playerName only for this player
+     * @param playerName player to load
      */
-    public void increment(MessageNode node, String playerName)
+    private void load(final String playerName)
     {
-        int playerId = getPlayerId(playerName);
-        int value = getCountFor(node, playerId);
-
-        set(node, playerId, ++value);
+        executor.execute(() -> {
+            if (connection == null)
+            {
+                counts.put(playerName, new MsgCounts(MsgCounts.NOT_SAVED));
+                return;
+            }
+            try
+            {
+                MsgCounts loaded = new MsgCounts(getPlayerId(playerName));
+                try (PreparedStatement select = connection.prepareStatement(String.format("SELECT * FROM %s WHERE %s = ?", msgTable, "id")))
+                {
+                    select.setInt(1, loaded.playerId);
+                    try (ResultSet result = select.executeQuery())
+                    {
+                        if (result.next())
+                            for (MessageNode node : columns)
+                                loaded.values[node.ordinal()] = result.getInt(node.getColumnName());
+                        else //create the missing row
+                            try (PreparedStatement insert = connection.prepareStatement(String.format("INSERT INTO %s (%s) VALUES (?)", msgTable, "id")))
+                            {
+                                insert.setInt(1, loaded.playerId);
+                                insert.executeUpdate();
+                            }
+                    }
+                }
+                counts.put(playerName, loaded);
+            } catch (SQLException e)
+            {
+                counts.put(playerName, new MsgCounts(MsgCounts.NOT_SAVED));
+                e.printStackTrace();
+            }
+        });
     }
 
 
     /**
-     * Set the count of a certain message to a certain value
+     * Write all changed counts to the db in one transaction. Only call from the executor.
      *
-     * @param node     node to set the count for
-     * @param playerId player for whom we are tracking the count
-     * @param value    value to set
+     * @param toFlush counts to write if they changed
      */
-    private void set(MessageNode node, int playerId, int value)
+    private void flush(Collection<MsgCounts> toFlush)
     {
-        Validate.isTrue(value >= 0, "Count has to be positive");
-        Connection conn = null;
-        Statement statement = null;
+        if (connection == null || columns.length == 0)
+            return;
+        List<MsgCounts> flushed = new ArrayList<>();
         try
         {
-            conn = retrieveConnection();
-            statement = conn.createStatement();
-
-            //Set the count to the provided value
-            String setQuery = String.format(
-                    "UPDATE %s SET %s = %s WHERE id = %s", msgTable, node.getColumnName(), value, playerId);
-            statement.execute(setQuery);
+            connection.setAutoCommit(false);
+            try (PreparedStatement update = connection.prepareStatement(updateQuery))
+            {
+                for (MsgCounts playerCounts : toFlush)
+                {
+                    if (playerCounts.playerId == MsgCounts.NOT_SAVED)
+                        continue;
+                    int[] values = playerCounts.takeDirty();
+                    if (values == null)
+                        continue;
+                    for (int i = 0; i < columns.length; i++)
+                        update.setInt(i + 1, values[columns[i].ordinal()]);
+                    update.setInt(columns.length + 1, playerCounts.playerId);
+                    update.addBatch();
+                    flushed.add(playerCounts);
+                }
+                if (!flushed.isEmpty())
+                    update.executeBatch();
+            }
+            connection.commit();
         } catch (SQLException e)
         {
+            //Try again next time
+            for (MsgCounts playerCounts : flushed)
+                playerCounts.markDirty();
+            try
+            {
+                connection.rollback();
+            } catch (SQLException ignored)
+            {
+            }
             e.printStackTrace();
         } finally
         {
             try
             {
-                if (conn != null) conn.close();
-                if (statement != null) statement.close();
+                connection.setAutoCommit(true);
             } catch (SQLException e)
             {
                 e.printStackTrace();
@@ -290,6 +436,33 @@ public class MsgPersistModule extends MHCModule
     }
 
 
+    /**
+     * Have the counts of this player been loaded yet? They get loaded in the background when the player joins.
+     *
+     * @param playerName name of the player
+     *
+     * @return if counts are available
+     */
+    public boolean isLoaded(String playerName)
+    {
+        return counts.containsKey(playerName);
+    }
+
+
+    /**
+     * Increment the count of a certain message by one
+     *
+     * @param node       to increment
+     * @param playerName only for this player
+     */
+    public void increment(MessageNode node, String playerName)
+    {
+        MsgCounts playerCounts = counts.get(playerName);
+        if (playerCounts != null)
+            playerCounts.increment(node);
+    }
+
+
     /**
      * Get the count of a message
      *
@@ -300,75 +473,81 @@ public class MsgPersistModule extends MHCModule
      */
     public int getCountFor(MessageNode node, String playerName)
     {
-        return getCountFor(node, getPlayerId(playerName));
+        MsgCounts playerCounts = counts.get(playerName);
+        return playerCounts != null ? playerCounts.get(node) : 0;
     }
 
 
     /**
-     * Get how often a message has been displayed
-     *
-     * @param node     to get the count for
-     * @param playerId id of the player to get the count for
+     * Resets all counts for a given player
      *
-     * @return how often this message has been displayed
+     * @param playerName player to reset the stats for
      */
-    private int getCountFor(MessageNode node, int playerId)
+    public void resetAll(String playerName)
     {
-        Connection conn = null;
-        Statement statement = null;
-        ResultSet result = null;
-        int value = 0;
+        MsgCounts playerCounts = counts.get(playerName);
+        if (playerCounts != null)
+            playerCounts.reset();
+    }
 
-        try
+
+    /** How often each message has been shown to one player, indexed by the ordinal of the MessageNode */
+    private static class MsgCounts
+    {
+        /** Id of counts which couldn't be loaded from the db */
+        private static final int NOT_SAVED = 0;
+
+        private final int playerId;
+
+        private final int[] values = new int[MessageNode.values().length];
+
+        /** Changed since the last flush */
+        private boolean dirty = false;
+
+
+        MsgCounts(int playerId)
         {
-            conn = retrieveConnection();
-            statement = conn.createStatement();
+            this.playerId = playerId;
+        }
 
-            String select = String.format("SELECT * FROM %s WHERE %s = %s", msgTable, "id", playerId);
 
-            result = statement.executeQuery(select);
-            if (result.next())
-                value = result.getInt(node.getColumnName());
-            else //create the missing row
-            {
-                String newPlayerDataQuery = String.format( //empty row in messages
-                        "INSERT INTO %s (%s) VALUES (%s)", msgTable, "id", playerId);
-                conn.createStatement().executeUpdate(newPlayerDataQuery);
-            }
-        } catch (SQLException e)
+        synchronized int get(MessageNode node)
         {
-            e.printStackTrace();
-        } finally
+            return values[node.ordinal()];
+        }
+
+
+        synchronized void increment(MessageNode node)
         {
-            try
-            {
-                if (conn != null) conn.close();
-                if (statement != null) statement.close();
-                if (result != null) result.close();
-            } catch (SQLException e)
-            {
-                e.printStackTrace();
-            }
+            values[node.ordinal()]++;
+            dirty = true;
         }
 
-        return value;
-    }
 
+        synchronized void reset()
+        {
+            Arrays.fill(values, 0);
+            dirty = true;
+        }
 
-    /**
-     * Resets all counts for a given player
-     *
-     * @param playerName player to reset the stats for
-     */
-    public void resetAll(String playerName)
-    {
-        int playerId = getPlayerId(playerName);
-        for (MessageNode node : MessageNode.values())
+
+        synchronized void markDirty()
         {
-            if (node.getColumnName() != null)
-            {
-                set(node, playerId, 0);
-            }
+            dirty = true;
+        }
+
+
+        /**
+         * Get a copy of the values if they have changed and mark them as clean
+         *
+         * @return copy of the values or null if nothing changed
+         */
+        synchronized int[] takeDirty()
+        {
+            if (!dirty)
+                return null;
+            dirty = false;
+            return values.clone();
         }
     }
 }
@@ -14,9 +14,6 @@ public class PlayerData
     /** Last message timestamp. */
     public long lastMessageTimestamp = 0;
 
-    /** Cached weight */
-    public float cachedWeightStatus = -1.0F; //player can't have negative invetory....
-
     /** If player is in debugmode */
     public boolean inDebug = false;
 }
@@ -0,0 +1,318 @@
+/*
+ * This file is part of
+ * MegaHardCore Server Plugin for Minecraft
+ *
+ * Copyright (C) 2012 Ryan Hamshire
+ * Copyright (C) 2013 Diemex
+ *
+ * MegaHardCore is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MegaHardCore is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero Public License
+ * along with MegaHardCore.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.megahardcore.module;
+
+
+import com.megahardcore.MegaHardCore;
+import com.megahardcore.service.ListenerModule;
+import com.megahardcore.service.LongObjectMap;
+import com.megahardcore.service.Profiler;
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.entity.Player;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.player.PlayerChangedWorldEvent;
+import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.event.player.PlayerMoveEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
+import org.bukkit.event.player.PlayerRespawnEvent;
+import org.bukkit.event.player.PlayerTeleportEvent;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Spatial index of all online players.
+ * <p/>
+ * Players are sorted into a grid of chunk sized cells per world, so that "is any player near this location" only has to
+ * look at the cells which overlap the radius instead of every player in the world. Cells are updated when a player
+ * crosses a chunk border, teleports, respawns, joins or quits. Movement which doesn't fire a PlayerMoveEvent (vehicles)
+ * is picked up by a resync every second and by searching one extra cell around the radius.
+ *
+ * @author Diemex
+ */
+public class PlayerIndexModule extends ListenerModule
+{
+    /** How often all players are resynced in ticks */
+    private static final long RESYNC_INTERVAL = 20L;
+
+    /** Indexed players per world */
+    private final Map<UUID, Grid> worlds = new HashMap<>();
+
+    /** Current cell of every player */
+    private final Map<UUID, Cell> cells = new HashMap<>();
+
+    /** Reused to read player locations without allocating */
+    private final Location scratch = new Location(null, 0, 0, 0);
+
+    private int resyncTaskId = -1;
+
+
+    public PlayerIndexModule (MegaHardCore plugin)
+    {
+        super(plugin);
+    }
+
+
+    @Override
+    public void starting()
+    {
+        super.starting();
+        for (Player player : plugin.getServer().getOnlinePlayers())
+            update(player, player.getLocation());
+        resyncTaskId = plugin.getServer().getScheduler().scheduleSyncRepeatingTask(plugin, Profiler.wrap(plugin, "PlayerIndexResync", new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                for (Player player : plugin.getServer().getOnlinePlayers())
+                    update(player, player.getLocation(scratch));
+            }
+        }), RESYNC_INTERVAL, RESYNC_INTERVAL);
+    }
+
+
+    @Override
+    public void closing()
+    {
+        super.closing();
+        if (resyncTaskId != -1)
+            plugin.getServer().getScheduler().cancelTask(resyncTaskId);
+        resyncTaskId = -1;
+        worlds.clear();
+        cells.clear();
+    }
+
+
+    /**
+     * Test if there is one ore more Players near a Location. This method should be used to check if the distance between
+     * players and spawned mobs is big enough.
+     *
+     * @param loc      location around which to check
+     * @param distance distance around the location to check for players
+     *
+     * @return false if no players found, true if there where one or more players
+     */
+    public boolean arePlayersNearby(Location loc, double distance)
+    {
+        final World world = loc.getWorld();
+        final Grid grid = worlds.get(world.getUID());
+        if (grid == null)
+            return false;
+
+        final double x = loc.getX(), y = loc.getY(), z = loc.getZ();
+        final double squared = distance * distance;
+        final int minX = ((int) Math.floor(x - distance) >> 4) - 1, maxX = ((int) Math.floor(x + distance) >> 4) + 1;
+        final int minZ = ((int) Math.floor(z - distance) >> 4) - 1, maxZ = ((int) Math.floor(z + distance) >> 4) + 1;
+
+        //Less players in the world than cells to search, just check every player
+        if ((long) (maxX - minX + 1) * (maxZ - minZ + 1) > grid.players.size())
+        {
+            for (int i = 0; i < grid.players.size(); i++)
+                if (isInRange(grid.players.get(i), world, x, y, z, squared))
+                    return true;
+            return false;
+        }
+
+        for (int cx = minX; cx <= maxX; cx++)
+            for (int cz = minZ; cz <= maxZ; cz++)
+            {
+                List<Player> cell = grid.cells.get(chunkKey(cx, cz));
+                if (cell != null)
+                    for (int i = 0; i < cell.size(); i++)
+                        if (isInRange(cell.get(i), world, x, y, z, squared))
+                            return true;
+            }
+        return false;
+    }
+
+
+    private boolean isInRange(Player player, World world, double x, double y, double z, double squared)
+    {
+        player.getLocation(scratch);
+        if (scratch.getWorld() != world)
+            return false;
+        final double dx = scratch.getX() - x, dy = scratch.getY() - y, dz = scratch.getZ() - z;
+        return dx * dx + dy * dy + dz * dz < squared;
+    }
+
+
+    /**
+     * Move the player to the cell of the given location if he isn't in it already
+     */
+    private void update(Player player, Location to)
+    {
+        final UUID worldId = to.getWorld().getUID();
+        final int cx = to.getBlockX() >> 4, cz = to.getBlockZ() >> 4;
+        Cell cell = cells.get(player.getUniqueId());
+        if (cell != null)
+        {
+            if (cell.x == cx && cell.z == cz && cell.world.equals(worldId))
+                return;
+            removeFromGrid(player, cell);
+        }
+        cells.put(player.getUniqueId(), new Cell(worldId, cx, cz));
+
+        Grid grid = worlds.get(worldId);
+        if (grid == null)
+        {
+            grid = new Grid();
+            worlds.put(worldId, grid);
+        }
+        List<Player> players = grid.cells.get(chunkKey(cx, cz));
+        if (players == null)
+        {
+            players = new ArrayList<>(2);
+            grid.cells.put(chunkKey(cx, cz), players);
+        }
+        players.add(player);
+        grid.players.add(player);
+    }
+
+
+    private void remove(Player player)
+    {
+        Cell cell = cells.remove(player.getUniqueId());
+        if (cell != null)
+            removeFromGrid(player, cell);
+    }
+
+
+    private void removeFromGrid(Player player, Cell cell)
+    {
+        Grid grid = worlds.get(cell.world);
+        if (grid == null)
+            return;
+        final long key = chunkKey(cell.x, cell.z);
+        List<Player> players = grid.cells.get(key);
+        if (players != null)
+        {
+            removeById(players, player);
+            if (players.isEmpty())
+                grid.cells.remove(key);
+        }
+        removeById(grid.players, player);
+        if (grid.players.isEmpty())
+            worlds.remove(cell.world);
+    }
+
+
+    /**
+     * Player objects are recreated on relog, compare by id
+     */
+    private static void removeById(List<Player> players, Player player)
+    {
+        for (int i = 0; i < players.size(); i++)
+            if (players.get(i).getUniqueId().equals(player.getUniqueId()))
+            {
+                players.remove(i);
+                return;
+            }
+    }
+
+
+    private static long chunkKey(int x, int z)
+    {
+        return (long) x << 32 | z & 0xFFFFFFFFL;
+    }
+
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerJoin(PlayerJoinEvent event)
+    {
+        update(event.getPlayer(), event.getPlayer().getLocation());
+    }
+
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerQuit(PlayerQuitEvent event)
+    {
+        remove(event.getPlayer());
+    }
+
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onPlayerMove(PlayerMoveEvent event)
+    {
+        final Location from = event.getFrom(), to = event.getTo();
+        //Only chunk border crossings are interesting
+        if (from.getBlockX() >> 4 != to.getBlockX() >> 4 || from.getBlockZ() >> 4 != to.getBlockZ() >> 4 || from.getWorld() != to.getWorld())
+            update(event.getPlayer(), to);
+    }
+
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onPlayerTeleport(PlayerTeleportEvent event)
+    {
+        update(event.getPlayer(), event.getTo());
+    }
+
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerRespawn(PlayerRespawnEvent event)
+    {
+        update(event.getPlayer(), event.getRespawnLocation());
+    }
+
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerChangedWorld(PlayerChangedWorldEvent event)
+    {
+        update(event.getPlayer(), event.getPlayer().getLocation());
+    }
+
+
+    /**
+     * Players of one world
+     */
+    private static class Grid
+    {
+        /** Cells by chunk coordinates */
+        private final LongObjectMap<List<Player>> cells = new LongObjectMap<>();
+
+        /** All indexed players of the world */
+        private final List<Player> players = new ArrayList<>();
+    }
+
+
+    /**
+     * The cell a player is in
+     */
+    private static class Cell
+    {
+        private final UUID world;
+
+        private final int x, z;
+
+
+        Cell(UUID world, int x, int z)
+        {
+            this.world = world;
+            this.x = x;
+            this.z = z;
+        }
+    }
+}
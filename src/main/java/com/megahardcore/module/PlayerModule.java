@@ -25,24 +25,61 @@ package com.megahardcore.module;
 import com.megahardcore.MegaHardCore;
 import com.megahardcore.config.RootConfig;
 import com.megahardcore.config.RootNode;
-import com.megahardcore.service.MHCModule;
 import com.megahardcore.service.Feature;
+import com.megahardcore.service.ListenerModule;
+import com.megahardcore.service.PermissionNode;
+import com.megahardcore.service.Profiler;
+import com.megahardcore.service.config.ConfigSnapshot;
 import org.apache.commons.lang.Validate;
 import org.bukkit.GameMode;
 import org.bukkit.Material;
 import org.bukkit.entity.Player;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.player.PlayerChangedWorldEvent;
+import org.bukkit.event.player.PlayerCommandPreprocessEvent;
+import org.bukkit.event.player.PlayerGameModeChangeEvent;
+import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
+import org.bukkit.event.server.RemoteServerCommandEvent;
+import org.bukkit.event.server.ServerCommandEvent;
 import org.bukkit.inventory.ItemStack;
 import org.bukkit.inventory.PlayerInventory;
 
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
 /**
  * Player centric actions
+ * <p/>
+ * Which features a player bypasses is cached as a bitmask with one bit per {@link Feature}. The mask is computed the
+ * first time it is needed after joining and again when the world or gamemode changes, after op/deop, on reload and every
+ * few seconds to pick up changes made by permission plugins.
  *
  * @author Max
  */
-public class PlayerModule extends MHCModule
+public class PlayerModule extends ListenerModule
 {
+    static
+    {
+        Validate.isTrue(Feature.values().length <= Long.SIZE, "Bypass mask can only hold " + Long.SIZE + " Features");
+    }
+
     private RootConfig CFG;
 
+    /** Bypass masks of online players */
+    private final Map<UUID, Bypasses> bypasses = new HashMap<>();
+
+    /** Seconds since the module started, used for the periodic recheck */
+    private long seconds = 0;
+
+    /** An op or deop command has been issued and hasn't run yet, don't cache until the next recheck */
+    private boolean opsChanging = false;
+
+    private int recheckTaskId = -1;
+
 
     /** Constructor */
     public PlayerModule (MegaHardCore plugin)
@@ -51,31 +88,202 @@ public class PlayerModule extends MHCModule
     }
 
 
+    /**
+     * For Testing Purposes
+     * <p/>
+     * Dependency Injection Constructor, the module can be used without calling starting()
+     *
+     * @param plugin plugin instance
+     * @param CFG    instantiated RootConfig
+     */
+    public PlayerModule (MegaHardCore plugin, RootConfig CFG)
+    {
+        super(plugin);
+        this.CFG = CFG;
+    }
+
+
     @Override
     public void starting()
     {
+        super.starting();
         CFG = plugin.getModuleForClass(RootConfig.class);
+        bypasses.clear();
+        recheckTaskId = plugin.getServer().getScheduler().scheduleSyncRepeatingTask(plugin, Profiler.wrap(plugin, "BypassRecheck", new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                recheckBypasses();
+            }
+        }), 20L, 20L);
     }
 
 
+    /**
+     * Called every second, drops the cached bypasses which are due to be checked again
+     */
+    public void recheckBypasses()
+    {
+        seconds++;
+        if (opsChanging)
+        {
+            //The op/deop command has run by now
+            opsChanging = false;
+            bypasses.clear();
+        } else
+            bypasses.values().removeIf(entry -> entry.recheckAt > 0 && entry.recheckAt <= seconds);
+    }
+
+
+    /**
+     * Does the player bypass the given feature, because of a permission, being op or being in creative
+     *
+     * @param player  player to check
+     * @param feature feature to check
+     *
+     * @return true if the feature shouldn't affect the player
+     */
     public boolean playerBypasses(Player player, Feature feature)
     {
         Validate.notNull(player, "We can't check if a Player bypasses if there is no Player!");
 
-        final boolean bypassPermsEnabled = CFG.getBoolean(RootNode.BYPASS_PERMISSION, player.getWorld().getName());
-        final boolean opsBypass = CFG.getBoolean(RootNode.BYPASS_OPS, player.getWorld().getName());
-        final boolean creativeBypasses = CFG.getBoolean(RootNode.BYPASS_CREATIVE, player.getWorld().getName());
+        Bypasses entry = bypasses.get(player.getUniqueId());
+        if (entry == null)
+            entry = update(player, player.getGameMode());
+        return (entry.mask & 1L << feature.ordinal()) != 0;
+    }
+
+
+    /**
+     * Compute the bypass mask of a player and cache it
+     *
+     * @param player   player to compute for
+     * @param gameMode gamemode of the player, can differ from the current one when the gamemode is about to change
+     *
+     * @return the cached entry
+     */
+    private Bypasses update(Player player, GameMode gameMode)
+    {
+        final ConfigSnapshot cfg = CFG.getSnapshot(player.getWorld());
+        final boolean bypassPermsEnabled = cfg.getBoolean(RootNode.BYPASS_PERMISSION);
+        final boolean opsBypass = cfg.getBoolean(RootNode.BYPASS_OPS);
+        final boolean creativeBypasses = cfg.getBoolean(RootNode.BYPASS_CREATIVE);
+        final int recheckSeconds = cfg.getInt(RootNode.BYPASS_RECHECK_SECONDS);
+
+        long mask = 0;
+        if (opsBypass && player.isOp() || creativeBypasses && gameMode == GameMode.CREATIVE)
+            mask = -1L;
+        else if (bypassPermsEnabled)
+        {
+            //Most features share the same node, only ask the permission plugin once per node
+            Map<PermissionNode, Boolean> checked = new EnumMap<>(PermissionNode.class);
+            for (Feature feature : Feature.values())
+            {
+                Boolean has = checked.get(feature.getBypassNode());
+                if (has == null)
+                {
+                    has = player.hasPermission(feature.getBypassNode().getNode());
+                    checked.put(feature.getBypassNode(), has);
+                }
+                if (has)
+                    mask |= 1L << feature.ordinal();
+            }
+        }
+
+        Bypasses entry = new Bypasses(mask, recheckSeconds > 0 ? seconds + recheckSeconds : 0);
+        //Don't cache players that aren't online, we wouldn't notice when they leave
+        if (player.isOnline() && !opsChanging)
+            bypasses.put(player.getUniqueId(), entry);
+        return entry;
+    }
+
+
+    /**
+     * Drop all cached bypasses, they will be computed again when needed
+     */
+    public void invalidateBypasses()
+    {
+        bypasses.clear();
+    }
 
-        boolean bypasses = false;
 
-        if (bypassPermsEnabled)
-            bypasses = player.hasPermission(feature.getBypassNode().getNode());
-        if (!bypasses && opsBypass)
-            bypasses = player.isOp();
-        if (!bypasses && creativeBypasses)
-            bypasses = player.getGameMode().equals(GameMode.CREATIVE);
+    /**
+     * Permission plugins might only set up the permissions of the player in their own join handler. Drop whatever has
+     * been cached while joining, the mask is computed when it is needed next.
+     */
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerJoin(PlayerJoinEvent event)
+    {
+        bypasses.remove(event.getPlayer().getUniqueId());
+    }
+
 
-        return bypasses;
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerQuit(PlayerQuitEvent event)
+    {
+        bypasses.remove(event.getPlayer().getUniqueId());
+    }
+
+
+    @EventHandler(priority = EventPriority.LOWEST)
+    public void onWorldChange(PlayerChangedWorldEvent event)
+    {
+        bypasses.remove(event.getPlayer().getUniqueId());
+    }
+
+
+    /** Fires before the gamemode changes, so compute with the new one */
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onGameModeChange(PlayerGameModeChangeEvent event)
+    {
+        update(event.getPlayer(), event.getNewGameMode());
+    }
+
+
+    /**
+     * There is no event for op changes and the command runs after this event. Drop the cache and don't cache anything
+     * until the next recheck, by then the command has been executed.
+     */
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onPlayerCommand(PlayerCommandPreprocessEvent event)
+    {
+        if (isOpCommand(event.getMessage()))
+            opsChanging();
+    }
+
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onServerCommand(ServerCommandEvent event)
+    {
+        if (isOpCommand(event.getCommand()))
+            opsChanging();
+    }
+
+
+    /** Commands over rcon have their own HandlerList and don't reach {@link #onServerCommand} */
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onRemoteServerCommand(RemoteServerCommandEvent event)
+    {
+        onServerCommand(event);
+    }
+
+
+    private void opsChanging()
+    {
+        opsChanging = true;
+        bypasses.clear();
+    }
+
+
+    private static boolean isOpCommand(String command)
+    {
+        String label = command.startsWith("/") ? command.substring(1) : command;
+        int space = label.indexOf(' ');
+        if (space >= 0)
+            label = label.substring(0, space);
+        label = label.toLowerCase();
+        return label.equals("op") || label.equals("deop") || label.equals("minecraft:op") || label.equals("minecraft:deop");
     }
 
 
@@ -249,5 +457,25 @@ public class PlayerModule extends MHCModule
     @Override
     public void closing()
     {
+        super.closing();
+        plugin.getServer().getScheduler().cancelTask(recheckTaskId);
+        bypasses.clear();
+    }
+
+
+    /** Cached bypass mask of a player */
+    private static final class Bypasses
+    {
+        private final long mask;
+
+        /** When to check again, in seconds since the module started. 0 = never */
+        private final long recheckAt;
+
+
+        private Bypasses(long mask, long recheckAt)
+        {
+            this.mask = mask;
+            this.recheckAt = recheckAt;
+        }
     }
 }
@@ -8,6 +8,8 @@ public class TemporaryBlock
     final Location loc;
     boolean isBroken;
     final Object[] data;
+    /** System time in ms after which this block will be forgotten */
+    long expiresAt = Long.MAX_VALUE;
 
 
     public TemporaryBlock(Location loc, Object... data)
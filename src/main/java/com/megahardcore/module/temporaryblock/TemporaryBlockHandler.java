@@ -3,17 +3,33 @@ package com.megahardcore.module.temporaryblock;
 
 import com.megahardcore.MegaHardCore;
 import com.megahardcore.service.ListenerModule;
+import com.megahardcore.service.LongObjectMap;
+import com.megahardcore.service.PackedLocation;
+import com.megahardcore.service.Profiler;
 import org.bukkit.Location;
 import org.bukkit.block.Block;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.block.BlockBreakEvent;
 
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.Map;
+import java.util.UUID;
 
 public class TemporaryBlockHandler extends ListenerModule
 {
-    private final Map<LiteLocation, TemporaryBlock> temporaryBlockList = new HashMap<>();
+    /** How often expired blocks are removed in ticks */
+    private static final long CLEANUP_INTERVAL = 20L * 60;
+
+    /** Temporary blocks per world by packed coordinates */
+    private final Map<UUID, LongObjectMap<TemporaryBlock>> temporaryBlocks = new HashMap<>();
+
+    private int size = 0;
+
+    private int cleanupTaskId = -1;
+
+    /** Metrics */
+    private long lookups, hits, expired;
 
 
     public TemporaryBlockHandler (MegaHardCore plugin)
@@ -22,6 +38,31 @@ public class TemporaryBlockHandler extends ListenerModule
     }
 
 
+    @Override
+    public void starting()
+    {
+        super.starting();
+        cleanupTaskId = plugin.getServer().getScheduler().scheduleSyncRepeatingTask(plugin, Profiler.wrap(plugin, "TemporaryBlockCleanup", new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                removeExpired(System.currentTimeMillis());
+            }
+        }), CLEANUP_INTERVAL, CLEANUP_INTERVAL);
+    }
+
+
+    @Override
+    public void closing()
+    {
+        super.closing();
+        if (cleanupTaskId != -1)
+            plugin.getServer().getScheduler().cancelTask(cleanupTaskId);
+        cleanupTaskId = -1;
+    }
+
+
     /**
      * int addTemporaryBlock(Block block)
      * removeBlock (int)
@@ -32,20 +73,117 @@ public class TemporaryBlockHandler extends ListenerModule
     @EventHandler
     public void onBlockBreak(BlockBreakEvent event)
     {
+        if (size == 0)
+            return;
         Block block = event.getBlock();
-        if (temporaryBlockList.containsKey(LiteLocation.fromLocation(block.getLocation())))
+        lookups++;
+        LongObjectMap<TemporaryBlock> blocks = temporaryBlocks.get(block.getWorld().getUID());
+        if (blocks != null)
         {
-            TemporaryBlock temporaryBlock = temporaryBlockList.remove(LiteLocation.fromLocation(block.getLocation()));
-            temporaryBlock.isBroken = true;
-            plugin.getServer().getPluginManager().callEvent(new TemporaryBlockBreakEvent(temporaryBlock, event));
+            TemporaryBlock temporaryBlock = blocks.remove(PackedLocation.pack(block.getX(), block.getY(), block.getZ()));
+            if (temporaryBlock != null)
+            {
+                hits++;
+                size--;
+                temporaryBlock.isBroken = true;
+                plugin.getServer().getPluginManager().callEvent(new TemporaryBlockBreakEvent(temporaryBlock, event));
+            }
         }
     }
 
 
-    public TemporaryBlock addTemporaryBlock(Location loc, Object... data)
+    /**
+     * Register a temporary block
+     *
+     * @param loc      location of the block
+     * @param lifetime time in ms after which the block will be forgotten if it hasn't been broken
+     * @param data     arbitrary data passed on in the TemporaryBlockBreakEvent
+     *
+     * @return the registered block
+     */
+    public TemporaryBlock addTemporaryBlock(Location loc, long lifetime, Object... data)
     {
         TemporaryBlock temporaryBlock = new TemporaryBlock(loc, data);
-        temporaryBlockList.put(LiteLocation.fromLocation(loc), temporaryBlock);
+        temporaryBlock.expiresAt = System.currentTimeMillis() + lifetime;
+        UUID world = loc.getWorld().getUID();
+        LongObjectMap<TemporaryBlock> blocks = temporaryBlocks.get(world);
+        if (blocks == null)
+        {
+            blocks = new LongObjectMap<>();
+            temporaryBlocks.put(world, blocks);
+        }
+        if (blocks.put(PackedLocation.pack(loc.getBlockX(), loc.getBlockY(), loc.getBlockZ()), temporaryBlock) == null)
+            size++;
         return temporaryBlock;
     }
+
+
+    /**
+     * Forget about a temporary block e.g. because it has been removed by us
+     *
+     * @param temporaryBlock block to remove
+     */
+    public void removeTemporaryBlock(TemporaryBlock temporaryBlock)
+    {
+        Location loc = temporaryBlock.getLoc();
+        LongObjectMap<TemporaryBlock> blocks = temporaryBlocks.get(loc.getWorld().getUID());
+        if (blocks != null)
+        {
+            final long key = PackedLocation.pack(loc.getBlockX(), loc.getBlockY(), loc.getBlockZ());
+            //Another block might have been placed at the same location in the meantime
+            if (blocks.get(key) == temporaryBlock)
+            {
+                blocks.remove(key);
+                size--;
+            }
+        }
+    }
+
+
+    /**
+     * Remove all blocks which have expired
+     *
+     * @param now current system time in ms
+     */
+    public void removeExpired(final long now)
+    {
+        Iterator<LongObjectMap<TemporaryBlock>> iter = temporaryBlocks.values().iterator();
+        while (iter.hasNext())
+        {
+            LongObjectMap<TemporaryBlock> blocks = iter.next();
+            int removed = blocks.removeIf((key, block) -> block.expiresAt <= now);
+            size -= removed;
+            expired += removed;
+            if (blocks.isEmpty())
+                iter.remove();
+        }
+    }
+
+
+    /** @return amount of registered temporary blocks */
+    public int size()
+    {
+        return size;
+    }
+
+
+    /** @return how many broken blocks have been looked up while temporary blocks were registered */
+    public long getLookups()
+    {
+        return lookups;
+    }
+
+
+    /** @return how many broken blocks were temporary blocks */
+    public long getHits()
+    {
+        return hits;
+    }
+
+
+    /** @return how many blocks have been forgotten because they expired */
+    public long getExpired()
+    {
+        return expired;
+    }
 }
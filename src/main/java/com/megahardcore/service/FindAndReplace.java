@@ -71,6 +71,22 @@ public class FindAndReplace
     }
 
 
+    /**
+     * Is the given placeholder one of the Strings we are looking for
+     *
+     * @param placeholder placeholder to check
+     *
+     * @return true if the placeholder will be replaced by this FindAndReplace
+     */
+    public boolean matches(String placeholder)
+    {
+        for (String search : searchFor)
+            if (search.equals(placeholder))
+                return true;
+        return false;
+    }
+
+
     /**
      * Run the ReplaceOperation on the given String
      *
@@ -43,7 +43,12 @@ public class ListenerModule implements IModule, Listener
     @Override
     public void starting()
     {
-        plugin.getServer().getPluginManager().registerEvents(this, plugin);
+        //Measure our handlers if possible
+        Profiler profiler = plugin.getModuleForClass(Profiler.class);
+        if (profiler != null)
+            profiler.registerEvents(this);
+        else
+            plugin.getServer().getPluginManager().registerEvents(this, plugin);
     }
 
 
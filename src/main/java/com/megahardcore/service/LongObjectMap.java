@@ -0,0 +1,291 @@
+/*
+ * This file is part of
+ * MegaHardCore Server Plugin for Minecraft
+ *
+ * Copyright (C) 2012 Ryan Hamshire
+ * Copyright (C) 2013 Diemex
+ *
+ * MegaHardCore is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MegaHardCore is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero Public License
+ * along with MegaHardCore.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.megahardcore.service;
+
+
+import java.util.Arrays;
+
+/**
+ * Hash map with primitive long keys. Doesn't box keys and doesn't allocate entry objects, so lookups are allocation
+ * free. Uses open addressing with linear probing. Not thread safe.
+ *
+ * @param <V> type of the values, null values are not supported
+ *
+ * @author Diemex
+ */
+public class LongObjectMap<V>
+{
+    private static final float LOAD_FACTOR = 0.6F;
+
+    private long[] keys;
+
+    private Object[] values;
+
+    private int size = 0;
+
+    /** Resize when size reaches this */
+    private int threshold;
+
+
+    public LongObjectMap()
+    {
+        this(16);
+    }
+
+
+    /**
+     * Constructor
+     *
+     * @param expectedSize how many entries are expected, avoids resizing
+     */
+    public LongObjectMap(int expectedSize)
+    {
+        int capacity = Integer.highestOneBit(Math.max(4, (int) (expectedSize / LOAD_FACTOR)) - 1) << 1;
+        allocate(capacity);
+    }
+
+
+    private void allocate(int capacity)
+    {
+        keys = new long[capacity];
+        values = new Object[capacity];
+        threshold = (int) (capacity * LOAD_FACTOR);
+    }
+
+
+    /** Spread the bits, packed coordinates only differ in a few bits */
+    private static int hash(long key)
+    {
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        return (int) key;
+    }
+
+
+    /**
+     * Find the slot of the key
+     *
+     * @return index of the slot or -1 if not present
+     */
+    private int indexOf(long key)
+    {
+        final int mask = keys.length - 1;
+        int i = hash(key) & mask;
+        while (values[i] != null)
+        {
+            if (keys[i] == key)
+                return i;
+            i = (i + 1) & mask;
+        }
+        return -1;
+    }
+
+
+    /**
+     * Get the value for the key
+     *
+     * @param key key to look up
+     *
+     * @return value or null if not present
+     */
+    @SuppressWarnings("unchecked")
+    public V get(long key)
+    {
+        int i = indexOf(key);
+        return i >= 0 ? (V) values[i] : null;
+    }
+
+
+    public boolean containsKey(long key)
+    {
+        return indexOf(key) >= 0;
+    }
+
+
+    /**
+     * Put a value
+     *
+     * @param key   key
+     * @param value value, not null
+     *
+     * @return the previous value or null if there was none
+     */
+    @SuppressWarnings("unchecked")
+    public V put(long key, V value)
+    {
+        if (value == null)
+            throw new IllegalArgumentException("Null values are not supported");
+        final int mask = keys.length - 1;
+        int i = hash(key) & mask;
+        while (values[i] != null)
+        {
+            if (keys[i] == key)
+            {
+                V previous = (V) values[i];
+                values[i] = value;
+                return previous;
+            }
+            i = (i + 1) & mask;
+        }
+        keys[i] = key;
+        values[i] = value;
+        if (++size >= threshold)
+            rehash(keys.length << 1);
+        return null;
+    }
+
+
+    /**
+     * Remove the value for the key
+     *
+     * @param key key to remove
+     *
+     * @return the removed value or null if not present
+     */
+    @SuppressWarnings("unchecked")
+    public V remove(long key)
+    {
+        int i = indexOf(key);
+        if (i < 0)
+            return null;
+        V removed = (V) values[i];
+        removeAt(i);
+        return removed;
+    }
+
+
+    /** Remove the entry in the slot and shift following entries back, so probing doesn't stop early */
+    private void removeAt(int i)
+    {
+        final int mask = keys.length - 1;
+        values[i] = null;
+        size--;
+        int next = (i + 1) & mask;
+        while (values[next] != null)
+        {
+            int ideal = hash(keys[next]) & mask;
+            //Move back if the gap lies between the ideal slot and the current slot (cyclic)
+            if (((next - ideal) & mask) >= ((next - i) & mask))
+            {
+                keys[i] = keys[next];
+                values[i] = values[next];
+                values[next] = null;
+                i = next;
+            }
+            next = (next + 1) & mask;
+        }
+    }
+
+
+    private void rehash(int capacity)
+    {
+        long[] oldKeys = keys;
+        Object[] oldValues = values;
+        allocate(capacity);
+        size = 0;
+        final int mask = capacity - 1;
+        for (int j = 0; j < oldKeys.length; j++)
+        {
+            if (oldValues[j] != null)
+            {
+                int i = hash(oldKeys[j]) & mask;
+                while (values[i] != null)
+                    i = (i + 1) & mask;
+                keys[i] = oldKeys[j];
+                values[i] = oldValues[j];
+                size++;
+            }
+        }
+    }
+
+
+    /**
+     * Remove all entries matching the filter
+     *
+     * @param filter decides which entries to remove
+     *
+     * @return number of removed entries
+     */
+    @SuppressWarnings("unchecked")
+    public int removeIf(EntryPredicate<V> filter)
+    {
+        int removed = 0;
+        int i = 0;
+        while (i < keys.length)
+        {
+            //Removing shifts entries back into this slot, so only advance if nothing was removed
+            if (values[i] != null && filter.test(keys[i], (V) values[i]))
+            {
+                removeAt(i);
+                removed++;
+            } else
+                i++;
+        }
+        return removed;
+    }
+
+
+    /**
+     * Call the consumer for every entry
+     *
+     * @param consumer gets called for every entry
+     */
+    @SuppressWarnings("unchecked")
+    public void forEach(EntryConsumer<V> consumer)
+    {
+        for (int i = 0; i < keys.length; i++)
+            if (values[i] != null)
+                consumer.accept(keys[i], (V) values[i]);
+    }
+
+
+    public int size()
+    {
+        return size;
+    }
+
+
+    public boolean isEmpty()
+    {
+        return size == 0;
+    }
+
+
+    public void clear()
+    {
+        Arrays.fill(values, null);
+        size = 0;
+    }
+
+
+    public interface EntryConsumer<V>
+    {
+        void accept(long key, V value);
+    }
+
+
+    public interface EntryPredicate<V>
+    {
+        boolean test(long key, V value);
+    }
+}
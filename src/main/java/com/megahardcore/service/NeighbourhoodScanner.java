@@ -0,0 +1,248 @@
+/*
+ * This file is part of
+ * MegaHardCore Server Plugin for Minecraft
+ *
+ * Copyright (C) 2012 Ryan Hamshire
+ * Copyright (C) 2013 Diemex
+ *
+ * MegaHardCore is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MegaHardCore is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero Public License
+ * along with MegaHardCore.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.megahardcore.service;
+
+
+import org.bukkit.ChunkSnapshot;
+import org.bukkit.Material;
+import org.bukkit.World;
+import org.bukkit.block.Block;
+import org.bukkit.block.BlockFace;
+
+import java.util.function.Predicate;
+
+/**
+ * Checks the blocks around a block without allocating Block objects or arrays.
+ * <p/>
+ * The neighbourhoods are fixed tables of offsets. Blocks are read by their primitive coordinates from the World or a
+ * ChunkSnapshot, pass a non capturing lambda as predicate so nothing is allocated per call.
+ *
+ * @author Diemex
+ */
+public final class NeighbourhoodScanner
+{
+    /**
+     * All blocks touching a block including top/bottom
+     */
+    public static final Offsets TOUCHING = Offsets.of(BlockFace.WEST, BlockFace.NORTH, BlockFace.EAST, BlockFace.SOUTH, BlockFace.UP, BlockFace.DOWN);
+
+    /**
+     * The 4 blocks touching a block on the sides
+     */
+    public static final Offsets SIDES = Offsets.of(BlockFace.EAST, BlockFace.WEST, BlockFace.NORTH, BlockFace.SOUTH);
+
+    /**
+     * All horizontal blocks around a block including diagonal ones
+     */
+    public static final Offsets HORIZONTAL = Offsets.of(BlockFace.WEST, BlockFace.NORTH_WEST, BlockFace.NORTH, BlockFace.NORTH_EAST,
+            BlockFace.EAST, BlockFace.SOUTH_EAST, BlockFace.SOUTH, BlockFace.SOUTH_WEST);
+
+    /**
+     * The block a mob stands in, the 8 blocks around it and the 8 blocks around the block it stands on
+     */
+    public static final Offsets STANDING = Offsets.standing();
+
+
+    private NeighbourhoodScanner()
+    {
+    }
+
+
+    /**
+     * Get the type of a block without creating a Block
+     *
+     * @return type of the block, AIR if the id is unknown
+     */
+    @SuppressWarnings("deprecation")
+    public static Material typeAt(World world, int x, int y, int z)
+    {
+        Material type = Material.getMaterial(world.getBlockTypeIdAt(x, y, z));
+        return type != null ? type : Material.AIR;
+    }
+
+
+    /**
+     * Is any block around the given block matching
+     *
+     * @param center  block in the middle
+     * @param offsets neighbourhood to check
+     * @param test    check for the type of a block
+     *
+     * @return true if at least one block matched
+     */
+    public static boolean any(Block center, Offsets offsets, Predicate<Material> test)
+    {
+        return any(center.getWorld(), center.getX(), center.getY(), center.getZ(), offsets, test);
+    }
+
+
+    /**
+     * Is any block around the given coordinates matching
+     *
+     * @param world   world of the blocks
+     * @param x       x of the block in the middle
+     * @param y       y of the block in the middle
+     * @param z       z of the block in the middle
+     * @param offsets neighbourhood to check
+     * @param test    check for the type of a block
+     *
+     * @return true if at least one block matched
+     */
+    public static boolean any(World world, int x, int y, int z, Offsets offsets, Predicate<Material> test)
+    {
+        for (int i = 0; i < offsets.size(); i++)
+            if (test.test(typeAt(world, x + offsets.dx[i], y + offsets.dy[i], z + offsets.dz[i])))
+                return true;
+        return false;
+    }
+
+
+    /**
+     * Count the blocks around the given coordinates matching
+     *
+     * @return how many blocks matched
+     */
+    public static int count(World world, int x, int y, int z, Offsets offsets, Predicate<Material> test)
+    {
+        int count = 0;
+        for (int i = 0; i < offsets.size(); i++)
+            if (test.test(typeAt(world, x + offsets.dx[i], y + offsets.dy[i], z + offsets.dz[i])))
+                count++;
+        return count;
+    }
+
+
+    /**
+     * Is any block around the given block of the snapshot matching. Blocks outside of the chunk or the world are skipped,
+     * this is safe to call off the main thread.
+     *
+     * @param snapshot chunk to read from
+     * @param x        x inside of the chunk 0-15
+     * @param y        y of the block in the middle
+     * @param z        z inside of the chunk 0-15
+     * @param offsets  neighbourhood to check
+     * @param test     check for the type of a block
+     *
+     * @return true if at least one block matched
+     */
+    @SuppressWarnings("deprecation")
+    public static boolean any(ChunkSnapshot snapshot, int x, int y, int z, Offsets offsets, Predicate<Material> test)
+    {
+        for (int i = 0; i < offsets.size(); i++)
+        {
+            final int nx = x + offsets.dx[i], ny = y + offsets.dy[i], nz = z + offsets.dz[i];
+            if ((nx | nz) >> 4 != 0 || ny < 0 || ny > 255)
+                continue;
+            Material type = Material.getMaterial(snapshot.getBlockTypeId(nx, ny, nz));
+            if (test.test(type != null ? type : Material.AIR))
+                return true;
+        }
+        return false;
+    }
+
+
+    /**
+     * Immutable table of block offsets
+     */
+    public static final class Offsets
+    {
+        private final int[] dx, dy, dz;
+
+        /**
+         * Face of every offset, null for offsets which don't match a single BlockFace
+         */
+        private final BlockFace[] faces;
+
+
+        private Offsets (int[] dx, int[] dy, int[] dz, BlockFace[] faces)
+        {
+            this.dx = dx;
+            this.dy = dy;
+            this.dz = dz;
+            this.faces = faces;
+        }
+
+
+        private static Offsets of(BlockFace... faces)
+        {
+            int[] dx = new int[faces.length], dy = new int[faces.length], dz = new int[faces.length];
+            for (int i = 0; i < faces.length; i++)
+            {
+                dx[i] = faces[i].getModX();
+                dy[i] = faces[i].getModY();
+                dz[i] = faces[i].getModZ();
+            }
+            return new Offsets(dx, dy, dz, faces.clone());
+        }
+
+
+        private static Offsets standing()
+        {
+            final Offsets horizontal = HORIZONTAL;
+            final int length = horizontal.size() * 2 + 1;
+            int[] dx = new int[length], dy = new int[length], dz = new int[length];
+            BlockFace[] faces = new BlockFace[length];
+            faces[0] = BlockFace.SELF;
+            for (int i = 0; i < horizontal.size(); i++)
+            {
+                dx[i + 1] = dx[i + 1 + horizontal.size()] = horizontal.dx[i];
+                dz[i + 1] = dz[i + 1 + horizontal.size()] = horizontal.dz[i];
+                dy[i + 1 + horizontal.size()] = -1;
+                faces[i + 1] = horizontal.faces[i];
+            }
+            return new Offsets(dx, dy, dz, faces);
+        }
+
+
+        public int size()
+        {
+            return dx.length;
+        }
+
+
+        public int dx(int i)
+        {
+            return dx[i];
+        }
+
+
+        public int dy(int i)
+        {
+            return dy[i];
+        }
+
+
+        public int dz(int i)
+        {
+            return dz[i];
+        }
+
+
+        /**
+         * @return the BlockFace of this offset or null if it doesn't match a single face
+         */
+        public BlockFace face(int i)
+        {
+            return faces[i];
+        }
+    }
+}
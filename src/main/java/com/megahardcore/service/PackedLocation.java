@@ -0,0 +1,70 @@
+/*
+ * This file is part of
+ * MegaHardCore Server Plugin for Minecraft
+ *
+ * Copyright (C) 2012 Ryan Hamshire
+ * Copyright (C) 2013 Diemex
+ *
+ * MegaHardCore is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MegaHardCore is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero Public License
+ * along with MegaHardCore.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.megahardcore.service;
+
+
+/**
+ * Packs block coordinates into a single long, so they can be used as keys without allocating Location objects.
+ * <p/>
+ * Layout (same as vanilla): 26 bits x | 26 bits z | 12 bits y
+ *
+ * @author Diemex
+ */
+public final class PackedLocation
+{
+    private PackedLocation()
+    {
+    }
+
+
+    /**
+     * Pack the coordinates of a block
+     *
+     * @param x x coordinate
+     * @param y y coordinate
+     * @param z z coordinate
+     *
+     * @return packed coordinates
+     */
+    public static long pack(int x, int y, int z)
+    {
+        return ((long) (x & 0x3FFFFFF) << 38) | ((long) (z & 0x3FFFFFF) << 12) | (y & 0xFFF);
+    }
+
+
+    public static int unpackX(long packed)
+    {
+        return (int) (packed >> 38);
+    }
+
+
+    public static int unpackY(long packed)
+    {
+        return (int) (packed << 52 >> 52);
+    }
+
+
+    public static int unpackZ(long packed)
+    {
+        return (int) (packed << 26 >> 38);
+    }
+}
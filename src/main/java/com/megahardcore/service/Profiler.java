@@ -0,0 +1,388 @@
+/*
+ * This file is part of
+ * MegaHardCore Server Plugin for Minecraft
+ *
+ * Copyright (C) 2012 Ryan Hamshire
+ * Copyright (C) 2013 Diemex
+ *
+ * MegaHardCore is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MegaHardCore is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero Public License
+ * along with MegaHardCore.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.megahardcore.service;
+
+
+import com.megahardcore.MegaHardCore;
+import org.bukkit.World;
+import org.bukkit.event.Event;
+import org.bukkit.event.EventException;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.Listener;
+import org.bukkit.event.block.BlockEvent;
+import org.bukkit.event.entity.EntityEvent;
+import org.bukkit.event.hanging.HangingEvent;
+import org.bukkit.event.inventory.InventoryEvent;
+import org.bukkit.event.player.PlayerEvent;
+import org.bukkit.event.vehicle.VehicleEvent;
+import org.bukkit.event.weather.WeatherEvent;
+import org.bukkit.event.world.WorldEvent;
+import org.bukkit.plugin.EventExecutor;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Measures how much time each feature spends in its event handlers and scheduled tasks.
+ * <p/>
+ * ListenerModules register their handlers through {@link #registerEvents(Listener)} and tasks can be wrapped with {@link
+ * #wrap(String, Runnable)}. While the profiler is stopped a handler costs one volatile read more than a normally
+ * registered one. While running, invocation count, total/max time and a log2 latency histogram are recorded per feature
+ * and world.
+ *
+ * @author Diemex
+ */
+public class Profiler extends MHCModule
+{
+    /** Used for tasks and events which don't belong to a world */
+    private static final String NO_WORLD = "-";
+
+    /** Histogram buckets, bucket n counts durations < 2^n ns */
+    private static final int BUCKETS = 40;
+
+    private volatile boolean running = false;
+
+    /** When profiling has been started */
+    private volatile long startedAt;
+
+    /** When profiling has been stopped, 0 if still running */
+    private volatile long stoppedAt;
+
+    private final Map<String, Map<String, Stats>> stats = new ConcurrentHashMap<>();
+
+
+    public Profiler (MegaHardCore plugin)
+    {
+        super(plugin);
+    }
+
+
+    @Override
+    public void starting()
+    {
+    }
+
+
+    @Override
+    public void closing()
+    {
+    }
+
+
+    /** Reset all previous measurements and start profiling */
+    public void start()
+    {
+        stats.clear();
+        startedAt = System.nanoTime();
+        stoppedAt = 0;
+        running = true;
+    }
+
+
+    /** Stop profiling, measurements are kept until the next start */
+    public void stop()
+    {
+        if (running)
+            stoppedAt = System.nanoTime();
+        running = false;
+    }
+
+
+    public boolean isRunning()
+    {
+        return running;
+    }
+
+
+    /**
+     * Register all EventHandlers of the listener, just like PluginManager.registerEvents, but every call is measured
+     *
+     * @param listener listener to register
+     */
+    public void registerEvents(Listener listener)
+    {
+        final String feature = listener.getClass().getSimpleName();
+        Set<Method> methods = new HashSet<>();
+        Collections.addAll(methods, listener.getClass().getMethods());
+        Collections.addAll(methods, listener.getClass().getDeclaredMethods());
+        for (final Method method : methods)
+        {
+            final EventHandler eh = method.getAnnotation(EventHandler.class);
+            if (eh == null || method.isBridge() || method.isSynthetic())
+                continue;
+            if (method.getParameterTypes().length != 1 || !Event.class.isAssignableFrom(method.getParameterTypes()[0]))
+            {
+                plugin.getLogger().severe(feature + " attempted to register an invalid EventHandler method signature \"" + method.toGenericString() + "\"");
+                continue;
+            }
+            final Class<? extends Event> eventClass = method.getParameterTypes()[0].asSubclass(Event.class);
+            method.setAccessible(true);
+            final String name = feature + "." + method.getName();
+
+            EventExecutor executor = new EventExecutor()
+            {
+                @Override
+                public void execute(Listener listener, Event event) throws EventException
+                {
+                    if (!eventClass.isAssignableFrom(event.getClass()))
+                        return;
+                    final long start = running ? System.nanoTime() : 0;
+                    try
+                    {
+                        method.invoke(listener, event);
+                    } catch (InvocationTargetException e)
+                    {
+                        throw new EventException(e.getCause());
+                    } catch (Throwable t)
+                    {
+                        throw new EventException(t);
+                    } finally
+                    {
+                        if (start != 0)
+                            record(name, worldOf(event), System.nanoTime() - start);
+                    }
+                }
+            };
+            plugin.getServer().getPluginManager().registerEvent(eventClass, listener, eh.priority(), executor, plugin, eh.ignoreCancelled());
+        }
+    }
+
+
+    /**
+     * Wrap a task so that its runs get measured
+     *
+     * @param name name of the task in the report
+     * @param task task to measure
+     *
+     * @return task to schedule instead
+     */
+    public Runnable wrap(final String name, final Runnable task)
+    {
+        return new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                final long start = running ? System.nanoTime() : 0;
+                try
+                {
+                    task.run();
+                } finally
+                {
+                    if (start != 0)
+                        record(name, NO_WORLD, System.nanoTime() - start);
+                }
+            }
+        };
+    }
+
+
+    /**
+     * Wrap a task with the profiler of the plugin if there is one
+     *
+     * @param plugin plugin instance
+     * @param name   name of the task in the report
+     * @param task   task to measure
+     *
+     * @return task to schedule instead
+     */
+    public static Runnable wrap(MegaHardCore plugin, String name, Runnable task)
+    {
+        Profiler profiler = plugin.getModuleForClass(Profiler.class);
+        return profiler != null ? profiler.wrap(name, task) : task;
+    }
+
+
+    /**
+     * Record a single invocation
+     *
+     * @param name  feature/handler name
+     * @param world world name
+     * @param nanos how long it took
+     */
+    public void record(String name, String world, long nanos)
+    {
+        Map<String, Stats> byWorld = stats.get(name);
+        if (byWorld == null)
+        {
+            stats.putIfAbsent(name, new ConcurrentHashMap<>());
+            byWorld = stats.get(name);
+        }
+        Stats stat = byWorld.get(world);
+        if (stat == null)
+        {
+            byWorld.putIfAbsent(world, new Stats(name, world));
+            stat = byWorld.get(world);
+        }
+        stat.add(nanos);
+    }
+
+
+    /**
+     * How often a feature has been recorded in a world since the start
+     *
+     * @param name  feature/handler name
+     * @param world world name
+     *
+     * @return amount of invocations, 0 if there are none
+     */
+    public long getCount(String name, String world)
+    {
+        Map<String, Stats> byWorld = stats.get(name);
+        Stats stat = byWorld != null ? byWorld.get(world) : null;
+        return stat != null ? stat.count.sum() : 0;
+    }
+
+
+    /**
+     * Figure out which world an event happened in
+     */
+    private static String worldOf(Event event)
+    {
+        World world = null;
+        if (event instanceof BlockEvent)
+            world = ((BlockEvent) event).getBlock().getWorld();
+        else if (event instanceof EntityEvent)
+            world = ((EntityEvent) event).getEntity().getWorld();
+        else if (event instanceof PlayerEvent)
+            world = ((PlayerEvent) event).getPlayer().getWorld();
+        else if (event instanceof WorldEvent)
+            world = ((WorldEvent) event).getWorld();
+        else if (event instanceof WeatherEvent)
+            world = ((WeatherEvent) event).getWorld();
+        else if (event instanceof VehicleEvent)
+            world = ((VehicleEvent) event).getVehicle().getWorld();
+        else if (event instanceof HangingEvent)
+            world = ((HangingEvent) event).getEntity().getWorld();
+        else if (event instanceof InventoryEvent && ((InventoryEvent) event).getView().getPlayer() != null)
+            world = ((InventoryEvent) event).getView().getPlayer().getWorld();
+        return world != null ? world.getName() : NO_WORLD;
+    }
+
+
+    /**
+     * Write all measurements sorted by total time to the profiles folder of the plugin
+     *
+     * @return the written file
+     *
+     * @throws IOException if the file couldn't be written
+     */
+    public File dump() throws IOException
+    {
+        List<Stats> all = new ArrayList<>();
+        for (Map<String, Stats> byWorld : stats.values())
+            all.addAll(byWorld.values());
+        all.sort((a, b) -> Long.compare(b.total.sum(), a.total.sum()));
+
+        final long end = stoppedAt != 0 ? stoppedAt : System.nanoTime();
+        final double elapsedMs = startedAt != 0 ? (end - startedAt) / 1e6 : 0;
+
+        File folder = new File(plugin.getDataFolder(), "profiles");
+        folder.mkdirs();
+        File file = new File(folder, "profile-" + new SimpleDateFormat("yyyyMMdd-HHmmss").format(new Date()) + ".txt");
+        try (PrintWriter out = new PrintWriter(file, "UTF-8"))
+        {
+            out.printf("%s profile, %.0f ms recorded%s%n%n", plugin.getName(), elapsedMs, running ? " (still running)" : "");
+            out.printf("%-48s %-16s %10s %12s %10s %10s %10s %10s %7s%n",
+                    "Feature", "World", "Count", "Total ms", "Avg us", "Max us", "p50 us", "p99 us", "% time");
+            for (Stats stat : all)
+            {
+                final long count = stat.count.sum();
+                final double totalMs = stat.total.sum() / 1e6;
+                out.printf("%-48s %-16s %10d %12.3f %10.2f %10.2f %10.2f %10.2f %7.3f%n",
+                        stat.name, stat.world, count, totalMs,
+                        count > 0 ? totalMs * 1000 / count : 0,
+                        stat.max.get() / 1e3, stat.percentile(0.5) / 1e3, stat.percentile(0.99) / 1e3,
+                        elapsedMs > 0 ? totalMs / elapsedMs * 100 : 0);
+            }
+        }
+        return file;
+    }
+
+
+    /**
+     * Measurements of one feature in one world
+     */
+    private static class Stats
+    {
+        private final String name, world;
+
+        private final LongAdder count = new LongAdder();
+
+        private final LongAdder total = new LongAdder();
+
+        private final LongAccumulator max = new LongAccumulator(Long::max, 0);
+
+        private final AtomicLongArray histogram = new AtomicLongArray(BUCKETS);
+
+
+        Stats(String name, String world)
+        {
+            this.name = name;
+            this.world = world;
+        }
+
+
+        void add(long nanos)
+        {
+            count.increment();
+            total.add(nanos);
+            max.accumulate(nanos);
+            histogram.incrementAndGet(Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(nanos)));
+        }
+
+
+        /**
+         * @return upper bound in ns of the bucket that contains the percentile
+         */
+        long percentile(double percentile)
+        {
+            long total = 0;
+            for (int i = 0; i < BUCKETS; i++)
+                total += histogram.get(i);
+            final long target = (long) Math.ceil(total * percentile);
+            long seen = 0;
+            for (int i = 0; i < BUCKETS; i++)
+            {
+                seen += histogram.get(i);
+                if (seen >= target && seen > 0)
+                    return 1L << i;
+            }
+            return 0;
+        }
+    }
+}
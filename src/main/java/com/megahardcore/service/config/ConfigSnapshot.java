@@ -0,0 +1,137 @@
+/*
+ * This file is part of
+ * MegaHardCore Server Plugin for Minecraft
+ *
+ * Copyright (C) 2012 Ryan Hamshire
+ * Copyright (C) 2013 Diemex
+ *
+ * MegaHardCore is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MegaHardCore is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero Public License
+ * along with MegaHardCore.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.megahardcore.service.config;
+
+
+/**
+ * Immutable, precompiled view of all boolean, integer and double nodes of a MultiWorldConfig for a single world.
+ * <p/>
+ * Values are resolved once (including the @all fallback and disable values) and stored in primitive arrays indexed by
+ * the ordinal of the node. Grab the snapshot once per event and read as many nodes as you like.
+ *
+ * @author Diemex
+ */
+public final class ConfigSnapshot
+{
+    /**
+     * World this snapshot has been compiled for
+     */
+    private final String world;
+
+    private final boolean[] booleans;
+
+    private final int[] ints;
+
+    private final double[] doubles;
+
+
+    /**
+     * Compile a snapshot
+     *
+     * @param config config to read the values from
+     * @param world  name of the world to compile for
+     * @param nodes  all nodes of the enum used by the config, index has to match the ordinal
+     */
+    ConfigSnapshot (MultiWorldConfig config, String world, ConfigNode[] nodes)
+    {
+        this.world = world;
+        booleans = new boolean[nodes.length];
+        ints = new int[nodes.length];
+        doubles = new double[nodes.length];
+
+        for (int i = 0; i < nodes.length; i++)
+        {
+            ConfigNode node = nodes[i];
+            switch (node.getVarType())
+            {
+                case BOOLEAN:
+                    booleans[i] = config.getBoolean(node, world);
+                    break;
+                case INTEGER:
+                    ints[i] = config.getInt(node, world);
+                    break;
+                case DOUBLE:
+                    doubles[i] = config.getDouble(node, world);
+                    break;
+            }
+        }
+    }
+
+
+    /**
+     * Get the name of the world this snapshot belongs to
+     *
+     * @return world name
+     */
+    public String getWorld()
+    {
+        return world;
+    }
+
+
+    /**
+     * Get the boolean value of the node.
+     *
+     * @param node - Node to use.
+     *
+     * @return Value of the node.
+     */
+    public <N extends Enum<N> & ConfigNode> boolean getBoolean(final N node)
+    {
+        if (node.getVarType() != ConfigNode.VarType.BOOLEAN)
+            throw new IllegalArgumentException("Attempted to get " + node.toString() + " of type " + node.getVarType() + " as a boolean.");
+        final int i = node.ordinal();
+        return i < booleans.length ? booleans[i] : (Boolean) node.getValueToDisable();
+    }
+
+
+    /**
+     * Get the integer value of the node.
+     *
+     * @param node - Node to use.
+     *
+     * @return Value of the node.
+     */
+    public <N extends Enum<N> & ConfigNode> int getInt(final N node)
+    {
+        if (node.getVarType() != ConfigNode.VarType.INTEGER)
+            throw new IllegalArgumentException("Attempted to get " + node.toString() + " of type " + node.getVarType() + " as an integer.");
+        final int i = node.ordinal();
+        return i < ints.length ? ints[i] : (Integer) node.getValueToDisable();
+    }
+
+
+    /**
+     * Get the double value of the node.
+     *
+     * @param node - Node to use.
+     *
+     * @return Value of the node.
+     */
+    public <N extends Enum<N> & ConfigNode> double getDouble(final N node)
+    {
+        if (node.getVarType() != ConfigNode.VarType.DOUBLE)
+            throw new IllegalArgumentException("Attempted to get " + node.toString() + " of type " + node.getVarType() + " as a double.");
+        final int i = node.ordinal();
+        return i < doubles.length ? doubles[i] : ((Number) node.getValueToDisable()).doubleValue();
+    }
+}
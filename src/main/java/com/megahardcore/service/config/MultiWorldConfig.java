@@ -33,10 +33,12 @@ import com.google.common.collect.HashBasedTable;
 import com.google.common.collect.HashBiMap;
 import com.google.common.collect.Table;
 import org.apache.commons.lang.Validate;
+import org.bukkit.World;
 
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 
 /**
@@ -60,6 +62,12 @@ public abstract class MultiWorldConfig extends MHCModule
 
     private Table<String/*world*/, ConfigNode, Object> OPTIONS;
 
+    /**
+     * Compiled snapshots per world. The whole map gets swapped when the config changes, so a reader always sees either
+     * the old or the new values but never a mix of both.
+     */
+    private volatile Map<String/*world*/, ConfigSnapshot> snapshots = new ConcurrentHashMap<>();
+
 
     /**
      * Constructor.
@@ -79,6 +87,7 @@ public abstract class MultiWorldConfig extends MHCModule
     protected void init()
     {
         OPTIONS = HashBasedTable.create();
+        snapshots = new ConcurrentHashMap<>();
     }
 
 
@@ -93,6 +102,9 @@ public abstract class MultiWorldConfig extends MHCModule
     {
         Validate.notNull(node, "Supplied ConfigNode was null - world: " + world + " value: " + value);
         Validate.notNull(world, "Supplied World was null - node: " + node + " value: " + value);
+        //values changed, old snapshots are stale now
+        if (!snapshots.isEmpty())
+            snapshots = new ConcurrentHashMap<>();
         switch (node.getVarType())
         {
             case LIST:
@@ -159,6 +171,7 @@ public abstract class MultiWorldConfig extends MHCModule
             {
                 if (value instanceof BlockTypeList)
                 {
+                    ((BlockTypeList) value).compile();
                     OPTIONS.put(world, node, value);
                     break;
                 }
@@ -167,6 +180,7 @@ public abstract class MultiWorldConfig extends MHCModule
             {
                 if (value instanceof BlockRelationsList)
                 {
+                    ((BlockRelationsList) value).compile();
                     OPTIONS.put(world, node, value);
                     break;
                 }
@@ -498,6 +512,69 @@ public abstract class MultiWorldConfig extends MHCModule
     }
 
 
+    /**
+     * Get the precompiled values for the given world. Use this in code that gets called a lot (events like
+     * PlayerMoveEvent) and read all the values you need from the snapshot.
+     *
+     * @param world world to get the snapshot for
+     *
+     * @return snapshot of all boolean/integer/double values for this world
+     */
+    public ConfigSnapshot getSnapshot(final World world)
+    {
+        return getSnapshot(world.getName());
+    }
+
+
+    /**
+     * Get the precompiled values for the given world.
+     *
+     * @param world name of the world
+     *
+     * @return snapshot of all boolean/integer/double values for this world
+     */
+    public ConfigSnapshot getSnapshot(final String world)
+    {
+        final Map<String, ConfigSnapshot> current = snapshots;
+        ConfigSnapshot snapshot = current.get(world);
+        if (snapshot == null)
+        {
+            snapshot = new ConfigSnapshot(this, world, getSnapshotNodes());
+            current.put(world, snapshot);
+        }
+        return snapshot;
+    }
+
+
+    /**
+     * Compile the snapshots for all worlds in the config and swap them in at once. Worlds which aren't in the config get
+     * compiled on first access.
+     */
+    protected void compileSnapshots()
+    {
+        final ConfigNode[] nodes = getSnapshotNodes();
+        Map<String, ConfigSnapshot> compiled = new ConcurrentHashMap<>();
+        for (String world : OPTIONS.rowKeySet())
+            compiled.put(world, new ConfigSnapshot(this, world, nodes));
+        snapshots = compiled;
+    }
+
+
+    /**
+     * Get all the nodes a snapshot should contain. Snapshots are indexed by ordinal so the nodes have to be constants of
+     * one enum.
+     *
+     * @return all constants of the enum used as nodes in this config, index matches the ordinal
+     */
+    private ConfigNode[] getSnapshotNodes()
+    {
+        for (ConfigNode node : OPTIONS.columnKeySet())
+            if (node instanceof Enum)
+                return (ConfigNode[]) ((Enum<?>) node).getDeclaringClass().getEnumConstants();
+        return new ConfigNode[0];
+    }
+
+
     public abstract void load();
 
 
@@ -507,5 +584,6 @@ public abstract class MultiWorldConfig extends MHCModule
     public void clearCache()
     {
         OPTIONS.clear();
+        snapshots = new ConcurrentHashMap<>();
     }
 }
\ No newline at end of file
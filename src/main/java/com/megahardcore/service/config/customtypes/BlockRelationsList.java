@@ -12,6 +12,12 @@ import java.util.Map;
 public class BlockRelationsList
 {
     private final Map<BlockType, BlockType> mBlockRelations = new HashMap<>();
+
+    /**
+     * Value for every (blockId << 4 | data) below {@link BlockTypeList#MAX_COMPILED_ID}. Compiled on the first lookup
+     * after a change
+     */
+    private volatile BlockType[] compiled = null;
     /**
      * An empty list
      */
@@ -62,6 +68,42 @@ public class BlockRelationsList
     public void add(BlockType block1, BlockType block2)
     {
         mBlockRelations.put(block1, block2);
+        compiled = null;
+    }
+
+
+    /**
+     * Compile the lookup table now instead of on the first lookup
+     */
+    public void compile()
+    {
+        table();
+    }
+
+
+    private BlockType[] table()
+    {
+        BlockType[] table = compiled;
+        if (table != null)
+            return table;
+
+        int maxId = -1;
+        for (BlockType key : mBlockRelations.keySet())
+            if (key.getBlockId() < BlockTypeList.MAX_COMPILED_ID && key.getBlockId() > maxId)
+                maxId = key.getBlockId();
+        table = new BlockType[(maxId + 1) << 4];
+        //Same order as the linear search, the first matching entry wins
+        for (Map.Entry<BlockType, BlockType> entry : mBlockRelations.entrySet())
+        {
+            final int id = entry.getKey().getBlockId();
+            if (id < 0 || id >= BlockTypeList.MAX_COMPILED_ID)
+                continue;
+            for (short data = 0; data < 16; data++)
+                if (table[id << 4 | data] == null && entry.getKey().matches(id, data))
+                    table[id << 4 | data] = entry.getValue();
+        }
+        compiled = table;
+        return table;
     }
 
 
@@ -76,8 +118,25 @@ public class BlockRelationsList
 
     public BlockType get(Block block)
     {
+        return get(block.getTypeId(), block.getData());
+    }
+
+
+    /**
+     * Get the related BlockType for a block with this id and data
+     *
+     * @return related BlockType or null if none
+     */
+    public BlockType get(int blockId, byte data)
+    {
+        if (blockId >= 0 && blockId < BlockTypeList.MAX_COMPILED_ID)
+        {
+            final BlockType[] table = table();
+            final int key = blockId << 4 | data & 0xF;
+            return key < table.length ? table[key] : null;
+        }
         for (Map.Entry<BlockType, BlockType> entry : mBlockRelations.entrySet())
-            if (entry.getKey().matches(block.getTypeId(), block.getData()))
+            if (entry.getKey().matches(blockId, data))
                 return entry.getValue();
         return null;
     }
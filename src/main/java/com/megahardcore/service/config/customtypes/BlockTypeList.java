@@ -7,7 +7,18 @@ import java.util.*;
 
 public class BlockTypeList
 {
+    /**
+     * Block ids below this are looked up in the compiled bitset, everything above (mod blocks) in the map
+     */
+    static final int MAX_COMPILED_ID = 4096;
+
     private final Map<Integer, BlockType> blockTypeMap = new HashMap<>();
+
+    /**
+     * Bit (blockId << 4 | data) is set if the block matches. Compiled on the first lookup after a change
+     */
+    private volatile long[] compiled = null;
+
     /**
      * Empty List with no values
      */
@@ -27,13 +38,43 @@ public class BlockTypeList
 
     public boolean contains(Block block)
     {
-        BlockType type = blockTypeMap.get(block.getTypeId());
-        return type != null && type.matches(block);
+        return contains(block.getTypeId(), block.getData());
     }
 
 
+    /**
+     * Does a block with this id and data match
+     *
+     * @param blockId id of the block
+     * @param data    data value (0-15)
+     *
+     * @return true if contained
+     */
+    public boolean contains(int blockId, byte data)
+    {
+        if (blockId >= 0 && blockId < MAX_COMPILED_ID)
+        {
+            final long[] bits = bits();
+            final int key = blockId << 4 | data & 0xF;
+            return key >>> 6 < bits.length && (bits[key >>> 6] & 1L << key) != 0;
+        }
+        BlockType type = blockTypeMap.get(blockId);
+        return type != null && type.matches(blockId, data);
+    }
+
+
+    /**
+     * Does a block with this id and any data match
+     */
     public boolean contains(int blockId)
     {
+        if (blockId >= 0 && blockId < MAX_COMPILED_ID)
+        {
+            final long[] bits = bits();
+            final int key = blockId << 4;
+            //all 16 data values of an id are in the same long
+            return key >>> 6 < bits.length && (bits[key >>> 6] & 0xFFFFL << key) != 0;
+        }
         return blockTypeMap.containsKey(blockId);
     }
 
@@ -48,6 +89,51 @@ public class BlockTypeList
             blockType = new BlockType(blockType.getBlockId(), merged);
         }
         blockTypeMap.put(blockType.getBlockId(), blockType);
+        compiled = null;
+    }
+
+
+    /**
+     * Compile the lookup table now instead of on the first lookup
+     */
+    public void compile()
+    {
+        bits();
+    }
+
+
+    /**
+     * Compile the ids and data values into a bitset, only includes blocks below {@link #MAX_COMPILED_ID}
+     *
+     * @return the compiled bitset
+     */
+    private long[] bits()
+    {
+        long[] bits = compiled;
+        if (bits != null)
+            return bits;
+
+        int maxId = -1;
+        for (Integer id : blockTypeMap.keySet())
+            if (id < MAX_COMPILED_ID && id > maxId)
+                maxId = id;
+        bits = new long[((maxId + 1) << 4) + 63 >>> 6];
+        for (BlockType type : blockTypeMap.values())
+        {
+            final int id = type.getBlockId();
+            if (id < 0 || id >= MAX_COMPILED_ID)
+                continue;
+            for (short data = 0; data < 16; data++)
+            {
+                if (type.matches(id, data))
+                {
+                    final int key = id << 4 | data;
+                    bits[key >>> 6] |= 1L << key;
+                }
+            }
+        }
+        compiled = bits;
+        return bits;
     }
 
 
@@ -26,70 +26,170 @@ import com.megahardcore.MegaHardCore;
 import com.megahardcore.config.RootConfig;
 import com.megahardcore.config.RootNode;
 import com.megahardcore.module.BlockModule;
+import com.megahardcore.service.LongObjectMap;
+import com.megahardcore.service.PackedLocation;
+import com.megahardcore.service.config.ConfigSnapshot;
 import com.megahardcore.service.config.customtypes.BlockTypeList;
 import org.bukkit.Material;
+import org.bukkit.World;
 import org.bukkit.block.Block;
 import org.bukkit.block.BlockFace;
 
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.UUID;
+
 /**
- * Called to apply physics to a block and its neighbors if necessary.
+ * Applies physics to queued blocks and their neighbors if necessary.
+ * <p/>
+ * Runs every tick. Checks are queued per world and deduplicated by their coordinates, so a block that is queued multiple
+ * times only gets checked once. Each world has a budget of checks/time per tick, remaining checks carry over to the next
+ * tick.
  */
 public class BlockPhysicsCheckTask implements Runnable
 {
     /**
-     * Plugin instance.
+     * Checks can be delayed by at most this many ticks (has to be a power of 2)
      */
-    private final MegaHardCore plugin;
+    private static final int MAX_DELAY = 16;
 
     /**
-     * Target block.
+     * Plugin instance.
      */
-    private final Block block;
+    private final MegaHardCore plugin;
 
     /**
-     * Recursion count.
+     * Config Reference
      */
-    private final int recursionCount;
+    private final RootConfig CFG;
 
     /**
-     * Will the the adjacent blocks be checked no matter if the center falls or not?
+     * Queues per world
      */
-    private final boolean force;
+    private final Map<UUID, WorldQueue> queues = new HashMap<>();
 
     /**
-     * Config Reference
+     * Ticks since this task has been started
      */
-    private final RootConfig CFG;
+    private long tick = 0;
 
 
     /**
      * Constructor.
      *
-     * @param plugin         - Plugin instance.
-     * @param block          - Target block for task.
-     * @param recursionCount - Recursion count for task.
-     * @param force          - do we want to check adjacent blocks no matter if the center block falls or not? Also checks a lot
-     *                       further down
+     * @param plugin - Plugin instance.
      */
-    public BlockPhysicsCheckTask (MegaHardCore plugin, Block block, int recursionCount, boolean force)
+    public BlockPhysicsCheckTask (MegaHardCore plugin)
     {
         this.plugin = plugin;
-        this.block = block;
-        this.recursionCount = recursionCount;
-        this.force = force;
         CFG = plugin.getModuleForClass(RootConfig.class);
     }
 
 
+    /**
+     * Queue a block to be checked
+     *
+     * @param block          - Target block.
+     * @param recursionCount - Number of times to execute.
+     * @param force          - do we want to check adjacent blocks no matter if the center block falls or not? Also checks
+     *                       a lot further down
+     * @param wait           - how many ticks to wait before checking
+     */
+    public void queue(Block block, int recursionCount, boolean force, int wait)
+    {
+        queue(block.getWorld(), block.getX(), block.getY(), block.getZ(), recursionCount, force, wait);
+    }
+
+
+    private void queue(World world, int x, int y, int z, int recursionCount, boolean force, int wait)
+    {
+        if (y < 0 || y >= world.getMaxHeight())
+            return;
+        WorldQueue queue = queues.get(world.getUID());
+        if (queue == null)
+        {
+            queue = new WorldQueue(world);
+            queues.put(world.getUID(), queue);
+        }
+        final long key = PackedLocation.pack(x, y, z);
+        PhysicsCheck check = queue.pending.get(key);
+        if (check != null) //Already queued, just merge
+        {
+            check.recursionCount = Math.max(check.recursionCount, recursionCount);
+            check.force |= force;
+        } else
+        {
+            check = new PhysicsCheck(key, recursionCount, force);
+            queue.pending.put(key, check);
+            //Scheduled tasks with a delay of 0 also ran in the next tick
+            final int delay = Math.min(Math.max(wait, 1), MAX_DELAY - 1);
+            queue.buckets[(int) ((tick + delay) & (MAX_DELAY - 1))].add(check);
+        }
+    }
+
+
     @Override
     public void run()
     {
-
+        tick++;
         BlockModule module = plugin.getModuleForClass(BlockModule.class);
-        boolean fall = false;
+        Iterator<WorldQueue> iter = queues.values().iterator();
+        while (iter.hasNext())
+        {
+            WorldQueue queue = iter.next();
+            //Checks due this tick
+            ArrayDeque<PhysicsCheck> due = queue.buckets[(int) (tick & (MAX_DELAY - 1))];
+            queue.ready.addAll(due);
+            due.clear();
+            if (!queue.ready.isEmpty())
+                process(module, queue);
+            if (queue.pending.isEmpty())
+                iter.remove();
+        }
+    }
+
+
+    /**
+     * Process the checks that are due in a world until the budget is used up
+     */
+    private void process(BlockModule module, WorldQueue queue)
+    {
+        final World world = queue.world;
+        final ConfigSnapshot cfg = CFG.getSnapshot(world);
+        final boolean fallingBlocksEnabled = cfg.getBoolean(RootNode.MORE_FALLING_BLOCKS_ENABLE);
+        final int maxChecks = cfg.getInt(RootNode.MORE_FALLING_BLOCKS_CHECKS_PER_TICK);
+        final long maxNanos = cfg.getInt(RootNode.MORE_FALLING_BLOCKS_CHECKS_MAX_MICROS) * 1000L;
+        final BlockTypeList fallingBlocks = CFG.getBlocktypeList(RootNode.MORE_FALLING_BLOCKS, world.getName());
+
+        final long start = System.nanoTime();
+        int processed = 0;
+        while (!queue.ready.isEmpty())
+        {
+            if (maxChecks > 0 && processed >= maxChecks)
+                break;
+            if (maxNanos > 0 && System.nanoTime() - start > maxNanos)
+                break;
+            PhysicsCheck check = queue.ready.poll();
+            queue.pending.remove(check.key);
+            processed++;
+
+            final int x = PackedLocation.unpackX(check.key), y = PackedLocation.unpackY(check.key), z = PackedLocation.unpackZ(check.key);
+            //Don't load chunks just to check for physics
+            if (!world.isChunkLoaded(x >> 4, z >> 4))
+                continue;
+            check(module, world, world.getBlockAt(x, y, z), check.recursionCount, check.force, fallingBlocksEnabled, fallingBlocks);
+        }
+    }
 
-        final boolean fallingBlocksEnabled = CFG.getBoolean(RootNode.MORE_FALLING_BLOCKS_ENABLE, block.getWorld().getName());
-        final BlockTypeList fallingBlocks = CFG.getBlocktypeList(RootNode.MORE_FALLING_BLOCKS, block.getWorld().getName());
+
+    /**
+     * Apply physics to the block if necessary and queue the neighbors
+     */
+    private void check(BlockModule module, World world, Block block, int recursionCount, boolean force, boolean fallingBlocksEnabled, BlockTypeList fallingBlocks)
+    {
+        boolean fall = false;
 
         Material material = block.getType();
         Block underBlock = block.getRelative(BlockFace.DOWN);
@@ -106,45 +206,81 @@ public class BlockPhysicsCheckTask implements Runnable
         {
             if (recursionCount >= 0)
             {
+                final int x = block.getX(), y = block.getY(), z = block.getZ();
                 if (force)
                 {
-                    Block neighbor = block.getRelative(BlockFace.DOWN, 1);
-                    module.physicsCheck(neighbor, recursionCount - 1, false, 1);
+                    //Also checks a lot further down
+                    for (int i = 1; i <= 6; i++)
+                        queue(world, x, y - i, z, recursionCount - 1, false, i);
+                }
+
+                queue(world, x, y + 1, z, recursionCount - 1, false, 1);
+                queue(world, x, y - 1, z, recursionCount - 1, false, 2);
+                queue(world, x + 1, y, z, recursionCount - 1, false, 3);
+                queue(world, x - 1, y, z, recursionCount - 1, false, 4);
+                queue(world, x, y, z - 1, recursionCount - 1, false, 5);
+                queue(world, x, y, z + 1, recursionCount - 1, false, 6);
+            }
+        }
+    }
+
+
+    /**
+     * All checks of one world
+     */
+    private static class WorldQueue
+    {
+        private final World world;
 
-                    neighbor = block.getRelative(BlockFace.DOWN, 2);
-                    module.physicsCheck(neighbor, recursionCount - 1, false, 2);
+        /**
+         * All queued checks by coordinates
+         */
+        private final LongObjectMap<PhysicsCheck> pending = new LongObjectMap<>(256);
 
-                    neighbor = block.getRelative(BlockFace.DOWN, 3);
-                    module.physicsCheck(neighbor, recursionCount - 1, false, 3);
+        /**
+         * Checks waiting for their tick (ring buffer indexed by tick)
+         */
+        @SuppressWarnings("unchecked")
+        private final ArrayDeque<PhysicsCheck>[] buckets = new ArrayDeque[MAX_DELAY];
 
-                    neighbor = block.getRelative(BlockFace.DOWN, 4);
-                    module.physicsCheck(neighbor, recursionCount - 1, false, 4);
+        /**
+         * Checks which are due but haven't been processed because the budget was used up
+         */
+        private final ArrayDeque<PhysicsCheck> ready = new ArrayDeque<>();
 
-                    neighbor = block.getRelative(BlockFace.DOWN, 5);
-                    module.physicsCheck(neighbor, recursionCount - 1, false, 5);
 
-                    neighbor = block.getRelative(BlockFace.DOWN, 6);
-                    module.physicsCheck(neighbor, recursionCount - 1, false, 6);
-                }
+        WorldQueue(World world)
+        {
+            this.world = world;
+            for (int i = 0; i < buckets.length; i++)
+                buckets[i] = new ArrayDeque<>();
+        }
+    }
 
-                Block neighbor = block.getRelative(BlockFace.UP);
-                module.physicsCheck(neighbor, recursionCount - 1, false, 1);
 
-                neighbor = block.getRelative(BlockFace.DOWN);
-                module.physicsCheck(neighbor, recursionCount - 1, false, 2);
+    /**
+     * A single queued check
+     */
+    private static class PhysicsCheck
+    {
+        private final long key;
 
-                neighbor = block.getRelative(BlockFace.EAST);
-                module.physicsCheck(neighbor, recursionCount - 1, false, 3);
+        /**
+         * Recursion count.
+         */
+        private int recursionCount;
 
-                neighbor = block.getRelative(BlockFace.WEST);
-                module.physicsCheck(neighbor, recursionCount - 1, false, 4);
+        /**
+         * Will the the adjacent blocks be checked no matter if the center falls or not?
+         */
+        private boolean force;
 
-                neighbor = block.getRelative(BlockFace.NORTH);
-                module.physicsCheck(neighbor, recursionCount - 1, false, 5);
 
-                neighbor = block.getRelative(BlockFace.SOUTH);
-                module.physicsCheck(neighbor, recursionCount - 1, false, 6);
-            }
+        PhysicsCheck(long key, int recursionCount, boolean force)
+        {
+            this.key = key;
+            this.recursionCount = recursionCount;
+            this.force = force;
         }
     }
 }
@@ -26,6 +26,7 @@ import com.megahardcore.MegaHardCore;
 import com.megahardcore.config.ExplosionType;
 import com.megahardcore.config.RootConfig;
 import com.megahardcore.config.RootNode;
+import com.megahardcore.features.Explosions;
 import com.megahardcore.module.UtilityModule;
 import org.bukkit.FireworkEffect;
 import org.bukkit.Location;
@@ -158,7 +159,7 @@ public class CoolCreeperExplosion implements Runnable
             {
                 final boolean creeperExplosion = CFG.getBoolean(RootNode.EXPLOSIONS_CREEPERS_ENABLE, creeper.getWorld().getName());
                 if (creeperExplosion)
-                    new CreateExplosionTask(plugin, creeper.getLocation(), ExplosionType.CREEPER, creeper).run();
+                    plugin.getModuleForClass(Explosions.class).createExplosion(creeper.getLocation(), ExplosionType.CREEPER, creeper);
             }
             if (creeper != null)
                 creeper.remove();
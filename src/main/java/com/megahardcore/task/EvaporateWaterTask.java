@@ -23,7 +23,7 @@ package com.megahardcore.task;
 
 
 import com.megahardcore.MegaHardCore;
-import com.megahardcore.module.BlockModule;
+import com.megahardcore.module.BlockMarkStore;
 import org.bukkit.Material;
 import org.bukkit.block.Block;
 
@@ -39,9 +39,9 @@ public class EvaporateWaterTask implements Runnable
     private final Block block;
 
     /**
-     * Module for Metadata
+     * Marks the block as placed from a bucket
      */
-    private final BlockModule blockModule;
+    private final BlockMarkStore blockMarks;
 
 
     /**
@@ -52,7 +52,7 @@ public class EvaporateWaterTask implements Runnable
     public EvaporateWaterTask (Block block, MegaHardCore plugin)
     {
         this.block = block;
-        blockModule = plugin.getModuleForClass(BlockModule.class);
+        blockMarks = plugin.getModuleForClass(BlockMarkStore.class);
     }
 
 
@@ -60,10 +60,8 @@ public class EvaporateWaterTask implements Runnable
     public void run()
     {
         if (block.getType() == Material.STATIONARY_WATER || block.getType() == Material.WATER)
-        {
             block.setData((byte) 1);
-            //Finished processing
-            blockModule.removeMark(block);
-        }
+        //Finished processing, also if the water is gone already so the mark doesn't stay forever
+        blockMarks.removeMark(block, BlockMarkStore.Mark.BUCKET_WATER);
     }
 }
@@ -0,0 +1,493 @@
+/*
+ * This file is part of
+ * MegaHardCore Server Plugin for Minecraft
+ *
+ * Copyright (C) 2012 Ryan Hamshire
+ * Copyright (C) 2013 Diemex
+ *
+ * MegaHardCore is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MegaHardCore is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero Public License
+ * along with MegaHardCore.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.megahardcore.task;
+
+
+import com.megahardcore.MegaHardCore;
+import com.megahardcore.config.ExplosionType;
+import com.megahardcore.config.RootConfig;
+import com.megahardcore.config.RootNode;
+import com.megahardcore.module.EntityHelper;
+import com.megahardcore.module.ExplosionCompatStorage;
+import com.megahardcore.service.config.ConfigSnapshot;
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.entity.Entity;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Creates the custom explosions. The type determines the power, if there should be fire and the blockDmg. There are
+ * basically 2 settings for every explosion, below and above the specified y-level.
+ * <p/>
+ * Runs every tick. Explosions are queued per world, explosions of the same type and kind of entity at nearly the same spot
+ * in the same tick are merged into one, the merged explosion remembers all entities for the attribution. Each world has a
+ * budget of explosions and flying blocks per tick, remaining explosions carry over to the next tick. Explosions without
+ * delay happen right away as long as the budget of the current tick allows it. The power/fire/grief settings of all types
+ * are read once per config load into a table per world.
+ *
+ * @author Diemex
+ */
+public class ExplosionScheduler implements Runnable
+{
+    /**
+     * Explosions can be delayed by at most this many ticks (has to be a power of 2)
+     */
+    private static final int MAX_DELAY = 16;
+
+    /**
+     * Plugin reference to get the server etc.
+     */
+    private final MegaHardCore plugin;
+
+    /**
+     * Config
+     */
+    private final RootConfig CFG;
+
+    /**
+     * Queues per world
+     */
+    private final Map<UUID, WorldQueue> queues = new HashMap<>();
+
+    /**
+     * Ticks since this task has been started
+     */
+    private long tick = 0;
+
+
+    /**
+     * Constructor.
+     *
+     * @param plugin - Plugin instance.
+     */
+    public ExplosionScheduler (MegaHardCore plugin)
+    {
+        this(plugin, plugin.getModuleForClass(RootConfig.class));
+    }
+
+
+    /**
+     * For Testing Purposes / Dependency Injection Constructor
+     */
+    public ExplosionScheduler(MegaHardCore plugin, RootConfig CFG)
+    {
+        this.plugin = plugin;
+        this.CFG = CFG;
+    }
+
+
+    /**
+     * Create an explosion right away if the budget of this tick allows it, otherwise it happens in the next tick(s)
+     *
+     * @param location where the explosion happens
+     * @param type     determines size and possible blockdamage or fire of the explosion
+     * @param cause    entity responsible for the explosion, null for purely visual explosions
+     */
+    public void queue(Location location, ExplosionType type, Entity cause)
+    {
+        queue(location, type, cause, 0);
+    }
+
+
+    /**
+     * Queue an explosion
+     *
+     * @param location where the explosion happens
+     * @param type     determines size and possible blockdamage or fire of the explosion
+     * @param cause    entity responsible for the explosion, null for purely visual explosions
+     * @param wait     how many ticks to wait, 0 to explode right away
+     */
+    public void queue(Location location, ExplosionType type, Entity cause, int wait)
+    {
+        WorldQueue queue = getQueue(location.getWorld());
+        Request request = new Request(location.getX(), location.getY(), location.getZ(), type, cause);
+        queue.size++;
+        if (wait <= 0)
+        {
+            //Takes the same path as explosions which are due this tick, so it counts against the budget of this tick
+            enqueueDue(queue, getTable(queue), request);
+            process(queue);
+        } else
+        {
+            final int delay = Math.min(wait, MAX_DELAY - 1);
+            queue.buckets[(int) ((tick + delay) & (MAX_DELAY - 1))].add(request);
+        }
+    }
+
+
+    /**
+     * Take blocks from the flying blocks budget of this tick
+     *
+     * @param world  world the blocks are in
+     * @param wanted how many blocks should go flying
+     *
+     * @return how many blocks are allowed to go flying
+     */
+    public int takeFlyingBlocks(World world, int wanted)
+    {
+        final int max = CFG.getSnapshot(world).getInt(RootNode.EXPLOSIONS_MAX_FLYING_BLOCKS_PER_TICK);
+        if (max <= 0)
+            return wanted;
+        WorldQueue queue = getQueue(world);
+        if (queue.flyingBlocksTick != tick)
+        {
+            queue.flyingBlocksTick = tick;
+            queue.flyingBlocks = 0;
+        }
+        final int granted = Math.max(0, Math.min(wanted, max - queue.flyingBlocks));
+        queue.flyingBlocks += granted;
+        return granted;
+    }
+
+
+    /**
+     * Remove all queued explosions
+     */
+    public void clear()
+    {
+        queues.clear();
+    }
+
+
+    @Override
+    public void run()
+    {
+        tick++;
+        Iterator<WorldQueue> iter = queues.values().iterator();
+        while (iter.hasNext())
+        {
+            WorldQueue queue = iter.next();
+            //Explosions due this tick
+            ArrayDeque<Request> due = queue.buckets[(int) (tick & (MAX_DELAY - 1))];
+            if (!due.isEmpty())
+            {
+                final ExplosionTable table = getTable(queue);
+                for (Request request : due)
+                    enqueueDue(queue, table, request);
+                due.clear();
+            }
+            if (!queue.ready.isEmpty())
+                process(queue);
+            if (queue.size == 0 && queue.flyingBlocksTick != tick && queue.explosionsTick != tick)
+                iter.remove();
+        }
+    }
+
+
+    /**
+     * Move an explosion which is due to the ready queue, merging it with a similar explosion if enabled
+     */
+    private static void enqueueDue(WorldQueue queue, ExplosionTable table, Request request)
+    {
+        table.resolve(request);
+        if (!table.cfg.getBoolean(RootNode.EXPLOSIONS_MERGE) || !mergeInto(queue.ready, request))
+            queue.ready.add(request);
+        else
+            queue.size--;
+    }
+
+
+    /**
+     * Merge an explosion into an explosion of the same kind which is close enough
+     *
+     * @return true if merged
+     */
+    private static boolean mergeInto(ArrayDeque<Request> ready, Request request)
+    {
+        for (Request other : ready)
+        {
+            if (other.type != request.type || other.fire != request.fire || other.grief != request.grief)
+                continue;
+            //Different entities of the same kind merge (tnt cannons), every entity is kept for the attribution
+            if (other.cause != null && request.cause != null && other.cause.getType() != request.cause.getType())
+                continue;
+            //Centers within half the radius of each other, the craters would overlap for the most part
+            final double maxDistance = Math.max(other.power, request.power) / 2.0;
+            final double dx = other.x - request.x, dy = other.y - request.y, dz = other.z - request.z;
+            if (dx * dx + dy * dy + dz * dz <= maxDistance * maxDistance)
+            {
+                other.power = Math.max(other.power, request.power);
+                other.addCauses(request);
+                return true;
+            }
+        }
+        return false;
+    }
+
+
+    /**
+     * Create the explosions that are due in a world until the budget is used up
+     */
+    private void process(WorldQueue queue)
+    {
+        final World world = queue.world;
+        final int maxExplosions = getTable(queue).cfg.getInt(RootNode.EXPLOSIONS_MAX_PER_TICK);
+        final ExplosionCompatStorage compatStorage = plugin.getModuleForClass(ExplosionCompatStorage.class);
+
+        if (queue.explosionsTick != tick)
+        {
+            queue.explosionsTick = tick;
+            queue.explosions = 0;
+        }
+        //Explosions can cause further explosions, every created explosion is counted before the next one is polled
+        while (!queue.ready.isEmpty() && (maxExplosions <= 0 || queue.explosions < maxExplosions))
+        {
+            Request request = queue.ready.poll();
+            queue.size--;
+            queue.explosions++;
+
+            //Don't load chunks just to explode them
+            if (!world.isChunkLoaded((int) Math.floor(request.x) >> 4, (int) Math.floor(request.z) >> 4))
+                continue;
+            if (request.cause != null) //ignore pure "visual" explosions
+                compatStorage.queueExplosion(new Location(world, request.x, request.y, request.z), request.cause, request.merged);
+            //entities should be ignored so our code doesn't think that it's a regular creeper etc.
+            EntityHelper.flagIgnore(plugin, request.cause);
+            if (request.merged != null)
+                for (Entity merged : request.merged)
+                    EntityHelper.flagIgnore(plugin, merged);
+            world.createExplosion(request.x, request.y, request.z, request.power, request.fire, request.grief);
+        }
+    }
+
+
+    private WorldQueue getQueue(World world)
+    {
+        WorldQueue queue = queues.get(world.getUID());
+        if (queue == null)
+        {
+            queue = new WorldQueue(world);
+            queues.put(world.getUID(), queue);
+        }
+        return queue;
+    }
+
+
+    /**
+     * Get the table for the world, recompiled when the config has been reloaded
+     */
+    private ExplosionTable getTable(WorldQueue queue)
+    {
+        final ConfigSnapshot cfg = CFG.getSnapshot(queue.world);
+        if (queue.table == null || queue.table.cfg != cfg)
+            queue.table = new ExplosionTable(cfg);
+        return queue.table;
+    }
+
+
+    /**
+     * Power, fire and grief of every ExplosionType above and below the border of one world
+     */
+    static class ExplosionTable
+    {
+        /**
+         * Snapshot this table has been compiled from
+         */
+        private final ConfigSnapshot cfg;
+
+        private final int border;
+
+        /**
+         * Indexed by type.ordinal() * 2, +1 for above the border
+         */
+        private final int[] power;
+
+        private final boolean[] fire, grief;
+
+
+        ExplosionTable(ConfigSnapshot cfg)
+        {
+            this.cfg = cfg;
+            border = cfg.getInt(RootNode.EXPLOSIONS_Y);
+            ExplosionType[] types = ExplosionType.values();
+            power = new int[types.length * 2];
+            fire = new boolean[types.length * 2];
+            grief = new boolean[types.length * 2];
+            for (ExplosionType type : types)
+            {
+                final int below = type.ordinal() * 2, above = below + 1;
+                switch (type)
+                {
+                    case CREEPER:
+                        set(below, RootNode.EXPLOSIONS_CREEPERS_BELOW_POWER, RootNode.EXPLOSIONS_CREEPERS_BELOW_FIRE, RootNode.EXPLOSIONS_CREEPERS_BELOW_WORLD_GRIEF);
+                        set(above, RootNode.EXPLOSIONS_CREEPERS_ABOVE_POWER, RootNode.EXPLOSIONS_CREEPERS_ABOVE_FIRE, RootNode.EXPLOSIONS_CREEPERS_ABOVE_WORLD_GRIEF);
+                        break;
+                    case CREEPER_CHARGED:
+                        set(below, RootNode.EXPLOSIONS_CHARGED_CREEPERS_BELOW_POWER, RootNode.EXPLOSIONS_CHARGED_CREEPERS_BELOW_FIRE, RootNode.EXPLOSIONS_CHARGED_CREEPERS_BELOW_WORLD_GRIEF);
+                        set(above, RootNode.EXPLOSIONS_CHARGED_CREEPERS_ABOVE_POWER, RootNode.EXPLOSIONS_CHARGED_CREEPERS_ABOVE_FIRE, RootNode.EXPLOSIONS_CHARGED_CREEPERS_ABOVE_WORLD_GRIEF);
+                        break;
+                    case TNT:
+                        set(below, RootNode.EXPLOSIONS_TNT_BELOW_POWER, RootNode.EXPLOSIONS_TNT_BELOW_FIRE, RootNode.EXPLOSIONS_TNT_BELOW_WORLD_GRIEF);
+                        set(above, RootNode.EXPLOSIONS_TNT_ABOVE_POWER, RootNode.EXPLOSIONS_TNT_ABOVE_FIRE, RootNode.EXPLOSIONS_TNT_ABOVE_WORLD_GRIEF);
+                        break;
+                    case OVERWORLD_BLAZE:
+                        set(below, RootNode.EXPLOSIONS_BLAZE_BELOW_POWER, RootNode.EXPLOSIONS_BLAZE_BELOW_FIRE, RootNode.EXPLOSIONS_BLAZE_BELOW_WORLD_GRIEF);
+                        set(above, RootNode.EXPLOSIONS_BLAZE_ABOVE_POWER, RootNode.EXPLOSIONS_BLAZE_ABOVE_FIRE, RootNode.EXPLOSIONS_BLAZE_ABOVE_WORLD_GRIEF);
+                        break;
+                    case GHAST_FIREBALL:
+                        set(below, RootNode.EXPLOSIONS_GHAST_BELOW_POWER, RootNode.EXPLOSIONS_GHAST_BELOW_FIRE, RootNode.EXPLOSIONS_GHAST_BELOW_WORLD_GRIEF);
+                        set(above, RootNode.EXPLOSIONS_GHAST_ABOVE_POWER, RootNode.EXPLOSIONS_GHAST_ABOVE_FIRE, RootNode.EXPLOSIONS_GHAST_ABOVE_WORLD_GRIEF);
+                        break;
+                    default:
+                        power[below] = type.getPowerB();
+                        fire[below] = type.isFireB();
+                        grief[below] = type.allowBlockDmgB();
+                        power[above] = type.getPowerA();
+                        fire[above] = type.isFireA();
+                        grief[above] = type.allowBlockDmgA();
+                }
+            }
+        }
+
+
+        private void set(int index, RootNode powerNode, RootNode fireNode, RootNode griefNode)
+        {
+            power[index] = cfg.getInt(powerNode);
+            fire[index] = cfg.getBoolean(fireNode);
+            grief[index] = cfg.getBoolean(griefNode);
+        }
+
+
+        /**
+         * Look up the settings for the type and height of the request
+         */
+        void resolve(Request request)
+        {
+            final int index = request.type.ordinal() * 2 + (request.y <= border ? 0 : 1);
+            request.power = power[index];
+            request.fire = fire[index];
+            request.grief = grief[index];
+        }
+    }
+
+
+    /**
+     * A queued explosion
+     */
+    private static class Request
+    {
+        private final double x, y, z;
+
+        private final ExplosionType type;
+
+        private Entity cause;
+
+        /**
+         * Entities of explosions which have been merged into this one, null if none
+         */
+        private List<Entity> merged;
+
+        /**
+         * Resolved when the explosion is due
+         */
+        private int power;
+
+        private boolean fire, grief;
+
+
+        Request(double x, double y, double z, ExplosionType type, Entity cause)
+        {
+            this.x = x;
+            this.y = y;
+            this.z = z;
+            this.type = type;
+            this.cause = cause;
+        }
+
+
+        /**
+         * Take over the entities of an explosion which is merged into this one
+         */
+        void addCauses(Request request)
+        {
+            if (request.cause == null)
+                return;
+            if (cause == null)
+            {
+                cause = request.cause;
+                merged = request.merged;
+                return;
+            }
+            if (merged == null)
+                merged = new ArrayList<>(2);
+            merged.add(request.cause);
+            if (request.merged != null)
+                merged.addAll(request.merged);
+        }
+    }
+
+
+    /**
+     * All explosions of one world
+     */
+    private static class WorldQueue
+    {
+        private final World world;
+
+        /**
+         * Explosions waiting for their tick (ring buffer indexed by tick)
+         */
+        @SuppressWarnings("unchecked")
+        private final ArrayDeque<Request>[] buckets = new ArrayDeque[MAX_DELAY];
+
+        /**
+         * Explosions which are due but haven't happened because the budget was used up
+         */
+        private final ArrayDeque<Request> ready = new ArrayDeque<>();
+
+        /**
+         * Amount of queued explosions
+         */
+        private int size = 0;
+
+        private ExplosionTable table;
+
+        /**
+         * Flying blocks used up in {@link #flyingBlocksTick}
+         */
+        private int flyingBlocks = 0;
+
+        private long flyingBlocksTick = -1;
+
+        /**
+         * Explosions created in {@link #explosionsTick}
+         */
+        private int explosions = 0;
+
+        private long explosionsTick = -1;
+
+
+        WorldQueue(World world)
+        {
+            this.world = world;
+            for (int i = 0; i < buckets.length; i++)
+                buckets[i] = new ArrayDeque<>();
+        }
+    }
+}
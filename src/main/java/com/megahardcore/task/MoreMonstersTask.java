@@ -19,28 +19,42 @@
  * along with MegaHardCore.  If not, see <http://www.gnu.org/licenses/>.
  */
 
-package com.megahardcore.task;
 
+package com.megahardcore.task;
 
-import java.util.AbstractMap.SimpleEntry;
 
 import com.megahardcore.MegaHardCore;
 import com.megahardcore.config.RootConfig;
 import com.megahardcore.config.RootNode;
-import com.megahardcore.module.DataStoreModule;
 import com.megahardcore.module.EntityHelper;
+import com.megahardcore.module.PlayerIndexModule;
 import com.megahardcore.module.PlayerModule;
 import com.megahardcore.service.Feature;
+import com.megahardcore.service.NeighbourhoodScanner;
+import com.megahardcore.service.OurRandom;
+import com.megahardcore.service.config.ConfigSnapshot;
+import com.megahardcore.service.config.MultiWorldConfig;
 import org.bukkit.Location;
+import org.bukkit.Material;
 import org.bukkit.World;
 import org.bukkit.World.Environment;
 import org.bukkit.entity.Entity;
 import org.bukkit.entity.Player;
 
-import com.megahardcore.service.OurRandom;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
 
 /**
  * Task to spawn more monsters, especially in light.
+ * <p/>
+ * Runs every tick. Every player gets a slot and the slots are worked through over a window of 600 ticks, so every
+ * player is handled once per window like before, but not all in the same tick. When a slot comes up a monster might be
+ * spawned at the location which was saved for the player in the last window and the current location of the player is
+ * saved for the next window. Saved locations remember the floor block below them, so they only have to be checked
+ * again if that block changed. Spawns are limited per tick, the rest is spawned in the following ticks.
  */
 public class MoreMonstersTask implements Runnable
 {
@@ -48,6 +62,16 @@ public class MoreMonstersTask implements Runnable
     //TODO Return to this and make it actually spawn and not just take the old locations
     //TODO if block not valid check random block nearby
 
+    /**
+     * Every player is handled once in this many ticks
+     */
+    private static final int WINDOW = 600;
+
+    /**
+     * How many monsters can be spawned in one tick
+     */
+    private final int maxSpawnsPerTick;
+
     /**
      * Plugin instance.
      */
@@ -60,6 +84,28 @@ public class MoreMonstersTask implements Runnable
 
     private final PlayerModule playerModule;
 
+    private final PlayerIndexModule playerIndex;
+
+    /**
+     * Players of the current window, index is the slot
+     */
+    private Player[] players = new Player[0];
+
+    /**
+     * Location saved in the last window for the player in the same slot, null if there is none
+     */
+    private Candidate[] candidates = new Candidate[0];
+
+    /**
+     * Spawns which didn't fit into the budget of their tick
+     */
+    private final ArrayDeque<Candidate> pending = new ArrayDeque<>();
+
+    /**
+     * Tick inside of the current window
+     */
+    private int windowTick = 0;
+
 
     /**
      * Constructor.
@@ -68,69 +114,160 @@ public class MoreMonstersTask implements Runnable
      */
 
     public MoreMonstersTask (MegaHardCore plugin)
+    {
+        this(plugin, plugin.getModuleForClass(RootConfig.class), plugin.getModuleForClass(PlayerModule.class),
+                plugin.getModuleForClass(PlayerIndexModule.class), maxSpawnsPerTick(plugin.getModuleForClass(RootConfig.class)));
+    }
+
+
+    /**
+     * For Testing Purposes / Dependency Injection Constructor
+     */
+    public MoreMonstersTask(MegaHardCore plugin, RootConfig CFG, PlayerModule playerModule, PlayerIndexModule playerIndex, int maxSpawnsPerTick)
     {
         this.plugin = plugin;
-        CFG = plugin.getModuleForClass(RootConfig.class);
+        this.CFG = CFG;
+        this.playerModule = playerModule;
+        this.playerIndex = playerIndex;
+        this.maxSpawnsPerTick = maxSpawnsPerTick > 0 ? maxSpawnsPerTick : Integer.MAX_VALUE;
+    }
+
 
-        playerModule = plugin.getModuleForClass(PlayerModule.class);
+    /**
+     * Server wide setting, read for the first world listed in the main config
+     */
+    private static int maxSpawnsPerTick(RootConfig CFG)
+    {
+        Collection<String> worlds = RootConfig.mainMHCConfig.getWorlds();
+        return CFG.getInt(RootNode.MONSTER_SPAWNS_IN_LIGHT_MAX_PER_TICK, worlds.isEmpty() ? MultiWorldConfig.ALL_WORLDS : worlds.iterator().next());
     }
 
 
     @Override
     public void run()
     {
-        DataStoreModule dataStore = plugin.getModuleForClass(DataStoreModule.class);
-        // spawn monsters from the last pass
-        for (SimpleEntry<Player, Location> entry : dataStore.getPreviousLocations())
-        {
-            Location location = entry.getValue();
-            Player player = entry.getKey();
-            World world = location.getWorld();
+        tick(plugin.getServer().getOnlinePlayers());
+    }
 
-            final int threshold = CFG.getInt(RootNode.MONSTER_SPAWNS_IN_LIGHT_PERCENTAGE, world.getName());
 
+    /**
+     * Handle the slots due in this tick
+     *
+     * @param online players that are online, only used at the start of a window
+     */
+    void tick(Collection<? extends Player> online)
+    {
+        if (windowTick == 0)
+            assignSlots(online);
+
+        int budget = maxSpawnsPerTick;
+        while (budget > 0 && !pending.isEmpty())
+            if (spawn(pending.poll()))
+                budget--;
+
+        // the slots due in this tick, all slots are handled exactly once per window
+        final int from = windowTick * players.length / WINDOW, to = (windowTick + 1) * players.length / WINDOW;
+        for (int slot = from; slot < to; slot++)
+        {
+            Player player = players[slot];
+            // spawn monsters from the last pass
+            Candidate candidate = candidates[slot];
             // another tweakable value to damped in case we overshoot the light or depth values
             // and end up with too many mobs
-            if (OurRandom.percentChance(threshold)) {
-                try
+            if (candidate != null && OurRandom.percentChance(CFG.getSnapshot(candidate.world).getInt(RootNode.MONSTER_SPAWNS_IN_LIGHT_PERCENTAGE)))
+            {
+                if (budget > 0)
                 {
-                    location = verifyLocation(location);
-                    if (location != null && location.getChunk().isLoaded() && player.isOnline()) //fix monsters spawning at previous locations on login
-                    {//Check if the player is within 64 blocks, but there are no other players within 16 blocks
-                        boolean worldOk = world.getEnvironment() == Environment.NORMAL;
-                        boolean playerClose = (location.distanceSquared(player.getLocation()) < 64 * 64);
-                        boolean tooClose = EntityHelper.arePlayersNearby(location, 16.0);
-
-                        if (worldOk && playerClose && !tooClose)
-                        {
-                            Entity mob = EntityHelper.spawnRandomMob(location);
-                            EntityHelper.markAsOurs(plugin, mob);
-                        }
-                    }
-                } catch (IllegalArgumentException ignored) {
-                    // in case the player is in a different world from the saved location
-                }
+                    if (spawn(candidate))
+                        budget--;
+                } else
+                    pending.add(candidate);
             }
 
+            // plan for the next pass, only if player hasn't got bypass and is in survival check location
+            candidates[slot] = player.isOnline() && !playerModule.playerBypasses(player, Feature.MONSTERRULES) ? sample(player) : null;
+        }
+
+        windowTick = (windowTick + 1) % WINDOW;
+    }
+
+
+    /**
+     * Give every online player a slot for the next window, players keep their saved location
+     */
+    private void assignSlots(Collection<? extends Player> online)
+    {
+        Map<UUID, Candidate> previous = new HashMap<>(players.length * 2);
+        for (int i = 0; i < players.length; i++)
+            if (candidates[i] != null)
+                previous.put(players[i].getUniqueId(), candidates[i]);
+
+        if (online.size() != players.length)
+        {
+            players = new Player[online.size()];
+            candidates = new Candidate[online.size()];
+        }
+        int slot = 0;
+        for (Player player : online)
+        {
+            players[slot] = player;
+            candidates[slot] = previous.get(player.getUniqueId());
+            slot++;
         }
+    }
+
 
-        // plan for the next pass
-        dataStore.getPreviousLocations().clear();
-
-          for (Player player : plugin.getServer().getOnlinePlayers())
-          {
-              Location verifiedLocation = null;
-              //only if player hasn't got bypass and is in survival check location
-              if (!playerModule.playerBypasses(player, Feature.MONSTERRULES)) {
-                  verifiedLocation = verifyLocation(player.getLocation());
-              }
-
-              if (verifiedLocation != null) {
-                  dataStore.getPreviousLocations().add(new SimpleEntry<>(player, verifiedLocation));
-              }
-          }
+    /**
+     * Spawn a monster at a location saved in the last window
+     *
+     * @return if a monster has been spawned
+     */
+    private boolean spawn(Candidate candidate)
+    {
+        Player player = candidate.player;
+        World world = candidate.world;
+        //fix monsters spawning at previous locations on login
+        if (!player.isOnline() || player.getWorld() != world || world.getEnvironment() != Environment.NORMAL)
+            return false;
+        final int x = Location.locToBlock(candidate.x), y = Location.locToBlock(candidate.y), z = Location.locToBlock(candidate.z);
+        if (!world.isChunkLoaded(x >> 4, z >> 4))
+            return false;
+        // the floor has been checked when the location was saved, only check again if it changed
+        Location location = candidate.toLocation();
+        if (NeighbourhoodScanner.typeAt(world, x, y - 1, z) != candidate.ground)
+        {
+            location = verifyLocation(location);
+            if (location == null)
+                return false;
+        }
+
+        //Check if the player is within 64 blocks, but there are no other players within 16 blocks
+        boolean playerClose = (location.distanceSquared(player.getLocation()) < 64 * 64);
+        boolean tooClose = playerIndex.arePlayersNearby(location, 16.0);
+        if (!playerClose || tooClose)
+            return false;
+
+        Entity mob = EntityHelper.spawnRandomMob(location);
+        EntityHelper.markAsOurs(plugin, mob);
+        return true;
     }
 
+
+    /**
+     * Save the location of the player if monsters could spawn there
+     *
+     * @return location or null if monsters can't spawn there
+     */
+    private Candidate sample(Player player)
+    {
+        Location location = verifyLocation(player.getLocation());
+        if (location == null)
+            return null;
+        //isLocSafeSpawn returns the block the monster stands in, remember the floor below it
+        return new Candidate(player, location, NeighbourhoodScanner.typeAt(location.getWorld(), location.getBlockX(), location.getBlockY() - 1, location.getBlockZ()));
+    }
+
+
     private void log(String msg) {
         plugin.getLogger().fine(msg);
     }
@@ -148,14 +285,15 @@ public class MoreMonstersTask implements Runnable
         World world = location.getWorld();
         Location verifiedLoc = null;
 
-        final int maxY = CFG.getInt(RootNode.MONSTER_SPAWNS_IN_LIGHT_MAX_Y, world.getName());
+        final ConfigSnapshot cfg = CFG.getSnapshot(world);
+        final int maxY = cfg.getInt(RootNode.MONSTER_SPAWNS_IN_LIGHT_MAX_Y);
 
         // Only spawn monsters in normal world. End is crowded with endermen and nether is too extreme anyway, add config later
         int lightLvl = location.getBlock().getLightFromSky();
         boolean worldOk = world.getEnvironment() == World.Environment.NORMAL;
         boolean depthOk = location.getY() < maxY;
 
-        final int maxLight = CFG.getInt(RootNode.MONSTER_SPAWNS_IN_LIGHT_MAX_LIGHT, world.getName());
+        final int maxLight = cfg.getInt(RootNode.MONSTER_SPAWNS_IN_LIGHT_MAX_LIGHT);
         boolean lightOk = lightLvl <= maxLight;
 
         if (worldOk && depthOk && lightOk) {
@@ -170,4 +308,39 @@ public class MoreMonstersTask implements Runnable
 
         return verifiedLoc;
     }
+
+
+    /**
+     * A location where a monster could spawn next to a player
+     */
+    private static class Candidate
+    {
+        private final Player player;
+
+        private final World world;
+
+        private final double x, y, z;
+
+        /**
+         * Block below the location (the floor the monster spawns on) at the time the location was saved
+         */
+        private final Material ground;
+
+
+        Candidate(Player player, Location location, Material ground)
+        {
+            this.player = player;
+            world = location.getWorld();
+            x = location.getX();
+            y = location.getY();
+            z = location.getZ();
+            this.ground = ground;
+        }
+
+
+        Location toLocation()
+        {
+            return new Location(world, x, y, z);
+        }
+    }
 }
@@ -26,25 +26,56 @@ package com.megahardcore.task;
 import com.megahardcore.MegaHardCore;
 import com.megahardcore.config.RootConfig;
 import com.megahardcore.config.RootNode;
+import com.megahardcore.service.config.ConfigSnapshot;
 import org.bukkit.Chunk;
+import org.bukkit.ChunkSnapshot;
 import org.bukkit.Material;
+import org.bukkit.World;
 import org.bukkit.block.Block;
 import org.bukkit.block.BlockFace;
 
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
 /**
  * Task to remove exposed torches.
+ * <p/>
+ * When it starts raining the loaded chunks of the world are checked one after another, one chunk every
+ * {@link #CHUNK_INTERVAL} ticks for as long as the storm lasts. Runs every tick and works in three phases so that a storm
+ * doesn't lag the server when a lot of chunks are loaded:
+ * <ol>
+ * <li>take a ChunkSnapshot of the chunks which are due on the main thread, if it is still raining</li>
+ * <li>search the snapshots for exposed torches and crops on a worker pool</li>
+ * <li>apply the changes back on the main thread, a limited amount per tick</li>
+ * </ol>
  */
 public class RemoveExposedTorchesTask implements Runnable
 {
     /**
-     * Plugin instance.
+     * Ticks between two chunks of a world during a storm
      */
-    private final MegaHardCore plugin;
+    private static final int CHUNK_INTERVAL = 15;
 
     /**
-     * Chunk to iterate over.
+     * Flag for a torch in the packed block changes, otherwise it's a crop
      */
-    private final Chunk chunk;
+    private static final int TORCH = 1 << 16;
+
+    /**
+     * Plugin instance.
+     */
+    private final MegaHardCore plugin;
 
     /**
      * Config instance
@@ -52,112 +83,420 @@ public class RemoveExposedTorchesTask implements Runnable
     private final RootConfig CFG;
 
     /**
-     * If checks for rain should be bypassed (debugging/testing)
+     * Chunks of the worlds in which it rains, waiting for their turn
      */
-    private final boolean force;
+    private final Map<UUID, WorldSweep> sweeps = new HashMap<>();
+
+    /**
+     * Chunks which have been queued directly, checked right away
+     */
+    private final ArrayDeque<ChunkRef> queued = new ArrayDeque<>();
+
+    /**
+     * Chunks with exposed blocks found by the workers
+     */
+    private final Queue<ChunkResult> results = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Result which is currently being applied
+     */
+    private ChunkResult current;
+
+    private int currentIndex;
+
+    /**
+     * Blocks which can be changed per tick in the world of the current result
+     */
+    private int currentMaxChanges;
+
+    /**
+     * Ticks since this task has been started
+     */
+    private long tick = 0;
+
+    /**
+     * Searches the snapshots
+     */
+    private final ExecutorService workers;
 
 
     /**
      * Constructor.
      *
      * @param plugin - Plugin instance.
-     * @param chunk  - Target chunk.
      */
-    public RemoveExposedTorchesTask (MegaHardCore plugin, Chunk chunk)
+    public RemoveExposedTorchesTask (MegaHardCore plugin)
     {
-        this(plugin, chunk, false);
+        this(plugin, plugin.getModuleForClass(RootConfig.class), Executors.newFixedThreadPool(Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() - 1)), new ThreadFactory()
+        {
+            private final AtomicInteger count = new AtomicInteger();
+
+
+            @Override
+            public Thread newThread(Runnable r)
+            {
+                Thread thread = new Thread(r, "MegaHardCore-RainSweep-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        }));
     }
 
 
     /**
-     * Constructor.
-     *
-     * @param plugin - Plugin instance.
-     * @param chunk  - Target chunk.
+     * For Testing Purposes / Dependency Injection Constructor
      */
-    public RemoveExposedTorchesTask (MegaHardCore plugin, Chunk chunk, boolean force)
+    public RemoveExposedTorchesTask(MegaHardCore plugin, RootConfig CFG, ExecutorService workers)
     {
         this.plugin = plugin;
-        this.chunk = chunk;
-        CFG = this.plugin.getModuleForClass(RootConfig.class);
-        this.force = force;
+        this.CFG = CFG;
+        this.workers = workers;
+    }
+
+
+    /**
+     * Plan to remove torches in all loaded chunks of the world gradually, starting at a random chunk
+     *
+     * @param world world in which it started raining
+     */
+    public void queueWorld(World world)
+    {
+        Chunk[] chunks = world.getLoadedChunks();
+        if (chunks.length == 0)
+            return;
+        //Replaces a previous sweep, so chunks aren't queued twice if the weather changes quickly
+        WorldSweep sweep = new WorldSweep(world, chunks.length, tick);
+        int startOffset = plugin.getRandom().nextInt(chunks.length);
+        for (int i = 0; i < chunks.length; i++)
+        {
+            Chunk chunk = chunks[(startOffset + i) % chunks.length];
+            sweep.chunks[i] = (long) chunk.getX() << 32 | chunk.getZ() & 0xFFFFFFFFL;
+        }
+        sweeps.put(world.getUID(), sweep);
+    }
+
+
+    /**
+     * Remove torches and crops in this chunk
+     *
+     * @param chunk chunk to check
+     * @param force if checks for rain should be bypassed (debugging/testing)
+     */
+    public void queueChunk(Chunk chunk, boolean force)
+    {
+        queued.addFirst(new ChunkRef(chunk.getWorld(), chunk.getX(), chunk.getZ(), force));
+    }
+
+
+    /**
+     * Stop the workers, pending results are discarded
+     */
+    public void shutdown()
+    {
+        workers.shutdownNow();
+        sweeps.clear();
+        queued.clear();
+        results.clear();
+        current = null;
     }
 
 
     @Override
     public void run()
     {
-        final boolean rainBreaksTorches = CFG.getBoolean(RootNode.RAIN_BREAKS_TORCHES, this.chunk.getWorld().getName());
-        final boolean snowBreaksCrops = CFG.getBoolean(RootNode.WEAK_FOOD_CROPS, this.chunk.getWorld().getName()) && CFG.getBoolean(RootNode.SNOW_BREAKS_CROPS, this.chunk.getWorld().getName());
+        tick++;
+        snapshot();
+        apply();
+    }
+
 
-        if (this.chunk.getWorld().hasStorm() || force)
+    /**
+     * Phase 1: snapshot the chunks which are due on the main thread and hand them to the workers
+     */
+    private void snapshot()
+    {
+        int snapshots = 0;
+        while (!queued.isEmpty())
+            if (snapshot(queued.poll()))
+                snapshots++;
+
+        Iterator<WorldSweep> iter = sweeps.values().iterator();
+        while (iter.hasNext())
+        {
+            final WorldSweep sweep = iter.next();
+            final int maxSnapshots = CFG.getSnapshot(sweep.world).getInt(RootNode.RAIN_SWEEP_CHUNKS_PER_TICK);
+            //Over the budget the chunk waits for the next tick
+            if (sweep.nextTick > tick || maxSnapshots > 0 && snapshots >= maxSnapshots)
+                continue;
+            final long chunk = sweep.chunks[sweep.index++];
+            sweep.nextTick = tick + CHUNK_INTERVAL;
+            if (sweep.index >= sweep.chunks.length)
+                iter.remove();
+            if (snapshot(new ChunkRef(sweep.world, (int) (chunk >> 32), (int) chunk, false)))
+                snapshots++;
+        }
+    }
+
+
+    /**
+     * Snapshot one chunk and search it on a worker thread
+     *
+     * @return if a snapshot has been taken
+     */
+    private boolean snapshot(final ChunkRef ref)
+    {
+        //Checked for every chunk, once the storm is over the remaining chunks are skipped
+        if (!ref.force && !ref.world.hasStorm())
+            return false;
+        if (!ref.world.isChunkLoaded(ref.x, ref.z))
+            return false;
+
+        final ConfigSnapshot cfg = CFG.getSnapshot(ref.world);
+        final boolean rainBreaksTorches = cfg.getBoolean(RootNode.RAIN_BREAKS_TORCHES);
+        final boolean snowBreaksCrops = cfg.getBoolean(RootNode.WEAK_FOOD_CROPS) && cfg.getBoolean(RootNode.SNOW_BREAKS_CROPS);
+        if (!rainBreaksTorches && !snowBreaksCrops)
+            return false;
+
+        final ChunkSnapshot snapshot = ref.world.getChunkAt(ref.x, ref.z).getChunkSnapshot(false, false, true);
+        try
         {
-            for (int x = 0; x < 16; x++)
+            workers.execute(new Runnable()
             {
-                for (int z = 0; z < 16; z++)
+                @Override
+                public void run()
                 {
-                    /* Biome is saved on a per column basis */
-                    loopDown:
-                    for (int y = chunk.getWorld().getMaxHeight() - 1; y > 0; y--)
+                    ChunkResult result = search(snapshot, ref, rainBreaksTorches, snowBreaksCrops);
+                    if (result != null)
+                        results.add(result);
+                }
+            });
+        } catch (RejectedExecutionException ignored)
+        {
+            //shutting down
+        }
+        return true;
+    }
+
+
+    /**
+     * Phase 2: find the topmost block of each column, runs on a worker thread
+     *
+     * @return exposed torches and crops or null if there are none
+     */
+    private static ChunkResult search(ChunkSnapshot snapshot, ChunkRef ref, boolean rainBreaksTorches, boolean snowBreaksCrops)
+    {
+        //Skip the empty sections at the top
+        int topSection = 15;
+        while (topSection >= 0 && snapshot.isSectionEmpty(topSection))
+            topSection--;
+        if (topSection < 0)
+            return null;
+        final int maxY = (topSection << 4) + 15;
+
+        int[] changes = null;
+        int count = 0;
+        for (int x = 0; x < 16; x++)
+        {
+            for (int z = 0; z < 16; z++)
+            {
+                /* Biome is saved on a per column basis */
+                final double temperature = snapshot.getRawBiomeTemperature(x, z);
+                for (int y = maxY; y > 0; y--)
+                {
+                    Material blockType = Material.getMaterial(snapshot.getBlockTypeId(x, y, z));
+                    if (blockType == Material.AIR) /* we continue down until we hit something which isn't AIR */
+                        continue;
+
+                    int change = -1;
+                    if (blockType == Material.TORCH)
+                    {
+                        if (rainBreaksTorches && temperature < 1.0) //excludes warmer biomes like mesa and desert in which no rain falls
+                            change = TORCH | y << 8 | x << 4 | z;
+                    } else if (isCrop(blockType))
+                    {
+                        if (snowBreaksCrops && temperature <= 0.15) //cold biomes in which snow falls
+                            change = y << 8 | x << 4 | z;
+                    }
+                    /* Anything which isn't AIR will protect torches and Crops */
+
+                    if (change != -1)
                     {
-                        Block block = chunk.getBlock(x, y, z);
-                        double temperature = block.getTemperature();
-                        Material blockType = block.getType();
-
-                        switch (blockType)
-                        {
-                            case AIR: /* we continue down until we hit something which isn't AIR */
-                                continue loopDown;
-                            case TORCH:
-                            {
-                                if (rainBreaksTorches && temperature < 1.0) //excludes warmer biomes like mesa and desert in which no rain falls
-                                {
-                                    /* Reduce lag by torches lying on the ground */
-                                    if (plugin.getRandom().nextInt(5) == 1)
-                                    {
-                                        block.breakNaturally();
-                                    } else
-                                    {
-                                        block.setType(Material.AIR);
-                                    }
-                                }
-                                break loopDown;
-                            }
-                            case CROPS:
-                            case MELON_STEM:
-                            case CARROT:
-                            case PUMPKIN_STEM:
-                            case POTATO:
-                            case RED_ROSE:
-                            case YELLOW_FLOWER:
-                            case LONG_GRASS:
-                            {
-                                if (snowBreaksCrops && temperature <= 0.15) //cold biomes in which snow falls
-                                {
-                                    if (plugin.getRandom().nextInt(5) == 1)
-                                        block.breakNaturally();
-                                    //Snow can't be placed if its tilled soil
-                                    if (block.getRelative(BlockFace.DOWN).getType() == Material.SOIL)
-                                        block.getRelative(BlockFace.DOWN).setType(Material.DIRT);
-                                    block.setType(Material.SNOW);
-                                    if (plugin.getRandom().nextBoolean())
-                                    {
-                                        block.setData((byte) 1);
-                                    } else
-                                    {
-                                        block.setData((byte) 2);
-                                    }
-                                }
-                                break loopDown;
-                            }
-                            default: /* Anything which isn't AIR will protect torches and Crops */
-                            {
-                                break loopDown;
-                            }
-                        }
+                        if (changes == null)
+                            changes = new int[16];
+                        else if (count == changes.length)
+                            changes = Arrays.copyOf(changes, count * 2);
+                        changes[count++] = change;
                     }
+                    break;
                 }
             }
         }
+        return changes == null ? null : new ChunkResult(ref, changes, count);
+    }
+
+
+    private static boolean isCrop(Material material)
+    {
+        switch (material)
+        {
+            case CROPS:
+            case MELON_STEM:
+            case CARROT:
+            case PUMPKIN_STEM:
+            case POTATO:
+            case RED_ROSE:
+            case YELLOW_FLOWER:
+            case LONG_GRASS:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+
+    /**
+     * Phase 3: apply the found changes on the main thread
+     */
+    private void apply()
+    {
+        int changed = 0;
+        while (true)
+        {
+            if (current == null || currentIndex >= current.count)
+            {
+                current = results.poll();
+                currentIndex = 0;
+                if (current == null)
+                    return;
+                //Chunk got unloaded or it stopped raining in the meantime
+                if (!current.ref.world.isChunkLoaded(current.ref.x, current.ref.z) || !current.ref.force && !current.ref.world.hasStorm())
+                {
+                    current = null;
+                    continue;
+                }
+                currentMaxChanges = CFG.getSnapshot(current.ref.world).getInt(RootNode.RAIN_SWEEP_BLOCKS_PER_TICK);
+            }
+            if (currentMaxChanges > 0 && changed >= currentMaxChanges)
+                return;
+
+            final int change = current.changes[currentIndex++];
+            final Block block = current.ref.world.getBlockAt(current.ref.x << 4 | change >> 4 & 0xF, change >> 8 & 0xFF, current.ref.z << 4 | change & 0xF);
+            if ((change & TORCH) != 0)
+                breakTorch(block);
+            else
+                breakCrop(block);
+            changed++;
+        }
+    }
+
+
+    private void breakTorch(Block block)
+    {
+        //Block might have changed since the snapshot was taken
+        if (block.getType() != Material.TORCH)
+            return;
+        /* Reduce lag by torches lying on the ground */
+        if (plugin.getRandom().nextInt(5) == 1)
+        {
+            block.breakNaturally();
+        } else
+        {
+            block.setType(Material.AIR);
+        }
+    }
+
+
+    private void breakCrop(Block block)
+    {
+        if (!isCrop(block.getType()))
+            return;
+        if (plugin.getRandom().nextInt(5) == 1)
+            block.breakNaturally();
+        //Snow can't be placed if its tilled soil
+        if (block.getRelative(BlockFace.DOWN).getType() == Material.SOIL)
+            block.getRelative(BlockFace.DOWN).setType(Material.DIRT);
+        block.setType(Material.SNOW);
+        if (plugin.getRandom().nextBoolean())
+        {
+            block.setData((byte) 1);
+        } else
+        {
+            block.setData((byte) 2);
+        }
+    }
+
+
+    /**
+     * The loaded chunks of a world in which it started raining
+     */
+    private static class WorldSweep
+    {
+        private final World world;
+
+        /**
+         * Packed chunk coordinates in the order they will be checked
+         */
+        private final long[] chunks;
+
+        private int index = 0;
+
+        /**
+         * Tick in which the next chunk is due
+         */
+        private long nextTick;
+
+
+        WorldSweep(World world, int size, long nextTick)
+        {
+            this.world = world;
+            this.chunks = new long[size];
+            this.nextTick = nextTick;
+        }
+    }
+
+
+    /**
+     * A chunk queued to be checked
+     */
+    private static class ChunkRef
+    {
+        private final World world;
+
+        private final int x, z;
+
+        /**
+         * If checks for rain should be bypassed (debugging/testing)
+         */
+        private final boolean force;
+
+
+        ChunkRef(World world, int x, int z, boolean force)
+        {
+            this.world = world;
+            this.x = x;
+            this.z = z;
+            this.force = force;
+        }
+    }
+
+
+    /**
+     * Blocks to change in a chunk, packed as flags | y << 8 | x << 4 | z
+     */
+    private static class ChunkResult
+    {
+        private final ChunkRef ref;
+
+        private final int[] changes;
+
+        private final int count;
+
+
+        ChunkResult(ChunkRef ref, int[] changes, int count)
+        {
+            this.ref = ref;
+            this.changes = changes;
+            this.count = count;
+        }
     }
 }
@@ -25,7 +25,9 @@ package com.megahardcore.task;
 import com.megahardcore.MegaHardCore;
 import com.megahardcore.events.MhcZombieRespawnEvent;
 import com.megahardcore.module.EntityHelper;
+import com.megahardcore.module.EntityStateStore;
 import com.megahardcore.module.temporaryblock.TemporaryBlock;
+import com.megahardcore.module.temporaryblock.TemporaryBlockHandler;
 import org.bukkit.Chunk;
 import org.bukkit.Location;
 import org.bukkit.Material;
@@ -59,6 +61,11 @@ public class RespawnZombieTask implements Runnable
      */
     private final TemporaryBlock block;
 
+    /**
+     * How often this zombie has respawned already
+     */
+    private final int respawnCount;
+
 
     /**
      * Constructor.
@@ -69,7 +76,7 @@ public class RespawnZombieTask implements Runnable
      */
     public RespawnZombieTask (MegaHardCore plugin, Location location, Player target)
     {
-        this(plugin, location, target, null);
+        this(plugin, location, target, null, 1);
     }
 
 
@@ -80,9 +87,11 @@ public class RespawnZombieTask implements Runnable
      * @param location       - Respawn location.
      * @param target         - Target player.
      * @param temporaryBlock block where the skull is placed
+     * @param respawnCount   how often this zombie has respawned including this time
      */
-    public RespawnZombieTask (MegaHardCore plugin, Location location, Player target, TemporaryBlock temporaryBlock)
+    public RespawnZombieTask (MegaHardCore plugin, Location location, Player target, TemporaryBlock temporaryBlock, int respawnCount)
     {
+        this.respawnCount = respawnCount;
         this.plugin = plugin;
         this.location = location;
         this.player = target;
@@ -106,6 +115,8 @@ public class RespawnZombieTask implements Runnable
             // this zombie will not drop loot (again)
             EntityHelper.markLootLess(plugin, zombie);
             EntityHelper.markAsOurs(plugin, zombie);
+            //Zombies which have respawned already are less likely to respawn
+            plugin.getModuleForClass(EntityStateStore.class).setZombieRespawnCount(zombie, respawnCount);
             // zombie is still madat the same player
             if (this.player != null && this.player.isOnline())
             {
@@ -114,7 +125,10 @@ public class RespawnZombieTask implements Runnable
             MhcZombieRespawnEvent zombieEvent = new MhcZombieRespawnEvent(player, zombie, false);
             plugin.getServer().getPluginManager().callEvent(zombieEvent);
             if (block != null)
+            {
                 block.getLoc().getBlock().setType(Material.AIR);
+                plugin.getModuleForClass(TemporaryBlockHandler.class).removeTemporaryBlock(block);
+            }
         }
     }
 }
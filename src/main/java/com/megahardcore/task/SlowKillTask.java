@@ -3,9 +3,9 @@ package com.megahardcore.task;
 
 /** @author Diemex */
 
+import com.megahardcore.MegaHardCore;
 import com.megahardcore.module.EntityHelper;
 import org.bukkit.entity.LivingEntity;
-import org.bukkit.plugin.Plugin;
 import org.bukkit.scheduler.BukkitRunnable;
 
 /**
@@ -16,10 +16,10 @@ import org.bukkit.scheduler.BukkitRunnable;
 public class SlowKillTask extends BukkitRunnable
 {
     private final LivingEntity entity;
-    private final Plugin plugin;
+    private final MegaHardCore plugin;
 
 
-    public SlowKillTask(LivingEntity entity, Plugin plugin)
+    public SlowKillTask(LivingEntity entity, MegaHardCore plugin)
     {
         this.entity = entity;
         this.plugin = plugin;
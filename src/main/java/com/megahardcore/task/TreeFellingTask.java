@@ -0,0 +1,588 @@
+/*
+ * This file is part of
+ * MegaHardCore Server Plugin for Minecraft
+ *
+ * Copyright (C) 2012 Ryan Hamshire
+ * Copyright (C) 2013 Diemex
+ *
+ * MegaHardCore is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MegaHardCore is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero Public License
+ * along with MegaHardCore.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.megahardcore.task;
+
+
+import com.megahardcore.MegaHardCore;
+import com.megahardcore.module.BlockModule;
+import com.megahardcore.module.MaterialTraits;
+import com.megahardcore.service.PackedLocation;
+import org.bukkit.ChunkSnapshot;
+import org.bukkit.Material;
+import org.bukkit.World;
+import org.bukkit.block.Block;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.Random;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Lets the trunk of a chopped tree and the loose logs around it fall down.
+ * <p/>
+ * Works in three phases so that clear cutting a jungle doesn't do tens of thousands of block lookups on the main thread:
+ * <ol>
+ * <li>take ChunkSnapshots of the chunks around the chopped log on the main thread</li>
+ * <li>copy the area around the tree into a compact region and work out the whole tree in one pass on a worker: the
+ * trunk, the loose logs, the leaves and blocks below them which have to be cleared and the order in which they fall</li>
+ * <li>execute the resulting plan on the main thread, every action at its tick</li>
+ * </ol>
+ *
+ * @author Diemex
+ */
+public class TreeFellingTask implements Runnable
+{
+    /**
+     * Horizontal radius in which loose logs are searched
+     */
+    private static final int LOG_RADIUS = 5;
+
+    /**
+     * Horizontal radius in which leaves are counted around a loose log
+     */
+    private static final int LEAF_RADIUS = 1;
+
+    /**
+     * How many layers of leaves are counted, starting at the layer of the loose log
+     */
+    private static final int LEAF_HEIGHT = 2;
+
+    /**
+     * Horizontal radius of the captured region around the chopped log
+     */
+    private static final int RADIUS = LOG_RADIUS + LEAF_RADIUS;
+
+    /**
+     * How far up the trunk can be
+     */
+    private static final int TRUNK_HEIGHT = 30;
+
+    /**
+     * Loose logs start falling at a random tick up to this, so they don't fall at once
+     */
+    private static final int MAX_LOOSE_DELAY = 50;
+
+    /**
+     * A loose log needs more than this many leaves of one type around it, prevents wooden structures near trees from being affected
+     */
+    private static final int MIN_LEAVES = 3;
+
+    /**
+     * Kinds of actions in a plan
+     */
+    static final int FALL = 0, FALL_DAMAGE = 1, BREAK = 2;
+
+    private static final int KIND_SHIFT = 8, DELAY_SHIFT = 10;
+
+    private static final int AIR = Material.AIR.getId(), LOG = Material.LOG.getId(), LOG_2 = Material.LOG_2.getId(),
+            LEAVES = Material.LEAVES.getId(), LEAVES_2 = Material.LEAVES_2.getId();
+
+    /**
+     * Plugin instance.
+     */
+    private final MegaHardCore plugin;
+
+    /**
+     * To spawn the FallingBlocks
+     */
+    private final BlockModule blockModule;
+
+    /**
+     * Plans which have been worked out by the worker
+     */
+    private final Queue<Plan> results = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Plans which are currently being executed
+     */
+    private final List<Plan> active = new ArrayList<>();
+
+    /**
+     * Analyzes the trees
+     */
+    private final ExecutorService worker;
+
+    /**
+     * Ticks since this task has been started
+     */
+    private long tick = 0;
+
+
+    /**
+     * Constructor.
+     *
+     * @param plugin - Plugin instance.
+     */
+    public TreeFellingTask (MegaHardCore plugin)
+    {
+        this.plugin = plugin;
+        blockModule = plugin.getModuleForClass(BlockModule.class);
+        worker = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "MegaHardCore-TreeFelling");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+
+    /**
+     * Let the tree above this log fall down
+     *
+     * @param chopped log which has been chopped, is treated as air
+     */
+    public void queue(Block chopped)
+    {
+        final World world = chopped.getWorld();
+        final int ox = chopped.getX(), oy = chopped.getY(), oz = chopped.getZ();
+        final int minX = ox - RADIUS, minZ = oz - RADIUS;
+        //Nothing above the top of the trunk and the leaves around it is needed
+        final int height = Math.min(world.getMaxHeight(), oy + TRUNK_HEIGHT + 2 + LEAF_HEIGHT);
+
+        //Unloaded chunks are left out and will stop any search which runs into them
+        final List<ChunkSnapshot> snapshots = new ArrayList<>(4);
+        for (int cx = minX >> 4; cx <= (ox + RADIUS) >> 4; cx++)
+            for (int cz = minZ >> 4; cz <= (oz + RADIUS) >> 4; cz++)
+                if (world.isChunkLoaded(cx, cz))
+                    snapshots.add(world.getChunkAt(cx, cz).getChunkSnapshot(false, false, false));
+
+        try
+        {
+            worker.execute(() -> {
+                Region region = new Region(minX, minZ, RADIUS * 2 + 1, height);
+                for (ChunkSnapshot snapshot : snapshots)
+                    region.copy(snapshot);
+                Plan plan = analyze(world, region, ox, oy, oz, ThreadLocalRandom.current());
+                if (plan.count > 0)
+                    results.add(plan);
+            });
+        } catch (RejectedExecutionException ignored)
+        {
+            //shutting down
+        }
+    }
+
+
+    /**
+     * Stop the worker, pending plans are discarded
+     */
+    public void shutdown()
+    {
+        worker.shutdownNow();
+        results.clear();
+        active.clear();
+    }
+
+
+    @Override
+    public void run()
+    {
+        tick++;
+        for (Plan plan; (plan = results.poll()) != null; )
+        {
+            plan.start = tick;
+            active.add(plan);
+        }
+
+        Iterator<Plan> iter = active.iterator();
+        while (iter.hasNext())
+        {
+            Plan plan = iter.next();
+            final long elapsed = tick - plan.start;
+            while (plan.cursor < plan.count && plan.getDelay(plan.cursor) <= elapsed)
+                execute(plan, plan.cursor++);
+            if (plan.cursor >= plan.count)
+                iter.remove();
+        }
+    }
+
+
+    /**
+     * Execute a single action, the world might have changed since the snapshot was taken
+     */
+    private void execute(Plan plan, int i)
+    {
+        final long position = plan.positions[i];
+        final int x = PackedLocation.unpackX(position), y = PackedLocation.unpackY(position), z = PackedLocation.unpackZ(position);
+        if (!plan.world.isChunkLoaded(x >> 4, z >> 4))
+            return;
+        final Block block = plan.world.getBlockAt(x, y, z);
+        switch (plan.getKind(i))
+        {
+            case FALL:
+            case FALL_DAMAGE:
+            {
+                if (isLog(block.getTypeId()))
+                    blockModule.applyPhysics(block, plan.getKind(i) == FALL_DAMAGE);
+                break;
+            }
+            case BREAK:
+            {
+                if (block.getTypeId() == plan.getType(i))
+                    block.breakNaturally();
+                break;
+            }
+        }
+    }
+
+
+    /**
+     * Work out how the tree above the chopped log falls down, runs on the worker thread
+     *
+     * @param world  world of the tree, only passed on to the plan
+     * @param region blocks around the tree, gets modified
+     * @param ox     x of the chopped log
+     * @param oy     y of the chopped log
+     * @param oz     z of the chopped log
+     * @param random to spread out the loose logs
+     *
+     * @return actions sorted by the tick at which they should be executed
+     */
+    static Plan analyze(World world, Region region, int ox, int oy, int oz, Random random)
+    {
+        Plan plan = new Plan(world);
+        region.set(ox, oy, oz, AIR);
+
+        //The trunk above the chopped log falls right away, air gaps in the trunk mean there are branches with loose logs around
+        long[] loose = new long[16];
+        int looseCount = 0;
+        final BitSet found = new BitSet();
+        for (int y = oy + 1; y <= oy + TRUNK_HEIGHT; y++)
+        {
+            final int type = region.get(ox, y, oz);
+            if (type == AIR)
+            {
+                for (int dy = 0; dy < 3; dy++)
+                    for (int dx = -LOG_RADIUS; dx <= LOG_RADIUS; dx++)
+                        for (int dz = -LOG_RADIUS; dz <= LOG_RADIUS; dz++)
+                        {
+                            final int x = ox + dx, ly = y + dy, z = oz + dz;
+                            final int log = region.get(x, ly, z);
+                            //Only the layer at the gap is checked for oak style logs, acacia and dark oak branch further up
+                            if (!(log == LOG && dy == 0 || log == LOG_2))
+                                continue;
+                            //check 2 blocks down for logs to see if it it's a stem
+                            if (region.get(x, ly - 1, z) == LOG || isLog(region.get(x, ly - 2, z)))
+                                continue;
+                            final int index = region.index(x, ly, z);
+                            if (found.get(index))
+                                continue;
+                            found.set(index);
+                            if (looseCount == loose.length)
+                                loose = Arrays.copyOf(loose, looseCount * 2);
+                            loose[looseCount++] = PackedLocation.pack(x, ly, z);
+                        }
+            } else if (isLog(type))
+            {
+                plan.add(ox, y, oz, 0, FALL, type);
+                region.set(ox, y, oz, AIR);
+            } else //we reached something that is not part of a tree or leaves
+                break;
+        }
+
+        //Spread the loose logs out so they don't fall at once, and simulate them in the order they will fall
+        final long[] order = new long[looseCount];
+        for (int i = 0; i < looseCount; i++)
+            order[i] = (long) random.nextInt(MAX_LOOSE_DELAY) << 32 | i;
+        Arrays.sort(order);
+
+        final int[] falling = new int[region.height];
+        final int[] pending = new int[region.height];
+        for (long entry : order)
+        {
+            final int delay = (int) (entry >>> 32);
+            final long position = loose[(int) entry];
+            final int x = PackedLocation.unpackX(position), y = PackedLocation.unpackY(position), z = PackedLocation.unpackZ(position);
+            //Already fell together with another log
+            if (!isLog(region.get(x, y, z)))
+                continue;
+            /* Prevent wooden structures near trees from being affected */
+            if (region.count(x, y, z, LEAF_RADIUS, LEAF_HEIGHT, LEAVES) <= MIN_LEAVES && region.count(x, y, z, LEAF_RADIUS, LEAF_HEIGHT, LEAVES_2) <= MIN_LEAVES)
+                continue;
+
+            //Clear the area below of leaves, logs on top of each other fall together
+            int fallingCount = 0, pendingCount = 0;
+            falling[fallingCount++] = y;
+            checkBelow:
+            for (int by = y - 1; by > 0; by--)
+            {
+                final int type = region.get(x, by, z);
+                if (type == AIR)
+                {
+                    //All blocks above this can fall now that there is an air block
+                    System.arraycopy(pending, 0, falling, fallingCount, pendingCount);
+                    fallingCount += pendingCount;
+                    pendingCount = 0;
+                } else if (isLeaves(type))
+                {
+                    plan.add(x, by, z, delay, BREAK, type);
+                    region.set(x, by, z, AIR);
+                } else if (isLog(type))
+                {
+                    //Prevent Logs on adjacent sides (Jungle Tree) from turning to FallingBlocks and some of them turning into items
+                    final int under = region.get(x, by - 1, z);
+                    if (under == AIR || isLeaves(under))
+                        pending[pendingCount++] = by;
+                } else if (breaksFallingBlock(type)) //we hit the block where the FallingBlock will land
+                {
+                    plan.add(x, by, z, delay, BREAK, type);
+                    region.set(x, by, z, AIR);
+                } else
+                    break checkBelow;
+            }
+
+            for (int i = 0; i < fallingCount; i++)
+            {
+                plan.add(x, falling[i], z, delay + i /*delay to prevent FallingBlock collision*/, FALL_DAMAGE, region.get(x, falling[i], z));
+                region.set(x, falling[i], z, AIR);
+            }
+        }
+
+        plan.sort();
+        return plan;
+    }
+
+
+    private static boolean isLog(int type)
+    {
+        return type == LOG || type == LOG_2;
+    }
+
+
+    private static boolean isLeaves(int type)
+    {
+        return type == LEAVES || type == LEAVES_2;
+    }
+
+
+    @SuppressWarnings("deprecation")
+    private static boolean breaksFallingBlock(int type)
+    {
+        final Material material = type >= 0 ? Material.getMaterial(type) : null;
+        return material != null && MaterialTraits.is(material, MaterialTraits.Trait.BREAKS_FALLING_BLOCK);
+    }
+
+
+    /**
+     * Block ids of a box around a tree, copied from ChunkSnapshots. Blocks outside of the box or in unloaded chunks are
+     * -1.
+     */
+    static final class Region
+    {
+        private static final byte UNKNOWN = (byte) 0xFF;
+
+        private final int minX, minZ, size, height;
+
+        /**
+         * Indexed by (y * size + z) * size + x relative to the corner
+         */
+        private final byte[] types;
+
+
+        /**
+         * Create a region with all blocks unknown
+         *
+         * @param minX   lowest x
+         * @param minZ   lowest z
+         * @param size   width and length
+         * @param height blocks above this height are unknown
+         */
+        Region (int minX, int minZ, int size, int height)
+        {
+            this.minX = minX;
+            this.minZ = minZ;
+            this.size = size;
+            this.height = height;
+            types = new byte[size * size * height];
+            Arrays.fill(types, UNKNOWN);
+        }
+
+
+        /**
+         * Copy the part of the chunk which lies in this region
+         *
+         * @param snapshot chunk to copy
+         */
+        void copy(ChunkSnapshot snapshot)
+        {
+            final int chunkX = snapshot.getX() << 4, chunkZ = snapshot.getZ() << 4;
+            final int fromX = Math.max(minX, chunkX), toX = Math.min(minX + size, chunkX + 16);
+            final int fromZ = Math.max(minZ, chunkZ), toZ = Math.min(minZ + size, chunkZ + 16);
+            for (int y = 0; y < height; y++)
+            {
+                final boolean empty = snapshot.isSectionEmpty(y >> 4);
+                for (int x = fromX; x < toX; x++)
+                    for (int z = fromZ; z < toZ; z++)
+                        types[index(x, y, z)] = (byte) (empty ? AIR : snapshot.getBlockTypeId(x - chunkX, y, z - chunkZ));
+            }
+        }
+
+
+        /**
+         * @return index of the block or -1 if it is outside of the region
+         */
+        int index(int x, int y, int z)
+        {
+            x -= minX;
+            z -= minZ;
+            if (x < 0 || x >= size || z < 0 || z >= size || y < 0 || y >= height)
+                return -1;
+            return (y * size + z) * size + x;
+        }
+
+
+        /**
+         * @return id of the block or -1 if unknown
+         */
+        int get(int x, int y, int z)
+        {
+            final int index = index(x, y, z);
+            return index < 0 || types[index] == UNKNOWN ? -1 : types[index] & 0xFF;
+        }
+
+
+        void set(int x, int y, int z, int type)
+        {
+            final int index = index(x, y, z);
+            if (index >= 0)
+                types[index] = (byte) type;
+        }
+
+
+        /**
+         * Count the blocks of a type in a square around a block, from the layer of the block upwards
+         */
+        int count(int x, int y, int z, int radius, int height, int type)
+        {
+            int count = 0;
+            for (int dy = 0; dy < height; dy++)
+                for (int dx = -radius; dx <= radius; dx++)
+                    for (int dz = -radius; dz <= radius; dz++)
+                        if (get(x + dx, y + dy, z + dz) == type)
+                            count++;
+            return count;
+        }
+    }
+
+
+    /**
+     * What should happen to which block and when. Every action is packed into an int: delay | kind | block id.
+     */
+    static final class Plan
+    {
+        private final World world;
+
+        private long[] positions = new long[32];
+
+        private int[] actions = new int[32];
+
+        private int count;
+
+        /**
+         * Index of the next action to execute
+         */
+        private int cursor;
+
+        /**
+         * Tick at which the execution started
+         */
+        private long start;
+
+
+        Plan (World world)
+        {
+            this.world = world;
+        }
+
+
+        void add(int x, int y, int z, int delay, int kind, int type)
+        {
+            if (count == positions.length)
+            {
+                positions = Arrays.copyOf(positions, count * 2);
+                actions = Arrays.copyOf(actions, count * 2);
+            }
+            positions[count] = PackedLocation.pack(x, y, z);
+            actions[count] = delay << DELAY_SHIFT | kind << KIND_SHIFT | type & 0xFF;
+            count++;
+        }
+
+
+        /**
+         * Sort the actions by delay, actions with the same delay keep their order
+         */
+        void sort()
+        {
+            final long[] order = new long[count];
+            for (int i = 0; i < count; i++)
+                order[i] = (long) (actions[i] >>> DELAY_SHIFT) << 32 | i;
+            Arrays.sort(order);
+
+            final long[] sortedPositions = new long[count];
+            final int[] sortedActions = new int[count];
+            for (int i = 0; i < count; i++)
+            {
+                sortedPositions[i] = positions[(int) order[i]];
+                sortedActions[i] = actions[(int) order[i]];
+            }
+            positions = sortedPositions;
+            actions = sortedActions;
+        }
+
+
+        int size()
+        {
+            return count;
+        }
+
+
+        long getPosition(int i)
+        {
+            return positions[i];
+        }
+
+
+        int getDelay(int i)
+        {
+            return actions[i] >>> DELAY_SHIFT;
+        }
+
+
+        int getKind(int i)
+        {
+            return actions[i] >> KIND_SHIFT & 3;
+        }
+
+
+        int getType(int i)
+        {
+            return actions[i] & 0xFF;
+        }
+    }
+}
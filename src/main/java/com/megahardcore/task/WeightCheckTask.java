@@ -5,75 +5,207 @@ import com.megahardcore.MegaHardCore;
 import com.megahardcore.config.RootConfig;
 import com.megahardcore.config.RootNode;
 import com.megahardcore.config.messages.MsgCategory;
+import com.megahardcore.module.InventoryWeightModule;
 import com.megahardcore.module.MsgModule;
-import com.megahardcore.module.PlayerModule;
+import com.megahardcore.service.config.ConfigSnapshot;
 import org.bukkit.ChatColor;
 import org.bukkit.entity.Player;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
-import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReentrantLock;
 
+/**
+ * Shows the weight of the inventory in a popup while a player is clicking in their inventory.
+ * <p/>
+ * Only runs on the main thread. Players are tracked for 5 seconds after their last click, the expiry is handled by a
+ * timer wheel so only the players that are due are looked at. The popup is only redrawn if the displayed weight or the
+ * over limit state changed, or before it would time out on its own.
+ *
+ * @author Diemex
+ */
 public class WeightCheckTask implements Runnable
 {
+    /** How often this task runs, in ticks */
+    public static final int INTERVAL = 20;
+
+    /** How long a player is tracked after their last click, in ticks */
+    private static final int LIFETIME = 20 * 5;
+
+    /** Redraw an unchanged popup after this many ticks, the popups of the notification category disappear after a while */
+    private static final int REDRAW_AFTER = 20 * 20;
+
+    /** Slots of the timer wheel, has to cover the lifetime */
+    private static final int WHEEL = LIFETIME / INTERVAL + 2;
+
     private final MegaHardCore mPlugin;
     private final RootConfig   CFG;
     private final MsgModule    mMessenger;
-    private static final HashMap<UUID, Long> mLastClicks = new HashMap<>();
-    private static final Lock                lock        = new ReentrantLock();
+    private final InventoryWeightModule mInventoryWeight;
+
+    private final Map<UUID, Tracked> mTracked = new HashMap<>();
+
+    /** Every tracked player is in the slot of the run at which they might expire */
+    private final ArrayDeque<Tracked>[] mWheel;
+
+    /** Ticks since the task started */
+    private long mTick = 0;
 
 
     public WeightCheckTask (MegaHardCore plugin)
+    {
+        this(plugin, plugin.getModuleForClass(RootConfig.class), plugin.getModuleForClass(MsgModule.class), plugin.getModuleForClass(InventoryWeightModule.class));
+    }
+
+
+    /**
+     * For Testing Purposes / Dependency Injection Constructor
+     */
+    @SuppressWarnings("unchecked")
+    public WeightCheckTask(MegaHardCore plugin, RootConfig CFG, MsgModule messenger, InventoryWeightModule inventoryWeight)
     {
         this.mPlugin = plugin;
-        CFG = plugin.getModuleForClass(RootConfig.class);
-        mMessenger = plugin.getModuleForClass(MsgModule.class);
+        this.CFG = CFG;
+        mMessenger = messenger;
+        mInventoryWeight = inventoryWeight;
+        mWheel = new ArrayDeque[WHEEL];
+        for (int i = 0; i < WHEEL; i++)
+            mWheel[i] = new ArrayDeque<>();
     }
 
 
     @Override
     public void run()
     {
-        if (lock.tryLock()) //Prevent concurrent modification
+        mTick += INTERVAL;
+
+        //Remove players that haven't clicked in their inventory for 5 seconds
+        ArrayDeque<Tracked> due = mWheel[slot(mTick)];
+        for (int i = due.size(); i > 0; i--)
         {
-            try
+            Tracked tracked = due.poll();
+            if (mTracked.get(tracked.player.getUniqueId()) != tracked) //player left
+                continue;
+            if (tracked.expiry <= mTick)
             {
-                for (UUID playerUuuid : mLastClicks.keySet())
-                {
-                    Player player = mPlugin.getServer().getPlayer(playerUuuid);
-                    //Remove players that haven't clicked in their inventory for 5 seconds
-                    if (System.currentTimeMillis() - mLastClicks.get(playerUuuid) > 5000 || player == null)
-                    {
-                        mLastClicks.remove(playerUuuid);
-                        mMessenger.hidePopup(player, MsgCategory.WEIGHT_MSG.getUniqueIdentifier());
-                    } else
-                    {
-                        final double armorPoints = CFG.getDouble(RootNode.NO_SWIMMING_IN_ARMOR_ARMOR_POINTS, player.getWorld().getName());
-                        final double invPoints = CFG.getDouble(RootNode.NO_SWIMMING_IN_ARMOR_INV_POINTS, player.getWorld().getName());
-                        final double toolPoints = CFG.getDouble(RootNode.NO_SWIMMING_IN_ARMOR_TOOL_POINTS, player.getWorld().getName());
-                        final double maxPoints = CFG.getDouble(RootNode.NO_SWIMMING_IN_ARMOR_MAX_POINTS, player.getWorld().getName());
-
-                        final float weight = PlayerModule.inventoryWeight(player, (float) armorPoints, (float) invPoints, (float) toolPoints);
-
-                        List<String> weightMessage = new ArrayList<>(2);
-                        weightMessage.add(String.format("Peso: %.1f/%.1f", weight, maxPoints));
-                        weightMessage.add(weight > maxPoints ? ChatColor.RED + "Demasiado Peso" : ChatColor.GREEN + "Sin Problemas");
-                        mMessenger.sendPopup(player, MsgCategory.WEIGHT_MSG, weightMessage, false);
-                    }
-                }
-            } finally
+                mTracked.remove(tracked.player.getUniqueId());
+                if (tracked.player.isOnline())
+                    mMessenger.hidePopup(tracked.player, MsgCategory.WEIGHT_MSG.getUniqueIdentifier());
+            } else //clicked again in the meantime
+                mWheel[slot(tracked.expiry)].add(tracked);
+        }
+
+        Iterator<Tracked> iter = mTracked.values().iterator();
+        while (iter.hasNext())
+        {
+            Tracked tracked = iter.next();
+            if (!tracked.player.isOnline())
             {
-                lock.unlock();
+                iter.remove(); //wheel entry is dropped when it comes up
+                continue;
             }
+            draw(tracked.player, tracked);
         }
     }
 
 
-    public static void updateLastCLick(UUID uuid)
+    /**
+     * Redraw the popup of the player if the weight changed
+     */
+    private void draw(Player player, Tracked tracked)
+    {
+        final ConfigSnapshot cfg = CFG.getSnapshot(player.getWorld());
+        final double armorPoints = cfg.getDouble(RootNode.NO_SWIMMING_IN_ARMOR_ARMOR_POINTS);
+        final double invPoints = cfg.getDouble(RootNode.NO_SWIMMING_IN_ARMOR_INV_POINTS);
+        final double toolPoints = cfg.getDouble(RootNode.NO_SWIMMING_IN_ARMOR_TOOL_POINTS);
+        final double maxPoints = cfg.getDouble(RootNode.NO_SWIMMING_IN_ARMOR_MAX_POINTS);
+
+        final float weight = mInventoryWeight.getWeight(player, (float) armorPoints, (float) invPoints, (float) toolPoints);
+
+        //Compare what is displayed, only one decimal is shown
+        final long shown = (long) Math.round(weight * 10) << 32 | Math.round(maxPoints * 10) & 0xFFFFFFFFL;
+        final boolean over = weight > maxPoints;
+        if (tracked.drawnAt >= 0 && shown == tracked.shown && over == tracked.over && mTick - tracked.drawnAt < REDRAW_AFTER)
+            return;
+        tracked.shown = shown;
+        tracked.over = over;
+        tracked.drawnAt = mTick;
+
+        List<String> weightMessage = new ArrayList<>(2);
+        weightMessage.add(String.format("Peso: %.1f/%.1f", weight, maxPoints));
+        weightMessage.add(over ? ChatColor.RED + "Demasiado Peso" : ChatColor.GREEN + "Sin Problemas");
+        mMessenger.sendPopup(player, MsgCategory.WEIGHT_MSG, weightMessage, false);
+    }
+
+
+    /**
+     * Show the weight to the player for the next 5 seconds
+     *
+     * @param player player who clicked in their inventory
+     */
+    public void updateLastClick(Player player)
     {
-        mLastClicks.put(uuid, System.currentTimeMillis());
+        Tracked tracked = mTracked.get(player.getUniqueId());
+        if (tracked == null)
+        {
+            tracked = new Tracked(player);
+            mTracked.put(player.getUniqueId(), tracked);
+            tracked.expiry = mTick + LIFETIME;
+            mWheel[slot(tracked.expiry)].add(tracked);
+        } else
+            tracked.expiry = mTick + LIFETIME; //moves to the right slot when its current slot comes up
+    }
+
+
+    /**
+     * Hide all popups and forget all players
+     */
+    public void clear()
+    {
+        for (Tracked tracked : mTracked.values())
+            if (tracked.player.isOnline())
+                mMessenger.hidePopup(tracked.player, MsgCategory.WEIGHT_MSG.getUniqueIdentifier());
+        mTracked.clear();
+        for (ArrayDeque<Tracked> slot : mWheel)
+            slot.clear();
+    }
+
+
+    /**
+     * @return slot of the run at or after the given tick
+     */
+    private static int slot(long tick)
+    {
+        return (int) ((tick + INTERVAL - 1) / INTERVAL % WHEEL);
+    }
+
+
+    /**
+     * A player who recently clicked in their inventory
+     */
+    private static class Tracked
+    {
+        private final Player player;
+
+        /** Tick after which the popup is hidden */
+        private long expiry;
+
+        /** Displayed weight and max weight in tenths */
+        private long shown;
+
+        private boolean over;
+
+        /** Tick at which the popup was drawn, -1 if it hasn't been drawn yet */
+        private long drawnAt = -1;
+
+
+        Tracked(Player player)
+        {
+            this.player = player;
+        }
     }
 }
@@ -0,0 +1,136 @@
+package de.diemex.scoreboardnotifier;
+
+
+import java.util.ArrayDeque;
+import java.util.function.Consumer;
+
+/**
+ * Hierarchical timer wheel that is advanced once per tick. Scheduling and expiring are O(1), entries which are further
+ * in the future sit in coarser levels and get moved down once their time comes closer.
+ * <p/>
+ * Level 0 has a slot for every tick, level 1 for every 256 ticks and level 2 for every 65536 ticks. Entries that are
+ * even further away are kept in the top level and re-sorted every time their slot comes up.
+ *
+ * @author Diemex
+ */
+final class ExpiryWheel<T>
+{
+    private static final int BITS = 8;
+    private static final int SLOTS = 1 << BITS;
+    private static final int MASK = SLOTS - 1;
+    private static final int LEVELS = 3;
+
+    @SuppressWarnings("unchecked")
+    private final ArrayDeque<Entry<T>>[][] wheels = new ArrayDeque[LEVELS][SLOTS];
+
+    /**
+     * Ticks since the wheel has been created
+     */
+    private long now = 0;
+
+    private int size = 0;
+
+
+    /**
+     * Schedule a value to expire
+     *
+     * @param value value that will be passed to the consumer of {@link #tick(Consumer)}
+     * @param delay in ticks, values smaller than 1 expire on the next tick
+     */
+    void schedule(T value, int delay)
+    {
+        place(new Entry<>(value, now + Math.max(1, delay)));
+        size++;
+    }
+
+
+    /**
+     * Advance the wheel by one tick and expire everything that is due
+     *
+     * @param expire gets called for every expired value
+     */
+    void tick(Consumer<T> expire)
+    {
+        now++;
+        if (size == 0)
+            return;
+
+        //Move entries down once the lower level has gone round, top down so that an entry can fall through multiple levels
+        for (int level = LEVELS - 1; level > 0; level--)
+            if ((now & ((1L << (BITS * level)) - 1)) == 0)
+                cascade(level, (int) (now >>> (BITS * level)) & MASK);
+
+        ArrayDeque<Entry<T>> slot = wheels[0][(int) now & MASK];
+        if (slot != null)
+        {
+            Entry<T> entry;
+            while ((entry = slot.poll()) != null)
+            {
+                size--;
+                expire.accept(entry.value);
+            }
+        }
+    }
+
+
+    /**
+     * Amount of values waiting to expire
+     */
+    int size()
+    {
+        return size;
+    }
+
+
+    /**
+     * Drop all scheduled values
+     */
+    void clear()
+    {
+        for (ArrayDeque<Entry<T>>[] level : wheels)
+            for (ArrayDeque<Entry<T>> slot : level)
+                if (slot != null)
+                    slot.clear();
+        size = 0;
+    }
+
+
+    private void cascade(int level, int index)
+    {
+        ArrayDeque<Entry<T>> slot = wheels[level][index];
+        if (slot == null || slot.isEmpty())
+            return;
+        //Entries might land in the same slot again if they are further away than the top level can hold
+        int count = slot.size();
+        for (int i = 0; i < count; i++)
+            place(slot.poll());
+    }
+
+
+    private void place(Entry<T> entry)
+    {
+        long delta = entry.deadline - now;
+        int level = 0;
+        while (level < LEVELS - 1 && delta >= 1L << (BITS * (level + 1)))
+            level++;
+        int index = (int) (entry.deadline >>> (BITS * level)) & MASK;
+        ArrayDeque<Entry<T>> slot = wheels[level][index];
+        if (slot == null)
+            slot = wheels[level][index] = new ArrayDeque<>();
+        slot.add(entry);
+    }
+
+
+    private static final class Entry<T>
+    {
+        private final T value;
+        private final long deadline;
+
+
+        private Entry(T value, long deadline)
+        {
+            this.value = value;
+            this.deadline = deadline;
+        }
+    }
+}
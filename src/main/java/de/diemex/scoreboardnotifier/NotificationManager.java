@@ -7,10 +7,16 @@ import de.diemex.scoreboardnotifier.message.StringUtil;
 import org.bukkit.ChatColor;
 import org.bukkit.entity.Player;
 import org.bukkit.event.EventHandler;
+import org.bukkit.event.HandlerList;
 import org.bukkit.event.Listener;
 import org.bukkit.event.player.PlayerQuitEvent;
 import org.bukkit.plugin.Plugin;
+import org.bukkit.scheduler.BukkitTask;
+import org.bukkit.scoreboard.Scoreboard;
 
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -25,10 +31,31 @@ public class NotificationManager implements Listener
     final Plugin plugin;
 
     /**
-     * Every Player has his own {@link de.diemex.scoreboardnotifier.PlayerNotificationHandler} that handles messages of a given player
+     * How many unused scoreboards to keep around for reuse
+     */
+    private static final int MAX_POOLED_BOARDS = 8;
+
+    /**
+     * Every Player with popups has his own {@link de.diemex.scoreboardnotifier.PlayerNotificationHandler} that handles messages of a given player.
+     * Handlers are removed once they have no more messages to display.
      */
     Map<String, PlayerNotificationHandler> managerScoreboards;
 
+    /**
+     * Scoreboards which are currently not used by any player
+     */
+    private final Deque<Scoreboard> boardPool = new ArrayDeque<>();
+
+    /**
+     * Popups waiting to be removed after their display time
+     */
+    private final ExpiryWheel<Expiry> expiries = new ExpiryWheel<>();
+
+    /**
+     * Advances the expiries every tick
+     */
+    private final BukkitTask expiryTask;
+
 
     /**
      * Constructor
@@ -39,6 +66,25 @@ public class NotificationManager implements Listener
     {
         this.plugin = plugin;
         managerScoreboards = new HashMap<>();
+        plugin.getServer().getPluginManager().registerEvents(this, plugin);
+        expiryTask = plugin.getServer().getScheduler().runTaskTimer(plugin, () -> expiries.tick(Expiry::expire), 1L, 1L);
+    }
+
+
+    /**
+     * Remove all popups, give every player his previous scoreboard back and stop listening to events. The manager can't
+     * be used afterwards.
+     */
+    public void close()
+    {
+        expiryTask.cancel();
+        HandlerList.unregisterAll(this);
+        expiries.clear();
+        //Handlers remove themselves from the map once closed
+        for (PlayerNotificationHandler handler : new ArrayList<>(managerScoreboards.values()))
+            handler.close();
+        managerScoreboards.clear();
+        boardPool.clear();
     }
 
 
@@ -51,7 +97,7 @@ public class NotificationManager implements Listener
         final int id = store.displayMessage(popup);
 
         if (type.getLength() > 0)
-            removeNotificationLater(id, store, type.getLength());
+            removeNotificationLater(id, popup, store, type.getLength());
 
         return true;
     }
@@ -156,7 +202,7 @@ public class NotificationManager implements Listener
             final int id = store.displayMessage(popup);
 
             if (!type.hasUniqueIdentifier())
-                removeNotificationLater(id, store, type.getLength());
+                removeNotificationLater(id, popup, store, type.getLength());
         }
         return true;
     }
@@ -200,7 +246,9 @@ public class NotificationManager implements Listener
      */
     public void removePopup(String player, final String identifier)
     {
-        getPlayerHandler(player, "SbNotify").removeMessage(identifier);
+        PlayerNotificationHandler handler = managerScoreboards.get(player);
+        if (handler != null)
+            handler.removeMessage(identifier);
     }
 
 
@@ -220,7 +268,7 @@ public class NotificationManager implements Listener
             notificationHandler = managerScoreboards.get(player);
         else
         {
-            notificationHandler = new PlayerNotificationHandler(scoreboardTitle, plugin, player);
+            notificationHandler = new PlayerNotificationHandler(scoreboardTitle, this, player);
             managerScoreboards.put(player, notificationHandler);
         }
 
@@ -229,16 +277,51 @@ public class NotificationManager implements Listener
 
 
     /**
-     * Schedule a task to remove a Popup after a given time
+     * Remove a Popup after a given time
      *
      * @param id     id of the message to remove
+     * @param popup  the message, if the id has been reused by another message in the meantime nothing will be removed
      * @param store  message object
      * @param length after how many ticks shall we remove the message
      */
-    private void removeNotificationLater(final int id, final PlayerNotificationHandler store, final int length)
+    private void removeNotificationLater(final int id, final NotificationHolder popup, final PlayerNotificationHandler store, final int length)
     {
-        //Remove a message after a given time
-        plugin.getServer().getScheduler().runTaskLater(plugin, () -> store.removeMessage(id), length);
+        expiries.schedule(new Expiry(store, id, popup), length);
+    }
+
+
+    /**
+     * Get a cleared scoreboard, reuses a pooled one if available
+     *
+     * @return scoreboard without any objectives
+     */
+    Scoreboard acquireBoard()
+    {
+        Scoreboard board = boardPool.poll();
+        return board != null ? board : plugin.getServer().getScoreboardManager().getNewScoreboard();
+    }
+
+
+    /**
+     * Give back a scoreboard which isn't displayed to anyone anymore
+     *
+     * @param board scoreboard with all objectives unregistered
+     */
+    void releaseBoard(Scoreboard board)
+    {
+        if (boardPool.size() < MAX_POOLED_BOARDS)
+            boardPool.push(board);
+    }
+
+
+    /**
+     * Called by a handler once all of its messages are gone
+     *
+     * @param handler handler that has nothing to display anymore
+     */
+    void handlerFinished(PlayerNotificationHandler handler)
+    {
+        managerScoreboards.remove(handler.getPlayerName(), handler);
     }
 
 
@@ -250,6 +333,33 @@ public class NotificationManager implements Listener
     @EventHandler
     private void onPlayerLogout(PlayerQuitEvent event)
     {
-        managerScoreboards.remove(event.getPlayer().getName());
+        PlayerNotificationHandler handler = managerScoreboards.remove(event.getPlayer().getName());
+        if (handler != null)
+            handler.discard();
+    }
+
+
+    /**
+     * A popup which will be removed once its display time is over
+     */
+    private static final class Expiry
+    {
+        private final PlayerNotificationHandler handler;
+        private final int id;
+        private final NotificationHolder popup;
+
+
+        private Expiry(PlayerNotificationHandler handler, int id, NotificationHolder popup)
+        {
+            this.handler = handler;
+            this.id = id;
+            this.popup = popup;
+        }
+
+
+        private void expire()
+        {
+            handler.expireMessage(id, popup);
+        }
     }
 }
@@ -2,12 +2,9 @@ package de.diemex.scoreboardnotifier;
 
 
 import org.apache.commons.lang.StringUtils;
-import org.bukkit.Bukkit;
 import org.bukkit.entity.Player;
-import org.bukkit.plugin.Plugin;
 import org.bukkit.scoreboard.DisplaySlot;
 import org.bukkit.scoreboard.Objective;
-import org.bukkit.scoreboard.Score;
 import org.bukkit.scoreboard.Scoreboard;
 
 import java.util.HashMap;
@@ -22,6 +19,21 @@ import java.util.Map;
  */
 public class PlayerNotificationHandler
 {
+    /**
+     * Separators between messages, the position of the = makes them unique
+     */
+    private static final String[] SEPARATORS = new String[16];
+
+    static
+    {
+        for (int i = 0; i < SEPARATORS.length; i++)
+        {
+            StringBuilder sb = new StringBuilder(StringUtils.repeat("-", 16));
+            sb.setCharAt(i, '=');
+            SEPARATORS[i] = sb.toString();
+        }
+    }
+
     /**
      * Title of the Scoreboard
      */
@@ -33,9 +45,9 @@ public class PlayerNotificationHandler
     private final String playerName;
 
     /**
-     * Reference to the Plugin using this
+     * Manager this handler belongs to, also gives access to the Plugin
      */
-    private final Plugin plugin;
+    private final NotificationManager manager;
 
     /**
      * Scoreboard before we have shown our scoreboard
@@ -53,9 +65,9 @@ public class PlayerNotificationHandler
     private Objective objective;
 
     /**
-     * Our scoreboard for messages
+     * Our scoreboard for messages, borrowed from the manager while we have messages to display
      */
-    private final Scoreboard msgBoard;
+    private Scoreboard msgBoard;
 
     /**
      * All the popups currently shown
@@ -67,14 +79,28 @@ public class PlayerNotificationHandler
      */
     private Map<String, Integer> idMap = new HashMap<>();
 
+    /**
+     * The lines currently set on our scoreboard and their score
+     */
+    private final Map<String, Integer> displayed = new HashMap<>();
+
+    /**
+     * The title currently set on the objective
+     */
+    private String displayedTitle;
+
+    /**
+     * Has a render pass already been scheduled for this tick
+     */
+    private boolean renderScheduled = false;
+
 
-    public PlayerNotificationHandler(String scoreboardTitle, Plugin plugin, String playerName)
+    PlayerNotificationHandler(String scoreboardTitle, NotificationManager manager, String playerName)
     {
         this.scoreboardTitle = scoreboardTitle;
-        this.plugin = plugin;
+        this.manager = manager;
         this.playerName = playerName;
-        msgBoard = Bukkit.getScoreboardManager().getNewScoreboard();
-        Player player = Bukkit.getPlayer(playerName);
+        Player player = manager.plugin.getServer().getPlayer(playerName);
         if (player != null)
             previousBoard = player.getScoreboard();
     }
@@ -87,16 +113,13 @@ public class PlayerNotificationHandler
      */
     public int displayMessage(NotificationHolder popup)
     {
-        Player player = Bukkit.getPlayer(playerName);
-        if (player != null && player.isOnline())
+        Player player = manager.plugin.getServer().getPlayer(playerName);
+        //Init if no scoreboard active, the player gets to see it once it has been rendered
+        if (player != null && player.isOnline() && objective == null)
         {
-            //Init if no scoreboard active
-            if (objective == null)
-            {
-                objective = msgBoard.registerNewObjective(popup.getTitle(), "dummy");
-                objective.setDisplaySlot(DisplaySlot.SIDEBAR);
-            }
-            player.setScoreboard(msgBoard);
+            msgBoard = manager.acquireBoard();
+            objective = msgBoard.registerNewObjective(popup.getTitle(), "dummy");
+            objective.setDisplaySlot(DisplaySlot.SIDEBAR);
         }
 
         //Remove messages with the same text
@@ -138,7 +161,7 @@ public class PlayerNotificationHandler
 
         notifications.put(index, popup);
 
-        updateIndexes();
+        scheduleRender();
         return index;
     }
 
@@ -155,13 +178,23 @@ public class PlayerNotificationHandler
             int index = idMap.get(id);
             idMap.remove(id);
             removeMessage(index);
-            updateIndexes();
-            if (!messagesScheduled())
-                restoreScoreboard();
         }
     }
 
 
+    /**
+     * Remove the message by its id if the id still belongs to the given message
+     *
+     * @param id    id of the message
+     * @param popup the message that has been displayed under this id
+     */
+    void expireMessage(int id, NotificationHolder popup)
+    {
+        if (notifications.get(id) == popup)
+            removeMessage(id);
+    }
+
+
     /**
      * Remove the message by its id
      *
@@ -173,26 +206,45 @@ public class PlayerNotificationHandler
         if (notifications.containsKey(id))
         {
             msgCount--;
-            notifications.get(id).getMsg().forEach(msgBoard::resetScores);
             notifications.remove(id);
+            idMap.values().remove(id);
             //Update all the line numbers
-            updateIndexes();
+            scheduleRender();
             if (!messagesScheduled())
                 restoreScoreboard();
         }
     }
 
 
-    private void updateIndexes()
+    /**
+     * Render the scoreboard in the next tick, so that multiple changes in this tick only cause one update
+     */
+    private void scheduleRender()
+    {
+        if (!renderScheduled)
+        {
+            renderScheduled = true;
+            manager.plugin.getServer().getScheduler().runTask(manager.plugin, this::render);
+        }
+    }
+
+
+    /**
+     * Bring the scoreboard up to date with the notifications and show it to the player. Only lines that have been added,
+     * removed or moved get sent to the player.
+     */
+    private void render()
     {
+        renderScheduled = false;
+        if (objective == null)
+            return;
+
         int lastLine = lineCount() + notifications.size() - 1; //separators, no separator on the last line
         int separator = 0; //pos of =
 
-        //Clear scoreboard
-        msgBoard.getEntries().forEach(msgBoard::resetScores);
-
-        //Update the scores and put separators in between the lines
-        boolean updateTitle = true;
+        //Build the lines that should be displayed and put separators in between the messages
+        Map<String, Integer> target = new HashMap<>();
+        String title = null;
         for (int i = getHighestIndex(); i > 0; i--)
         {
             if (notifications.containsKey(i))
@@ -200,25 +252,51 @@ public class PlayerNotificationHandler
                 NotificationHolder popup = notifications.get(i);
 
                 //Use the title and color of the newest message
-                if (updateTitle && objective.getScoreboard().getEntries().size() > 0)
-                {
-                    objective.setDisplayName(notifications.get(i).getTitle());
-                    updateTitle = false;
-                }
-
-                List<String> msg = popup.getMsg();
-                for (String msgLine : msg)
-                {
-                    Score score = objective.getScore(msgLine);
-                    score.setScore(lastLine--);
-                }
-
-                StringBuilder sb = new StringBuilder(StringUtils.repeat("-", 16));
-                sb.setCharAt(separator < 16 ? separator++ : 0, '='); //Maximum of 16 messages at a time...
+                if (title == null)
+                    title = popup.getTitle();
+
+                for (String msgLine : popup.getMsg())
+                    target.put(msgLine, lastLine--);
+
+                String sep = SEPARATORS[separator < SEPARATORS.length ? separator++ : 0]; //Maximum of 16 messages at a time...
                 if (i != 1) //not last line
-                    objective.getScore(sb.toString()).setScore(lastLine--);
+                    target.put(sep, lastLine--);
             }
         }
+
+        //Remove lines that aren't displayed anymore
+        Iterator<Map.Entry<String, Integer>> iter = displayed.entrySet().iterator();
+        while (iter.hasNext())
+        {
+            String line = iter.next().getKey();
+            if (!target.containsKey(line))
+            {
+                msgBoard.resetScores(line);
+                iter.remove();
+            }
+        }
+
+        //Add new lines and move the ones which changed position
+        for (Map.Entry<String, Integer> line : target.entrySet())
+        {
+            Integer score = displayed.get(line.getKey());
+            if (score == null || score.intValue() != line.getValue())
+            {
+                objective.getScore(line.getKey()).setScore(line.getValue());
+                displayed.put(line.getKey(), line.getValue());
+            }
+        }
+
+        if (title != null && !title.equals(displayedTitle))
+        {
+            objective.setDisplayName(title);
+            displayedTitle = title;
+        }
+
+        //Switch after the lines have been set, so the player never sees a half drawn scoreboard
+        Player player = manager.plugin.getServer().getPlayer(playerName);
+        if (player != null && player.isOnline() && player.getScoreboard() != msgBoard)
+            player.setScoreboard(msgBoard);
     }
 
 
@@ -272,10 +350,63 @@ public class PlayerNotificationHandler
     }
 
 
+    /**
+     * Get the name of the player these messages are for
+     *
+     * @return name of the player
+     */
+    public String getPlayerName()
+    {
+        return playerName;
+    }
+
+
+    /**
+     * Drop all messages and give the player back his previous scoreboard
+     */
+    void close()
+    {
+        notifications.clear();
+        idMap.clear();
+        restoreScoreboard();
+    }
+
+
+    /**
+     * Drop all messages without touching the scoreboard of the player, e.g. because he logged out
+     */
+    void discard()
+    {
+        notifications.clear();
+        idMap.clear();
+        releaseBoard();
+    }
+
+
     private void restoreScoreboard()
     {
-        Player player = Bukkit.getPlayer(playerName);
-        if (player != null && previousBoard != null)
-            player.setScoreboard(previousBoard);
+        Player player = manager.plugin.getServer().getPlayer(playerName);
+        if (player != null && msgBoard != null && player.getScoreboard() == msgBoard)
+            player.setScoreboard(previousBoard != null ? previousBoard : manager.plugin.getServer().getScoreboardManager().getMainScoreboard());
+        releaseBoard();
+        manager.handlerFinished(this);
+    }
+
+
+    /**
+     * Clear our scoreboard and give it back to the manager so that other players can use it
+     */
+    private void releaseBoard()
+    {
+        if (msgBoard != null)
+        {
+            objective.unregister();
+            msgBoard.getEntries().forEach(msgBoard::resetScores);
+            manager.releaseBoard(msgBoard);
+            msgBoard = null;
+            objective = null;
+        }
+        displayed.clear();
+        displayedTitle = null;
     }
 }
@@ -171,6 +171,35 @@ public class TestRootConfig
     }
 
 
+    /**
+     * The compiled snapshot has to return the same values as the normal getters
+     */
+    @Test
+    public void testSnapshot()
+    {
+        assertEquals(false, cfg.getSnapshot("pvp").getBoolean(RootNode.DONT_MOVE_WATER_SOURCE_BLOCKS));
+        assertEquals(true, cfg.getSnapshot("miningWorld").getBoolean(RootNode.WEAK_FOOD_CROPS));
+        assertEquals(true, cfg.getSnapshot("worlds").getBoolean(RootNode.ALWAYS_ANGRY_PIG_ZOMBIES));
+        //not existing
+        assertEquals(100, cfg.getSnapshot("test123").getInt(RootNode.GHASTS_DEFLECT_ARROWS));
+        assertEquals(0.0, cfg.getSnapshot("test123").getDouble(RootNode.NO_SWIMMING_IN_ARMOR_ARMOR_POINTS), 0.0);
+
+        //changing a value has to invalidate the old snapshot
+        cfg.set("pvp", RootNode.DONT_MOVE_WATER_SOURCE_BLOCKS, true);
+        assertEquals(true, cfg.getSnapshot("pvp").getBoolean(RootNode.DONT_MOVE_WATER_SOURCE_BLOCKS));
+    }
+
+
+    /**
+     * Getting a boolean from a snapshot with an illegal argument
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void illegalArgumentSnapshot()
+    {
+        cfg.getSnapshot("world").getBoolean(RootNode.MORE_MONSTERS_MAX_Y);
+    }
+
+
     @Test
     public void testGetEnabledWorlds()
     {
@@ -0,0 +1,85 @@
+/*
+ * This file is part of
+ * MegaHardCore Server Plugin for Minecraft
+ *
+ * Copyright (C) 2012 Ryan Hamshire
+ * Copyright (C) 2013 Diemex
+ *
+ * MegaHardCore is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MegaHardCore is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero Public License
+ * along with MegaHardCore.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.megahardcore.config.messages;
+
+
+import com.megahardcore.service.FindAndReplace;
+import de.diemex.scoreboardnotifier.message.MsgLineHolder;
+import de.diemex.scoreboardnotifier.message.StringUtil;
+import org.bukkit.ChatColor;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test that compiled templates render the same text as replacing the placeholders
+ */
+public class TestMessageTemplate
+{
+    private static final String[] PLACEHOLDERS = {"$PLAYER", "PLAYER", "$PLAYERS", "PLAYERS", "$ITEMS", "ITEMS"};
+
+
+    @Test
+    public void constantMessage()
+    {
+        MessageTemplate template = MessageTemplate.compile(ChatColor.RED + "Careful, the torches go out in the rain", PLACEHOLDERS);
+        assertTrue(template.isConstant());
+        assertEquals(ChatColor.RED + "Careful, the torches go out in the rain", template.render());
+        assertEquals("Careful, the torches go out in the rain", template.render(true));
+    }
+
+
+    @Test
+    public void fillSlots()
+    {
+        MessageTemplate template = MessageTemplate.compile("$PLAYER killed the dragon, PLAYERS helped", PLACEHOLDERS);
+        assertFalse(template.isConstant());
+        assertEquals("Diemex killed the dragon, PLAYERS helped",
+                template.render(new FindAndReplace("Diemex", MessageNode.Variables.PLAYER.getVarNames())));
+        assertEquals("$PLAYER killed the dragon, Max, Ryan helped",
+                template.render(new FindAndReplace("Max, Ryan", MessageNode.Variables.PLAYERS.getVarNames())));
+        assertEquals("Diemex killed the dragon, Max helped",
+                template.render(new FindAndReplace("Diemex", "$PLAYER"), new FindAndReplace("Max", "PLAYERS")));
+    }
+
+
+    @Test
+    public void linesMatchWrapping()
+    {
+        MessageTemplate template = MessageTemplate.compile("You lost the following items: $ITEMS", PLACEHOLDERS);
+        FindAndReplace items = new FindAndReplace("DIAMOND_SWORD, TORCH", "$ITEMS");
+        List<String> lines = template.getLines(ChatColor.GRAY, false, items);
+
+        List<MsgLineHolder> expected = StringUtil.getLines("You lost the following items: DIAMOND_SWORD, TORCH", ChatColor.GRAY);
+        assertEquals(expected.size(), lines.size());
+        for (int i = 0; i < lines.size(); i++)
+            assertEquals(expected.get(i).getPlainLine(), lines.get(i));
+
+        //Same arguments reuse the wrapped lines
+        assertSame(lines, template.getLines(ChatColor.GRAY, false, new FindAndReplace("DIAMOND_SWORD, TORCH", "$ITEMS")));
+    }
+}
@@ -32,6 +32,7 @@ import com.megahardcore.mocks.MockWorld;
 import com.megahardcore.mocks.events.MockCreatureSpawnEvent;
 import com.megahardcore.features.AntiGrinder;
 import com.megahardcore.module.BlockModule;
+import com.megahardcore.module.EntityStateStore;
 import org.bukkit.Material;
 import org.bukkit.World;
 import org.bukkit.block.BlockFace;
@@ -42,6 +43,7 @@ import org.junit.Test;
 
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.when;
 
 public class TestAntiGrinder
 {
@@ -57,6 +59,7 @@ public class TestAntiGrinder
     {
         //Enable AntiGrinder in the Config
         CFG.set("world", RootNode.INHIBIT_MONSTER_GRINDERS, true);
+        when(plugin.getModuleForClass(EntityStateStore.class)).thenReturn(new EntityStateStore(plugin));
     }
 
 
@@ -0,0 +1,149 @@
+/*
+ * This file is part of
+ * MegaHardCore Server Plugin for Minecraft
+ *
+ * Copyright (C) 2012 Ryan Hamshire
+ * Copyright (C) 2013 Diemex
+ *
+ * MegaHardCore is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MegaHardCore is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero Public License
+ * along with MegaHardCore.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.megahardcore.features;
+
+
+import com.megahardcore.MegaHardCore;
+import com.megahardcore.config.RootConfig;
+import com.megahardcore.config.RootNode;
+import com.megahardcore.mocks.MockMegaHardCore;
+import com.megahardcore.mocks.MockWorld;
+import org.bukkit.GameMode;
+import org.bukkit.Material;
+import org.bukkit.World;
+import org.bukkit.entity.Player;
+import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
+import org.bukkit.inventory.ItemStack;
+import org.bukkit.inventory.PlayerInventory;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Matchers.anyFloat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Test that only players in worlds with armor slowdown are updated and the periodic reconcile
+ */
+public class TestArmorWeight
+{
+    private final MegaHardCore plugin = new MockMegaHardCore().get();
+
+    private final RootConfig CFG = new RootConfig(plugin);
+
+    private final ArmorWeight module = new ArmorWeight(plugin, CFG);
+
+    private final World world = new MockWorld("world").get();
+
+    private final World disabledWorld = new MockWorld("disabled").get();
+
+
+    @Before
+    public void prepare()
+    {
+        CFG.set("world", RootNode.ARMOR_SLOWDOWN_ENABLE, true);
+        CFG.set("world", RootNode.ARMOR_SLOWDOWN_BASESPEED, 0.2);
+        CFG.set("world", RootNode.ARMOR_SLOWDOWN_PERCENT, 40);
+        CFG.set("disabled", RootNode.ARMOR_SLOWDOWN_ENABLE, false);
+    }
+
+
+    /**
+     * A player without armor in survival
+     */
+    private Player player(World world)
+    {
+        Player player = mock(Player.class);
+        when(player.getUniqueId()).thenReturn(UUID.randomUUID());
+        when(player.getWorld()).thenReturn(world);
+        when(player.getGameMode()).thenReturn(GameMode.SURVIVAL);
+        PlayerInventory inventory = mock(PlayerInventory.class);
+        ItemStack[] armor = new ItemStack[4];
+        for (int i = 0; i < armor.length; i++)
+            armor[i] = new ItemStack(Material.AIR);
+        when(inventory.getArmorContents()).thenReturn(armor);
+        when(player.getInventory()).thenReturn(inventory);
+        return player;
+    }
+
+
+    @Test
+    public void updatedOnce()
+    {
+        Player player = player(world);
+        module.onPlayerJoin(new PlayerJoinEvent(player, null));
+        assertEquals(1, module.getPendingCount());
+        module.updatePending();
+        assertEquals(0, module.getPendingCount());
+        verify(player).setWalkSpeed(0.2F);
+
+        //Speed didn't change, don't set it again
+        module.onPlayerJoin(new PlayerJoinEvent(player, null));
+        module.updatePending();
+        verify(player, times(1)).setWalkSpeed(anyFloat());
+    }
+
+
+    @Test
+    public void disabledWorldNotPending()
+    {
+        Player player = player(disabledWorld);
+        module.onPlayerJoin(new PlayerJoinEvent(player, null));
+        assertEquals(0, module.getPendingCount());
+        module.updatePending();
+        verify(player, never()).setWalkSpeed(anyFloat());
+    }
+
+
+    @Test
+    public void quitRemovesPending()
+    {
+        Player player = player(world);
+        module.onPlayerJoin(new PlayerJoinEvent(player, null));
+        module.onPlayerQuit(new PlayerQuitEvent(player, null));
+        assertEquals(0, module.getPendingCount());
+    }
+
+
+    @Test
+    public void reconcileChangedSpeed()
+    {
+        Player player = player(world);
+        module.onPlayerJoin(new PlayerJoinEvent(player, null));
+        module.updatePending();
+        verify(player, times(1)).setWalkSpeed(0.2F);
+
+        //Another plugin changed the speed, every player is checked once within all slices
+        when(player.getWalkSpeed()).thenReturn(0.5F);
+        for (int i = 0; i < 15; i++)
+            module.reconcile(Collections.singletonList(player));
+        verify(player, times(2)).setWalkSpeed(0.2F);
+    }
+}
@@ -0,0 +1,185 @@
+/*
+ * This file is part of
+ * MegaHardCore Server Plugin for Minecraft
+ *
+ * Copyright (C) 2012 Ryan Hamshire
+ * Copyright (C) 2013 Diemex
+ *
+ * MegaHardCore is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MegaHardCore is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero Public License
+ * along with MegaHardCore.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.megahardcore.modules;
+
+
+import com.megahardcore.MegaHardCore;
+import com.megahardcore.mocks.MockMegaHardCore;
+import com.megahardcore.mocks.MockWorld;
+import com.megahardcore.module.BlockMarkStore;
+import org.bukkit.Chunk;
+import org.bukkit.World;
+import org.bukkit.event.world.ChunkLoadEvent;
+import org.bukkit.event.world.ChunkUnloadEvent;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * @author Diemex
+ */
+public class TestBlockMarkStore
+{
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private final MegaHardCore plugin = new MockMegaHardCore().get();
+
+    private final UUID world = UUID.randomUUID();
+
+    private final World bukkitWorld = new MockWorld("world").get();
+
+    private BlockMarkStore store;
+
+
+    @Before
+    public void prepare()
+    {
+        store = new BlockMarkStore(plugin, folder.getRoot());
+        when(bukkitWorld.getUID()).thenReturn(world);
+    }
+
+
+    private Chunk chunk(int chunkX, int chunkZ)
+    {
+        Chunk chunk = mock(Chunk.class);
+        when(chunk.getWorld()).thenReturn(bukkitWorld);
+        when(chunk.getX()).thenReturn(chunkX);
+        when(chunk.getZ()).thenReturn(chunkZ);
+        return chunk;
+    }
+
+
+    /** Amount of region files of the world */
+    private int regionFiles()
+    {
+        File[] files = new File(folder.getRoot(), world.toString()).listFiles();
+        return files != null ? files.length : 0;
+    }
+
+
+    @Test
+    public void markAndRemove()
+    {
+        final BlockMarkStore.Mark mark = BlockMarkStore.Mark.BUCKET_WATER;
+        store.set(world, -1, 64, 15, mark, true);
+        assertTrue(store.isMarked(world, -1, 64, 15, mark));
+        //neighbours in the same section and in the neighbouring chunk
+        assertFalse(store.isMarked(world, -2, 64, 15, mark));
+        assertFalse(store.isMarked(world, -1, 65, 15, mark));
+        assertFalse(store.isMarked(world, 15, 64, 15, mark));
+        assertFalse(store.isMarked(world, -1, 64, 15 + 16, mark));
+        assertFalse(store.isMarked(UUID.randomUUID(), -1, 64, 15, mark));
+
+        store.set(world, -1, 64, 15, mark, false);
+        assertFalse(store.isMarked(world, -1, 64, 15, mark));
+    }
+
+
+    @Test
+    public void outOfWorld()
+    {
+        final BlockMarkStore.Mark mark = BlockMarkStore.Mark.BUCKET_WATER;
+        store.set(world, 0, 256, 0, mark, true);
+        store.set(world, 0, -1, 0, mark, true);
+        assertFalse(store.isMarked(world, 0, 256, 0, mark));
+        assertFalse(store.isMarked(world, 0, -1, 0, mark));
+        assertFalse(store.isMarked(world, 0, 0, 0, mark));
+        assertFalse(store.isMarked(world, 0, 255, 0, mark));
+    }
+
+
+    @Test
+    public void keptOverReload()
+    {
+        final BlockMarkStore.Mark mark = BlockMarkStore.Mark.BUCKET_WATER;
+        store.set(world, 5, 64, 5, mark, true);
+        store.closing();
+        assertTrue(store.isMarked(world, 5, 64, 5, mark));
+    }
+
+
+    @Test
+    public void persistentOverChunkUnload()
+    {
+        final BlockMarkStore.Mark mark = BlockMarkStore.Mark.BUCKET_WATER;
+        assertTrue(mark.isPersistent());
+        Chunk chunk = chunk(-1, 0);
+        store.set(world, -1, 64, 15, mark, true);
+        store.set(world, -16, 0, 0, mark, true);
+
+        store.onChunkUnload(new ChunkUnloadEvent(chunk));
+        assertFalse(store.isMarked(world, -1, 64, 15, mark));
+        assertEquals(1, regionFiles());
+
+        store.onChunkLoad(new ChunkLoadEvent(chunk, false));
+        assertTrue(store.isMarked(world, -1, 64, 15, mark));
+        assertTrue(store.isMarked(world, -16, 0, 0, mark));
+        assertFalse(store.isMarked(world, -2, 64, 15, mark));
+        assertFalse(store.isMarked(world, -1, 63, 15, mark));
+    }
+
+
+    @Test
+    public void removedMarksStayRemoved()
+    {
+        final BlockMarkStore.Mark mark = BlockMarkStore.Mark.BUCKET_WATER;
+        Chunk chunk = chunk(3, 3);
+        store.set(world, 50, 70, 50, mark, true);
+        store.onChunkUnload(new ChunkUnloadEvent(chunk));
+        store.onChunkLoad(new ChunkLoadEvent(chunk, false));
+        store.set(world, 50, 70, 50, mark, false);
+
+        store.onChunkUnload(new ChunkUnloadEvent(chunk));
+        assertEquals("region without marks is deleted", 0, regionFiles());
+        store.onChunkLoad(new ChunkLoadEvent(chunk, false));
+        assertFalse(store.isMarked(world, 50, 70, 50, mark));
+    }
+
+
+    @Test
+    public void savedOnShutdown()
+    {
+        final BlockMarkStore.Mark mark = BlockMarkStore.Mark.BUCKET_WATER;
+        store.set(world, 5, 64, 5, mark, true);
+        store.set(world, 40, 64, 5, mark, true);
+        store.closing();
+
+        //Server restarted
+        BlockMarkStore restarted = new BlockMarkStore(plugin, folder.getRoot());
+        restarted.onChunkLoad(new ChunkLoadEvent(chunk(0, 0), false));
+        assertTrue(restarted.isMarked(world, 5, 64, 5, mark));
+        assertFalse("chunk hasn't been loaded yet", restarted.isMarked(world, 40, 64, 5, mark));
+        restarted.onChunkLoad(new ChunkLoadEvent(chunk(2, 0), false));
+        assertTrue(restarted.isMarked(world, 40, 64, 5, mark));
+    }
+}
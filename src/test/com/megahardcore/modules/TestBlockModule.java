@@ -75,6 +75,24 @@ public class TestBlockModule
     }
 
 
+    @Test
+    public void testMaterialTraits()
+    {
+        assertTrue(BlockModule.isTool(Material.DIAMOND_PICKAXE));
+        assertTrue(BlockModule.isTool(Material.LAVA_BUCKET));
+        assertFalse(BlockModule.isTool(Material.COBBLESTONE));
+
+        assertTrue(module.isArmor(Material.IRON_HELMET));
+        assertFalse(module.isArmor(Material.IRON_INGOT));
+
+        assertTrue(module.isNaturalSpawnMaterial(Material.GRASS));
+        assertFalse(module.isNaturalSpawnMaterial(Material.WOOL));
+        assertTrue(module.isNaturalNetherSpawn(Material.NETHERRACK));
+        assertTrue(module.isPlant(Material.CROPS));
+        assertTrue(BlockModule.isHorseFood(Material.APPLE));
+    }
+
+
     @Test
     public void testIsOffAxis()
     {
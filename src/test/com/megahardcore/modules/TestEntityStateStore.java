@@ -0,0 +1,124 @@
+/*
+ * This file is part of
+ * MegaHardCore Server Plugin for Minecraft
+ *
+ * Copyright (C) 2012 Ryan Hamshire
+ * Copyright (C) 2013 Diemex
+ *
+ * MegaHardCore is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MegaHardCore is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero Public License
+ * along with MegaHardCore.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.megahardcore.modules;
+
+
+import com.megahardcore.MegaHardCore;
+import com.megahardcore.mocks.MockMegaHardCore;
+import com.megahardcore.module.EntityStateStore;
+import org.bukkit.Chunk;
+import org.bukkit.entity.Entity;
+import org.bukkit.entity.LivingEntity;
+import org.bukkit.event.entity.EntityDeathEvent;
+import org.bukkit.event.world.ChunkUnloadEvent;
+import org.bukkit.inventory.ItemStack;
+import org.junit.Test;
+
+import java.util.ArrayList;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * @author Diemex
+ */
+public class TestEntityStateStore
+{
+    private final MegaHardCore plugin = new MockMegaHardCore().get();
+
+    private final EntityStateStore store = new EntityStateStore(plugin);
+
+    private int nextId = 1;
+
+
+    private LivingEntity entity()
+    {
+        LivingEntity entity = mock(LivingEntity.class);
+        when(entity.getEntityId()).thenReturn(nextId++);
+        when(entity.isValid()).thenReturn(true);
+        return entity;
+    }
+
+
+    @Test
+    public void flagsAndValues()
+    {
+        LivingEntity zombie = entity(), other = entity();
+        store.setFlag(zombie, EntityStateStore.IGNORE);
+        store.addEnvironmentalDamage(zombie, 2.0);
+        store.addEnvironmentalDamage(zombie, 1.5);
+        store.setZombieRespawnCount(other, 3);
+
+        assertTrue(store.hasFlag(zombie, EntityStateStore.IGNORE));
+        assertFalse(store.hasFlag(zombie, EntityStateStore.OURS));
+        assertFalse(store.hasFlag(other, EntityStateStore.IGNORE));
+        assertEquals(3.5, store.getEnvironmentalDamage(zombie), 0.0001);
+        assertEquals(3, store.getZombieRespawnCount(other));
+        assertEquals(0, store.getZombieRespawnCount(zombie));
+        assertEquals(2, store.size());
+    }
+
+
+    @Test
+    public void removedOnDeath()
+    {
+        LivingEntity zombie = entity(), other = entity();
+        store.setFlag(zombie, EntityStateStore.OURS);
+        store.setFlag(other, EntityStateStore.OURS);
+        store.onEntityDeath(new EntityDeathEvent(zombie, new ArrayList<ItemStack>()));
+        assertFalse(store.hasFlag(zombie, EntityStateStore.OURS));
+        assertTrue(store.hasFlag(other, EntityStateStore.OURS));
+        assertEquals(1, store.size());
+    }
+
+
+    @Test
+    public void removedOnChunkUnload()
+    {
+        LivingEntity inChunk = entity(), elsewhere = entity();
+        store.setBlazeSplitCount(inChunk, 2);
+        store.setBlazeSplitCount(elsewhere, 1);
+        Chunk chunk = mock(Chunk.class);
+        when(chunk.getEntities()).thenReturn(new Entity[]{inChunk});
+        store.onChunkUnload(new ChunkUnloadEvent(chunk));
+        assertEquals(0, store.getBlazeSplitCount(inChunk));
+        assertEquals(1, store.getBlazeSplitCount(elsewhere));
+        assertEquals(1, store.size());
+    }
+
+
+    @Test
+    public void removeInvalid()
+    {
+        LivingEntity despawned = entity(), alive = entity();
+        store.setFlag(despawned, EntityStateStore.IGNORE);
+        store.setFlag(alive, EntityStateStore.IGNORE);
+        when(despawned.isValid()).thenReturn(false);
+        assertEquals(1, store.removeInvalid());
+        assertFalse(store.hasFlag(despawned, EntityStateStore.IGNORE));
+        assertTrue(store.hasFlag(alive, EntityStateStore.IGNORE));
+        assertEquals(0, store.removeInvalid());
+    }
+}
@@ -0,0 +1,122 @@
+/*
+ * This file is part of
+ * MegaHardCore Server Plugin for Minecraft
+ *
+ * Copyright (C) 2012 Ryan Hamshire
+ * Copyright (C) 2013 Diemex
+ *
+ * MegaHardCore is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MegaHardCore is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero Public License
+ * along with MegaHardCore.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.megahardcore.modules;
+
+
+import com.megahardcore.mocks.MockMegaHardCore;
+import com.megahardcore.mocks.MockWorld;
+import com.megahardcore.module.ExplosionCompatStorage;
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.entity.Creeper;
+import org.bukkit.entity.Entity;
+import org.bukkit.entity.TNTPrimed;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Test that explosions are attributed to the right entities and forgotten after a few ticks
+ *
+ * @author Diemex
+ */
+public class TestExplosionCompatStorage
+{
+    private final ExplosionCompatStorage storage = new ExplosionCompatStorage(new MockMegaHardCore().get());
+
+    private final World world = new MockWorld("world").get();
+
+    private final World nether = new MockWorld("world_nether").get();
+
+
+    @Before
+    public void prepare()
+    {
+        when(world.getUID()).thenReturn(UUID.randomUUID());
+        when(nether.getUID()).thenReturn(UUID.randomUUID());
+    }
+
+
+    @Test
+    public void lookup()
+    {
+        Entity creeper = mock(Creeper.class), tnt = mock(TNTPrimed.class);
+        storage.queueExplosion(new Location(world, 10.2, 64.5, -3.7), creeper);
+        storage.queueExplosion(new Location(world, 10.8, 64.1, -3.2), tnt);
+
+        assertNull("Different block", storage.pollExplosionCause(new Location(world, 11, 64, -4)));
+        assertNull("Different world", storage.pollExplosionCause(new Location(nether, 10, 64, -4)));
+        //same block, oldest first
+        assertSame(creeper, storage.pollExplosionCause(new Location(world, 10.5, 64.5, -3.5)));
+        assertSame(tnt, storage.pollExplosionCause(new Location(world, 10.5, 64.5, -3.5)));
+        assertNull(storage.pollExplosionCause(new Location(world, 10.5, 64.5, -3.5)));
+        assertTrue(storage.queueEmpty());
+    }
+
+
+    @Test
+    public void mergedCauses()
+    {
+        Entity tnt = mock(TNTPrimed.class), other = mock(TNTPrimed.class), third = mock(TNTPrimed.class);
+        storage.queueExplosion(new Location(world, 0, 64, 0), tnt, Arrays.asList(other, third));
+
+        assertEquals(Arrays.asList(tnt, other, third), storage.pollExplosionCauses(new Location(world, 0, 64, 0)));
+        assertEquals(Collections.<Entity>emptyList(), storage.pollExplosionCauses(new Location(world, 0, 64, 0)));
+    }
+
+
+    @Test
+    public void expiry()
+    {
+        Entity creeper = mock(Creeper.class), tnt = mock(TNTPrimed.class);
+        storage.queueExplosion(new Location(world, 0, 64, 0), creeper);
+        for (int i = 0; i < 3; i++)
+            storage.tick();
+        storage.queueExplosion(new Location(world, 0, 64, 0), tnt);
+
+        storage.tick();
+        assertSame("Still remembered", creeper, storage.pollExplosionCause(new Location(world, 0, 64, 0)));
+        storage.queueExplosion(new Location(world, 0, 64, 0), creeper);
+
+        //the creeper has been queued again later, the tnt expires first
+        for (int i = 0; i < 4; i++)
+            storage.tick();
+        assertSame(creeper, storage.pollExplosionCause(new Location(world, 0, 64, 0)));
+        assertTrue(storage.queueEmpty());
+
+        storage.queueExplosion(new Location(world, 5, 64, 5), tnt);
+        for (int i = 0; i < 5; i++)
+            storage.tick();
+        assertTrue("Expired", storage.queueEmpty());
+        assertNull(storage.pollExplosionCause(new Location(world, 5, 64, 5)));
+    }
+}
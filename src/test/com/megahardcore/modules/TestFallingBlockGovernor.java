@@ -0,0 +1,157 @@
+/*
+ * This file is part of
+ * MegaHardCore Server Plugin for Minecraft
+ *
+ * Copyright (C) 2012 Ryan Hamshire
+ * Copyright (C) 2013 Diemex
+ *
+ * MegaHardCore is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MegaHardCore is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero Public License
+ * along with MegaHardCore.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.megahardcore.modules;
+
+
+import com.megahardcore.MegaHardCore;
+import com.megahardcore.config.RootConfig;
+import com.megahardcore.config.RootNode;
+import com.megahardcore.mocks.MockMegaHardCore;
+import com.megahardcore.mocks.MockWorld;
+import com.megahardcore.module.FallingBlockGovernor;
+import org.bukkit.Location;
+import org.bukkit.Material;
+import org.bukkit.World;
+import org.bukkit.block.Block;
+import org.bukkit.entity.FallingBlock;
+import org.bukkit.event.entity.EntityChangeBlockEvent;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyByte;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Test the limits of live falling blocks per chunk and per world
+ *
+ * @author Diemex
+ */
+public class TestFallingBlockGovernor
+{
+    private final MegaHardCore plugin = new MockMegaHardCore().get();
+
+    private final RootConfig CFG = new RootConfig(plugin);
+
+    private final World world = new MockWorld("world").get();
+
+    private FallingBlockGovernor governor;
+
+    private int nextId = 1;
+
+
+    @Before
+    public void prepare()
+    {
+        CFG.set("world", RootNode.MORE_FALLING_BLOCKS_MAX_PER_CHUNK, 3);
+        CFG.set("world", RootNode.MORE_FALLING_BLOCKS_MAX_PER_WORLD, 5);
+        when(world.getUID()).thenReturn(UUID.randomUUID());
+        when(world.spawnFallingBlock(any(Location.class), anyInt(), anyByte())).thenAnswer(invocation -> {
+            FallingBlock block = mock(FallingBlock.class);
+            when(block.getEntityId()).thenReturn(nextId++);
+            when(block.isValid()).thenReturn(true);
+            return block;
+        });
+        governor = new FallingBlockGovernor(plugin, CFG);
+    }
+
+
+    private FallingBlock spawn(int chunkX)
+    {
+        return governor.spawn(new Location(world, chunkX * 16 + 8, 64, 8), Material.GRAVEL.getId(), (byte) 0, true, null);
+    }
+
+
+    private void land(FallingBlock block)
+    {
+        governor.onBlockLand(new EntityChangeBlockEvent(block, mock(Block.class), Material.GRAVEL, (byte) 0));
+    }
+
+
+    @Test
+    public void chunkLimit()
+    {
+        for (int i = 0; i < 3; i++)
+            assertNotNull(spawn(0));
+        assertNull("Chunk is full", spawn(0));
+        assertNotNull("Other chunks can still spawn blocks", spawn(1));
+
+        assertEquals(4, governor.getLive());
+        assertEquals(4, governor.getSpawned());
+        assertEquals(1, governor.getDenied());
+    }
+
+
+    @Test
+    public void worldLimit()
+    {
+        for (int i = 0; i < 5; i++)
+            assertNotNull(spawn(i));
+        assertNull("World is full", spawn(5));
+        assertEquals(5, governor.getLive());
+    }
+
+
+    @Test
+    public void landingFreesSlot()
+    {
+        FallingBlock first = spawn(0);
+        spawn(0);
+        spawn(0);
+        assertNull(spawn(0));
+        assertTrue(governor.isTracked(first));
+        assertTrue(governor.isDamagingEntities(first));
+
+        land(first);
+        assertFalse(governor.isTracked(first));
+        assertEquals(2, governor.getLive());
+        assertNotNull(spawn(0));
+    }
+
+
+    @Test
+    public void vanishedBlocksRemoved()
+    {
+        Location origin = new Location(world, 0, 64, 0);
+        FallingBlock block = governor.spawn(new Location(world, 8, 64, 8), Material.SAND.getId(), (byte) 0, false, origin);
+        spawn(0);
+        spawn(0);
+        assertSame(origin, governor.getExplosionOrigin(block));
+        assertNull(spawn(0));
+
+        when(block.isValid()).thenReturn(false);
+        governor.removeInvalid();
+        assertFalse(governor.isTracked(block));
+        assertEquals(2, governor.getLive());
+        assertNotNull(spawn(0));
+    }
+}
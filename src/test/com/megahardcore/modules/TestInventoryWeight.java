@@ -25,14 +25,25 @@ package com.megahardcore.modules;
 import com.megahardcore.mocks.MockMegaHardCore;
 import com.megahardcore.mocks.MockPlayer;
 import com.megahardcore.mocks.MockPlayerInventory;
+import com.megahardcore.module.InventoryWeightModule;
 import com.megahardcore.module.PlayerModule;
 import org.bukkit.Material;
+import org.bukkit.entity.Item;
 import org.bukkit.entity.Player;
+import org.bukkit.event.player.PlayerDropItemEvent;
+import org.bukkit.event.player.PlayerItemBreakEvent;
+import org.bukkit.event.player.PlayerJoinEvent;
 import org.bukkit.inventory.ItemStack;
+import org.bukkit.inventory.PlayerInventory;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.util.UUID;
+
 import static org.junit.Assert.assertEquals;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
 
 /**
  * @author Max
@@ -119,4 +130,73 @@ public class TestInventoryWeight
 
         assertEquals("See comment for calculation", 143, module.inventoryWeight(myPlayer, 5, 64, 1), 0);
     }
+
+
+    /**
+     * Mock the inventory, slots 0-35 are the contents and 36-39 the armor
+     */
+    private void mockInventory(final ItemStack[] armor, final ItemStack[] contents)
+    {
+        PlayerInventory inventory = new MockPlayerInventory(myPlayer, armor, contents).get();
+        when(inventory.getItem(anyInt())).thenAnswer(invocation -> {
+            int slot = (Integer) invocation.getArguments()[0];
+            return slot < contents.length ? contents[slot] : armor[slot - contents.length];
+        });
+        when(myPlayer.getUniqueId()).thenReturn(UUID.randomUUID());
+        when(myPlayer.isOnline()).thenReturn(true);
+    }
+
+
+    /**
+     * The running totals have to be the same as counting the whole inventory
+     */
+    @Test
+    public void runningTotals()
+    {
+        ItemStack[] armor = fullArmor.clone();
+        ItemStack[] inv = new ItemStack[4 * 9];
+        inv[0] = new ItemStack(Material.DIAMOND_SWORD);
+        inv[9] = new ItemStack(Material.BOOK, 32);
+        inv[13] = new ItemStack(Material.BREAD, 64);
+        inv[14] = new ItemStack(Material.ENDER_PEARL, 8);
+        mockInventory(armor, inv);
+        InventoryWeightModule weights = new InventoryWeightModule(new MockMegaHardCore().get());
+
+        assertEquals(module.inventoryWeight(myPlayer, 5, 64, 1), weights.getWeight(myPlayer, 5, 64, 1), 0);
+
+        //Dropping some of the held stack
+        inv[13] = new ItemStack(Material.BREAD, 10);
+        when(myPlayer.getInventory().getHeldItemSlot()).thenReturn(13);
+        weights.onPlayerDropItem(new PlayerDropItemEvent(myPlayer, mock(Item.class)));
+        weights.updatePending();
+        assertEquals(module.inventoryWeight(myPlayer, 5, 64, 1), weights.getWeight(myPlayer, 5, 64, 1), 0);
+
+        //A piece of armor breaks
+        armor[2] = null;
+        weights.onPlayerItemBreak(new PlayerItemBreakEvent(myPlayer, ironChest));
+        weights.updatePending();
+        assertEquals(module.inventoryWeight(myPlayer, 5, 64, 1), weights.getWeight(myPlayer, 5, 64, 1), 0);
+    }
+
+
+    /**
+     * Changes without an event are only counted once all slots are compared again
+     */
+    @Test
+    public void unmarkedSlots()
+    {
+        ItemStack[] inv = new ItemStack[4 * 9];
+        mockInventory(emptyArmor, inv);
+        InventoryWeightModule weights = new InventoryWeightModule(new MockMegaHardCore().get());
+        assertEquals(0, weights.getWeight(myPlayer, 5, 64, 1), 0);
+
+        inv[20] = new ItemStack(Material.COBBLESTONE, 64);
+        weights.updatePending();
+        assertEquals(0, weights.getWeight(myPlayer, 5, 64, 1), 0);
+
+        weights.onPlayerJoin(new PlayerJoinEvent(myPlayer, null));
+        weights.updatePending();
+        assertEquals(64, weights.getWeight(myPlayer, 5, 64, 1), 0);
+        assertEquals(module.inventoryWeight(myPlayer, 5, 64, 1), weights.getWeight(myPlayer, 5, 64, 1), 0);
+    }
 }
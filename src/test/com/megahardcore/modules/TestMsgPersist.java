@@ -0,0 +1,96 @@
+/*
+ * This file is part of
+ * MegaHardCore Server Plugin for Minecraft
+ *
+ * Copyright (C) 2012 Ryan Hamshire
+ * Copyright (C) 2013 Diemex
+ *
+ * MegaHardCore is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MegaHardCore is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero Public License
+ * along with MegaHardCore.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.megahardcore.modules;
+
+
+import com.megahardcore.MegaHardCore;
+import com.megahardcore.config.messages.MessageNode;
+import com.megahardcore.mocks.MockMegaHardCore;
+import com.megahardcore.module.MsgPersistModule;
+import org.bukkit.entity.Player;
+import org.bukkit.event.player.PlayerJoinEvent;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.util.concurrent.ScheduledExecutorService;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * @author Diemex
+ */
+public class TestMsgPersist
+{
+    private final MegaHardCore plugin = new MockMegaHardCore().get();
+
+    private final Player player = mock(Player.class);
+
+    private MsgPersistModule persist;
+
+
+    @Before
+    public void prepare()
+    {
+        //Db work happens right away instead of on the background thread
+        ScheduledExecutorService executor = mock(ScheduledExecutorService.class);
+        doAnswer(new Answer<Void>()
+        {
+            @Override
+            public Void answer(InvocationOnMock invocation) throws Throwable
+            {
+                ((Runnable) invocation.getArguments()[0]).run();
+                return null;
+            }
+        }).when(executor).execute(any(Runnable.class));
+        //No connection to the db has been opened
+        persist = new MsgPersistModule(plugin, "messages_count.db", executor);
+        when(player.getName()).thenReturn("Notch");
+    }
+
+
+    @Test
+    public void notLoadedBeforeJoin()
+    {
+        assertFalse(persist.isLoaded("Notch"));
+        assertEquals(0, persist.getCountFor(MessageNode.CHARGED_CREEPER_TARGET, "Notch"));
+    }
+
+
+    @Test
+    public void loadedWithoutDb()
+    {
+        persist.onPlayerJoin(new PlayerJoinEvent(player, null));
+        //Player still gets tutorial messages if the counts couldn't be loaded
+        assertTrue(persist.isLoaded("Notch"));
+        assertEquals(0, persist.getCountFor(MessageNode.CHARGED_CREEPER_TARGET, "Notch"));
+        persist.increment(MessageNode.CHARGED_CREEPER_TARGET, "Notch");
+        assertEquals(1, persist.getCountFor(MessageNode.CHARGED_CREEPER_TARGET, "Notch"));
+    }
+}
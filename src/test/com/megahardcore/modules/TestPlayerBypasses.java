@@ -0,0 +1,181 @@
+/*
+ * This file is part of
+ * MegaHardCore Server Plugin for Minecraft
+ *
+ * Copyright (C) 2012 Ryan Hamshire
+ * Copyright (C) 2013 Diemex
+ *
+ * MegaHardCore is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MegaHardCore is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero Public License
+ * along with MegaHardCore.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.megahardcore.modules;
+
+
+import com.megahardcore.MegaHardCore;
+import com.megahardcore.config.RootConfig;
+import com.megahardcore.config.RootNode;
+import com.megahardcore.mocks.MockMegaHardCore;
+import com.megahardcore.mocks.MockPlayer;
+import com.megahardcore.mocks.MockWorld;
+import com.megahardcore.module.PlayerModule;
+import com.megahardcore.service.Feature;
+import com.megahardcore.service.PermissionNode;
+import org.bukkit.GameMode;
+import org.bukkit.World;
+import org.bukkit.command.CommandSender;
+import org.bukkit.entity.Player;
+import org.bukkit.event.player.PlayerChangedWorldEvent;
+import org.bukkit.event.player.PlayerGameModeChangeEvent;
+import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.event.server.RemoteServerCommandEvent;
+import org.bukkit.event.server.ServerCommandEvent;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.UUID;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Test that the cached bypasses are computed again when something changes
+ */
+public class TestPlayerBypasses
+{
+    private final MegaHardCore plugin = new MockMegaHardCore().get();
+
+    private final RootConfig CFG = new RootConfig(plugin);
+
+    private final PlayerModule module = new PlayerModule(plugin, CFG);
+
+    private final World survival = new MockWorld("survival").get();
+
+    private final World creative = new MockWorld("creative").get();
+
+    private final Player player = new MockPlayer("Diemex94").get();
+
+
+    @Before
+    public void prepare()
+    {
+        for (String world : new String[]{"survival", "creative"})
+        {
+            CFG.set(world, RootNode.BYPASS_PERMISSION, true);
+            CFG.set(world, RootNode.BYPASS_CREATIVE, true);
+            CFG.set(world, RootNode.BYPASS_OPS, world.equals("creative"));
+            CFG.set(world, RootNode.BYPASS_RECHECK_SECONDS, 3);
+        }
+        when(player.getUniqueId()).thenReturn(UUID.randomUUID());
+        when(player.isOnline()).thenReturn(true);
+        when(player.getWorld()).thenReturn(survival);
+        when(player.getGameMode()).thenReturn(GameMode.SURVIVAL);
+    }
+
+
+    @Test
+    public void permissionsPerFeature()
+    {
+        when(player.hasPermission(PermissionNode.BYPASS_INVENTORY.getNode())).thenReturn(true);
+        assertTrue(module.playerBypasses(player, Feature.DEATH_INV_LOSS));
+        assertFalse(module.playerBypasses(player, Feature.TORCHES));
+        assertFalse(module.playerBypasses(player, Feature.MONSTER_BUMBUMBENS));
+    }
+
+
+    @Test
+    public void gameModeChange()
+    {
+        assertFalse(module.playerBypasses(player, Feature.TORCHES));
+        //The event fires before the gamemode of the player changes
+        module.onGameModeChange(new PlayerGameModeChangeEvent(player, GameMode.CREATIVE));
+        assertTrue(module.playerBypasses(player, Feature.TORCHES));
+
+        when(player.getGameMode()).thenReturn(GameMode.CREATIVE);
+        module.onGameModeChange(new PlayerGameModeChangeEvent(player, GameMode.SURVIVAL));
+        assertFalse(module.playerBypasses(player, Feature.TORCHES));
+    }
+
+
+    @Test
+    public void worldChange()
+    {
+        when(player.isOp()).thenReturn(true);
+        assertFalse("ops don't bypass in this world", module.playerBypasses(player, Feature.WATER));
+
+        when(player.getWorld()).thenReturn(creative);
+        assertFalse("still cached", module.playerBypasses(player, Feature.WATER));
+        module.onWorldChange(new PlayerChangedWorldEvent(player, survival));
+        assertTrue(module.playerBypasses(player, Feature.WATER));
+    }
+
+
+    @Test
+    public void opCommand()
+    {
+        when(player.getWorld()).thenReturn(creative);
+        assertFalse(module.playerBypasses(player, Feature.WATER));
+
+        CommandSender console = mock(CommandSender.class);
+        module.onServerCommand(new ServerCommandEvent(console, "op Diemex94"));
+        //The command runs after the event, the result may not be cached until it has run
+        assertFalse(module.playerBypasses(player, Feature.WATER));
+        when(player.isOp()).thenReturn(true);
+        assertTrue(module.playerBypasses(player, Feature.WATER));
+
+        module.recheckBypasses();
+        assertTrue(module.playerBypasses(player, Feature.WATER));
+        module.onServerCommand(new ServerCommandEvent(console, "/deop Diemex94"));
+        when(player.isOp()).thenReturn(false);
+        assertFalse(module.playerBypasses(player, Feature.WATER));
+
+        //Other commands don't drop the cache
+        module.recheckBypasses();
+        assertFalse(module.playerBypasses(player, Feature.WATER));
+        module.onServerCommand(new ServerCommandEvent(console, "opinion Diemex94"));
+        when(player.isOp()).thenReturn(true);
+        assertFalse(module.playerBypasses(player, Feature.WATER));
+
+        //Commands over rcon
+        module.onRemoteServerCommand(new RemoteServerCommandEvent(console, "minecraft:op Diemex94"));
+        assertTrue(module.playerBypasses(player, Feature.WATER));
+    }
+
+
+    @Test
+    public void permissionsAfterJoin()
+    {
+        //Checked by another plugin before the permission plugin has set up the permissions
+        assertFalse(module.playerBypasses(player, Feature.TORCHES));
+        when(player.hasPermission(PermissionNode.BYPASS.getNode())).thenReturn(true);
+        module.onPlayerJoin(new PlayerJoinEvent(player, null));
+        assertTrue(module.playerBypasses(player, Feature.TORCHES));
+    }
+
+
+    @Test
+    public void periodicRecheck()
+    {
+        assertFalse(module.playerBypasses(player, Feature.TORCHES));
+        when(player.hasPermission(PermissionNode.BYPASS.getNode())).thenReturn(true);
+
+        //Cached for 3 seconds
+        module.recheckBypasses();
+        module.recheckBypasses();
+        assertFalse(module.playerBypasses(player, Feature.TORCHES));
+        module.recheckBypasses();
+        assertTrue(module.playerBypasses(player, Feature.TORCHES));
+    }
+}
@@ -0,0 +1,144 @@
+/*
+ * This file is part of
+ * MegaHardCore Server Plugin for Minecraft
+ *
+ * Copyright (C) 2012 Ryan Hamshire
+ * Copyright (C) 2013 Diemex
+ *
+ * MegaHardCore is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MegaHardCore is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero Public License
+ * along with MegaHardCore.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.megahardcore.modules;
+
+
+import com.megahardcore.MegaHardCore;
+import com.megahardcore.mocks.MockMegaHardCore;
+import com.megahardcore.mocks.MockWorld;
+import com.megahardcore.module.PlayerIndexModule;
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.entity.Player;
+import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * @author Diemex
+ */
+public class TestPlayerIndex
+{
+    private final MegaHardCore plugin = new MockMegaHardCore().get();
+
+    private final World world = new MockWorld("world").get();
+
+    private final PlayerIndexModule index = new PlayerIndexModule(plugin);
+
+
+    @Before
+    public void prepare()
+    {
+        when(world.getUID()).thenReturn(UUID.randomUUID());
+    }
+
+
+    /**
+     * A player standing at the given coordinates who has joined the server
+     */
+    private Player join(final double x, final double z)
+    {
+        Player player = mock(Player.class);
+        when(player.getUniqueId()).thenReturn(UUID.randomUUID());
+        when(player.getLocation()).thenReturn(new Location(world, x, 64, z));
+        when(player.getLocation(any(Location.class))).thenAnswer(new Answer<Location>()
+        {
+            @Override
+            public Location answer(InvocationOnMock invocation) throws Throwable
+            {
+                Location loc = (Location) invocation.getArguments()[0];
+                loc.setWorld(world);
+                loc.setX(x);
+                loc.setY(64);
+                loc.setZ(z);
+                return loc;
+            }
+        });
+        index.onPlayerJoin(new PlayerJoinEvent(player, null));
+        return player;
+    }
+
+
+    @Test
+    public void playerNearby()
+    {
+        join(100, 100);
+        assertTrue(index.arePlayersNearby(new Location(world, 105, 64, 100), 16));
+        assertFalse(index.arePlayersNearby(new Location(world, 130, 64, 100), 16));
+        //Other side of a chunk border
+        assertTrue(index.arePlayersNearby(new Location(world, 90, 64, 100), 16));
+    }
+
+
+    @Test
+    public void playerQuit()
+    {
+        Player player = join(100, 100);
+        index.onPlayerQuit(new PlayerQuitEvent(player, null));
+        assertFalse(index.arePlayersNearby(new Location(world, 100, 64, 100), 16));
+    }
+
+
+    @Test
+    public void sparseWorld()
+    {
+        //More players than cells to search, but every one of them in his own cell far away from the others
+        List<Player> players = new ArrayList<>();
+        for (int i = 0; i < 50; i++)
+            players.add(join(i * 1000, 0));
+
+        assertFalse(index.arePlayersNearby(new Location(world, 500, 64, 0), 16));
+        //Only the cells around the location are searched, none of the far away players has been looked at
+        for (Player player : players)
+            verify(player, never()).getLocation(any(Location.class));
+
+        assertTrue(index.arePlayersNearby(new Location(world, 7010, 64, 0), 16));
+        verify(players.get(7)).getLocation(any(Location.class));
+        verify(players.get(8), never()).getLocation(any(Location.class));
+    }
+
+
+    @Test
+    public void fewPlayersLargeRadius()
+    {
+        //More cells to search than players, every player gets checked instead
+        join(0, 0);
+        join(5000, 0);
+        assertTrue(index.arePlayersNearby(new Location(world, 150, 64, 0), 200));
+        assertFalse(index.arePlayersNearby(new Location(world, 2500, 64, 0), 200));
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * This file is part of
+ * MegaHardCore Server Plugin for Minecraft
+ *
+ * Copyright (C) 2012 Ryan Hamshire
+ * Copyright (C) 2013 Diemex
+ *
+ * MegaHardCore is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MegaHardCore is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero Public License
+ * along with MegaHardCore.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.megahardcore.modules;
+
+
+import com.megahardcore.MegaHardCore;
+import com.megahardcore.mocks.MockMegaHardCore;
+import com.megahardcore.mocks.MockWorld;
+import com.megahardcore.module.temporaryblock.TemporaryBlock;
+import com.megahardcore.module.temporaryblock.TemporaryBlockHandler;
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.when;
+
+/**
+ * @author Diemex
+ */
+public class TestTemporaryBlockHandler
+{
+    private final MegaHardCore plugin = new MockMegaHardCore().get();
+
+    private final TemporaryBlockHandler handler = new TemporaryBlockHandler(plugin);
+
+    private final World world = new MockWorld("world").get();
+
+
+    @Before
+    public void prepare()
+    {
+        when(world.getUID()).thenReturn(UUID.randomUUID());
+    }
+
+
+    @Test
+    public void expiry()
+    {
+        handler.addTemporaryBlock(new Location(world, 0, 64, 0), 1000L, "short");
+        handler.addTemporaryBlock(new Location(world, 10, 64, 0), 5000L, "long");
+        final long now = System.currentTimeMillis();
+        assertEquals(2, handler.size());
+
+        handler.removeExpired(now);
+        assertEquals(2, handler.size());
+
+        handler.removeExpired(now + 2000L);
+        assertEquals(1, handler.size());
+        assertEquals(1, handler.getExpired());
+
+        handler.removeExpired(now + 6000L);
+        assertEquals(0, handler.size());
+        assertEquals(2, handler.getExpired());
+    }
+
+
+    @Test
+    public void removeBlock()
+    {
+        TemporaryBlock block = handler.addTemporaryBlock(new Location(world, 0, 64, 0), 1000L, "skull");
+        //Replaced by a newer block at the same location
+        TemporaryBlock newer = handler.addTemporaryBlock(new Location(world, 0, 64, 0), 1000L, "skull");
+        assertEquals(1, handler.size());
+        handler.removeTemporaryBlock(block);
+        assertEquals(1, handler.size());
+        handler.removeTemporaryBlock(newer);
+        assertEquals(0, handler.size());
+        assertEquals(0, handler.getExpired());
+    }
+}
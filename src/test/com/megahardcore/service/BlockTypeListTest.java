@@ -0,0 +1,79 @@
+package com.megahardcore.service;
+
+
+import com.megahardcore.service.config.customtypes.BlockRelationsList;
+import com.megahardcore.service.config.customtypes.BlockType;
+import com.megahardcore.service.config.customtypes.BlockTypeList;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author Diemex
+ */
+public class BlockTypeListTest
+{
+    @Test
+    public void contains_anyMeta()
+    {
+        BlockTypeList list = new BlockTypeList();
+        list.add(new BlockType(1));
+        assertTrue(list.contains(1, (byte) 0));
+        assertTrue(list.contains(1, (byte) 15));
+        assertTrue(list.contains(1));
+        assertFalse(list.contains(2, (byte) 0));
+        assertFalse(list.contains(2));
+    }
+
+
+    @Test
+    public void contains_meta()
+    {
+        BlockTypeList list = new BlockTypeList();
+        list.add(new BlockType(98, (short) 1, (short) 2));
+        assertTrue(list.contains(98, (byte) 1));
+        assertTrue(list.contains(98, (byte) 2));
+        assertFalse(list.contains(98, (byte) 0));
+        assertTrue(list.contains(98));
+    }
+
+
+    @Test
+    public void contains_addAfterLookup()
+    {
+        BlockTypeList list = new BlockTypeList();
+        list.add(new BlockType(1));
+        assertFalse(list.contains(4, (byte) 0));
+        list.add(new BlockType(4));
+        assertTrue(list.contains(4, (byte) 0));
+    }
+
+
+    @Test
+    public void contains_modBlock()
+    {
+        BlockTypeList list = new BlockTypeList();
+        list.add(new BlockType(5000, (short) 3));
+        assertTrue(list.contains(5000, (byte) 3));
+        assertFalse(list.contains(5000, (byte) 4));
+        assertTrue(list.contains(5000));
+    }
+
+
+    @Test
+    public void relations_get()
+    {
+        BlockRelationsList relations = new BlockRelationsList();
+        BlockType cobble = new BlockType(4);
+        BlockType crackedBricks = new BlockType(98, (short) 2);
+        relations.add(new BlockType(1), cobble);
+        relations.add(new BlockType(98, (short) 0), crackedBricks);
+        relations.add(new BlockType(5000), cobble);
+
+        assertEquals(cobble, relations.get(1, (byte) 0));
+        assertEquals(crackedBricks, relations.get(98, (byte) 0));
+        assertNull(relations.get(98, (byte) 1));
+        assertNull(relations.get(3, (byte) 0));
+        assertEquals(cobble, relations.get(5000, (byte) 7));
+    }
+}
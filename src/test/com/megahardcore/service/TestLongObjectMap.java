@@ -0,0 +1,97 @@
+/*
+ * This file is part of
+ * MegaHardCore Server Plugin for Minecraft
+ *
+ * Copyright (C) 2012 Ryan Hamshire
+ * Copyright (C) 2013 Diemex
+ *
+ * MegaHardCore is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MegaHardCore is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero Public License
+ * along with MegaHardCore.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.megahardcore.service;
+
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test the primitive map and the packed locations used as keys
+ */
+public class TestLongObjectMap
+{
+    @Test
+    public void packUnpack()
+    {
+        int[][] coords = {{0, 0, 0}, {-1, 255, -1}, {30000000, 0, -30000000}, {-30000000, 4095 / 2, 30000000}, {17, 64, -2047}};
+        for (int[] c : coords)
+        {
+            long packed = PackedLocation.pack(c[0], c[1], c[2]);
+            assertEquals(c[0], PackedLocation.unpackX(packed));
+            assertEquals(c[1], PackedLocation.unpackY(packed));
+            assertEquals(c[2], PackedLocation.unpackZ(packed));
+        }
+    }
+
+
+    @Test
+    public void basicOperations()
+    {
+        LongObjectMap<String> map = new LongObjectMap<>();
+        assertTrue(map.isEmpty());
+        assertNull(map.put(5L, "five"));
+        assertEquals("five", map.put(5L, "FIVE"));
+        assertEquals("FIVE", map.get(5L));
+        assertTrue(map.containsKey(5L));
+        assertFalse(map.containsKey(6L));
+        assertEquals(1, map.size());
+        assertEquals("FIVE", map.remove(5L));
+        assertNull(map.remove(5L));
+        assertTrue(map.isEmpty());
+    }
+
+
+    /**
+     * Compare against a HashMap with lots of colliding inserts and removals
+     */
+    @Test
+    public void compareWithHashMap()
+    {
+        Random random = new Random(42);
+        LongObjectMap<Long> map = new LongObjectMap<>();
+        Map<Long, Long> reference = new HashMap<>();
+        for (int i = 0; i < 50000; i++)
+        {
+            long key = PackedLocation.pack(random.nextInt(64) - 32, random.nextInt(256), random.nextInt(64) - 32);
+            if (random.nextInt(3) == 0)
+                assertEquals(reference.remove(key), map.remove(key));
+            else
+                assertEquals(reference.put(key, (long) i), map.put(key, (long) i));
+        }
+        assertEquals(reference.size(), map.size());
+        for (Map.Entry<Long, Long> entry : reference.entrySet())
+            assertEquals(entry.getValue(), map.get(entry.getKey()));
+
+        map.removeIf((key, value) -> value % 2 == 0);
+        for (Map.Entry<Long, Long> entry : reference.entrySet())
+            assertEquals(entry.getValue() % 2 == 0 ? null : entry.getValue(), map.get(entry.getKey()));
+    }
+}
@@ -0,0 +1,67 @@
+/*
+ * This file is part of
+ * MegaHardCore Server Plugin for Minecraft
+ *
+ * Copyright (C) 2012 Ryan Hamshire
+ * Copyright (C) 2013 Diemex
+ *
+ * MegaHardCore is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MegaHardCore is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero Public License
+ * along with MegaHardCore.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.megahardcore.service;
+
+
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author Diemex
+ */
+public class TestNeighbourhoodScanner
+{
+    @Test
+    public void standingCoversAllCells()
+    {
+        NeighbourhoodScanner.Offsets offsets = NeighbourhoodScanner.STANDING;
+        assertEquals(17, offsets.size());
+
+        Set<Long> cells = new HashSet<>();
+        for (int i = 0; i < offsets.size(); i++)
+        {
+            assertTrue(offsets.dy(i) == 0 || offsets.dy(i) == -1);
+            assertTrue(Math.abs(offsets.dx(i)) <= 1 && Math.abs(offsets.dz(i)) <= 1);
+            cells.add(PackedLocation.pack(offsets.dx(i), offsets.dy(i), offsets.dz(i)));
+        }
+        assertEquals("every cell should only be checked once", 17, cells.size());
+        assertFalse("the block below is solid ground", cells.contains(PackedLocation.pack(0, -1, 0)));
+    }
+
+
+    @Test
+    public void touchingMatchesFaces()
+    {
+        NeighbourhoodScanner.Offsets offsets = NeighbourhoodScanner.TOUCHING;
+        assertEquals(6, offsets.size());
+        for (int i = 0; i < offsets.size(); i++)
+        {
+            assertEquals(offsets.face(i).getModX(), offsets.dx(i));
+            assertEquals(offsets.face(i).getModY(), offsets.dy(i));
+            assertEquals(offsets.face(i).getModZ(), offsets.dz(i));
+        }
+    }
+}
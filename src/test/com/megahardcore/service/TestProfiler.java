@@ -0,0 +1,114 @@
+/*
+ * This file is part of
+ * MegaHardCore Server Plugin for Minecraft
+ *
+ * Copyright (C) 2012 Ryan Hamshire
+ * Copyright (C) 2013 Diemex
+ *
+ * MegaHardCore is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MegaHardCore is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero Public License
+ * along with MegaHardCore.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.megahardcore.service;
+
+
+import com.megahardcore.MegaHardCore;
+import com.megahardcore.mocks.MockMegaHardCore;
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.when;
+
+/**
+ * Test that wrapped tasks are only measured while the profiler is running
+ */
+public class TestProfiler
+{
+    private final MegaHardCore plugin = new MockMegaHardCore().get();
+
+    private final Profiler profiler = new Profiler(plugin);
+
+
+    @Test
+    public void onlyWhileRunning()
+    {
+        final AtomicInteger runs = new AtomicInteger();
+        Runnable task = profiler.wrap("Task", runs::incrementAndGet);
+
+        task.run();
+        assertEquals("Stopped profiler still runs the task", 1, runs.get());
+        assertEquals(0, profiler.getCount("Task", "-"));
+
+        profiler.start();
+        task.run();
+        task.run();
+        assertEquals(2, profiler.getCount("Task", "-"));
+
+        profiler.stop();
+        task.run();
+        assertEquals("Kept after stopping", 2, profiler.getCount("Task", "-"));
+        assertEquals(4, runs.get());
+
+        profiler.start();
+        assertEquals("Reset on start", 0, profiler.getCount("Task", "-"));
+    }
+
+
+    @Test
+    public void failingTaskRecorded()
+    {
+        Runnable task = profiler.wrap("Failing", () -> {
+            throw new IllegalStateException();
+        });
+        profiler.start();
+        try
+        {
+            task.run();
+            fail();
+        } catch (IllegalStateException ignored)
+        {
+        }
+        assertEquals(1, profiler.getCount("Failing", "-"));
+    }
+
+
+    @Test
+    public void perWorld()
+    {
+        profiler.start();
+        profiler.record("Feature.onEvent", "world", 1000);
+        profiler.record("Feature.onEvent", "world", 3000);
+        profiler.record("Feature.onEvent", "world_nether", 2000);
+        assertEquals(2, profiler.getCount("Feature.onEvent", "world"));
+        assertEquals(1, profiler.getCount("Feature.onEvent", "world_nether"));
+        assertEquals(0, profiler.getCount("Other.onEvent", "world"));
+    }
+
+
+    @Test
+    public void noProfiler()
+    {
+        Runnable task = () -> {
+        };
+        assertSame("Unwrapped without a profiler", task, Profiler.wrap(plugin, "Task", task));
+
+        when(plugin.getModuleForClass(Profiler.class)).thenReturn(profiler);
+        profiler.start();
+        Profiler.wrap(plugin, "Task", task).run();
+        assertEquals(1, profiler.getCount("Task", "-"));
+    }
+}
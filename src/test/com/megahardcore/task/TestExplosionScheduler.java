@@ -0,0 +1,244 @@
+/*
+ * This file is part of
+ * MegaHardCore Server Plugin for Minecraft
+ *
+ * Copyright (C) 2012 Ryan Hamshire
+ * Copyright (C) 2013 Diemex
+ *
+ * MegaHardCore is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MegaHardCore is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero Public License
+ * along with MegaHardCore.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.megahardcore.task;
+
+
+import com.megahardcore.MegaHardCore;
+import com.megahardcore.config.ExplosionType;
+import com.megahardcore.config.RootConfig;
+import com.megahardcore.config.RootNode;
+import com.megahardcore.mocks.MockMegaHardCore;
+import com.megahardcore.mocks.MockWorld;
+import com.megahardcore.module.EntityStateStore;
+import com.megahardcore.module.ExplosionCompatStorage;
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.entity.Entity;
+import org.bukkit.entity.EntityType;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyBoolean;
+import static org.mockito.Matchers.anyDouble;
+import static org.mockito.Matchers.anyFloat;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyListOf;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Test merging of explosions and the per tick budgets
+ */
+public class TestExplosionScheduler
+{
+    private final MegaHardCore plugin = new MockMegaHardCore().get();
+
+    private final RootConfig CFG = new RootConfig(plugin);
+
+    private final ExplosionScheduler scheduler = new ExplosionScheduler(plugin, CFG);
+
+    private final World world = new MockWorld("world").get();
+
+
+    @Before
+    public void prepare()
+    {
+        CFG.set("world", RootNode.EXPLOSIONS_Y, 55);
+        CFG.set("world", RootNode.EXPLOSIONS_CREEPERS_BELOW_POWER, 4);
+        CFG.set("world", RootNode.EXPLOSIONS_CREEPERS_BELOW_FIRE, false);
+        CFG.set("world", RootNode.EXPLOSIONS_CREEPERS_BELOW_WORLD_GRIEF, true);
+        CFG.set("world", RootNode.EXPLOSIONS_MAX_PER_TICK, 2);
+        CFG.set("world", RootNode.EXPLOSIONS_MAX_FLYING_BLOCKS_PER_TICK, 100);
+        CFG.set("world", RootNode.EXPLOSIONS_MERGE, true);
+        when(world.getUID()).thenReturn(UUID.randomUUID());
+        when(world.isChunkLoaded(anyInt(), anyInt())).thenReturn(true);
+        when(plugin.getModuleForClass(ExplosionCompatStorage.class)).thenReturn(mock(ExplosionCompatStorage.class));
+        when(plugin.getModuleForClass(EntityStateStore.class)).thenReturn(new EntityStateStore(plugin));
+    }
+
+
+    private Location at(double x)
+    {
+        return new Location(world, x, 10, 0);
+    }
+
+
+    private static Entity entity(EntityType type)
+    {
+        Entity entity = mock(Entity.class);
+        when(entity.getType()).thenReturn(type);
+        return entity;
+    }
+
+
+    private void verifyExplosions(int amount)
+    {
+        verify(world, times(amount)).createExplosion(anyDouble(), anyDouble(), anyDouble(), anyFloat(), anyBoolean(), anyBoolean());
+    }
+
+
+    @Test
+    public void explodesRightAway()
+    {
+        scheduler.queue(at(0), ExplosionType.CREEPER, null);
+        verify(world).createExplosion(eq(0.0), eq(10.0), eq(0.0), eq(4F), eq(false), eq(true));
+    }
+
+
+    @Test
+    public void delayedExplosion()
+    {
+        scheduler.queue(at(0), ExplosionType.CREEPER, null, 3);
+        scheduler.run();
+        scheduler.run();
+        verifyExplosions(0);
+        scheduler.run();
+        verifyExplosions(1);
+    }
+
+
+    @Test
+    public void mergeCloseExplosions()
+    {
+        //Within half the power of each other
+        scheduler.queue(at(0), ExplosionType.CREEPER, null, 1);
+        scheduler.queue(at(1), ExplosionType.CREEPER, null, 1);
+        scheduler.queue(at(2), ExplosionType.CREEPER, null, 1);
+        //Too far away
+        scheduler.queue(at(10), ExplosionType.CREEPER, null, 1);
+        scheduler.run();
+        verifyExplosions(2);
+    }
+
+
+    @Test
+    public void dontMergeIfDisabled()
+    {
+        CFG.set("world", RootNode.EXPLOSIONS_MAX_PER_TICK, 0);
+        CFG.set("world", RootNode.EXPLOSIONS_MERGE, false);
+        scheduler.queue(at(0), ExplosionType.CREEPER, null, 1);
+        scheduler.queue(at(1), ExplosionType.CREEPER, null, 1);
+        scheduler.queue(at(2), ExplosionType.CREEPER, null, 1);
+        scheduler.run();
+        verifyExplosions(3);
+    }
+
+
+    @Test
+    public void mergeTntSources()
+    {
+        CFG.set("world", RootNode.EXPLOSIONS_TNT_BELOW_POWER, 4);
+        CFG.set("world", RootNode.EXPLOSIONS_TNT_BELOW_FIRE, false);
+        CFG.set("world", RootNode.EXPLOSIONS_TNT_BELOW_WORLD_GRIEF, true);
+        ExplosionCompatStorage compatStorage = mock(ExplosionCompatStorage.class);
+        when(plugin.getModuleForClass(ExplosionCompatStorage.class)).thenReturn(compatStorage);
+        Entity tnt = entity(EntityType.PRIMED_TNT), otherTnt = entity(EntityType.PRIMED_TNT);
+        scheduler.queue(at(0), ExplosionType.TNT, tnt, 1);
+        scheduler.queue(at(1), ExplosionType.TNT, otherTnt, 1);
+        scheduler.run();
+        verifyExplosions(1);
+        //Both sources are kept for the attribution
+        verify(compatStorage).queueExplosion(any(Location.class), eq(tnt), eq(Collections.singletonList(otherTnt)));
+    }
+
+
+    @Test
+    public void dontMergeDifferentEntityTypes()
+    {
+        scheduler.queue(at(0), ExplosionType.CREEPER, entity(EntityType.CREEPER), 1);
+        scheduler.queue(at(1), ExplosionType.CREEPER, entity(EntityType.PRIMED_TNT), 1);
+        scheduler.run();
+        verifyExplosions(2);
+    }
+
+
+    @Test
+    public void mergeKeepsCause()
+    {
+        ExplosionCompatStorage compatStorage = mock(ExplosionCompatStorage.class);
+        when(plugin.getModuleForClass(ExplosionCompatStorage.class)).thenReturn(compatStorage);
+        Entity creeper = entity(EntityType.CREEPER);
+        scheduler.queue(at(0), ExplosionType.CREEPER, null, 1);
+        scheduler.queue(at(1), ExplosionType.CREEPER, creeper, 1);
+        scheduler.run();
+        verifyExplosions(1);
+        verify(compatStorage).queueExplosion(any(Location.class), eq(creeper), anyListOf(Entity.class));
+    }
+
+
+    @Test
+    public void explosionBudgetPerTick()
+    {
+        for (int i = 0; i < 5; i++)
+            scheduler.queue(at(i * 10), ExplosionType.CREEPER, null, 1);
+        scheduler.run();
+        verifyExplosions(2);
+        scheduler.run();
+        verifyExplosions(4);
+        scheduler.run();
+        verifyExplosions(5);
+    }
+
+
+    @Test
+    public void immediateExplosionsShareBudget()
+    {
+        scheduler.queue(at(0), ExplosionType.CREEPER, null, 1);
+        scheduler.run();
+        verifyExplosions(1);
+        scheduler.queue(at(10), ExplosionType.CREEPER, null);
+        verifyExplosions(2);
+        //Budget used up, happens in the next tick
+        scheduler.queue(at(20), ExplosionType.CREEPER, null);
+        verifyExplosions(2);
+        scheduler.run();
+        verifyExplosions(3);
+    }
+
+
+    @Test
+    public void flyingBlockBudgetPerTick()
+    {
+        assertEquals(60, scheduler.takeFlyingBlocks(world, 60));
+        assertEquals(40, scheduler.takeFlyingBlocks(world, 60));
+        assertEquals(0, scheduler.takeFlyingBlocks(world, 10));
+        scheduler.run();
+        assertEquals(10, scheduler.takeFlyingBlocks(world, 10));
+    }
+
+
+    @Test
+    public void noFlyingBlockLimit()
+    {
+        CFG.set("world", RootNode.EXPLOSIONS_MAX_FLYING_BLOCKS_PER_TICK, 0);
+        assertEquals(1000, scheduler.takeFlyingBlocks(world, 1000));
+        assertEquals(1000, scheduler.takeFlyingBlocks(world, 1000));
+    }
+}
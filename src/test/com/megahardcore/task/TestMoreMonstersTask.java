@@ -0,0 +1,150 @@
+/*
+ * This file is part of
+ * MegaHardCore Server Plugin for Minecraft
+ *
+ * Copyright (C) 2012 Ryan Hamshire
+ * Copyright (C) 2013 Diemex
+ *
+ * MegaHardCore is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MegaHardCore is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero Public License
+ * along with MegaHardCore.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.megahardcore.task;
+
+
+import com.megahardcore.MegaHardCore;
+import com.megahardcore.compatibility.CompatHandler;
+import com.megahardcore.config.RootConfig;
+import com.megahardcore.config.RootNode;
+import com.megahardcore.mocks.MockMegaHardCore;
+import com.megahardcore.mocks.MockWorld;
+import com.megahardcore.module.EntityStateStore;
+import com.megahardcore.module.PlayerIndexModule;
+import com.megahardcore.module.PlayerModule;
+import org.bukkit.Location;
+import org.bukkit.Material;
+import org.bukkit.World;
+import org.bukkit.block.Block;
+import org.bukkit.block.BlockFace;
+import org.bukkit.entity.EntityType;
+import org.bukkit.entity.LivingEntity;
+import org.bukkit.entity.Player;
+import org.bukkit.inventory.EntityEquipment;
+import org.junit.Before;
+import org.junit.Test;
+import org.powermock.reflect.Whitebox;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.UUID;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Test that monsters over the per tick limit are spawned in the following ticks
+ */
+public class TestMoreMonstersTask
+{
+    private final MegaHardCore plugin = new MockMegaHardCore().get();
+
+    private final RootConfig CFG = new RootConfig(plugin);
+
+    private final MockWorld mockWorld = new MockWorld("world");
+
+    private final World world = mockWorld.get();
+
+    private final Player player = mock(Player.class);
+
+    /**
+     * 3 slots are due every tick
+     */
+    private final List<Player> online = new ArrayList<>(Collections.nCopies(1800, player));
+
+    private MoreMonstersTask task;
+
+
+    @Before
+    public void prepare()
+    {
+        CFG.set("world", RootNode.MONSTER_SPAWNS_IN_LIGHT_PERCENTAGE, 100);
+        CFG.set("world", RootNode.MONSTER_SPAWNS_IN_LIGHT_MAX_Y, 64);
+        CFG.set("world", RootNode.MONSTER_SPAWNS_IN_LIGHT_MAX_LIGHT, 15);
+        when(plugin.getModuleForClass(EntityStateStore.class)).thenReturn(new EntityStateStore(plugin));
+        //normally set up when the CompatHandler starts
+        Whitebox.setInternalState(CompatHandler.class, "monsterProtectionPls", new HashSet<>());
+
+        mockWorld.setEnvironment(World.Environment.NORMAL);
+        when(world.isChunkLoaded(anyInt(), anyInt())).thenReturn(true);
+        when(world.getBlockTypeIdAt(anyInt(), anyInt(), anyInt())).thenReturn(Material.STONE.getId());
+
+        Block air = mock(Block.class), ground = mock(Block.class);
+        when(air.getType()).thenReturn(Material.AIR);
+        when(air.getRelative(BlockFace.DOWN, 1)).thenReturn(ground);
+        when(ground.getType()).thenReturn(Material.STONE);
+        when(world.getBlockAt(anyInt(), anyInt(), anyInt())).thenReturn(air);
+
+        LivingEntity mob = mock(LivingEntity.class);
+        when(mob.getEquipment()).thenReturn(mock(EntityEquipment.class));
+        when(world.spawnEntity(any(Location.class), any(EntityType.class))).thenReturn(mob);
+
+        when(player.getUniqueId()).thenReturn(UUID.randomUUID());
+        when(player.isOnline()).thenReturn(true);
+        when(player.getWorld()).thenReturn(world);
+        //the task moves the location around while checking it
+        when(player.getLocation()).thenAnswer(invocation -> new Location(world, 0.5, 10, 0.5));
+
+        task = new MoreMonstersTask(plugin, CFG, mock(PlayerModule.class), mock(PlayerIndexModule.class), 2);
+    }
+
+
+    /**
+     * Run the task for a number of ticks
+     */
+    private void tick(int ticks)
+    {
+        for (int i = 0; i < ticks; i++)
+            task.tick(online);
+    }
+
+
+    @Test
+    public void spreadOverTicks()
+    {
+        //the first window only saves the locations of the players
+        tick(600);
+        verify(world, times(0)).spawnEntity(any(Location.class), any(EntityType.class));
+
+        //3 spawns are due every tick, but only 2 are spawned
+        for (int i = 1; i <= 600; i++)
+        {
+            tick(1);
+            verify(world, times(2 * i)).spawnEntity(any(Location.class), any(EntityType.class));
+        }
+
+        //no new spawns, the 600 spawns that didn't fit into their tick are spawned in the next 300 ticks
+        CFG.set("world", RootNode.MONSTER_SPAWNS_IN_LIGHT_PERCENTAGE, 0);
+        tick(299);
+        verify(world, times(1200 + 598)).spawnEntity(any(Location.class), any(EntityType.class));
+        tick(1);
+        verify(world, times(1800)).spawnEntity(any(Location.class), any(EntityType.class));
+        tick(1);
+        verify(world, times(1800)).spawnEntity(any(Location.class), any(EntityType.class));
+    }
+}
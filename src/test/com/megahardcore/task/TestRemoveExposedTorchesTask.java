@@ -0,0 +1,194 @@
+/*
+ * This file is part of
+ * MegaHardCore Server Plugin for Minecraft
+ *
+ * Copyright (C) 2012 Ryan Hamshire
+ * Copyright (C) 2013 Diemex
+ *
+ * MegaHardCore is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MegaHardCore is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero Public License
+ * along with MegaHardCore.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.megahardcore.task;
+
+
+import com.megahardcore.MegaHardCore;
+import com.megahardcore.config.RootConfig;
+import com.megahardcore.config.RootNode;
+import com.megahardcore.mocks.MockMegaHardCore;
+import com.megahardcore.mocks.MockWorld;
+import org.bukkit.Chunk;
+import org.bukkit.ChunkSnapshot;
+import org.bukkit.Material;
+import org.bukkit.World;
+import org.bukkit.block.Block;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Test that a storm checks the loaded chunks one after another and the per tick budget of removed blocks
+ */
+public class TestRemoveExposedTorchesTask
+{
+    private final MegaHardCore plugin = new MockMegaHardCore().get();
+
+    private final RootConfig CFG = new RootConfig(plugin);
+
+    private final World world = new MockWorld("world").get();
+
+    private final Block block = mock(Block.class);
+
+    private final ChunkSnapshot snapshot = mock(ChunkSnapshot.class);
+
+    private RemoveExposedTorchesTask task;
+
+
+    @Before
+    public void prepare()
+    {
+        CFG.set("world", RootNode.RAIN_BREAKS_TORCHES, true);
+        when(plugin.getRandom()).thenReturn(new Random()
+        {
+            @Override
+            public int nextInt(int bound)
+            {
+                return 0;
+            }
+        });
+
+        //Searches right away instead of on a worker thread
+        ExecutorService workers = mock(ExecutorService.class);
+        doAnswer(new Answer<Void>()
+        {
+            @Override
+            public Void answer(InvocationOnMock invocation) throws Throwable
+            {
+                ((Runnable) invocation.getArguments()[0]).run();
+                return null;
+            }
+        }).when(workers).execute(any(Runnable.class));
+        task = new RemoveExposedTorchesTask(plugin, CFG, workers);
+
+        Chunk[] chunks = new Chunk[3];
+        for (int i = 0; i < chunks.length; i++)
+        {
+            chunks[i] = mock(Chunk.class);
+            when(chunks[i].getX()).thenReturn(i);
+            when(chunks[i].getWorld()).thenReturn(world);
+            when(chunks[i].getChunkSnapshot(false, false, true)).thenReturn(snapshot);
+        }
+        when(world.getUID()).thenReturn(UUID.randomUUID());
+        when(world.getLoadedChunks()).thenReturn(chunks);
+        when(world.hasStorm()).thenReturn(true);
+        when(world.isChunkLoaded(anyInt(), anyInt())).thenReturn(true);
+        when(world.getChunkAt(anyInt(), anyInt())).thenReturn(chunks[0]);
+        when(world.getBlockAt(anyInt(), anyInt(), anyInt())).thenReturn(block);
+        when(block.getType()).thenReturn(Material.TORCH);
+
+        //Nothing but sky
+        when(snapshot.isSectionEmpty(anyInt())).thenReturn(true);
+    }
+
+
+    /**
+     * Torches at y 5 in one row of the chunk, 16 in total
+     */
+    private void placeTorches()
+    {
+        when(snapshot.isSectionEmpty(0)).thenReturn(false);
+        when(snapshot.getRawBiomeTemperature(anyInt(), anyInt())).thenReturn(0.5);
+        when(snapshot.getBlockTypeId(anyInt(), anyInt(), anyInt())).thenAnswer(new Answer<Integer>()
+        {
+            @Override
+            public Integer answer(InvocationOnMock invocation) throws Throwable
+            {
+                Object[] args = invocation.getArguments();
+                return (Integer) args[0] == 0 && (Integer) args[1] == 5 ? Material.TORCH.getId() : Material.AIR.getId();
+            }
+        });
+    }
+
+
+    private void run(int ticks)
+    {
+        for (int i = 0; i < ticks; i++)
+            task.run();
+    }
+
+
+    private void verifyChecked(int chunks)
+    {
+        verify(world, times(chunks)).getChunkAt(anyInt(), anyInt());
+    }
+
+
+    @Test
+    public void spreadOverStorm()
+    {
+        task.queueWorld(world);
+        run(1);
+        verifyChecked(1);
+        run(14);
+        verifyChecked(1);
+        run(1);
+        verifyChecked(2);
+        run(15);
+        verifyChecked(3);
+        //All loaded chunks have been checked
+        run(30);
+        verifyChecked(3);
+    }
+
+
+    @Test
+    public void stopsWhenStormEnds()
+    {
+        task.queueWorld(world);
+        run(1);
+        verifyChecked(1);
+        when(world.hasStorm()).thenReturn(false);
+        run(45);
+        verifyChecked(1);
+    }
+
+
+    @Test
+    public void blockBudgetPerTick()
+    {
+        CFG.set("world", RootNode.RAIN_SWEEP_BLOCKS_PER_TICK, 4);
+        placeTorches();
+        task.queueWorld(world);
+        run(1);
+        verify(block, times(4)).setType(Material.AIR);
+        run(1);
+        verify(block, times(8)).setType(Material.AIR);
+        run(2);
+        verify(block, times(16)).setType(Material.AIR);
+        run(1);
+        verify(block, times(16)).setType(Material.AIR);
+    }
+}
@@ -0,0 +1,191 @@
+/*
+ * This file is part of
+ * MegaHardCore Server Plugin for Minecraft
+ *
+ * Copyright (C) 2012 Ryan Hamshire
+ * Copyright (C) 2013 Diemex
+ *
+ * MegaHardCore is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MegaHardCore is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero Public License
+ * along with MegaHardCore.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.megahardcore.task;
+
+
+import com.megahardcore.service.PackedLocation;
+import org.bukkit.Material;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author Diemex
+ */
+public class TestTreeFellingTask
+{
+    private static TreeFellingTask.Region emptyRegion()
+    {
+        TreeFellingTask.Region region = new TreeFellingTask.Region(-7, -7, 15, 40);
+        for (int x = -7; x <= 7; x++)
+            for (int z = -7; z <= 7; z++)
+            {
+                region.set(x, 0, z, Material.STONE.getId());
+                for (int y = 1; y < 40; y++)
+                    region.set(x, y, z, Material.AIR.getId());
+            }
+        return region;
+    }
+
+
+    private static boolean contains(TreeFellingTask.Plan plan, int x, int y, int z)
+    {
+        for (int i = 0; i < plan.size(); i++)
+            if (plan.getPosition(i) == PackedLocation.pack(x, y, z))
+                return true;
+        return false;
+    }
+
+
+    @Test
+    public void trunkFallsRightAway()
+    {
+        TreeFellingTask.Region region = emptyRegion();
+        for (int y = 1; y <= 5; y++)
+            region.set(0, y, 0, Material.LOG.getId());
+        region.set(0, 6, 0, Material.LEAVES.getId());
+
+        TreeFellingTask.Plan plan = TreeFellingTask.analyze(null, region, 0, 1, 0, new Random(0));
+
+        assertEquals(4, plan.size());
+        for (int i = 0; i < plan.size(); i++)
+        {
+            assertEquals(TreeFellingTask.FALL, plan.getKind(i));
+            assertEquals(0, plan.getDelay(i));
+            assertEquals(i + 2, PackedLocation.unpackY(plan.getPosition(i)));
+        }
+    }
+
+
+    @Test
+    public void looseLogClearsLeavesBelow()
+    {
+        TreeFellingTask.Region region = emptyRegion();
+        for (int y = 1; y <= 3; y++)
+            region.set(0, y, 0, Material.LOG.getId());
+        region.set(3, 4, 0, Material.LOG.getId());
+        region.set(4, 4, 0, Material.LEAVES.getId());
+        region.set(4, 4, 1, Material.LEAVES.getId());
+        region.set(3, 4, 1, Material.LEAVES.getId());
+        region.set(2, 4, 1, Material.LEAVES.getId());
+        region.set(3, 2, 0, Material.LEAVES.getId());
+
+        TreeFellingTask.Plan plan = TreeFellingTask.analyze(null, region, 0, 1, 0, new Random(0));
+
+        assertEquals(4, plan.size());
+        assertEquals(TreeFellingTask.FALL, plan.getKind(0));
+        assertEquals(TreeFellingTask.FALL, plan.getKind(1));
+        //The leaves have to be gone before the log falls
+        assertEquals(TreeFellingTask.BREAK, plan.getKind(2));
+        assertEquals(PackedLocation.pack(3, 2, 0), plan.getPosition(2));
+        assertEquals(Material.LEAVES.getId(), plan.getType(2));
+        assertEquals(TreeFellingTask.FALL_DAMAGE, plan.getKind(3));
+        assertEquals(PackedLocation.pack(3, 4, 0), plan.getPosition(3));
+        assertEquals(plan.getDelay(2), plan.getDelay(3));
+    }
+
+
+    @Test
+    public void woodenStructureStays()
+    {
+        TreeFellingTask.Region region = emptyRegion();
+        for (int y = 1; y <= 3; y++)
+            region.set(0, y, 0, Material.LOG.getId());
+        region.set(3, 4, 0, Material.LOG.getId());
+
+        TreeFellingTask.Plan plan = TreeFellingTask.analyze(null, region, 0, 1, 0, new Random(0));
+
+        assertEquals(2, plan.size());
+    }
+
+
+    @Test
+    public void leavesAreCountedInTwoLayers()
+    {
+        TreeFellingTask.Region region = emptyRegion();
+        for (int y = 1; y <= 3; y++)
+            region.set(0, y, 0, Material.LOG.getId());
+        region.set(3, 4, 0, Material.LOG.getId());
+        //Two leaves next to the log and two in the layer above
+        region.set(4, 4, 0, Material.LEAVES.getId());
+        region.set(2, 4, 0, Material.LEAVES.getId());
+        region.set(3, 5, 1, Material.LEAVES.getId());
+        region.set(3, 5, -1, Material.LEAVES.getId());
+
+        TreeFellingTask.Plan plan = TreeFellingTask.analyze(null, region, 0, 1, 0, new Random(0));
+
+        assertEquals(3, plan.size());
+        assertTrue(contains(plan, 3, 4, 0));
+    }
+
+
+    @Test
+    public void leavesFurtherAwayDontCount()
+    {
+        TreeFellingTask.Region region = emptyRegion();
+        for (int y = 1; y <= 3; y++)
+            region.set(0, y, 0, Material.LOG.getId());
+        region.set(3, 4, 0, Material.LOG.getId());
+        //Only leaves two blocks away from the log
+        for (int dz = -2; dz <= 2; dz++)
+            region.set(5, 4, dz, Material.LEAVES.getId());
+
+        TreeFellingTask.Plan plan = TreeFellingTask.analyze(null, region, 0, 1, 0, new Random(0));
+
+        assertEquals(2, plan.size());
+    }
+
+
+    @Test
+    public void onlyOakLogDirectlyBelowIsAStem()
+    {
+        TreeFellingTask.Region region = emptyRegion();
+        for (int y = 1; y <= 3; y++)
+            region.set(0, y, 0, Material.LOG.getId());
+        region.set(3, 4, 0, Material.LOG.getId());
+        region.set(3, 3, 0, Material.LOG_2.getId());
+        region.set(4, 4, 0, Material.LEAVES.getId());
+        region.set(4, 4, 1, Material.LEAVES.getId());
+        region.set(3, 4, 1, Material.LEAVES.getId());
+        region.set(2, 4, 1, Material.LEAVES.getId());
+
+        TreeFellingTask.Plan plan = TreeFellingTask.analyze(null, region, 0, 1, 0, new Random(0));
+
+        assertTrue("acacia log below doesn't make it a stem", contains(plan, 3, 4, 0));
+
+        region = emptyRegion();
+        for (int y = 1; y <= 3; y++)
+            region.set(0, y, 0, Material.LOG.getId());
+        region.set(3, 4, 0, Material.LOG.getId());
+        region.set(3, 3, 0, Material.LOG.getId());
+        region.set(4, 4, 0, Material.LEAVES.getId());
+        region.set(4, 4, 1, Material.LEAVES.getId());
+        region.set(3, 4, 1, Material.LEAVES.getId());
+        region.set(2, 4, 1, Material.LEAVES.getId());
+
+        plan = TreeFellingTask.analyze(null, region, 0, 1, 0, new Random(0));
+
+        assertEquals("oak log below is a stem", 2, plan.size());
+    }
+}
@@ -0,0 +1,141 @@
+/*
+ * This file is part of
+ * MegaHardCore Server Plugin for Minecraft
+ *
+ * Copyright (C) 2012 Ryan Hamshire
+ * Copyright (C) 2013 Diemex
+ *
+ * MegaHardCore is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MegaHardCore is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero Public License
+ * along with MegaHardCore.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.megahardcore.task;
+
+
+import com.megahardcore.MegaHardCore;
+import com.megahardcore.config.RootConfig;
+import com.megahardcore.config.RootNode;
+import com.megahardcore.config.messages.MsgCategory;
+import com.megahardcore.mocks.MockMegaHardCore;
+import com.megahardcore.mocks.MockPlayer;
+import com.megahardcore.mocks.MockWorld;
+import com.megahardcore.module.InventoryWeightModule;
+import com.megahardcore.module.MsgModule;
+import org.bukkit.entity.Player;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.UUID;
+
+import static org.mockito.Matchers.anyFloat;
+import static org.mockito.Matchers.anyListOf;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Test that the weight popup is only redrawn when it changed and hidden 5 seconds after the last click
+ */
+public class TestWeightCheckTask
+{
+    private final MegaHardCore plugin = new MockMegaHardCore().get();
+
+    private final RootConfig CFG = new RootConfig(plugin);
+
+    private final MsgModule messenger = mock(MsgModule.class);
+
+    private final InventoryWeightModule inventoryWeight = mock(InventoryWeightModule.class);
+
+    private final Player player = new MockPlayer("Diemex94").get();
+
+    private WeightCheckTask task;
+
+
+    @Before
+    public void prepare()
+    {
+        CFG.set("world", RootNode.NO_SWIMMING_IN_ARMOR_MAX_POINTS, 18.0);
+        when(player.getWorld()).thenReturn(new MockWorld("world").get());
+        when(player.getUniqueId()).thenReturn(UUID.randomUUID());
+        when(player.isOnline()).thenReturn(true);
+        weighs(10F);
+        task = new WeightCheckTask(plugin, CFG, messenger, inventoryWeight);
+    }
+
+
+    private void weighs(float weight)
+    {
+        when(inventoryWeight.getWeight(eq(player), anyFloat(), anyFloat(), anyFloat())).thenReturn(weight);
+    }
+
+
+    private void verifyDrawn(int times)
+    {
+        verify(messenger, times(times)).sendPopup(eq(player), eq(MsgCategory.WEIGHT_MSG), anyListOf(String.class), eq(false));
+    }
+
+
+    @Test
+    public void redrawOnlyChanges()
+    {
+        task.updateLastClick(player);
+        task.run();
+        verifyDrawn(1);
+        task.run();
+        verifyDrawn(1);
+
+        weighs(20F);
+        task.run();
+        verifyDrawn(2);
+    }
+
+
+    @Test
+    public void hiddenAfterLastClick()
+    {
+        task.updateLastClick(player);
+        for (int i = 0; i < 4; i++)
+            task.run();
+        verify(messenger, never()).hidePopup(eq(player), anyString());
+
+        //clicking again keeps the popup for another 5 seconds
+        task.updateLastClick(player);
+        for (int i = 0; i < 4; i++)
+            task.run();
+        verify(messenger, never()).hidePopup(eq(player), anyString());
+        task.run();
+        verify(messenger, times(1)).hidePopup(player, MsgCategory.WEIGHT_MSG.getUniqueIdentifier());
+
+        weighs(20F);
+        task.run();
+        verifyDrawn(1);
+    }
+
+
+    @Test
+    public void quitPlayerForgotten()
+    {
+        task.updateLastClick(player);
+        task.run();
+        when(player.isOnline()).thenReturn(false);
+        weighs(20F);
+        for (int i = 0; i < 6; i++)
+            task.run();
+        verifyDrawn(1);
+        verify(messenger, never()).hidePopup(eq(player), anyString());
+    }
+}
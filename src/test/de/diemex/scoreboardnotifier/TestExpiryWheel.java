@@ -0,0 +1,60 @@
+package de.diemex.scoreboardnotifier;
+
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test that the timer wheel expires entries on the exact tick, also when they are further away than one level
+ */
+public class TestExpiryWheel
+{
+    @Test
+    public void expiresOnTime()
+    {
+        ExpiryWheel<Integer> wheel = new ExpiryWheel<>();
+        int[] delays = {0, 1, 2, 255, 256, 257, 600, 1800, 65535, 65536, 70000, 1 << 24, (1 << 24) + 300};
+        for (int delay : delays)
+            wheel.schedule(delay, delay);
+        assertEquals(delays.length, wheel.size());
+
+        List<Integer> expired = new ArrayList<>();
+        int last = (1 << 24) + 300;
+        for (int tick = 1; tick <= last; tick++)
+        {
+            final int now = tick;
+            wheel.tick(delay ->
+            {
+                assertEquals(Math.max(1, delay), now);
+                expired.add(delay);
+            });
+        }
+        assertEquals(delays.length, expired.size());
+        assertEquals(0, wheel.size());
+    }
+
+
+    @Test
+    public void scheduleWhileRunning()
+    {
+        ExpiryWheel<String> wheel = new ExpiryWheel<>();
+        List<String> expired = new ArrayList<>();
+        for (int tick = 0; tick < 1000; tick++)
+        {
+            if (tick % 7 == 0)
+                wheel.schedule("popup" + tick, 300);
+            wheel.tick(expired::add);
+        }
+        //Everything scheduled up to tick 700 has expired
+        assertEquals(101, expired.size());
+        assertTrue(expired.get(0).equals("popup0"));
+
+        wheel.clear();
+        assertEquals(0, wheel.size());
+    }
+}
@@ -0,0 +1,144 @@
+package de.diemex.scoreboardnotifier;
+
+
+import org.bukkit.ChatColor;
+import org.bukkit.Server;
+import org.bukkit.entity.Player;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.plugin.PluginManager;
+import org.bukkit.scheduler.BukkitScheduler;
+import org.bukkit.scheduler.BukkitTask;
+import org.bukkit.scoreboard.Objective;
+import org.bukkit.scoreboard.Score;
+import org.bukkit.scoreboard.Scoreboard;
+import org.bukkit.scoreboard.ScoreboardManager;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Test that the scoreboard is only shown once it has been rendered and that only changed lines are sent
+ */
+public class TestPlayerNotificationHandler
+{
+    private final Plugin plugin = mock(Plugin.class);
+
+    private final Player player = mock(Player.class);
+
+    private final Scoreboard mainBoard = mock(Scoreboard.class);
+
+    private final Scoreboard msgBoard = mock(Scoreboard.class);
+
+    private final Objective objective = mock(Objective.class);
+
+    /** Tasks which would run in the next tick */
+    private final List<Runnable> nextTick = new ArrayList<>();
+
+    /** Scoreboard the player is currently looking at */
+    private Scoreboard shown;
+
+    private NotificationManager manager;
+
+
+    @Before
+    public void prepare()
+    {
+        Server server = mock(Server.class);
+        BukkitScheduler scheduler = mock(BukkitScheduler.class);
+        ScoreboardManager scoreboards = mock(ScoreboardManager.class);
+        when(plugin.getServer()).thenReturn(server);
+        when(server.getPluginManager()).thenReturn(mock(PluginManager.class));
+        when(server.getScheduler()).thenReturn(scheduler);
+        when(server.getScoreboardManager()).thenReturn(scoreboards);
+        when(server.getPlayer("Notch")).thenReturn(player);
+        when(scheduler.runTaskTimer(eq(plugin), any(Runnable.class), anyLong(), anyLong())).thenReturn(mock(BukkitTask.class));
+        doAnswer(invocation -> {
+            nextTick.add((Runnable) invocation.getArguments()[1]);
+            return mock(BukkitTask.class);
+        }).when(scheduler).runTask(eq(plugin), any(Runnable.class));
+
+        when(scoreboards.getMainScoreboard()).thenReturn(mainBoard);
+        when(scoreboards.getNewScoreboard()).thenReturn(msgBoard);
+        when(msgBoard.registerNewObjective(anyString(), eq("dummy"))).thenReturn(objective);
+        when(msgBoard.getEntries()).thenReturn(Collections.<String>emptySet());
+        when(objective.getScore(anyString())).thenReturn(mock(Score.class));
+
+        shown = mainBoard;
+        when(player.isOnline()).thenReturn(true);
+        when(player.getScoreboard()).thenAnswer(invocation -> shown);
+        doAnswer(invocation -> {
+            shown = (Scoreboard) invocation.getArguments()[0];
+            return null;
+        }).when(player).setScoreboard(any(Scoreboard.class));
+
+        manager = new NotificationManager(plugin);
+    }
+
+
+    private void runNextTick()
+    {
+        List<Runnable> tasks = new ArrayList<>(nextTick);
+        nextTick.clear();
+        tasks.forEach(Runnable::run);
+    }
+
+
+    @Test
+    public void shownOnceRendered()
+    {
+        manager.showTimedPopup("Notch", 100, "Title", "first");
+        manager.showTimedPopup("Notch", 100, "Title", "second");
+        //Nothing is shown before the render in the next tick and both messages are rendered at once
+        verify(player, never()).setScoreboard(any(Scoreboard.class));
+        assertEquals(1, nextTick.size());
+
+        runNextTick();
+        verify(player).setScoreboard(msgBoard);
+        //Two lines and the separator
+        verify(objective, times(3)).getScore(anyString());
+    }
+
+
+    @Test
+    public void onlyChangedLinesSent()
+    {
+        manager.showTimedPopup("Notch", 100, "Title", "first");
+        runNextTick();
+        verify(objective, times(1)).getScore(anyString());
+
+        //The first message keeps its score, only the new line and the separator are sent
+        manager.showTimedPopup("Notch", 100, "Title", "second");
+        runNextTick();
+        verify(objective, times(3)).getScore(anyString());
+        verify(objective, times(1)).getScore("first");
+        verify(msgBoard, never()).resetScores(anyString());
+        verify(player, times(1)).setScoreboard(msgBoard);
+    }
+
+
+    @Test
+    public void removedInSameTick()
+    {
+        manager.showPopup("Notch", "id", 0, ChatColor.RED, ChatColor.WHITE, "Title", "gone");
+        manager.removePopup("Notch", "id");
+        runNextTick();
+        //The player never got to see our scoreboard
+        verify(player, never()).setScoreboard(any(Scoreboard.class));
+        assertEquals(mainBoard, shown);
+    }
+}